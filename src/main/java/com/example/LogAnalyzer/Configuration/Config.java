@@ -3,18 +3,32 @@ package com.example.LogAnalyzer.Configuration;
 import org.apache.http.HttpHost;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 @Configuration
+@EnableScheduling
 public class Config  {
 
+    //the async queries keep one connection busy per request in flight, the client's defaults of 10 per node
+    //and 30 in total would queue them long before the request threads run out
+    @Value("${es.connections.per.route:10}")
+    private int connectionsPerRoute = 10;
+
+    @Value("${es.connections.total:30}")
+    private int connectionsTotal = 30;
+
     @Bean(destroyMethod = "close")
     public RestHighLevelClient client() {
         return new RestHighLevelClient(
                 RestClient.builder(new HttpHost("localhost", 9200, "http"))
+                        .setHttpClientConfigCallback(httpClient -> httpClient
+                                .setMaxConnPerRoute(connectionsPerRoute)
+                                .setMaxConnTotal(connectionsTotal))
         );
     }
 
@@ -0,0 +1,71 @@
+package com.example.LogAnalyzer.Controller;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Helper.TermsRequest;
+import com.example.LogAnalyzer.Service.AsyncLogService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+//same endpoints as LogController under /api/async/log. the request thread goes back to the container as soon
+//as the query is sent and the response is written when es answers
+@RestController
+@RequestMapping("/api/async/log")
+public class AsyncLogController {
+    private final AsyncLogService service;
+
+    @Autowired
+    public AsyncLogController(AsyncLogService service) {
+        this.service = service;
+    }
+
+    @GetMapping("/search/using_scroll")
+    public CompletableFuture<ModelAndView> getDataScroll() {
+        return service.searchUsingScroll().thenApply(logs -> new ModelAndView("logs").addObject("logs", logs));
+    }
+
+    //    http://localhost:8080/api/async/log/cardinality?fieldValue=source
+    @GetMapping("/cardinality")
+    public CompletableFuture<Long> getCardinality(@RequestParam("fieldValue") String fieldValue) {
+        return service.cardinalityAggs(fieldValue);
+    }
+
+    //    http://localhost:8080/api/async/log/filterByTime?start=2023-06-16T17:52:14.691Z&end=2023-06-16T17:52:14.692Z
+    @GetMapping("/filterByTime")
+    public CompletableFuture<ModelAndView> filterByTime(@RequestParam("start") String start, @RequestParam("end") String end) {
+        return service.filterBytime(start, end).thenApply(logs -> new ModelAndView("logs").addObject("logs", logs));
+    }
+
+    @PostMapping("/filterByTerms")
+    public CompletableFuture<ResponseEntity<List<LogEntity>>> filterByField(@RequestBody TermsRequest request) {
+        if (request.getTerms() == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return service.filterByTermsDynamic(request.getField(), request.getTerms().toArray(new String[0])).thenApply(ResponseEntity::ok);
+    }
+
+    //    http://localhost:8080/api/async/log/groupBy?fieldValue=source
+    @GetMapping("/groupBy")
+    public CompletableFuture<ModelAndView> groupBy(@RequestParam("fieldValue") String fieldValue) {
+        return service.groupByDynamic(fieldValue).thenApply(grouped -> new ModelAndView("GroupByResults").addObject("grouped", grouped));
+    }
+
+    @PostMapping("/projectBy")
+    public CompletableFuture<ResponseEntity<List<Map<String, Object>>>> projectby(@RequestBody TermsRequest request) {
+        if (request.getTerms() == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return service.projectByDynamic(request.getTerms().toArray(new String[0])).thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/nestedGroupBy")
+    public CompletableFuture<Map<String, List<Map<String, Long>>>> nestedGroupBy(@RequestParam("field1Value") String field1, @RequestParam("field2Value") String field2) {
+        return service.nestedGroupByDynamic(field1, field2);
+    }
+
+}
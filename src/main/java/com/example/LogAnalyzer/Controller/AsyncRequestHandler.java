@@ -0,0 +1,77 @@
+package com.example.LogAnalyzer.Controller;
+
+
+import com.example.LogAnalyzer.Helper.AsyncQueryRequest;
+import com.example.LogAnalyzer.Service.AsyncLogService;
+import com.example.LogAnalyzer.Service.LogService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+//the RequestHandler queries answered with a DeferredResult, set when the es query completes
+@RestController
+@RequestMapping("/api/async")
+public class AsyncRequestHandler {
+    private final AsyncLogService asyncService;
+    private final LogService service;
+
+    @Autowired
+    public AsyncRequestHandler(AsyncLogService asyncService, LogService service) {
+        this.asyncService = asyncService;
+        this.service = service;
+    }
+
+    @PostMapping
+    public DeferredResult<ResponseEntity<?>> processRequest(@RequestBody AsyncQueryRequest request) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+        String type = request.getQuery() == null ? "" : request.getQuery();
+        CompletableFuture<?> response;
+        if (type.equals("search")) {
+            //the repository searches have no async api, they are answered on the request thread
+            response = CompletableFuture.completedFuture(service.search());
+        } else if (type.equals("search_paging")) {
+            response = CompletableFuture.completedFuture(service.searchUsingPage());
+        } else if (type.equals("search_scroll")) {
+            response = asyncService.searchUsingScroll();
+        } else if (type.equals("groupBy")) {
+            response = asyncService.groupByDynamic(request.getField());
+
+        } else if (type.equals("projectBy") && request.getFields() != null) {
+            response = asyncService.projectByDynamic(request.getFields().toArray(new String[0]));
+
+        } else if (type.equals("timeFilter")) {
+            response = asyncService.filterBytime(request.getStarttime(), request.getEndtime());
+
+        } else if (type.equals("termsFilter") && request.getTerms() != null) {
+            response = asyncService.filterByTermsDynamic(request.getField(), request.getTerms().toArray(new String[0]));
+
+        } else if (type.equals("nestedGroupBy")) {
+            response = asyncService.nestedGroupByDynamic(request.getField1(), request.getField2());
+
+        } else if (type.equals("cardinality")) {
+            response = asyncService.cardinalityAggs(request.getField());
+
+        } else {
+            //an unknown query, or a projectBy or termsFilter without its list
+            result.setResult(new ResponseEntity<>(null, HttpStatus.BAD_REQUEST));
+            return result;
+        }
+
+        response.whenComplete((body, e) -> {
+            if (e != null) {
+                result.setErrorResult(e instanceof CompletionException ? e.getCause() : e);
+            } else {
+                result.setResult(new ResponseEntity<>(body, HttpStatus.OK));
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.LogAnalyzer.Controller;
+
+import com.example.LogAnalyzer.Helper.AggregationCache;
+import com.example.LogAnalyzer.Helper.AggregationCacheStats;
+import com.example.LogAnalyzer.Helper.ClosedBucketCache;
+import com.example.LogAnalyzer.Helper.KnownLogIds;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+    private final AggregationCache cache;
+    private final ClosedBucketCache bucketCache;
+    private final KnownLogIds knownIds;
+
+    @Autowired
+    public CacheController(AggregationCache cache, ClosedBucketCache bucketCache, KnownLogIds knownIds) {
+        this.cache = cache;
+        this.bucketCache = bucketCache;
+        this.knownIds = knownIds;
+    }
+
+    //    http://localhost:8080/api/cache/stats
+    @GetMapping("/stats")
+    public AggregationCacheStats stats() {
+        return cache.stats();
+    }
+
+    //drops every cached aggregation, closed bucket and known id, for writes or deletes that did not go through the application
+    @DeleteMapping
+    public ResponseEntity<Void> invalidate() {
+        cache.invalidateAll();
+        bucketCache.invalidateAll();
+        knownIds.clear();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.LogAnalyzer.Controller;
+
+import com.example.LogAnalyzer.Helper.IngestionJobStatus;
+import com.example.LogAnalyzer.Helper.IngestionStats;
+import com.example.LogAnalyzer.Helper.LogRollup;
+import com.example.LogAnalyzer.Service.LogService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/ingest")
+public class IngestionController {
+    private final LogService service;
+    private final LogRollup rollup;
+
+    @Autowired
+    public IngestionController(LogService service, LogRollup rollup) {
+        this.service = service;
+        this.rollup = rollup;
+    }
+
+    //runs the ingestion of the configured excel file, returns when it is done. bulkLoad=true for a backfill,
+    //its logs are searchable once it returns, the cached aggregations of its partitions are dropped after the refresh
+    //    http://localhost:8080/api/ingest?bulkLoad=true
+    @PostMapping
+    public IngestionStats ingest(@RequestParam(required = false) Boolean bulkLoad) {
+        return bulkLoad == null ? service.savelogdata() : service.savelogdata(bulkLoad);
+    }
+
+    //    http://localhost:8080/api/ingest/stats
+    @GetMapping("/stats")
+    public IngestionStats stats() {
+        return service.ingestionStats();
+    }
+
+    //rows read, written, duplicate, skipped and rejected of the running or last ingestion, and the row it is committed up to
+    //    http://localhost:8080/api/ingest/job
+    @GetMapping("/job")
+    public IngestionJobStatus job() {
+        return service.ingestionJob();
+    }
+
+    //recounts the rollup index from the logs, returns the number of rollup documents written
+    //    http://localhost:8080/api/ingest/rollup
+    @PostMapping("/rollup")
+    public Map<String, Long> rebuildRollup() {
+        return Map.of("documents", rollup.rebuild());
+    }
+}
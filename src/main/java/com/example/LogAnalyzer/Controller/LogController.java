@@ -1,14 +1,29 @@
 package com.example.LogAnalyzer.Controller;
 
 import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Helper.ColumnarGroups;
+import com.example.LogAnalyzer.Helper.CursorPage;
+import com.example.LogAnalyzer.Helper.ExportStats;
+import com.example.LogAnalyzer.Helper.GroupBucketWriter;
+import com.example.LogAnalyzer.Helper.LogEntityWriter;
+import com.example.LogAnalyzer.Helper.TermsRequest;
+import com.example.LogAnalyzer.Helper.TimeSeries;
 import com.example.LogAnalyzer.Service.LogService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.text.ParseException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/log")
@@ -45,6 +60,114 @@ public class LogController {
         return modelAndView;
     }
 
+    //writes every batch to the response as soon as it is read instead of building the whole list first
+    //    http://localhost:8080/api/log/search/stream?format=csv&mode=page
+    @GetMapping("/search/stream")
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(value = "format", defaultValue = LogEntityWriter.NDJSON) String format,
+                                                        @RequestParam(value = "mode", defaultValue = "scroll") String mode,
+                                                        @RequestParam(value = "slices", defaultValue = "0") int slices,
+                                                        @RequestParam(value = "size", defaultValue = "0") int size) {
+        if (!LogEntityWriter.isSupported(format) || !(mode.equals("scroll") || mode.equals("page") || mode.equals("sliced"))) {
+            return ResponseEntity.badRequest().build();
+        }
+        //checked before the body starts, once it has the status is sent
+        if (mode.equals("sliced")) {
+            try {
+                service.checkExport(slices, size);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        StreamingResponseBody body = out -> {
+            LogEntityWriter writer = LogEntityWriter.open(format, out);
+            //commits the headers so the client sees the response start before the first batch
+            out.flush();
+            Consumer<List<LogEntity>> sink = batch -> {
+                try {
+                    writer.write(batch);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            try {
+                if (mode.equals("page")) {
+                    service.streamUsingPage(sink);
+                } else if (mode.equals("sliced")) {
+                    service.exportSliced(slices, size, sink);
+                } else {
+                    service.streamUsingScroll(sink);
+                }
+            } catch (UncheckedIOException e) {
+                //the client went away, the service has already released the scroll
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(LogEntityWriter.contentType(format)))
+                .body(body);
+    }
+
+    //drains the whole index with a sliced scroll without sending it, to measure how the export scales with slices
+    //    http://localhost:8080/api/log/search/stream/throughput?slices=4&size=1000
+    @GetMapping("/search/stream/throughput")
+    public ResponseEntity<ExportStats> exportThroughput(@RequestParam(value = "slices", defaultValue = "0") int slices,
+                                                        @RequestParam(value = "size", defaultValue = "0") int size) {
+        try {
+            return ResponseEntity.ok(service.exportSliced(slices, size, batch -> {
+            }));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    //cursor pages of the filters and the projection, pass the returned cursor to /cursor/next until it is null
+    //    http://localhost:8080/api/log/cursor/filterByTime?start=2023-06-16T17:52:14.691Z&end=2023-06-16T18:52:14.691Z&size=1000
+    @GetMapping("/cursor/filterByTime")
+    public ResponseEntity<CursorPage<LogEntity>> filterByTimeCursor(@RequestParam("start") String start, @RequestParam("end") String end,
+                                                                    @RequestParam(value = "size", defaultValue = "1000") int size) {
+        return cursorPage(() -> service.filterBytimeCursor(start, end, size));
+    }
+
+    @GetMapping("/cursor/filterBySource")
+    public ResponseEntity<CursorPage<LogEntity>> filterBySourceCursor(@RequestParam(value = "size", defaultValue = "1000") int size) {
+        return cursorPage(() -> service.filterBytermsCursor(size));
+    }
+
+    @PostMapping("/cursor/filterByTerms")
+    public ResponseEntity<CursorPage<LogEntity>> filterByTermsCursor(@RequestBody TermsRequest request) {
+        if (request.getField() == null || request.getTerms() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return cursorPage(() -> service.filterByTermsDynamicCursor(request.getField(), pageSize(request),
+                request.getTerms().toArray(new String[0])));
+    }
+
+    @PostMapping("/cursor/projectBy")
+    public ResponseEntity<CursorPage<Map<String, Object>>> projectByCursor(@RequestBody TermsRequest request) {
+        if (request.getTerms() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return cursorPage(() -> service.projectByDynamicCursor(pageSize(request), request.getTerms().toArray(new String[0])));
+    }
+
+    private static int pageSize(TermsRequest request) {
+        return request.getSize() == null ? 1000 : request.getSize();
+    }
+
+    @GetMapping("/cursor/next")
+    public ResponseEntity<? extends CursorPage<?>> nextPage(@RequestParam("cursor") String cursor) {
+        return cursorPage(() -> service.nextPage(cursor));
+    }
+
+    //a bad size or an invalid or expired cursor is the client's mistake
+    private static <T extends CursorPage<?>> ResponseEntity<T> cursorPage(Supplier<T> page) {
+        try {
+            return ResponseEntity.ok(page.get());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     //    http://localhost:8080/api/log/cardinality?fieldValue=source
     @GetMapping("/cardinality")
     public Long getCardinality(@RequestParam("fieldValue") String fieldValue) {
@@ -96,5 +219,79 @@ public class LogController {
         return groupedData;
     }
 
+    //a group by on up to four levels returned as columns, a level is a field or a date field and an interval
+    //    http://localhost:8080/api/log/groupBy/columns?levels=source,logger,timestamp:1h&size=100
+    @GetMapping("/groupBy/columns")
+    public ResponseEntity<ColumnarGroups> groupByColumns(@RequestParam("levels") List<String> levels,
+                                                         @RequestParam(value = "size", defaultValue = "100") int size) {
+        try {
+            return ResponseEntity.ok(service.groupByColumns(levels, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    //log counts over a time range in at most buckets buckets, the interval grows with the range so zooming out
+    //does not grow the response. source, loglevel, logger and partnerid filter, split gives a series per value
+    //    http://localhost:8080/api/log/histogram?from=2023-06-16T00:00:00Z&to=2023-06-17T00:00:00Z&buckets=100&split=loglevel&source=web
+    @GetMapping("/histogram")
+    public ResponseEntity<TimeSeries> histogram(@RequestParam("from") String from, @RequestParam("to") String to,
+                                                @RequestParam(value = "buckets", defaultValue = "100") int buckets,
+                                                @RequestParam(value = "split", required = false) String split,
+                                                @RequestParam(value = "splitSize", defaultValue = "10") int splitSize,
+                                                @RequestParam(value = "source", required = false) List<String> source,
+                                                @RequestParam(value = "loglevel", required = false) List<String> loglevel,
+                                                @RequestParam(value = "logger", required = false) List<String> logger,
+                                                @RequestParam(value = "partnerid", required = false) List<String> partnerid) {
+        Map<String, List<String>> filters = new HashMap<>();
+        if (source != null) {
+            filters.put("source", source);
+        }
+        if (loglevel != null) {
+            filters.put("loglevel", loglevel);
+        }
+        if (logger != null) {
+            filters.put("logger", logger);
+        }
+        if (partnerid != null) {
+            filters.put("partnerid", partnerid);
+        }
+        try {
+            return ResponseEntity.ok(service.timeSeries(from, to, buckets, filters, split, splitSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    //every bucket of a group by on one or more fields, nested when there are several, streamed a page at a time.
+    //unlike /groupBy and /nestedGroupBy nothing is cut off, however many values the fields have
+    //    http://localhost:8080/api/log/groupBy/stream?fields=source,partnerid&size=1000&format=csv
+    @GetMapping("/groupBy/stream")
+    public ResponseEntity<StreamingResponseBody> groupByStream(@RequestParam("fields") List<String> fields,
+                                                               @RequestParam(value = "size", defaultValue = "1000") int size,
+                                                               @RequestParam(value = "format", defaultValue = LogEntityWriter.NDJSON) String format) {
+        if (!LogEntityWriter.isSupported(format) || fields.isEmpty() || size < 1 || size > 10000) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> {
+            GroupBucketWriter writer = GroupBucketWriter.open(format, out, fields);
+            out.flush();
+            try {
+                service.streamGroupBy(size, page -> {
+                    try {
+                        writer.write(page);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, fields.toArray(new String[0]));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(LogEntityWriter.contentType(format)))
+                .body(body);
+    }
+
 
 }
@@ -0,0 +1,28 @@
+package com.example.LogAnalyzer.Controller;
+
+import com.example.LogAnalyzer.Helper.QueryProfile;
+import com.example.LogAnalyzer.Helper.QueryProfiler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/profile")
+public class ProfileController {
+    private final QueryProfiler profiler;
+
+    @Autowired
+    public ProfileController(QueryProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    //    http://localhost:8080/api/profile/{id of the X-Profile-Id header}
+    @GetMapping("/{id}")
+    public ResponseEntity<QueryProfile> profile(@PathVariable String id) {
+        QueryProfile profile = profiler.get(id);
+        return profile == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(profile);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.LogAnalyzer.Controller;
+
+import com.example.LogAnalyzer.Helper.QueryProfile;
+import com.example.LogAnalyzer.Helper.QueryProfiler;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+//profiles the requests sent with an X-Profile header, true for the timings and es to add es's profile breakdown.
+//the profile id goes back in X-Profile-Id before the response is written, the profile is read from /api/profile/{id}
+@Component
+public class ProfilingFilter extends OncePerRequestFilter {
+    private final QueryProfiler profiler;
+
+    @Autowired
+    public ProfilingFilter(QueryProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        String mode = request.getHeader(QueryProfiler.HEADER);
+        if (mode == null || mode.equalsIgnoreCase("false")) {
+            chain.doFilter(request, response);
+            return;
+        }
+        QueryProfile profile = profiler.start(mode.equalsIgnoreCase("es"));
+        response.setHeader(QueryProfiler.ID_HEADER, profile.getId());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            profiler.stop();
+        }
+    }
+}
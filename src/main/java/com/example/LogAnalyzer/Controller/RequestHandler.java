@@ -2,6 +2,9 @@ package com.example.LogAnalyzer.Controller;
 
 
 import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Helper.BatchResult;
+import com.example.LogAnalyzer.Helper.LogQuery;
+import com.example.LogAnalyzer.Helper.LogQueryResult;
 import com.example.LogAnalyzer.Service.LogService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -80,4 +83,24 @@ public class RequestHandler {
 
         return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
     }
+
+    //filters, projection, sort and nested group by combined in one search, see LogQuery for the body
+    @PostMapping("/query")
+    public ResponseEntity<LogQueryResult> processQuery(@RequestBody LogQuery query) {
+        try {
+            return new ResponseEntity<>(service.query(query), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    //an array of the descriptors above answered with one msearch, each result or error in the same position
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchResult>> processBatch(@RequestBody List<Map<String, Object>> requestBody) {
+        try {
+            return new ResponseEntity<>(service.batch(requestBody), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+        }
+    }
 }
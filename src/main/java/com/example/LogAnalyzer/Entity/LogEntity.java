@@ -8,7 +8,8 @@ import org.springframework.data.elasticsearch.annotations.FieldType;
 import java.time.LocalDate;
 import java.util.Date;
 
-@Document(indexName = "loganalyzer")
+//the repository reads every daily partition, the bulk indexer writes them and their mapping
+@Document(indexName = "loganalyzer*", createIndex = false)
 public class
 LogEntity {
 
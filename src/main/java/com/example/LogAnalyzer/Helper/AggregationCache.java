@@ -0,0 +1,187 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.regex.Regex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+//results of whole index aggregations, keyed by the index and the search the result came from.
+//entries expire after cache.ttl.seconds and are evicted by caffeine's window tiny lfu once the cached results
+//hold more than cache.max.weight buckets and values. a write to an index drops every entry read from it
+@Component
+public class AggregationCache {
+
+    private static final Logger logger = Logger.getLogger(AggregationCache.class.getName());
+
+    private final Cache<Key, Object> cache;
+
+    //es makes new documents searchable on its next refresh, a result computed this soon after a write
+    //may not contain them, so it is returned but not cached
+    private final long refreshGraceMillis;
+
+    private volatile long lastWriteAt;
+
+    //counts the writes and clears, a load that saw it change may have missed one
+    private final AtomicLong writes = new AtomicLong();
+
+    //concurrent loads of the same key share one search, outside the cache so a slow search locks nothing
+    private final SingleFlight<Object> loads = new SingleFlight<>();
+
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public AggregationCache(@Value("${cache.ttl.seconds:60}") long ttlSeconds,
+                            @Value("${cache.max.weight:100000}") long maxWeight,
+                            @Value("${cache.refresh.grace.ms:1000}") long refreshGraceMillis) {
+        this.refreshGraceMillis = refreshGraceMillis;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumWeight(maxWeight)
+                .weigher((Key key, Object value) -> weigh(value))
+                .recordStats()
+                .build();
+    }
+
+    //the cached result of the search, or the loader's result, which is cached unless the index was written
+    //while it loaded. concurrent callers of the same key wait for one load. a null result is not cached
+    @SuppressWarnings("unchecked")
+    public <T> T get(String index, String search, Supplier<T> loader) {
+        if (System.currentTimeMillis() - lastWriteAt < refreshGraceMillis) {
+            bypassed.increment();
+            return loader.get();
+        }
+        Key key = new Key(index, search);
+        Object cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+        return (T) loads.execute(index + "\u0000" + search, () -> {
+            long writesBefore = writes.get();
+            long startedAt = System.currentTimeMillis();
+            T result = loader.get();
+            if (writes.get() == writesBefore) {
+                store(key, result, writesBefore, startedAt);
+            }
+            return result;
+        });
+    }
+
+    //the cached result or null, without loading it
+    @SuppressWarnings("unchecked")
+    public <T> T peek(String index, String search) {
+        return (T) cache.getIfPresent(new Key(index, search));
+    }
+
+    //caches a result searched elsewhere, started at searchedAt, unless the index was written
+    //while it ran or within the refresh grace before it
+    public void put(String index, String search, Object result, long searchedAt) {
+        store(new Key(index, search), result, writes.get(), searchedAt);
+    }
+
+    //a write that lands between the check and the put has already dropped what it could, the entry is taken
+    //out again when the count moved
+    private void store(Key key, Object result, long writesBefore, long searchedAt) {
+        if (result == null || lastWriteAt > searchedAt - refreshGraceMillis) {
+            return;
+        }
+        cache.put(key, result);
+        if (writes.get() != writesBefore) {
+            cache.invalidate(key);
+        }
+    }
+
+    //a search of a pattern such as loganalyzer*, or of a list of partitions, is dropped when any index it matches is written
+    @EventListener
+    public void onLogsIndexed(LogsIndexedEvent event) {
+        lastWriteAt = System.currentTimeMillis();
+        invalidate(event.getIndex());
+    }
+
+    public void invalidate(String index) {
+        writes.incrementAndGet();
+        int before = cache.asMap().size();
+        cache.asMap().keySet().removeIf(key -> Regex.simpleMatch(Strings.splitStringByCommaToArray(key.index), index));
+        invalidations.increment();
+        logger.fine("dropped " + (before - cache.asMap().size()) + " cached aggregations of " + index);
+    }
+
+    public void invalidateAll() {
+        writes.incrementAndGet();
+        cache.invalidateAll();
+        invalidations.increment();
+    }
+
+    public AggregationCacheStats stats() {
+        //runs the pending maintenance so the size and weight are current
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+        long weight = cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+        return new AggregationCacheStats(stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+                cache.estimatedSize(), weight, bypassed.sum(), invalidations.sum());
+    }
+
+    //roughly the number of buckets and values in the result
+    static int weigh(Object value) {
+        if (value instanceof ColumnarGroups) {
+            ColumnarGroups groups = (ColumnarGroups) value;
+            return Math.max(1, groups.size() * (groups.getColumns().length + 1));
+        }
+        if (value instanceof TimeSeries) {
+            TimeSeries series = (TimeSeries) value;
+            return Math.max(1, series.getTimestamps().length * (series.getSeries().size() + 1));
+        }
+        if (value instanceof Map) {
+            int weight = 0;
+            for (Object item : ((Map<?, ?>) value).values()) {
+                weight += weigh(item);
+            }
+            return Math.max(1, weight);
+        }
+        if (value instanceof Collection) {
+            int weight = 0;
+            for (Object item : (Collection<?>) value) {
+                weight += weigh(item);
+            }
+            return Math.max(1, weight);
+        }
+        return 1;
+    }
+
+    private static final class Key {
+
+        private final String index;
+        private final String search;
+
+        private Key(String index, String search) {
+            this.index = index;
+            this.search = search;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return index.equals(other.index) && search.equals(other.search);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(index, search);
+        }
+    }
+}
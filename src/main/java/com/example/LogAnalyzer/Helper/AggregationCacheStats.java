@@ -0,0 +1,60 @@
+package com.example.LogAnalyzer.Helper;
+
+//counters of the aggregation cache since startup
+public class AggregationCacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final double hitRate;
+    private final long evictions;
+    private final long entries;
+    private final long weight;
+    private final long bypassed;
+    private final long invalidations;
+
+    public AggregationCacheStats(long hits, long misses, double hitRate, long evictions, long entries, long weight,
+                                 long bypassed, long invalidations) {
+        this.hits = hits;
+        this.misses = misses;
+        this.hitRate = hitRate;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.weight = weight;
+        this.bypassed = bypassed;
+        this.invalidations = invalidations;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    //entries dropped for size or age, invalidations are not counted
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    //searches sent without the cache because the index was written within the refresh grace period
+    public long getBypassed() {
+        return bypassed;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.LogAnalyzer.Helper;
+
+import java.util.List;
+
+//the body of /api/async, the query names which of the other fields are read
+//  {"query": "termsFilter", "field": "source", "terms": ["source1"]}
+public class AsyncQueryRequest {
+
+    //search, search_paging, search_scroll, groupBy, projectBy, timeFilter, termsFilter, nestedGroupBy or cardinality
+    private String query;
+
+    private String field;
+
+    //the projected fields of projectBy
+    private List<String> fields;
+
+    private String starttime;
+    private String endtime;
+
+    private List<String> terms;
+
+    //the outer and inner field of nestedGroupBy
+    private String field1;
+    private String field2;
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public void setFields(List<String> fields) {
+        this.fields = fields;
+    }
+
+    public String getStarttime() {
+        return starttime;
+    }
+
+    public void setStarttime(String starttime) {
+        this.starttime = starttime;
+    }
+
+    public String getEndtime() {
+        return endtime;
+    }
+
+    public void setEndtime(String endtime) {
+        this.endtime = endtime;
+    }
+
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    public void setTerms(List<String> terms) {
+        this.terms = terms;
+    }
+
+    public String getField1() {
+        return field1;
+    }
+
+    public void setField1(String field1) {
+        this.field1 = field1;
+    }
+
+    public String getField2() {
+        return field2;
+    }
+
+    public void setField2(String field2) {
+        this.field2 = field2;
+    }
+}
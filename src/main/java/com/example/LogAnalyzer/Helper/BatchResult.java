@@ -0,0 +1,38 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+//the outcome of one query of a batch: the result, or the error that query alone failed with
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+
+    private final String query;
+    private final Object result;
+    private final String error;
+
+    private BatchResult(String query, Object result, String error) {
+        this.query = query;
+        this.result = result;
+        this.error = error;
+    }
+
+    public static BatchResult ok(String query, Object result) {
+        return new BatchResult(query, result, null);
+    }
+
+    public static BatchResult failed(String query, String error) {
+        return new BatchResult(query, null, error);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
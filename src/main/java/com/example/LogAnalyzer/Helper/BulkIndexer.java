@@ -0,0 +1,521 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.*;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//writes LogEntities to es with the bulk api instead of one request per document, each into the partition
+//of its day, see LogPartitions. batches are cut by document count, byte size or a flush timer, whichever comes first
+@Component
+public class BulkIndexer {
+
+    private static final Logger logger = Logger.getLogger(BulkIndexer.class.getName());
+
+    //at most this many item failures are logged per bulk request, the rest are only counted
+    private static final int LOGGED_FAILURES_PER_BULK = 10;
+
+    //how long a closing session waits for the answers being handed to the listener
+    private static final int RETRIES_AWAIT_SECONDS = 30;
+
+    private final RestHighLevelClient client;
+
+    private final ApplicationEventPublisher events;
+
+    //counts what every session writes into the rollup index, null when there is no rollup
+    private final LogRollup rollup;
+
+    //the mapping of the partitions, put before the first session. null leaves the partitions to es
+    private final LogIndexTemplate template;
+
+    //switches the partitions of a bulk load session to load settings and back, null when there is none
+    private final BulkLoad bulkLoad;
+
+    //ids es has held, their logs are not sent again to a partition that still exists. null sends every log
+    private final KnownLogIds knownIds;
+
+    @Value("${bulk.actions:1000}")
+    private int bulkActions = 1000;
+
+    @Value("${bulk.size.mb:5}")
+    private int bulkSizeMb = 5;
+
+    @Value("${bulk.concurrent.requests:2}")
+    private int concurrentRequests = 2;
+
+    @Value("${bulk.flush.interval.seconds:5}")
+    private int flushIntervalSeconds = 5;
+
+    @Value("${bulk.await.minutes:10}")
+    private int awaitMinutes = 10;
+
+    //totals over all sessions since startup
+    private final AtomicLong totalDocuments = new AtomicLong();
+    private final AtomicLong totalFailed = new AtomicLong();
+    private final AtomicLong totalDuplicates = new AtomicLong();
+    private final AtomicLong totalBulkRequests = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private final long startedAt = System.currentTimeMillis();
+
+    public BulkIndexer(RestHighLevelClient client) {
+        this(client, event -> {
+        });
+    }
+
+    public BulkIndexer(RestHighLevelClient client, ApplicationEventPublisher events) {
+        this(client, events, null, null, null, null);
+    }
+
+    //every bulk that writes documents is announced with a LogsIndexedEvent per partition it wrote to
+    @Autowired
+    public BulkIndexer(RestHighLevelClient client, ApplicationEventPublisher events, LogRollup rollup, LogIndexTemplate template,
+                       BulkLoad bulkLoad, KnownLogIds knownIds) {
+        this.client = client;
+        this.events = events;
+        this.rollup = rollup;
+        this.template = template;
+        this.bulkLoad = bulkLoad;
+        this.knownIds = knownIds;
+    }
+
+    //indexes all the logs and waits until every bulk request has completed
+    public BulkStats index(Iterable<LogEntity> logs) {
+        Session session = open();
+        try {
+            for (LogEntity log : logs) {
+                session.add(log);
+            }
+        } finally {
+            session.close();
+        }
+        BulkStats stats = session.stats();
+        logger.info("bulk indexing finished: " + stats);
+        return stats;
+    }
+
+    //a session owns one BulkProcessor, close it to flush the remaining documents and wait for them
+    public Session open() {
+        return open(false);
+    }
+
+    //a bulk load session writes with the load settings of BulkLoad, for a backfill nobody searches until it is done
+    public Session open(boolean load) {
+        if (template != null) {
+            template.install();
+        }
+        return new Session(load && bulkLoad != null ? bulkLoad.start() : null);
+    }
+
+    //what became of a log added to a session, known once its bulk has answered
+    public enum Result {WRITTEN, DUPLICATE, FAILED}
+
+    public BulkStats totals() {
+        return new BulkStats(totalDocuments.get(), totalFailed.get(), totalDuplicates.get(), totalBulkRequests.get(),
+                totalLatencyMillis.get(), System.currentTimeMillis() - startedAt);
+    }
+
+    static Map<String, Object> toSource(LogEntity log) {
+        Map<String, Object> source = new HashMap<>();
+        if (log.getTimestamp() != null) {
+            source.put("timestamp", TimestampCodec.format(log.getTimestamp().getTime()));
+        }
+        if (log.getDate() != null) {
+            source.put("date", log.getDate().toString());
+        }
+        source.put("source", log.getSource());
+        source.put("message", log.getMessage());
+        source.put("loglevel", log.getLoglevel());
+        source.put("logger", log.getLogger());
+        source.put("partnerid", log.getPartnerid());
+        return source;
+    }
+
+    public class Session implements AutoCloseable {
+
+        private final BulkProcessor processor;
+        private final AtomicLong documents = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong duplicates = new AtomicLong();
+        private final AtomicLong bulkRequests = new AtomicLong();
+        private final AtomicLong latencyMillis = new AtomicLong();
+        private final Map<Long, Long> bulkStartedAt = new ConcurrentHashMap<>();
+        //the bulks are cut by the processor, every event bounds the logs added so far instead of those of its bulk
+        private final AtomicLong earliest = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong latest = new AtomicLong(Long.MIN_VALUE);
+        private final long startedAt = System.currentTimeMillis();
+        private long finishedAt;
+        //only the logs es accepted are counted, the requests in flight are kept until their bulk answers
+        private final LogRollup.Session rollupSession;
+        private final Map<DocWriteRequest<?>, Pending> pending = Collections.synchronizedMap(new IdentityHashMap<>());
+        private final BulkLoad.Load load;
+        //the partitions there were when the session started. the known ids are only a hint, a partition deleted
+        //outside the application takes its ids with it and its logs have to be sent again
+        private final Set<String> existingPartitions;
+        //the documents written per partition of a load, they are only searchable after its final refresh
+        private final Map<String, Long> loaded = new ConcurrentHashMap<>();
+        //sends the retries of items es rejected because its queues were full and hands the answers to the
+        //listener, which writes the rollup. a blocking call must not run on the thread of the client that answered
+        private final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bulk-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private Session(BulkLoad.Load load) {
+            this.load = load;
+            existingPartitions = knownIds != null ? existingPartitions() : Set.of();
+            rollupSession = rollup != null && rollup.isEnabled() ? rollup.open() : null;
+            processor = BulkProcessor.builder((request, listener) -> new Retry(request, listener).send(), new Listener())
+                    .setBulkActions(bulkActions)
+                    .setBulkSize(new ByteSizeValue(bulkSizeMb, ByteSizeUnit.MB))
+                    .setConcurrentRequests(concurrentRequests)
+                    .setFlushInterval(TimeValue.timeValueSeconds(flushIntervalSeconds))
+                    //the processor's own retry puts the retried items after the others in the response, Retry keeps their order
+                    .setBackoffPolicy(BackoffPolicy.noBackoff())
+                    .build();
+        }
+
+        //blocks when the configured number of bulk requests is already in flight. a log with an id es
+        //already holds is counted as a duplicate and not sent
+        public void add(LogEntity log) {
+            add(log, null);
+        }
+
+        //the callback, when not null, is told the result of the log from the thread its bulk answered on
+        public void add(LogEntity log, Consumer<Result> callback) {
+            String index = LogPartitions.index(log);
+            if (log.getID() != null && knownIds != null && knownIds.contains(log.getID()) && existingPartitions.contains(index)) {
+                duplicates.incrementAndGet();
+                totalDuplicates.incrementAndGet();
+                if (callback != null) {
+                    callback.accept(Result.DUPLICATE);
+                }
+                return;
+            }
+            if (load != null) {
+                load.prepare(index);
+            }
+            IndexRequest request = new IndexRequest(index).source(toSource(log));
+            //a log with an id is only created, a second copy is rejected by es instead of rewriting the first
+            if (log.getID() != null) {
+                request.id(log.getID()).opType(DocWriteRequest.OpType.CREATE);
+            }
+            if (log.getTimestamp() == null) {
+                earliest.set(Long.MIN_VALUE);
+                latest.set(Long.MAX_VALUE);
+            } else {
+                earliest.accumulateAndGet(log.getTimestamp().getTime(), Math::min);
+                latest.accumulateAndGet(log.getTimestamp().getTime(), Math::max);
+            }
+            if (rollupSession != null || callback != null) {
+                pending.put(request, new Pending(log, callback));
+            }
+            processor.add(request);
+        }
+
+        //a session whose bulks did not all answer in time fails the logs still in flight, an answer arriving
+        //later is dropped. a load is then left with its load settings, its partitions are still being written
+        @Override
+        public void close() {
+            boolean answered = false;
+            try {
+                answered = processor.awaitClose(awaitMinutes, TimeUnit.MINUTES);
+                if (!answered) {
+                    logger.severe("bulk requests still in flight after " + awaitMinutes + " minutes, their logs are failed");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                if (!answered) {
+                    failPending();
+                }
+                retries.shutdown();
+                try {
+                    if (!retries.awaitTermination(RETRIES_AWAIT_SECONDS, TimeUnit.SECONDS)) {
+                        logger.warning("bulk answers still being handled after " + RETRIES_AWAIT_SECONDS + " seconds");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finishedAt = System.currentTimeMillis();
+            }
+            if (!answered) {
+                if (load != null) {
+                    logger.severe("the partitions " + load.getIndices() + " keep the load settings until a load of them finishes");
+                }
+                return;
+            }
+            //the logs are written whether or not the partitions can be put back, a failure is logged
+            if (load != null) {
+                try {
+                    load.finish();
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "could not restore the live settings of " + load.getIndices(), e);
+                }
+                announceLoaded();
+            }
+        }
+
+        //the events of the bulks came before the loaded logs could be searched, anything cached from a search
+        //during the load left them out. every loaded partition is announced again once it is refreshed
+        private void announceLoaded() {
+            loaded.forEach((index, documents) -> {
+                long from = earliest.get();
+                long to = latest.get();
+                long dayStart = LogPartitions.dayStart(index);
+                if (dayStart != Long.MIN_VALUE) {
+                    from = Math.max(from, dayStart);
+                    to = Math.min(to, dayStart + LogPartitions.DAY_MILLIS - 1);
+                }
+                events.publishEvent(new LogsIndexedEvent(index, documents, from, to));
+            });
+        }
+
+        //none when they cannot be listed, every log is sent and es turns the duplicates away
+        private Set<String> existingPartitions() {
+            try {
+                return new HashSet<>(Arrays.asList(client.indices()
+                        .get(new GetIndexRequest(LogPartitions.PREFIX + "*"), RequestOptions.DEFAULT).getIndices()));
+            } catch (IOException | ElasticsearchException e) {
+                logger.log(Level.WARNING, "could not list the partitions, the known ids are not used by this session", e);
+                return Set.of();
+            }
+        }
+
+        //the logs whose bulk has not answered are reported failed, so a checkpoint stops before them
+        private void failPending() {
+            List<Pending> unanswered;
+            synchronized (pending) {
+                unanswered = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+            failed.addAndGet(unanswered.size());
+            totalFailed.addAndGet(unanswered.size());
+            for (Pending added : unanswered) {
+                added.done(Result.FAILED);
+            }
+        }
+
+        //runs the task on the retry thread, unless the session was closed without waiting for it
+        private void dispatch(Runnable task) {
+            try {
+                retries.execute(task);
+            } catch (RejectedExecutionException e) {
+                logger.warning("a bulk answered after its session was closed, its logs were already failed");
+            }
+        }
+
+        public BulkStats stats() {
+            long end = finishedAt == 0 ? System.currentTimeMillis() : finishedAt;
+            return new BulkStats(documents.get(), failed.get(), duplicates.get(), bulkRequests.get(), latencyMillis.get(), end - startedAt);
+        }
+
+        //written holds the documents es accepted per partition
+        private void completed(long executionId, Map<String, Long> written, long failures, long conflicts) {
+            long succeeded = written.values().stream().mapToLong(Long::longValue).sum();
+            Long start = bulkStartedAt.remove(executionId);
+            long took = start == null ? 0 : System.currentTimeMillis() - start;
+
+            documents.addAndGet(succeeded);
+            failed.addAndGet(failures);
+            duplicates.addAndGet(conflicts);
+            bulkRequests.incrementAndGet();
+            latencyMillis.addAndGet(took);
+
+            totalDocuments.addAndGet(succeeded);
+            totalFailed.addAndGet(failures);
+            totalDuplicates.addAndGet(conflicts);
+            totalBulkRequests.incrementAndGet();
+            totalLatencyMillis.addAndGet(took);
+
+            written.forEach((index, documents) -> events.publishEvent(new LogsIndexedEvent(index, documents, earliest.get(), latest.get())));
+            if (load != null) {
+                written.forEach((index, documents) -> loaded.merge(index, documents, Long::sum));
+            }
+        }
+
+        //sends a bulk and resends the items rejected with a 429 after the delays of an exponential backoff. the
+        //response holds the items of every attempt at the position of their request, afterBulk matches them by it
+        private class Retry {
+
+            private final BulkRequest request;
+            private final ActionListener<BulkResponse> listener;
+            private final BulkItemResponse[] items;
+            private final Iterator<TimeValue> delays = BackoffPolicy.exponentialBackoff().iterator();
+            private long tookMillis;
+
+            private Retry(BulkRequest request, ActionListener<BulkResponse> listener) {
+                this.request = request;
+                this.listener = listener;
+                this.items = new BulkItemResponse[request.numberOfActions()];
+            }
+
+            private void send() {
+                int[] positions = new int[items.length];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = i;
+                }
+                send(request, positions);
+            }
+
+            //positions holds the position in the first request of every item of this attempt
+            private void send(BulkRequest attempt, int[] positions) {
+                client.bulkAsync(attempt, RequestOptions.DEFAULT, ActionListener.wrap(response -> answered(response, positions),
+                        failure -> dispatch(() -> listener.onFailure(failure))));
+            }
+
+            private void answered(BulkResponse response, int[] positions) {
+                tookMillis += response.getTook().millis();
+                boolean canRetry = delays.hasNext();
+                BulkRequest retry = new BulkRequest().timeout(request.timeout());
+                List<Integer> retried = new ArrayList<>();
+                BulkItemResponse[] answered = response.getItems();
+                for (int i = 0; i < answered.length; i++) {
+                    int position = positions[i];
+                    BulkItemResponse item = answered[i];
+                    if (canRetry && item.isFailed() && item.status() == RestStatus.TOO_MANY_REQUESTS) {
+                        retry.add(request.requests().get(position));
+                        retried.add(position);
+                    } else if (item.isFailed()) {
+                        items[position] = new BulkItemResponse(position, item.getOpType(), item.getFailure());
+                    } else {
+                        items[position] = new BulkItemResponse(position, item.getOpType(), item.<DocWriteResponse>getResponse());
+                    }
+                }
+                if (retried.isEmpty()) {
+                    dispatch(() -> listener.onResponse(new BulkResponse(items, tookMillis)));
+                    return;
+                }
+                int[] next = retried.stream().mapToInt(Integer::intValue).toArray();
+                try {
+                    retries.schedule(() -> send(retry, next), delays.next().millis(), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    logger.warning("a bulk answered after its session was closed, its logs were already failed");
+                }
+            }
+        }
+
+        private class Listener implements BulkProcessor.Listener {
+
+            @Override
+            public void beforeBulk(long executionId, BulkRequest request) {
+                bulkStartedAt.put(executionId, System.currentTimeMillis());
+            }
+
+            //a failed item does not fail the rest of the batch, it is logged and counted. an item rejected
+            //because its id exists is a duplicate, not a failure
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+                long failures = 0;
+                long conflicts = 0;
+                Map<String, Long> written = new HashMap<>();
+                BulkItemResponse[] items = response.getItems();
+                Pending[] added = new Pending[items.length];
+                Result[] results = new Result[items.length];
+                for (int i = 0; i < items.length; i++) {
+                    DocWriteRequest<?> itemRequest = request.requests().get(i);
+                    boolean duplicate = items[i].isFailed() && itemRequest.opType() == DocWriteRequest.OpType.CREATE
+                            && items[i].status() == RestStatus.CONFLICT;
+                    if (duplicate) {
+                        conflicts++;
+                    } else if (items[i].isFailed()) {
+                        if (failures < LOGGED_FAILURES_PER_BULK) {
+                            logger.warning("failed to index document " + items[i].getItemId() + " of bulk " + executionId + ": " + items[i].getFailureMessage());
+                        }
+                        failures++;
+                    } else {
+                        written.merge(itemRequest.index(), 1L, Long::sum);
+                    }
+                    if (knownIds != null && itemRequest.id() != null && (duplicate || !items[i].isFailed())) {
+                        knownIds.add(itemRequest.id());
+                    }
+                    added[i] = pending.remove(itemRequest);
+                    results[i] = duplicate ? Result.DUPLICATE : items[i].isFailed() ? Result.FAILED : Result.WRITTEN;
+                    if (added[i] != null && rollupSession != null && results[i] == Result.WRITTEN) {
+                        rollupSession.add(added[i].log);
+                    }
+                }
+                //the counts of the bulk are in the rollup before its logs are reported written, a checkpoint
+                //never passes a log the rollup is missing. a failing write is logged and left to a rebuild
+                if (rollupSession != null) {
+                    try {
+                        rollupSession.flush();
+                    } catch (RuntimeException e) {
+                        logger.log(Level.SEVERE, "could not write the rollup of bulk " + executionId, e);
+                    }
+                }
+                for (int i = 0; i < items.length; i++) {
+                    if (added[i] != null) {
+                        added[i].done(results[i]);
+                    }
+                }
+                completed(executionId, written, failures, conflicts);
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+                logger.log(Level.SEVERE, "bulk request " + executionId + " with " + request.numberOfActions() + " documents failed", failure);
+                for (DocWriteRequest<?> itemRequest : request.requests()) {
+                    Pending added = pending.remove(itemRequest);
+                    if (added != null) {
+                        added.done(Result.FAILED);
+                    }
+                }
+                completed(executionId, Map.of(), request.numberOfActions(), 0);
+            }
+        }
+    }
+
+    private static final class Pending {
+
+        private final LogEntity log;
+        private final Consumer<Result> callback;
+
+        private Pending(LogEntity log, Consumer<Result> callback) {
+            this.log = log;
+            this.callback = callback;
+        }
+
+        private void done(Result result) {
+            if (callback != null) {
+                callback.accept(result);
+            }
+        }
+    }
+}
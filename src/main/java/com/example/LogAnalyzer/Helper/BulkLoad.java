@@ -0,0 +1,114 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//indexing settings for a large backfill. while a load runs its partitions are not refreshed and have no
+//replicas, so es neither makes small segments every second nor indexes every document twice. when the
+//load is done the live settings of the template are put back, the partitions are merged down and refreshed.
+//a load that dies halfway leaves its partitions without refresh and replicas until the next load of them ends
+@Component
+public class BulkLoad {
+
+    private static final Logger logger = Logger.getLogger(BulkLoad.class.getName());
+
+    static final Settings LOAD_SETTINGS = Settings.builder()
+            .put("index.number_of_replicas", 0)
+            .put("index.refresh_interval", "-1")
+            .build();
+
+    private final RestHighLevelClient client;
+
+    private final LogIndexTemplate template;
+
+    //segments per shard after the merge, 0 leaves merging to es
+    @Value("${bulk.load.merge.segments:1}")
+    private int mergeSegments = 1;
+
+    public BulkLoad(RestHighLevelClient client, LogIndexTemplate template) {
+        this.client = client;
+        this.template = template;
+    }
+
+    public Load start() {
+        return new Load();
+    }
+
+    //the partitions of one load, prepare is called before the first document of each
+    public class Load {
+
+        private final Set<String> indices = ConcurrentHashMap.newKeySet();
+
+        private Load() {
+        }
+
+        //creates the partition with the load settings, or switches an existing one to them
+        public void prepare(String index) {
+            if (indices.contains(index)) {
+                return;
+            }
+            synchronized (this) {
+                if (indices.contains(index)) {
+                    return;
+                }
+                template.install();
+                try {
+                    try {
+                        client.indices().create(new CreateIndexRequest(index).settings(LOAD_SETTINGS), RequestOptions.DEFAULT);
+                    } catch (ElasticsearchStatusException e) {
+                        //the partition already has logs
+                        if (e.status() != RestStatus.BAD_REQUEST) {
+                            throw e;
+                        }
+                        client.indices().putSettings(new UpdateSettingsRequest(index).settings(LOAD_SETTINGS), RequestOptions.DEFAULT);
+                    }
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "An error occurred", e);
+                    throw new RuntimeException(e);
+                }
+                indices.add(index);
+            }
+        }
+
+        public List<String> getIndices() {
+            return new ArrayList<>(indices);
+        }
+
+        //puts the live settings back, merges and refreshes, after the last bulk of the load has answered
+        public void finish() {
+            if (indices.isEmpty()) {
+                return;
+            }
+            String[] names = indices.toArray(new String[0]);
+            long start = System.currentTimeMillis();
+            try {
+                client.indices().putSettings(new UpdateSettingsRequest(names).settings(template.liveSettings()), RequestOptions.DEFAULT);
+                if (mergeSegments > 0) {
+                    client.indices().forcemerge(new ForceMergeRequest(names).maxNumSegments(mergeSegments), RequestOptions.DEFAULT);
+                }
+                client.indices().refresh(new RefreshRequest(names), RequestOptions.DEFAULT);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "An error occurred", e);
+                throw new RuntimeException(e);
+            }
+            logger.info("bulk load of " + names.length + " partitions finished in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.LogAnalyzer.Helper;
+
+//snapshot of what a bulk indexing run did, returned to callers and exposed for monitoring
+public class BulkStats {
+
+    private final long documents;
+    private final long failed;
+    private final long duplicates;
+    private final long bulkRequests;
+    private final long totalBulkLatencyMillis;
+    private final long elapsedMillis;
+
+    public BulkStats(long documents, long failed, long duplicates, long bulkRequests, long totalBulkLatencyMillis, long elapsedMillis) {
+        this.documents = documents;
+        this.failed = failed;
+        this.duplicates = duplicates;
+        this.bulkRequests = bulkRequests;
+        this.totalBulkLatencyMillis = totalBulkLatencyMillis;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    //documents acknowledged by es, failed items are not counted
+    public long getDocuments() {
+        return documents;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    //logs whose id es already held, skipped before sending or rejected by es, they are not written twice
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getBulkRequests() {
+        return bulkRequests;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getDocumentsPerSecond() {
+        return elapsedMillis == 0 ? 0 : documents * 1000.0 / elapsedMillis;
+    }
+
+    public double getAvgBulkLatencyMillis() {
+        return bulkRequests == 0 ? 0 : (double) totalBulkLatencyMillis / bulkRequests;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkStats{" +
+                "documents=" + documents +
+                ", failed=" + failed +
+                ", duplicates=" + duplicates +
+                ", bulkRequests=" + bulkRequests +
+                ", docsPerSecond=" + String.format("%.1f", getDocumentsPerSecond()) +
+                ", avgBulkLatencyMillis=" + String.format("%.1f", getAvgBulkLatencyMillis()) +
+                '}';
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.regex.Regex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+//the closed buckets of date histograms. once a bucket has ended its counts only change if logs dated inside it
+//are written later, so each one is computed once and kept, and a search only has to cover the buckets that are
+//not held yet, normally the open tail. a series is one histogram search without its time range, it holds a
+//contiguous span of buckets: every closed bucket in it is kept, a bucket with no logs as an absent key.
+//a write drops the buckets of the series from the earliest log it wrote onwards, writes to the open tail drop nothing
+@Component
+public class ClosedBucketCache {
+
+    //marks an open end of a range
+    public static final long UNBOUNDED_FROM = Long.MIN_VALUE;
+    public static final long UNBOUNDED_TO = Long.MAX_VALUE;
+
+    private final Cache<Key, Series> series;
+
+    //a bucket is closed refreshGraceMillis after it ends, logs written just before that may not be searchable yet
+    private final long refreshGraceMillis;
+
+    private volatile long lastWriteAt;
+
+    public ClosedBucketCache(@Value("${bucket.cache.series:100}") long maxSeries,
+                             @Value("${bucket.cache.idle.minutes:60}") long idleMinutes,
+                             @Value("${cache.refresh.grace.ms:1000}") long refreshGraceMillis) {
+        this.refreshGraceMillis = refreshGraceMillis;
+        this.series = Caffeine.newBuilder()
+                .maximumSize(maxSeries)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .build();
+    }
+
+    //what is held of the buckets of from to to, both included, and the ranges that still have to be searched.
+    //from may be UNBOUNDED_FROM for a histogram over the whole index
+    public Lookup lookup(String index, String search, long from, long to, long intervalMillis, long now) {
+        Key key = new Key(index, search, intervalMillis);
+        Series held = series.get(key, k -> new Series());
+        long closedEnd = Math.floorDiv(now - refreshGraceMillis, intervalMillis) * intervalMillis;
+        //the buckets the range covers whole, a bucket cut by either end is always searched
+        long fullFrom = from == UNBOUNDED_FROM ? UNBOUNDED_FROM : -Math.floorDiv(-from, intervalMillis) * intervalMillis;
+        long fullTo = Math.floorDiv(Math.min(to, closedEnd - 1) + 1, intervalMillis) * intervalMillis;
+        Lookup lookup = new Lookup(held, fullFrom, Math.max(fullFrom, fullTo), now);
+        synchronized (held) {
+            long hitFrom = Math.max(fullFrom, held.from);
+            long hitTo = Math.min(fullTo, held.to);
+            if (hitFrom < hitTo) {
+                lookup.held.putAll(held.buckets.subMap(hitFrom, hitTo));
+                lookup.hitFrom = hitFrom;
+                lookup.hitTo = hitTo;
+            }
+        }
+        if (lookup.hitFrom < lookup.hitTo) {
+            if (from < lookup.hitFrom) {
+                lookup.ranges.add(new long[]{from, lookup.hitFrom});
+            }
+            if (lookup.hitTo <= to) {
+                lookup.ranges.add(new long[]{lookup.hitTo, to == UNBOUNDED_TO ? UNBOUNDED_TO : to + 1});
+            }
+        } else {
+            lookup.ranges.add(new long[]{from, to == UNBOUNDED_TO ? UNBOUNDED_TO : to + 1});
+        }
+        return lookup;
+    }
+
+    //a series of index patterns, such as loganalyzer*, or of a comma separated list of them, is dropped from
+    //the earliest log written to an index one of them matches
+    @EventListener
+    public void onLogsIndexed(LogsIndexedEvent event) {
+        lastWriteAt = System.currentTimeMillis();
+        for (Map.Entry<Key, Series> entry : series.asMap().entrySet()) {
+            if (Regex.simpleMatch(Strings.splitStringByCommaToArray(entry.getKey().index), event.getIndex())) {
+                entry.getValue().dropFrom(event.getFrom(), entry.getKey().intervalMillis);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        series.invalidateAll();
+    }
+
+    public class Lookup {
+
+        private final Series series;
+        private final long fullFrom;
+        private final long fullTo;
+        private final long startedAt;
+        private final SortedMap<Long, Map<String, Long>> held = new TreeMap<>();
+        private final List<long[]> ranges = new ArrayList<>();
+        private long hitFrom;
+        private long hitTo;
+
+        private Lookup(Series series, long fullFrom, long fullTo, long startedAt) {
+            this.series = series;
+            this.fullFrom = fullFrom;
+            this.fullTo = fullTo;
+            this.startedAt = startedAt;
+        }
+
+        //the time ranges to search, each from its first millisecond up to but not including its second.
+        //empty when every bucket is held
+        public List<long[]> getRanges() {
+            return ranges;
+        }
+
+        //the buckets of the ranges by their start, merged with the held ones. the closed buckets covered whole
+        //are kept unless logs were written while they were searched
+        public SortedMap<Long, Map<String, Long>> complete(SortedMap<Long, Map<String, Long>> searched) {
+            SortedMap<Long, Map<String, Long>> buckets = new TreeMap<>(held);
+            buckets.putAll(searched);
+            if (ranges.isEmpty() || lastWriteAt > startedAt - refreshGraceMillis || fullFrom >= fullTo) {
+                return buckets;
+            }
+            synchronized (series) {
+                series.add(buckets.subMap(fullFrom, fullTo), fullFrom, fullTo);
+            }
+            return buckets;
+        }
+    }
+
+    private static final class Series {
+
+        private final TreeMap<Long, Map<String, Long>> buckets = new TreeMap<>();
+        //the span held, empty when from equals to
+        private long from;
+        private long to;
+
+        //a span that touches the held one extends it, any other replaces it
+        private void add(SortedMap<Long, Map<String, Long>> closed, long spanFrom, long spanTo) {
+            if (spanTo < from || spanFrom > to || from == to) {
+                buckets.clear();
+                from = spanFrom;
+                to = spanTo;
+            } else {
+                from = Math.min(from, spanFrom);
+                to = Math.max(to, spanTo);
+            }
+            buckets.putAll(closed);
+        }
+
+        private synchronized void dropFrom(long time, long intervalMillis) {
+            long bucket = time == UNBOUNDED_FROM ? UNBOUNDED_FROM : Math.floorDiv(time, intervalMillis) * intervalMillis;
+            if (bucket >= to) {
+                return;
+            }
+            buckets.tailMap(bucket).clear();
+            to = Math.max(from, bucket);
+        }
+    }
+
+    private static final class Key {
+
+        private final String index;
+        private final String search;
+        private final long intervalMillis;
+
+        private Key(String index, String search, long intervalMillis) {
+            this.index = index;
+            this.search = search;
+            this.intervalMillis = intervalMillis;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return intervalMillis == key.intervalMillis && index.equals(key.index) && search.equals(key.search);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(index, search, intervalMillis);
+        }
+    }
+}
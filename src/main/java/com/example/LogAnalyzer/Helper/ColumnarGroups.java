@@ -0,0 +1,122 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//the innermost buckets of an n level group by as dictionary encoded columns. values[c] holds the distinct
+//keys of column c once, keys[c][r] is the index of row r's key in it and counts[r] the row's doc count.
+//a row is a few ints instead of a map per bucket, and an outer key shared by many rows is written once
+@JsonPropertyOrder({"columns", "values", "keys", "counts"})
+public class ColumnarGroups {
+
+    private final String[] columns;
+    private final String[][] values;
+    private final int[][] keys;
+    private final long[] counts;
+
+    private ColumnarGroups(String[] columns, String[][] values, int[][] keys, long[] counts) {
+        this.columns = columns;
+        this.values = values;
+        this.keys = keys;
+        this.counts = counts;
+    }
+
+    public static Builder builder(List<String> columns) {
+        return new Builder(columns.toArray(new String[0]));
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    public String[][] getValues() {
+        return values;
+    }
+
+    public int[][] getKeys() {
+        return keys;
+    }
+
+    public long[] getCounts() {
+        return counts;
+    }
+
+    public int size() {
+        return counts.length;
+    }
+
+    //the key of the row in the column
+    public String key(int column, int row) {
+        return values[column][keys[column][row]];
+    }
+
+    //rows are appended in bucket order, the arrays grow like an ArrayList and are trimmed by build
+    public static class Builder {
+
+        private final String[] columns;
+        private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+        private final List<List<String>> values = new ArrayList<>();
+        //rows of a group by arrive grouped by their outer keys, a key equal to the last one is not looked up
+        private final String[] last;
+        private final int[] lastIndex;
+        private int[][] keys;
+        private long[] counts;
+        private int rows;
+
+        private Builder(String[] columns) {
+            this.columns = columns;
+            this.last = new String[columns.length];
+            this.lastIndex = new int[columns.length];
+            this.keys = new int[columns.length][16];
+            this.counts = new long[16];
+            for (int c = 0; c < columns.length; c++) {
+                dictionaries.add(new HashMap<>());
+                values.add(new ArrayList<>());
+            }
+        }
+
+        public Builder add(String[] row, long count) {
+            if (rows == counts.length) {
+                int capacity = rows + (rows >> 1);
+                for (int c = 0; c < columns.length; c++) {
+                    keys[c] = Arrays.copyOf(keys[c], capacity);
+                }
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            for (int c = 0; c < columns.length; c++) {
+                keys[c][rows] = index(c, row[c]);
+            }
+            counts[rows++] = count;
+            return this;
+        }
+
+        private int index(int column, String key) {
+            if (last[column] != null && last[column].equals(key)) {
+                return lastIndex[column];
+            }
+            List<String> columnValues = values.get(column);
+            Integer index = dictionaries.get(column).computeIfAbsent(key, k -> {
+                columnValues.add(k);
+                return columnValues.size() - 1;
+            });
+            last[column] = key;
+            lastIndex[column] = index;
+            return index;
+        }
+
+        public ColumnarGroups build() {
+            String[][] columnValues = new String[columns.length][];
+            int[][] trimmed = new int[columns.length][];
+            for (int c = 0; c < columns.length; c++) {
+                columnValues[c] = values.get(c).toArray(new String[0]);
+                trimmed[c] = Arrays.copyOf(keys[c], rows);
+            }
+            return new ColumnarGroups(columns, columnValues, trimmed, Arrays.copyOf(counts, rows));
+        }
+    }
+}
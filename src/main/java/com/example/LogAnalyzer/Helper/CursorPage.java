@@ -0,0 +1,23 @@
+package com.example.LogAnalyzer.Helper;
+
+import java.util.List;
+
+//one page of a cursor query. cursor is the token for the next page, null after the last one
+public class CursorPage<T> {
+
+    private final List<T> items;
+    private final String cursor;
+
+    public CursorPage(List<T> items, String cursor) {
+        this.items = items;
+        this.cursor = cursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//the invalid rows of an ingestion, one json object per line with the row number, the reason and the cells,
+//so they can be fixed and ingested again. the validators of a run share it, writes are serialized
+public class DeadLetterFile implements AutoCloseable {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final Path path;
+    private final JsonGenerator generator;
+
+    private DeadLetterFile(Path path, JsonGenerator generator) {
+        this.path = path;
+        this.generator = generator;
+    }
+
+    public static DeadLetterFile create(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        return open(path, Files.newOutputStream(path));
+    }
+
+    //the file of a resumed run, a line cut short by a crash is ended first so the next row gets a line of its own
+    public static DeadLetterFile append(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return create(path);
+        }
+        boolean cut = false;
+        try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+            if (channel.size() > 0) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.position(channel.size() - 1).read(last);
+                cut = last.get(0) != '\n';
+            }
+        }
+        OutputStream out = Files.newOutputStream(path, StandardOpenOption.APPEND);
+        if (cut) {
+            out.write('\n');
+        }
+        return open(path, out);
+    }
+
+    //the row numbers already in the file, a resumed run reads the rows after its checkpoint again and
+    //does not write those twice. a line that cannot be read is left out
+    public static Set<Integer> rows(Path path) throws IOException {
+        Set<Integer> rows = new HashSet<>();
+        if (!Files.exists(path)) {
+            return rows;
+        }
+        for (String line : Files.readAllLines(path)) {
+            try (JsonParser parser = JSON.createParser(line)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT || parser.nextToken() != JsonToken.FIELD_NAME
+                        || !"row".equals(parser.getCurrentName()) || parser.nextToken() != JsonToken.VALUE_NUMBER_INT) {
+                    continue;
+                }
+                int row = parser.getIntValue();
+                //the rest of the line has to be there too
+                while (parser.nextToken() != null) {
+                    parser.skipChildren();
+                }
+                rows.add(row);
+            } catch (JsonProcessingException e) {
+                //cut short by a crash
+            }
+        }
+        return rows;
+    }
+
+    private static DeadLetterFile open(Path path, OutputStream out) throws IOException {
+        JsonGenerator generator = JSON.createGenerator(out, JsonEncoding.UTF8);
+        generator.setRootValueSeparator(null);
+        return new DeadLetterFile(path, generator);
+    }
+
+    public synchronized void write(int rowNumber, String reason, List<String> cells) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("row", rowNumber);
+        generator.writeStringField("reason", reason);
+        generator.writeArrayFieldStart("cells");
+        for (String cell : cells) {
+            generator.writeString(cell);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    //a checkpoint past a dead letter row is only saved once the row is on disk
+    public synchronized void flush() throws IOException {
+        if (!generator.isClosed()) {
+            generator.flush();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        generator.close();
+    }
+}
@@ -1,9 +1,6 @@
 package com.example.LogAnalyzer.Helper;
 
 import com.example.LogAnalyzer.Entity.LogEntity;
-import com.example.LogAnalyzer.Entity.LoggerEntity;
-import com.example.LogAnalyzer.Repository.LogRepository;
-import com.example.LogAnalyzer.Repository.LoggerRepository;
 import com.example.LogAnalyzer.Service.LogServiceImp;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.poi.ss.usermodel.*;
@@ -12,11 +9,8 @@ import org.springframework.stereotype.Component;
 
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,10 +23,10 @@ public class ExceltoEs {
 
 
     @Autowired
-    private LoggerRepository loggerRepository;
+    private LoggerAllowlist loggerAllowlist;
 
-
-    List<LoggerEntity> validloggers;
+    @Autowired
+    private BulkIndexer bulkIndexer;
 
     public static String file = "/Users/shyamprajapati/Downloads/LogAnalyzer/src/main/resources/static/new data.xls";
 
@@ -43,14 +37,49 @@ public class ExceltoEs {
         return extension.equalsIgnoreCase("xlsx") || extension.equalsIgnoreCase("xls");
     }
 
-    public void fetchValidLoggers() {
-        validloggers = loggerRepository.findAll();
-    }
-
     //returns an entity if row is valid
     public LogEntity isvalid(Row row) {
 
+        return isvalid(cells(row));
+    }
+
+    public ValidatedRow validateRow(Row row) {
+
+        return validateRow(cells(row));
+    }
+
+    private static List<String> cells(Row row) {
+
         Iterator<Cell> cellsInRow = row.iterator();
+        List<String> cells = new ArrayList<>();
+
+        while (cellsInRow.hasNext()) {
+            Cell currentCell = cellsInRow.next();
+            if (currentCell.getCellType() == CellType.NUMERIC) {
+                cells.add(String.valueOf(currentCell.getNumericCellValue()));
+            } else {
+                cells.add(currentCell.getStringCellValue());
+            }
+        }
+
+        return cells;
+    }
+
+    //same validation on plain cell values, used by both the workbook and the streaming reader.
+    //throws on the first invalid row, validateRow reports it instead
+    public LogEntity isvalid(List<String> cells) {
+        ValidatedRow row = validateRow(cells);
+        if (row.isInvalid()) {
+            throw new RuntimeException(row.getReason());
+        }
+        return row.getLog();
+    }
+
+    //validates a row without throwing, an invalid row is common enough in a large file that an exception
+    //per row would cost more than the validation
+    public ValidatedRow validateRow(List<String> cells) {
+
+        Iterator<String> cellsInRow = cells.iterator();
 
         LogEntity logdata = new LogEntity();
 
@@ -59,75 +88,63 @@ public class ExceltoEs {
 
         while (cellsInRow.hasNext()) {
 
-            Cell currentCell = cellsInRow.next();
+            String currentCell = cellsInRow.next();
 
             switch (cellIdx) {
                 case 0:
-                    String timestamp = currentCell.getStringCellValue();
-                    SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-                    formatter.setLenient(false);
-                    Date tsp;
-                    try {
-                        tsp = formatter.parse(timestamp);
-                        logdata.setTimestamp(tsp);
-                    } catch (ParseException e) {
-                        logger.log(Level.SEVERE, "An error occurred", e);
-
-                        throw new RuntimeException(e);
+                    String timestamp = currentCell;
+                    long tsp = TimestampCodec.tryParseMillis(timestamp);
+                    if (tsp == TimestampCodec.INVALID) {
+                        return ValidatedRow.invalid("Unparseable timestamp: \"" + timestamp + "\"");
                     }
 
-                    LocalDate date = tsp.toInstant()
-                            .atZone(ZoneId.systemDefault())
-                            .toLocalDate();
-                    logdata.setDate(date);
+                    logdata.setTimestamp(new Date(tsp));
+                    //the date is the utc day of the same parse
+                    logdata.setDate(TimestampCodec.date(tsp));
                     break;
 
                 case 1:
-                    String source = currentCell.getStringCellValue();
+                    String source = currentCell;
                     //source name cannot be null
                     if (source == null || source.equals("")) {
-                        throw new RuntimeException("source cannot be null");
+                        return ValidatedRow.invalid("source cannot be null");
                     }
-                    logdata.setSource(currentCell.getStringCellValue());
+                    logdata.setSource(currentCell);
                     break;
 
                 case 2:
-                    String message = currentCell.getStringCellValue();
+                    String message = currentCell;
                     //message  cannot be null
                     if (message == null || message.equals("")) {
 
-                        throw new RuntimeException("message cannot be null");
+                        return ValidatedRow.invalid("message cannot be null");
                     }
                     logdata.setMessage(message);
                     break;
                 case 3:
-                    String loglevel = currentCell.getStringCellValue();
+                    String loglevel = currentCell;
                     if (!loglevel.equals("ERROR")) {
-                        return null;
-                    }
-                    //loglevel  cannot be null
-                    if (loglevel == null || loglevel.equals("")) {
-                        throw new RuntimeException("loglevel cannot be null");
+                        return ValidatedRow.skipped();
                     }
                     logdata.setLoglevel(loglevel);
                     break;
                 case 4:
-                    String logger = currentCell.getStringCellValue();
+                    String logger = currentCell;
                     if (!filterLogger(logger))
-                        return null;
+                        return ValidatedRow.skipped();
 
                     //logger  cannot be null
                     if (logger == null || logger.equals("")) {
-                        throw new RuntimeException("logger cannot be null");
+                        return ValidatedRow.invalid("logger cannot be null");
                     }
 
                     logdata.setLogger(logger);
                     break;
                 case 5:
-                    String partnerid = String.valueOf(currentCell.getNumericCellValue());
+                    String partnerid = number(currentCell);
                     //partnerid  cannot be null
-                    if (partnerid == null || partnerid.equals("")) {
-                        throw new RuntimeException("partnerid cannot be null");
+                    if (partnerid == null) {
+                        return ValidatedRow.invalid("partnerid is not a number: \"" + currentCell + "\"");
                     }
                     logdata.setPartnerid(partnerid);
                     break;
@@ -140,25 +157,40 @@ public class ExceltoEs {
 
         //some fileds are not present
         if (cellIdx < 5) {
-            throw new RuntimeException("insufficient data, expected 6 cells ");
+            return ValidatedRow.invalid("insufficient data, expected 6 cells ");
         }
 
-        return logdata;
+        //the same row always gets the same id, ingesting a file again does not duplicate its logs
+        logdata.setID(LogIds.of(logdata));
+        return ValidatedRow.valid(logdata);
     }
 
-    private boolean filterLogger(String logger) {
-        //
-
-
-        for (LoggerEntity logger1 : validloggers) {
-
-            if (logger1.getlogger().equals(logger)) {
-                return true;
+    //the cell as a double, like the numeric cells of the workbook reader, or null when it is not a number.
+    //text that cannot be one is turned away before parsing, so only odd cases such as "1e" cost an exception
+    private static String number(String cell) {
+        if (cell == null) {
+            return null;
+        }
+        cell = cell.trim();
+        if (cell.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < cell.length(); i++) {
+            char c = cell.charAt(i);
+            if ((c < '0' || c > '9') && c != '.' && c != '-' && c != '+' && c != 'e' && c != 'E') {
+                return null;
             }
         }
+        try {
+            return String.valueOf(Double.parseDouble(cell));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 
-        if (logger.equals("testlogger")) return true;
-        return false;
+    //the helpers read without a dead letter file, an invalid row is logged and the rest are still read
+    private boolean filterLogger(String logger) {
+        return loggerAllowlist.contains(logger);
     }
 
     //utility function that reads data from excel file an returns a list of LogEntity
@@ -171,8 +203,6 @@ public class ExceltoEs {
             throw new RuntimeException("invalid file type");
         }
 
-        fetchValidLoggers();
-
         try {
             Workbook workbook = WorkbookFactory.create(new FileInputStream(file));
             //it is assumed that all the data wil be on first sheet
@@ -191,10 +221,10 @@ public class ExceltoEs {
                     continue;
                 }
 
-                LogEntity logg = isvalid(currentRow);
-
-                if (logg != null)
-                    logs.add(logg);
+                LogEntity log = isvalid(currentRow);
+                if (log != null) {
+                    logs.add(log);
+                }
                 rowNumber++;
             }
 
@@ -210,23 +240,49 @@ public class ExceltoEs {
 
     }
 
-    //takes a list of LogEntities and stores them in es
-    public List<LogEntity> WriteToEs(LogRepository logRepository, List<LogEntity> logs) {
-        List<LogEntity> Logs = new ArrayList<>();
-        for (LogEntity loge : logs) {
+    //streaming version of ReadFromExcel, every valid row is handed to the consumer as soon as it is read
+    //so memory use does not depend on the size of the file. returns the number of data rows read.
+    //like ReadFromExcel it stops at the first invalid row, IngestionPipeline dead-letters them instead
+    public int StreamFromExcel(Consumer<LogEntity> consumer) {
+
+        if (!validate(file)) {
+            logger.info("invalid file type");
 
-            Logs.add(logRepository.save(loge));
+            throw new RuntimeException("invalid file type");
         }
+
+        int[] rowNumber = {0};
         try {
-            return Logs;
-        } catch (Exception e) {
+            StreamingExcelReader.read(file, (rowNum, cells) -> {
+                // skip header
+                if (rowNumber[0]++ == 0) {
+                    return;
+                }
+
+                LogEntity log = isvalid(cells);
+                if (log != null) {
+                    consumer.accept(log);
+                }
+            });
+        } catch (IOException e) {
             logger.log(Level.SEVERE, "An error occurred", e);
 
             throw new RuntimeException(e);
         }
 
+        return Math.max(rowNumber[0] - 1, 0);
     }
 
-}
+    //takes a list of LogEntities and stores them in es using bulk requests
+    public BulkStats WriteToEs(List<LogEntity> logs) {
+        try {
+            return bulkIndexer.index(logs);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
 
+            throw new RuntimeException(e);
+        }
 
+    }
+
+}
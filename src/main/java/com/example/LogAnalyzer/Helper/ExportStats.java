@@ -0,0 +1,65 @@
+package com.example.LogAnalyzer.Helper;
+
+import java.util.List;
+
+//what a sliced export did, compare runs with different slice counts to see how the export scales
+public class ExportStats {
+
+    private final int slices;
+    private final int batchSize;
+    private final long documents;
+    private final long scrollRequests;
+    private final long elapsedMillis;
+    private final List<Long> documentsPerSlice;
+
+    public ExportStats(int slices, int batchSize, long scrollRequests, long elapsedMillis, List<Long> documentsPerSlice) {
+        this.slices = slices;
+        this.batchSize = batchSize;
+        this.scrollRequests = scrollRequests;
+        this.elapsedMillis = elapsedMillis;
+        this.documentsPerSlice = documentsPerSlice;
+        this.documents = documentsPerSlice.stream().mapToLong(Long::longValue).sum();
+    }
+
+    public int getSlices() {
+        return slices;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    //search and scroll round trips over all slices
+    public long getScrollRequests() {
+        return scrollRequests;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getDocumentsPerSecond() {
+        return elapsedMillis == 0 ? 0 : documents * 1000.0 / elapsedMillis;
+    }
+
+    //uneven slices mean the export is only as fast as the biggest one
+    public List<Long> getDocumentsPerSlice() {
+        return documentsPerSlice;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportStats{" +
+                "slices=" + slices +
+                ", batchSize=" + batchSize +
+                ", documents=" + documents +
+                ", scrollRequests=" + scrollRequests +
+                ", elapsedMillis=" + elapsedMillis +
+                ", docsPerSecond=" + String.format("%.1f", getDocumentsPerSecond()) +
+                '}';
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.LogAnalyzer.Helper;
+
+import java.util.Map;
+
+//one bucket of a group by, the value of every grouped field in the order they were given and the doc count
+public class GroupBucket {
+
+    private final Map<String, Object> key;
+    private final long count;
+
+    public GroupBucket(Map<String, Object> key, long count) {
+        this.key = key;
+        this.count = count;
+    }
+
+    public Map<String, Object> getKey() {
+        return key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+//writes group by buckets to a stream one page at a time, in the formats of LogEntityWriter.
+//a row holds the grouped fields, in the order they were given, followed by the count
+public abstract class GroupBucketWriter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    public static final String COUNT = "count";
+
+    public static GroupBucketWriter open(String format, OutputStream out, List<String> fields) throws IOException {
+        if (LogEntityWriter.NDJSON.equals(format)) {
+            return new NdjsonWriter(out);
+        }
+        if (LogEntityWriter.CSV.equals(format)) {
+            return new CsvWriter(out, fields);
+        }
+        throw new IllegalArgumentException("Unsupported format: " + format);
+    }
+
+    //writes the page and flushes it to the client
+    public abstract void write(List<GroupBucket> buckets) throws IOException;
+
+    private static class NdjsonWriter extends GroupBucketWriter {
+
+        private final OutputStream out;
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            this.out = out;
+            //the generator must not close the response stream, the container does that
+            this.generator = JSON.createGenerator(out, JsonEncoding.UTF8).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(List<GroupBucket> buckets) throws IOException {
+            for (GroupBucket bucket : buckets) {
+                generator.writeStartObject();
+                for (Map.Entry<String, Object> field : bucket.getKey().entrySet()) {
+                    generator.writeFieldName(field.getKey());
+                    value(field.getValue());
+                }
+                generator.writeNumberField(COUNT, bucket.getCount());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+            out.flush();
+        }
+
+        //numeric and date fields come back from es as numbers, keywords as strings
+        private void value(Object value) throws IOException {
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof Long || value instanceof Integer) {
+                generator.writeNumber(((Number) value).longValue());
+            } else if (value instanceof Number) {
+                generator.writeNumber(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                generator.writeBoolean((Boolean) value);
+            } else {
+                generator.writeString(value.toString());
+            }
+        }
+    }
+
+    private static class CsvWriter extends GroupBucketWriter {
+
+        private final Writer writer;
+        private final List<String> fields;
+
+        CsvWriter(OutputStream out, List<String> fields) throws IOException {
+            this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            this.fields = fields;
+            for (String field : fields) {
+                LogEntityWriter.csvField(writer, field);
+                writer.write(',');
+            }
+            writer.write(COUNT);
+            writer.write("\r\n");
+            writer.flush();
+        }
+
+        @Override
+        public void write(List<GroupBucket> buckets) throws IOException {
+            for (GroupBucket bucket : buckets) {
+                for (String field : fields) {
+                    Object value = bucket.getKey().get(field);
+                    LogEntityWriter.csvField(writer, value == null ? null : value.toString());
+                    writer.write(',');
+                }
+                writer.write(Long.toString(bucket.getCount()));
+                writer.write("\r\n");
+            }
+            writer.flush();
+        }
+    }
+}
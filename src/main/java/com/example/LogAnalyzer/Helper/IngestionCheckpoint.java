@@ -0,0 +1,94 @@
+package com.example.LogAnalyzer.Helper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//how far the ingestion of a file got: every row of its sheet up to and including row has been
+//written to es or dropped. the file is known by the hash of its content, a changed file starts over.
+//the invalid rows up to row and the dead letter file they went to are kept too, a resumed run goes on with both
+public class IngestionCheckpoint {
+
+    private final String fingerprint;
+    private final String file;
+    private final int sheet;
+    private final int row;
+    private final long savedAt;
+    private final long invalid;
+    private final String deadLetterFile;
+
+    public IngestionCheckpoint(String fingerprint, String file, int sheet, int row, long savedAt) {
+        this(fingerprint, file, sheet, row, savedAt, 0, null);
+    }
+
+    public IngestionCheckpoint(String fingerprint, String file, int sheet, int row, long savedAt, long invalid, String deadLetterFile) {
+        this.fingerprint = fingerprint;
+        this.file = file;
+        this.sheet = sheet;
+        this.row = row;
+        this.savedAt = savedAt;
+        this.invalid = invalid;
+        this.deadLetterFile = deadLetterFile;
+    }
+
+    //checkpoints saved before the invalid rows were kept have none
+    static IngestionCheckpoint of(Map<String, Object> source) {
+        Number invalid = (Number) source.get("invalid");
+        return new IngestionCheckpoint((String) source.get("fingerprint"), (String) source.get("file"),
+                ((Number) source.get("sheet")).intValue(), ((Number) source.get("row")).intValue(),
+                ((Number) source.get("savedAt")).longValue(), invalid == null ? 0 : invalid.longValue(),
+                (String) source.get("deadLetterFile"));
+    }
+
+    Map<String, Object> source() {
+        Map<String, Object> source = new HashMap<>();
+        source.put("fingerprint", fingerprint);
+        source.put("file", file);
+        source.put("sheet", sheet);
+        source.put("row", row);
+        source.put("savedAt", savedAt);
+        source.put("invalid", invalid);
+        source.put("deadLetterFile", deadLetterFile);
+        return source;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public int getSheet() {
+        return sheet;
+    }
+
+    //the last committed row, -1 when none is
+    public int getRow() {
+        return row;
+    }
+
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    //invalid rows up to and including row, counted against the error budget of the next run
+    public long getInvalid() {
+        return invalid;
+    }
+
+    //null when no row up to row was invalid
+    public String getDeadLetterFile() {
+        return deadLetterFile;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionCheckpoint{" +
+                "file='" + file + '\'' +
+                ", sheet=" + sheet +
+                ", row=" + row +
+                ", invalid=" + invalid +
+                '}';
+    }
+}
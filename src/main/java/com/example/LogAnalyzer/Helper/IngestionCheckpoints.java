@@ -0,0 +1,96 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//keeps the checkpoint of each file being ingested in an index of its own, one document per file fingerprint.
+//the checkpoints sit in es next to the logs they describe, a checkpoint is only written after the rows
+//it covers were answered by es
+@Component
+public class IngestionCheckpoints {
+
+    private static final Logger logger = Logger.getLogger(IngestionCheckpoints.class.getName());
+
+    public static final String INDEX = "ingest-checkpoints";
+
+    private final RestHighLevelClient client;
+
+    public IngestionCheckpoints(RestHighLevelClient client) {
+        this.client = client;
+    }
+
+    //sha-256 of the content, the file is read once from start to end
+    public static String fingerprint(String file) {
+        try (InputStream in = Files.newInputStream(Path.of(file))) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    //the checkpoint of the file, null when it was never started or has finished
+    public IngestionCheckpoint load(String fingerprint) {
+        try {
+            GetResponse response = client.get(new GetRequest(INDEX, fingerprint), RequestOptions.DEFAULT);
+            return response.isExists() ? IngestionCheckpoint.of(response.getSourceAsMap()) : null;
+        } catch (ElasticsearchStatusException e) {
+            //no checkpoint was ever saved
+            if (e.status() == RestStatus.NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void save(IngestionCheckpoint checkpoint) {
+        try {
+            client.index(new IndexRequest(INDEX).id(checkpoint.getFingerprint()).source(checkpoint.source()), RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    //a finished file has no checkpoint, ingesting it again reads it from the start and its ids skip what is in es
+    public void delete(String fingerprint) {
+        try {
+            client.delete(new DeleteRequest(INDEX, fingerprint), RequestOptions.DEFAULT);
+        } catch (ElasticsearchStatusException e) {
+            if (e.status() != RestStatus.NOT_FOUND) {
+                throw e;
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.LogAnalyzer.Helper;
+
+//the rows of an ingestion job and how far it is committed. a RESUMABLE job ended before every row was
+//written, its checkpoint is kept and ingesting the same file again continues after committedRow
+public class IngestionJobStatus {
+
+    public enum State {IDLE, RUNNING, COMPLETED, RESUMABLE}
+
+    private final String file;
+    private final String fingerprint;
+    private final int sheet;
+    private final State state;
+    private final int startRow;
+    private final int committedRow;
+    private final long rowsRead;
+    private final long rowsWritten;
+    private final long rowsDuplicate;
+    private final long rowsSkipped;
+    private final long rowsInvalid;
+    private final long rowsRejected;
+    private final String deadLetterFile;
+    private final long elapsedMillis;
+
+    public IngestionJobStatus(String file, String fingerprint, int sheet, State state, int startRow, int committedRow, long rowsRead,
+                              long rowsWritten, long rowsDuplicate, long rowsSkipped, long rowsInvalid, long rowsRejected,
+                              String deadLetterFile, long elapsedMillis) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.sheet = sheet;
+        this.state = state;
+        this.startRow = startRow;
+        this.committedRow = committedRow;
+        this.rowsRead = rowsRead;
+        this.rowsWritten = rowsWritten;
+        this.rowsDuplicate = rowsDuplicate;
+        this.rowsSkipped = rowsSkipped;
+        this.rowsInvalid = rowsInvalid;
+        this.rowsRejected = rowsRejected;
+        this.deadLetterFile = deadLetterFile;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public static IngestionJobStatus idle() {
+        return new IngestionJobStatus(null, null, 0, State.IDLE, 0, -1, 0, 0, 0, 0, 0, 0, null, 0);
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getSheet() {
+        return sheet;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    //the first row this run read, above 0 when it resumed from a checkpoint
+    public int getStartRow() {
+        return startRow;
+    }
+
+    //every row up to this one is written or dropped, -1 when none is
+    public int getCommittedRow() {
+        return committedRow;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    //rows whose log es already held
+    public long getRowsDuplicate() {
+        return rowsDuplicate;
+    }
+
+    //rows validation dropped, of another loglevel or logger
+    public long getRowsSkipped() {
+        return rowsSkipped;
+    }
+
+    //rows of the file that failed validation, a resumed job counts the ones before its checkpoint too
+    public long getRowsInvalid() {
+        return rowsInvalid;
+    }
+
+    //rows es did not take
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    //null when no row was invalid
+    public String getDeadLetterFile() {
+        return deadLetterFile;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? 0 : rowsRead * 1000.0 / elapsedMillis;
+    }
+
+    public double getWrittenPerSecond() {
+        return elapsedMillis == 0 ? 0 : rowsWritten * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionJobStatus{" +
+                "file='" + file + '\'' +
+                ", state=" + state +
+                ", committedRow=" + committedRow +
+                ", rowsRead=" + rowsRead +
+                ", rowsWritten=" + rowsWritten +
+                ", rowsDuplicate=" + rowsDuplicate +
+                ", rowsSkipped=" + rowsSkipped +
+                ", rowsInvalid=" + rowsInvalid +
+                ", rowsRejected=" + rowsRejected +
+                ", rowsPerSecond=" + String.format("%.1f", getRowsPerSecond()) +
+                '}';
+    }
+}
@@ -0,0 +1,475 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//runs ingestion as three concurrent stages: read rows -> validate -> bulk write.
+//the stages are connected by bounded queues, so when es slows down the writers block,
+//the queues fill up and the reader waits instead of piling rows up in memory.
+//a run is a job with a checkpoint: the last row up to which every row is written or dropped is saved
+//every ingest.checkpoint.ms and when the run ends, a run of the same file after a failure starts behind it.
+//an invalid row does not stop the run, it goes to a dead letter file with its reason until the error budget is spent.
+//the budget is for the whole file, a resumed run goes on with the count and the dead letter file of its checkpoint
+@Component
+public class IngestionPipeline {
+
+    private static final Logger logger = Logger.getLogger(IngestionPipeline.class.getName());
+
+    //markers telling the next stage that no more items will come
+    private static final RawRow END_OF_ROWS = new RawRow(-1, List.of());
+    private static final ValidRow END_OF_LOGS = new ValidRow(-1, new LogEntity());
+
+    private final ExceltoEs helper;
+    private final BulkIndexer bulkIndexer;
+
+    //null runs every file from its first row and keeps no checkpoint
+    private final IngestionCheckpoints checkpoints;
+
+    @Value("${ingest.validate.workers:2}")
+    private int validateWorkers = 2;
+
+    //BulkProcessor.add is synchronized, more writers mostly help hide the request building,
+    //parallel requests to es are controlled by bulk.concurrent.requests
+    @Value("${ingest.write.workers:1}")
+    private int writeWorkers = 1;
+
+    @Value("${ingest.queue.capacity:10000}")
+    private int queueCapacity = 10000;
+
+    @Value("${ingest.checkpoint.ms:5000}")
+    private long checkpointMillis = 5000;
+
+    //invalid rows a run may have before it is stopped, 0 stops at the first one and -1 never
+    @Value("${ingest.error.budget:1000}")
+    private long errorBudget = 1000;
+
+    @Value("${ingest.dead.letter.dir:dead-letters}")
+    private String deadLetterDir = "dead-letters";
+
+    private volatile Run current;
+
+    public IngestionPipeline(ExceltoEs helper, BulkIndexer bulkIndexer) {
+        this(helper, bulkIndexer, null);
+    }
+
+    @Autowired
+    public IngestionPipeline(ExceltoEs helper, BulkIndexer bulkIndexer, IngestionCheckpoints checkpoints) {
+        this.helper = helper;
+        this.bulkIndexer = bulkIndexer;
+        this.checkpoints = checkpoints;
+    }
+
+    public IngestionStats run(String file) {
+        return run(file, false);
+    }
+
+    //ingests the file and blocks until every stage has finished, one run at a time. a bulk load writes with
+    //the load settings of BulkLoad, its logs are searchable once the run has finished
+    public synchronized IngestionStats run(String file, boolean bulkLoad) {
+        if (!helper.validate(file)) {
+            logger.info("invalid file type");
+
+            throw new RuntimeException("invalid file type");
+        }
+
+        String fingerprint = null;
+        IngestionCheckpoint checkpoint = null;
+        if (checkpoints != null) {
+            fingerprint = IngestionCheckpoints.fingerprint(file);
+            checkpoint = checkpoints.load(fingerprint);
+            if (checkpoint != null) {
+                logger.info("resuming the ingestion of " + file + " after row " + checkpoint.getRow()
+                        + " with " + checkpoint.getInvalid() + " invalid rows");
+            }
+        }
+        //opening installs the template and may fail, nothing of the run exists yet then
+        BulkIndexer.Session session = bulkIndexer.open(bulkLoad);
+        Run run = new Run(file, fingerprint, checkpoint);
+        run.session = session;
+        current = run;
+
+        //the stages and the checkpoint writer
+        ExecutorService pool = Executors.newFixedThreadPool(2 + validateWorkers + writeWorkers, new StageThreadFactory());
+        ExecutorCompletionService<Void> stages = new ExecutorCompletionService<>(pool);
+        boolean finished = false;
+        try {
+            if (checkpoints != null) {
+                pool.submit(() -> checkpointEvery(run));
+            }
+            stages.submit(() -> read(run), null);
+            AtomicInteger runningValidators = new AtomicInteger(validateWorkers);
+            for (int i = 0; i < validateWorkers; i++) {
+                stages.submit(() -> validate(run, runningValidators), null);
+            }
+            for (int i = 0; i < writeWorkers; i++) {
+                stages.submit(() -> write(run, session), null);
+            }
+
+            //the first failing stage stops the others, blocked queue operations are interrupted
+            for (int i = 0; i < 1 + validateWorkers + writeWorkers; i++) {
+                stages.take().get();
+            }
+            finished = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.state = IngestionStats.State.FAILED;
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            run.state = IngestionStats.State.FAILED;
+            logger.log(Level.SEVERE, "An error occurred", e.getCause());
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            session.close();
+            run.closeDeadLetters();
+            run.finishedAt = System.currentTimeMillis();
+            //every bulk has answered, the commits are final
+            run.resumable = !finished || !run.commits.complete();
+            if (checkpoints != null) {
+                finishCheckpoint(run);
+            }
+        }
+
+        run.state = IngestionStats.State.COMPLETED;
+        IngestionStats stats = run.snapshot();
+        logger.info("ingestion finished: " + stats);
+        return stats;
+    }
+
+    //stats of the running or last finished run
+    public IngestionStats stats() {
+        Run run = current;
+        return run == null ? IngestionStats.idle() : run.snapshot();
+    }
+
+    //rows and checkpoint of the running or last finished run
+    public IngestionJobStatus job() {
+        Run run = current;
+        return run == null ? IngestionJobStatus.idle() : run.job();
+    }
+
+    private void checkpointEvery(Run run) {
+        try {
+            while (true) {
+                Thread.sleep(checkpointMillis);
+                saveCheckpoint(run);
+            }
+        } catch (InterruptedException e) {
+            //the run has ended, its last checkpoint is written by run
+        }
+    }
+
+    //a checkpoint that cannot be written is logged, the run goes on and a later one may be written
+    private void saveCheckpoint(Run run) {
+        int committed = run.commits.committed();
+        if (committed <= run.savedRow) {
+            return;
+        }
+        try {
+            run.flushDeadLetters();
+            checkpoints.save(new IngestionCheckpoint(run.fingerprint, run.file, 0, committed, System.currentTimeMillis(),
+                    run.invalidUpTo(committed), run.deadLetterFile()));
+            run.savedRow = committed;
+        } catch (RuntimeException | IOException e) {
+            logger.log(Level.WARNING, "could not save the checkpoint of " + run.file + " at row " + committed, e);
+        }
+    }
+
+    //a finished file needs no checkpoint, any other keeps the last row committed
+    private void finishCheckpoint(Run run) {
+        if (run.resumable) {
+            saveCheckpoint(run);
+            logger.info("ingestion of " + run.file + " can be resumed after row " + run.commits.committed());
+            return;
+        }
+        try {
+            checkpoints.delete(run.fingerprint);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "could not delete the checkpoint of " + run.file, e);
+        }
+    }
+
+    private void read(Run run) {
+        int[] rowNumber = {0};
+        try {
+            StreamingExcelReader.read(run.file, run.fromRow, (rowNum, cells) -> {
+                // skip header, a resumed run starts behind it
+                if (run.fromRow == 0 && rowNumber[0]++ == 0) {
+                    return;
+                }
+                run.commits.read(rowNum);
+                run.reader.put(run.rows, new RawRow(rowNum, new ArrayList<>(cells)));
+                run.reader.processed.increment();
+            });
+            for (int i = 0; i < validateWorkers; i++) {
+                run.reader.put(run.rows, END_OF_ROWS);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void validate(Run run, AtomicInteger runningValidators) {
+        while (true) {
+            RawRow row = run.validator.take(run.rows);
+            if (row == END_OF_ROWS) {
+                break;
+            }
+            run.validator.processed.increment();
+            ValidatedRow validated = helper.validateRow(row.cells);
+            if (validated.isInvalid()) {
+                run.invalid(row, validated.getReason());
+                run.commits.done(row.rowNumber);
+            } else if (validated.getLog() != null) {
+                run.validator.put(run.logs, new ValidRow(row.rowNumber, validated.getLog()));
+            } else {
+                run.skipped.increment();
+                run.commits.done(row.rowNumber);
+            }
+        }
+        //the last validator to finish tells the writers
+        if (runningValidators.decrementAndGet() == 0) {
+            for (int i = 0; i < writeWorkers; i++) {
+                run.validator.put(run.logs, END_OF_LOGS);
+            }
+        }
+    }
+
+    private void write(Run run, BulkIndexer.Session session) {
+        while (true) {
+            ValidRow row = run.writer.take(run.logs);
+            if (row == END_OF_LOGS) {
+                break;
+            }
+            run.writer.processed.increment();
+            long start = System.nanoTime();
+            session.add(row.log, result -> run.written(row.rowNumber, result));
+            run.writer.blockedNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private static class RawRow {
+        final int rowNumber;
+        final List<String> cells;
+
+        RawRow(int rowNumber, List<String> cells) {
+            this.rowNumber = rowNumber;
+            this.cells = cells;
+        }
+    }
+
+    private static class ValidRow {
+        final int rowNumber;
+        final LogEntity log;
+
+        ValidRow(int rowNumber, LogEntity log) {
+            this.rowNumber = rowNumber;
+            this.log = log;
+        }
+    }
+
+    private static class StageCounter {
+        final String name;
+        final int workers;
+        final BlockingQueue<?> input;
+        final int inputCapacity;
+        final LongAdder processed = new LongAdder();
+        final LongAdder blockedNanos = new LongAdder();
+
+        StageCounter(String name, int workers, BlockingQueue<?> input, int inputCapacity) {
+            this.name = name;
+            this.workers = workers;
+            this.input = input;
+            this.inputCapacity = inputCapacity;
+        }
+
+        <T> T take(BlockingQueue<T> queue) {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        <T> void put(BlockingQueue<T> queue, T item) {
+            long start = System.nanoTime();
+            try {
+                queue.put(item);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            blockedNanos.add(System.nanoTime() - start);
+        }
+
+        IngestionStats.Stage snapshot(long elapsedMillis) {
+            long processedItems = processed.sum();
+            return new IngestionStats.Stage(name, workers, processedItems,
+                    elapsedMillis == 0 ? 0 : processedItems * 1000.0 / elapsedMillis,
+                    input == null ? 0 : input.size(), inputCapacity, blockedNanos.sum() / 1_000_000);
+        }
+    }
+
+    private class Run {
+        final String file;
+        final String fingerprint;
+        final int fromRow;
+        final long startedAt = System.currentTimeMillis();
+        final BlockingQueue<RawRow> rows = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<ValidRow> logs = new ArrayBlockingQueue<>(queueCapacity);
+        final StageCounter reader = new StageCounter("read", 1, null, 0);
+        final StageCounter validator = new StageCounter("validate", validateWorkers, rows, queueCapacity);
+        final StageCounter writer = new StageCounter("write", writeWorkers, logs, queueCapacity);
+        volatile BulkIndexer.Session session;
+        volatile IngestionStats.State state = IngestionStats.State.RUNNING;
+        volatile long finishedAt;
+        final RowCommits commits;
+        final LongAdder written = new LongAdder();
+        final LongAdder duplicates = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        //every invalid row of the file, the ones before the checkpoint included
+        final AtomicLong invalid;
+        //the invalid rows up to the checkpoint, and the rows of this run which are not all committed yet
+        final long checkpointInvalid;
+        final NavigableSet<Integer> invalidRows = new ConcurrentSkipListSet<>();
+        //the dead letter file of the checkpoint, appended to and its rows not written again
+        final Path resumedDeadLetters;
+        private Set<Integer> deadLettered = Set.of();
+        private DeadLetterFile deadLetters;
+        volatile int savedRow;
+        volatile boolean resumable;
+
+        Run(String file, String fingerprint, IngestionCheckpoint checkpoint) {
+            this.file = file;
+            this.fingerprint = fingerprint;
+            fromRow = checkpoint == null ? 0 : checkpoint.getRow() + 1;
+            checkpointInvalid = checkpoint == null ? 0 : checkpoint.getInvalid();
+            invalid = new AtomicLong(checkpointInvalid);
+            resumedDeadLetters = checkpoint == null || checkpoint.getDeadLetterFile() == null ? null : Path.of(checkpoint.getDeadLetterFile());
+            commits = new RowCommits(fromRow - 1);
+            savedRow = fromRow - 1;
+        }
+
+        //called from the bulk listener threads
+        void written(int rowNumber, BulkIndexer.Result result) {
+            switch (result) {
+                case WRITTEN:
+                    written.increment();
+                    commits.done(rowNumber);
+                    break;
+                case DUPLICATE:
+                    duplicates.increment();
+                    commits.done(rowNumber);
+                    break;
+                default:
+                    rejected.increment();
+                    commits.failed(rowNumber);
+                    break;
+            }
+        }
+
+        //writes the row to the dead letter file, opened with the first one, and stops the run once the
+        //budget is spent. the row that spends it is written too
+        void invalid(RawRow row, String reason) {
+            long count = invalid.incrementAndGet();
+            invalidRows.add(row.rowNumber);
+            try {
+                DeadLetterFile out = deadLetters();
+                if (!deadLettered.contains(row.rowNumber)) {
+                    out.write(row.rowNumber, reason, row.cells);
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "An error occurred", e);
+                throw new RuntimeException(e);
+            }
+            if (errorBudget >= 0 && count > errorBudget) {
+                throw new IllegalStateException("error budget of " + errorBudget + " invalid rows spent at row " + row.rowNumber + ": " + reason);
+            }
+        }
+
+        synchronized DeadLetterFile deadLetters() throws IOException {
+            if (deadLetters == null && resumedDeadLetters != null) {
+                deadLettered = DeadLetterFile.rows(resumedDeadLetters);
+                deadLetters = DeadLetterFile.append(resumedDeadLetters);
+                logger.info("invalid rows of " + file + " go on in " + deadLetters.getPath().toAbsolutePath());
+            } else if (deadLetters == null) {
+                String name = Path.of(file).getFileName() + "." + startedAt + ".dead.ndjson";
+                deadLetters = DeadLetterFile.create(Path.of(deadLetterDir, name));
+                logger.info("invalid rows of " + file + " go to " + deadLetters.getPath().toAbsolutePath());
+            }
+            return deadLetters;
+        }
+
+        //the rows after the committed one are read again by a resumed run, they are not in its count
+        long invalidUpTo(int committed) {
+            return checkpointInvalid + invalidRows.headSet(committed, true).size();
+        }
+
+        synchronized String deadLetterFile() {
+            if (deadLetters != null) {
+                return deadLetters.getPath().toString();
+            }
+            return resumedDeadLetters == null ? null : resumedDeadLetters.toString();
+        }
+
+        synchronized void flushDeadLetters() throws IOException {
+            if (deadLetters != null) {
+                deadLetters.flush();
+            }
+        }
+
+        synchronized void closeDeadLetters() {
+            if (deadLetters == null) {
+                return;
+            }
+            try {
+                deadLetters.close();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "could not close " + deadLetters.getPath(), e);
+            }
+        }
+
+        IngestionJobStatus job() {
+            IngestionJobStatus.State jobState = state == IngestionStats.State.RUNNING ? IngestionJobStatus.State.RUNNING
+                    : resumable ? IngestionJobStatus.State.RESUMABLE : IngestionJobStatus.State.COMPLETED;
+            long elapsed = (finishedAt == 0 ? System.currentTimeMillis() : finishedAt) - startedAt;
+            String deadLetterFile = deadLetterFile();
+            return new IngestionJobStatus(file, fingerprint, 0, jobState, fromRow, commits.committed(), reader.processed.sum(),
+                    written.sum(), duplicates.sum(), skipped.sum(), invalid.get(), rejected.sum(), deadLetterFile, elapsed);
+        }
+
+        IngestionStats snapshot() {
+            long elapsed = (finishedAt == 0 ? System.currentTimeMillis() : finishedAt) - startedAt;
+            List<IngestionStats.Stage> stages = List.of(reader.snapshot(elapsed), validator.snapshot(elapsed), writer.snapshot(elapsed));
+            return new IngestionStats(file, state, elapsed, stages, session == null ? null : session.stats());
+        }
+    }
+
+    private static class StageThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ingest-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
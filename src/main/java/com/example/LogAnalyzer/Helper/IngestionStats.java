@@ -0,0 +1,115 @@
+package com.example.LogAnalyzer.Helper;
+
+import java.util.List;
+
+//snapshot of an ingestion run, one entry per pipeline stage so the slowest stage is easy to spot:
+//a stage whose input queue stays full, or whose upstream is often blocked, is the bottleneck
+public class IngestionStats {
+
+    public enum State {IDLE, RUNNING, COMPLETED, FAILED}
+
+    private final String file;
+    private final State state;
+    private final long elapsedMillis;
+    private final List<Stage> stages;
+    private final BulkStats bulk;
+
+    public IngestionStats(String file, State state, long elapsedMillis, List<Stage> stages, BulkStats bulk) {
+        this.file = file;
+        this.state = state;
+        this.elapsedMillis = elapsedMillis;
+        this.stages = stages;
+        this.bulk = bulk;
+    }
+
+    public static IngestionStats idle() {
+        return new IngestionStats(null, State.IDLE, 0, List.of(), null);
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    public BulkStats getBulk() {
+        return bulk;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionStats{" +
+                "file='" + file + '\'' +
+                ", state=" + state +
+                ", elapsedMillis=" + elapsedMillis +
+                ", stages=" + stages +
+                ", bulk=" + bulk +
+                '}';
+    }
+
+    public static class Stage {
+        private final String name;
+        private final int workers;
+        private final long processed;
+        private final double perSecond;
+        private final int queueDepth;
+        private final int queueCapacity;
+        private final long blockedMillis;
+
+        public Stage(String name, int workers, long processed, double perSecond, int queueDepth, int queueCapacity, long blockedMillis) {
+            this.name = name;
+            this.workers = workers;
+            this.processed = processed;
+            this.perSecond = perSecond;
+            this.queueDepth = queueDepth;
+            this.queueCapacity = queueCapacity;
+            this.blockedMillis = blockedMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public long getProcessed() {
+            return processed;
+        }
+
+        public double getPerSecond() {
+            return perSecond;
+        }
+
+        //items waiting in front of this stage
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        //time the stage's workers spent waiting for room downstream, summed over workers
+        public long getBlockedMillis() {
+            return blockedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{processed=" + processed + ", perSecond=" + String.format("%.1f", perSecond) +
+                    ", queue=" + queueDepth + "/" + queueCapacity + ", blockedMillis=" + blockedMillis + '}';
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+//the ids es has recently confirmed to hold, so a re-ingested row is skipped by the bulk indexer instead of
+//being sent only to be rejected as a duplicate. the most recent ones are kept, an id that fell out or was
+//written before startup is still sent once and es turns it away. it is only a hint: a session skips an id only
+//when its partition existed as the session started, and DELETE /api/cache forgets them all
+@Component
+public class KnownLogIds {
+
+    private final Cache<String, Boolean> ids;
+
+    public KnownLogIds(@Value("${ids.known.max:100000}") long maxIds) {
+        ids = Caffeine.newBuilder().maximumSize(maxIds).build();
+    }
+
+    public boolean contains(String id) {
+        return ids.getIfPresent(id) != null;
+    }
+
+    public void add(String id) {
+        ids.put(id, Boolean.TRUE);
+    }
+
+    //a dropped partition is announced with no documents, its ids are no longer in es
+    @EventListener
+    public void onLogsIndexed(LogsIndexedEvent event) {
+        if (event.getDocuments() == 0 && event.getIndex().startsWith(LogPartitions.PREFIX)) {
+            clear();
+        }
+    }
+
+    public void clear() {
+        ids.invalidateAll();
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//maps search hits to LogEntities by streaming over the raw _source bytes.
+//no map of the source is built, fields the caller did not ask for are skipped without being decoded.
+//a mapper has no state after construction, so one instance can be shared by all threads
+public class LogEntityMapper {
+
+    private static final Logger logger = Logger.getLogger(LogEntityMapper.class.getName());
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    public static final String TIMESTAMP = "timestamp";
+    public static final String SOURCE = "source";
+    public static final String MESSAGE = "message";
+    public static final String LOGLEVEL = "loglevel";
+    public static final String LOGGER = "logger";
+    public static final String PARTNERID = "partnerid";
+
+    public static final LogEntityMapper ALL = new LogEntityMapper(TIMESTAMP, SOURCE, MESSAGE, LOGLEVEL, LOGGER, PARTNERID);
+
+    private boolean timestamp;
+    private boolean source;
+    private boolean message;
+    private boolean loglevel;
+    private boolean loggerName;
+    private boolean partnerid;
+
+    //the id is always mapped, the date comes with the timestamp
+    public LogEntityMapper(String... fields) {
+        for (String field : fields) {
+            switch (field) {
+                case TIMESTAMP:
+                    timestamp = true;
+                    break;
+                case SOURCE:
+                    source = true;
+                    break;
+                case MESSAGE:
+                    message = true;
+                    break;
+                case LOGLEVEL:
+                    loglevel = true;
+                    break;
+                case LOGGER:
+                    loggerName = true;
+                    break;
+                case PARTNERID:
+                    partnerid = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown log field: " + field);
+            }
+        }
+    }
+
+    public List<LogEntity> mapAll(Iterable<SearchHit> hits) {
+        List<LogEntity> logs = new ArrayList<>();
+        for (SearchHit hit : hits) {
+            logs.add(map(hit));
+        }
+        return logs;
+    }
+
+    public LogEntity map(SearchHit hit) {
+        LogEntity log = new LogEntity();
+        log.setID(hit.getId());
+        BytesReference sourceRef = hit.getSourceRef();
+        if (sourceRef == null) {
+            return log;
+        }
+        //no copy when the source is a single array, which is how the client reads responses
+        BytesRef bytes = sourceRef.toBytesRef();
+        try (JsonParser parser = JSON.createParser(bytes.bytes, bytes.offset, bytes.length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("_source of " + hit.getId() + " is not an object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (name) {
+                    case TIMESTAMP:
+                        if (timestamp) {
+                            readTimestamp(parser, value, log);
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case SOURCE:
+                        if (source) {
+                            log.setSource(text(parser, value));
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case MESSAGE:
+                        if (message) {
+                            log.setMessage(text(parser, value));
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case LOGLEVEL:
+                        if (loglevel) {
+                            log.setLoglevel(text(parser, value));
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case LOGGER:
+                        if (loggerName) {
+                            log.setLogger(text(parser, value));
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case PARTNERID:
+                        if (partnerid) {
+                            log.setPartnerid(text(parser, value));
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        }
+        return log;
+    }
+
+    //the timestamp is parsed from the parser's own buffer, no string is created for it
+    private static void readTimestamp(JsonParser parser, JsonToken value, LogEntity log) throws IOException {
+        long millis;
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                millis = TimestampCodec.parseMillis(CharBuffer.wrap(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+            } catch (IllegalArgumentException e) {
+                logger.log(Level.SEVERE, "An error occurred", e);
+                throw e;
+            }
+        } else if (value == JsonToken.VALUE_NUMBER_INT) {
+            //epoch millis, the other format the date mapping accepts
+            millis = parser.getLongValue();
+        } else {
+            parser.skipChildren();
+            return;
+        }
+        log.setTimestamp(new Date(millis));
+        log.setDate(TimestampCodec.date(millis));
+    }
+
+    private static String text(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value.isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getText();
+    }
+}
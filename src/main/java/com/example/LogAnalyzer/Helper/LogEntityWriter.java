@@ -0,0 +1,144 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+//writes LogEntities to a stream one batch at a time, as newline delimited json or as csv.
+//nothing is kept between batches, so memory stays bounded by the batch the caller passes in
+public abstract class LogEntityWriter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    public static final String NDJSON = "ndjson";
+    public static final String CSV = "csv";
+
+    static final String[] COLUMNS = {"id", "timestamp", "date", "source", "message", "loglevel", "logger", "partnerid"};
+
+    public static boolean isSupported(String format) {
+        return NDJSON.equals(format) || CSV.equals(format);
+    }
+
+    public static String contentType(String format) {
+        return CSV.equals(format) ? "text/csv;charset=UTF-8" : "application/x-ndjson";
+    }
+
+    public static LogEntityWriter open(String format, OutputStream out) throws IOException {
+        if (NDJSON.equals(format)) {
+            return new NdjsonWriter(out);
+        }
+        if (CSV.equals(format)) {
+            return new CsvWriter(out);
+        }
+        throw new IllegalArgumentException("Unsupported format: " + format);
+    }
+
+    //writes the batch and flushes it to the client
+    public abstract void write(List<LogEntity> logs) throws IOException;
+
+    private static String timestamp(LogEntity log) {
+        return log.getTimestamp() == null ? null : TimestampCodec.format(log.getTimestamp().getTime());
+    }
+
+    private static String date(LogEntity log) {
+        return log.getDate() == null ? null : log.getDate().toString();
+    }
+
+    private static class NdjsonWriter extends LogEntityWriter {
+
+        private final OutputStream out;
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            this.out = out;
+            //the generator must not close the response stream, the container does that
+            this.generator = JSON.createGenerator(out, JsonEncoding.UTF8).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(List<LogEntity> logs) throws IOException {
+            for (LogEntity log : logs) {
+                generator.writeStartObject();
+                generator.writeStringField("id", log.getID());
+                generator.writeStringField("timestamp", timestamp(log));
+                generator.writeStringField("date", date(log));
+                generator.writeStringField("source", log.getSource());
+                generator.writeStringField("message", log.getMessage());
+                generator.writeStringField("loglevel", log.getLoglevel());
+                generator.writeStringField("logger", log.getLogger());
+                generator.writeStringField("partnerid", log.getPartnerid());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+            out.flush();
+        }
+    }
+
+    //rfc 4180: fields with a comma, quote or line break are quoted and quotes are doubled
+    static void csvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static class CsvWriter extends LogEntityWriter {
+
+        private final Writer writer;
+
+        CsvWriter(OutputStream out) throws IOException {
+            this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+            writer.flush();
+        }
+
+        @Override
+        public void write(List<LogEntity> logs) throws IOException {
+            for (LogEntity log : logs) {
+                field(log.getID());
+                writer.write(',');
+                field(timestamp(log));
+                writer.write(',');
+                field(date(log));
+                writer.write(',');
+                field(log.getSource());
+                writer.write(',');
+                field(log.getMessage());
+                writer.write(',');
+                field(log.getLoglevel());
+                writer.write(',');
+                field(log.getLogger());
+                writer.write(',');
+                field(log.getPartnerid());
+                writer.write("\r\n");
+            }
+            writer.flush();
+        }
+
+        private void field(String value) throws IOException {
+            csvField(writer, value);
+        }
+    }
+}
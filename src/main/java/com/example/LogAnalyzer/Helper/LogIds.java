@@ -0,0 +1,38 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import org.elasticsearch.common.hash.MurmurHash3;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+//the id of a log is a murmur3 128 bit hash of its timestamp, source, logger, message and partnerid, so
+//the same row ingested twice has the same id and lands in the same daily partition, where es keeps one copy.
+//128 bits make a collision between two different logs practically impossible, the id is those bits in url safe
+//base64, 22 chars like the ids es generates
+public final class LogIds {
+
+    //joins the fields, it does not occur in them. a missing field is written as nothing
+    private static final char SEPARATOR = '\u001f';
+
+    private LogIds() {
+    }
+
+    public static String of(LogEntity log) {
+        StringBuilder key = new StringBuilder(128);
+        if (log.getTimestamp() != null) {
+            key.append(log.getTimestamp().getTime());
+        }
+        for (String field : new String[]{log.getSource(), log.getLogger(), log.getMessage(), log.getPartnerid()}) {
+            key.append(SEPARATOR);
+            if (field != null) {
+                key.append(field);
+            }
+        }
+        byte[] bytes = key.toString().getBytes(StandardCharsets.UTF_8);
+        MurmurHash3.Hash128 hash = MurmurHash3.hash128(bytes, 0, bytes.length, 0, new MurmurHash3.Hash128());
+        byte[] id = ByteBuffer.allocate(16).putLong(hash.h1).putLong(hash.h2).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.PutIndexTemplateRequest;
+import org.elasticsearch.common.settings.Settings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//the settings and mapping of the daily partitions. es creates a partition on the first log of its day, the template
+//gives it the types of the LogEntity fields instead of dynamic ones, where a source would become text.
+//a partition holds one day, a single shard is enough and keeps a search over many days to few shards
+@Component
+public class LogIndexTemplate {
+
+    private static final Logger logger = Logger.getLogger(LogIndexTemplate.class.getName());
+
+    public static final String NAME = "loganalyzer";
+
+    private final RestHighLevelClient client;
+
+    @Value("${index.shards:1}")
+    private int shards = 1;
+
+    @Value("${index.replicas:1}")
+    private int replicas = 1;
+
+    //best_compression trades a little cpu on merges and stored field reads for a smaller index, logs are
+    //mostly searched and aggregated, their stored fields are read a page at a time
+    @Value("${index.codec:best_compression}")
+    private String codec = "best_compression";
+
+    @Value("${index.refresh.interval:1s}")
+    private String refreshInterval = "1s";
+
+    private volatile boolean installed;
+
+    public LogIndexTemplate(RestHighLevelClient client) {
+        this.client = client;
+    }
+
+    //puts the template before the first write after startup, so a changed mapping reaches the next partition
+    public void install() {
+        if (installed) {
+            return;
+        }
+        synchronized (this) {
+            if (installed) {
+                return;
+            }
+            try {
+                client.indices().putTemplate(request(), RequestOptions.DEFAULT);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "An error occurred", e);
+                throw new RuntimeException(e);
+            }
+            installed = true;
+        }
+    }
+
+    PutIndexTemplateRequest request() {
+        return new PutIndexTemplateRequest(NAME)
+                .patterns(List.of(LogPartitions.PREFIX + "*"))
+                .settings(Settings.builder()
+                        .put("index.number_of_shards", shards)
+                        .put("index.codec", codec)
+                        .put(liveSettings()))
+                .mapping(Map.of("properties", properties()));
+    }
+
+    //the settings a bulk load turns off and puts back when it is done
+    public Settings liveSettings() {
+        return Settings.builder()
+                .put("index.number_of_replicas", replicas)
+                .put("index.refresh_interval", refreshInterval)
+                .build();
+    }
+
+    static Map<String, Object> properties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("timestamp", Map.of("type", "date"));
+        properties.put("date", Map.of("type", "date"));
+        //the message is searched by its words, message.keyword matches and groups whole short messages
+        properties.put("message", Map.of("type", "text",
+                "fields", Map.of("keyword", Map.of("type", "keyword", "ignore_above", 256))));
+        for (String keyword : List.of("source", "loglevel", "logger", "partnerid")) {
+            properties.put(keyword, Map.of("type", "keyword"));
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+//logs are written to one index per utc day of their timestamp, loganalyzer-yyyy.MM.dd, so a search over a
+//time range only has to open the indices of its days and old logs are dropped a whole index at a time.
+//logs without a timestamp go to loganalyzer-undated. the single loganalyzer index of before is read with
+//the partitions, so what was written to it is still found
+public final class LogPartitions {
+
+    public static final String PREFIX = "loganalyzer-";
+    public static final String LEGACY = "loganalyzer";
+    public static final String UNDATED = PREFIX + "undated";
+
+    //every partition, the undated one and the legacy index
+    public static final String PATTERN = "loganalyzer*";
+
+    public static final long DAY_MILLIS = 86_400_000L;
+
+    //a longer range is searched by month, then by year, instead of naming every day
+    static final int MAX_DAYS = 31;
+    static final int MAX_MONTHS = 24;
+    static final int MAX_YEARS = 10;
+
+    private LogPartitions() {
+    }
+
+    public static String index(LogEntity log) {
+        return log.getTimestamp() == null ? UNDATED : index(log.getTimestamp().getTime());
+    }
+
+    public static String index(long timestamp) {
+        return PREFIX + day(TimestampCodec.date(timestamp));
+    }
+
+    //the indices that can hold logs from from to to, both included, as epoch millis. an open end,
+    //Long.MIN_VALUE or Long.MAX_VALUE, needs every partition. a name may be of a day nothing was logged on,
+    //the search has to ignore missing indices
+    public static String[] indices(long from, long to) {
+        if (from == Long.MIN_VALUE || to == Long.MAX_VALUE) {
+            return new String[]{PATTERN};
+        }
+        if (to < from) {
+            return new String[]{LEGACY};
+        }
+        LocalDate first = TimestampCodec.date(from);
+        LocalDate last = TimestampCodec.date(to);
+        List<String> indices = new ArrayList<>();
+        indices.add(LEGACY);
+        if (first.plusDays(MAX_DAYS).isAfter(last)) {
+            for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+                indices.add(PREFIX + day(day));
+            }
+        } else if (YearMonth.from(first).plusMonths(MAX_MONTHS).isAfter(YearMonth.from(last))) {
+            for (YearMonth month = YearMonth.from(first); !month.isAfter(YearMonth.from(last)); month = month.plusMonths(1)) {
+                indices.add(PREFIX + month.getYear() + "." + two(month.getMonthValue()) + ".*");
+            }
+        } else if (last.getYear() - first.getYear() < MAX_YEARS) {
+            for (int year = first.getYear(); year <= last.getYear(); year++) {
+                indices.add(PREFIX + year + ".*");
+            }
+        } else {
+            return new String[]{PATTERN};
+        }
+        return indices.toArray(new String[0]);
+    }
+
+    //the start of the day of a daily partition, or Long.MIN_VALUE for any other index
+    public static long dayStart(String index) {
+        if (!index.startsWith(PREFIX) || index.length() != PREFIX.length() + 10) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            String day = index.substring(PREFIX.length()).replace('.', '-');
+            return LocalDate.parse(day).toEpochDay() * DAY_MILLIS;
+        } catch (RuntimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static String day(LocalDate day) {
+        return day.getYear() + "." + two(day.getMonthValue()) + "." + two(day.getDayOfMonth());
+    }
+
+    private static String two(int value) {
+        return value < 10 ? "0" + value : Integer.toString(value);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.LogAnalyzer.Helper;
+
+import java.util.List;
+import java.util.Map;
+
+//a query combining any of the filters, a projection, a sort and a nested group by, sent as one search.
+//every part is optional, an empty query matches every log
+//  {"from": "2023-06-16T17:00:00.000Z", "to": "2023-06-16T18:00:00.000Z",
+//   "terms": {"loglevel": ["ERROR"], "partnerid": ["p1", "p2"]}, "message": "connection refused",
+//   "fields": ["source", "message"], "sort": ["timestamp:desc"], "size": 100, "groupBy": ["logger"]}
+public class LogQuery {
+
+    //timestamp range, both ends included
+    private String from;
+    private String to;
+
+    //field to accepted values, a log has to match one value of every field
+    private Map<String, List<String>> terms;
+
+    //full text match on the message, every word has to be in it
+    private String message;
+
+    //the fields of each hit, all of them when empty
+    private List<String> fields;
+
+    //field or field:asc / field:desc
+    private List<String> sort;
+
+    private Integer size;
+
+    //levels of the nested group by, outermost first: a keyword field with at most groupSize buckets,
+    //or a date field and an interval such as timestamp:1h
+    private List<String> groupBy;
+
+    private Integer groupSize;
+
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    public Map<String, List<String>> getTerms() {
+        return terms;
+    }
+
+    public void setTerms(Map<String, List<String>> terms) {
+        this.terms = terms;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public void setFields(List<String> fields) {
+        this.fields = fields;
+    }
+
+    public List<String> getSort() {
+        return sort;
+    }
+
+    public void setSort(List<String> sort) {
+        this.sort = sort;
+    }
+
+    public Integer getSize() {
+        return size;
+    }
+
+    public void setSize(Integer size) {
+        this.size = size;
+    }
+
+    public List<String> getGroupBy() {
+        return groupBy;
+    }
+
+    public void setGroupBy(List<String> groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public Integer getGroupSize() {
+        return groupSize;
+    }
+
+    public void setGroupSize(Integer groupSize) {
+        this.groupSize = groupSize;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+//the answer to a LogQuery: the number of matching logs, the requested page of them and the groups,
+//which are only there when the query grouped
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LogQueryResult {
+
+    private final long total;
+    private final List<Map<String, Object>> hits;
+    private final List<QueryGroup> groups;
+
+    public LogQueryResult(long total, List<Map<String, Object>> hits, List<QueryGroup> groups) {
+        this.total = total;
+        this.hits = hits;
+        this.groups = groups;
+    }
+
+    public static LogQueryResult empty(boolean grouped) {
+        return new LogQueryResult(0, new ArrayList<>(), grouped ? new ArrayList<>() : null);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<Map<String, Object>> getHits() {
+        return hits;
+    }
+
+    public List<QueryGroup> getGroups() {
+        return groups;
+    }
+}
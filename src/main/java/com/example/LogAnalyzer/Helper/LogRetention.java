@@ -0,0 +1,122 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.DeleteByQueryRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//drops the daily partitions older than the retention, a whole index at a time. deleting an index only
+//removes its files, a delete by query would rewrite every segment it touches and leave the space to merges.
+//the legacy index and the undated partition are never dropped. the counts of the dropped days are taken
+//out of the rollup, it is small enough for a delete by query
+@Component
+public class LogRetention {
+
+    private static final Logger logger = Logger.getLogger(LogRetention.class.getName());
+
+    private final RestHighLevelClient client;
+
+    private final ApplicationEventPublisher events;
+
+    //0 keeps every partition
+    @Value("${retention.days:0}")
+    private int retentionDays = 0;
+
+    public LogRetention(RestHighLevelClient client) {
+        this(client, event -> {
+        });
+    }
+
+    //every dropped partition is announced with a LogsIndexedEvent over its day
+    @Autowired
+    public LogRetention(RestHighLevelClient client, ApplicationEventPublisher events) {
+        this.client = client;
+        this.events = events;
+    }
+
+    @Scheduled(fixedDelayString = "${retention.check.ms:3600000}", initialDelayString = "${retention.check.ms:3600000}")
+    public void scheduledDrop() {
+        if (retentionDays <= 0) {
+            return;
+        }
+        try {
+            dropBefore(System.currentTimeMillis() - retentionDays * LogPartitions.DAY_MILLIS);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "could not drop expired partitions, trying again at the next check", e);
+        }
+    }
+
+    //drops the partitions whose day has ended before the cutoff, returns their names
+    public List<String> dropBefore(long cutoff) {
+        List<String> expired = new ArrayList<>();
+        try {
+            String[] indices = client.indices().get(new GetIndexRequest(LogPartitions.PREFIX + "*"), RequestOptions.DEFAULT).getIndices();
+            for (String index : indices) {
+                long dayStart = LogPartitions.dayStart(index);
+                if (dayStart != Long.MIN_VALUE && dayStart + LogPartitions.DAY_MILLIS <= cutoff) {
+                    expired.add(index);
+                }
+            }
+            if (expired.isEmpty()) {
+                return expired;
+            }
+            client.indices().delete(new DeleteIndexRequest(expired.toArray(new String[0])), RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        }
+        List<Long> days = new ArrayList<>();
+        for (String index : expired) {
+            long dayStart = LogPartitions.dayStart(index);
+            days.add(dayStart);
+            events.publishEvent(new LogsIndexedEvent(index, 0, dayStart, dayStart + LogPartitions.DAY_MILLIS - 1));
+        }
+        dropRollup(days);
+        logger.info("dropped " + expired.size() + " expired partitions: " + expired);
+        return expired;
+    }
+
+    //only the hours of the dropped days, the hours in between can still hold logs of the legacy index
+    static DeleteByQueryRequest dropRollupRequest(List<Long> days) {
+        BoolQueryBuilder query = QueryBuilders.boolQuery().minimumShouldMatch(1);
+        for (long dayStart : days) {
+            query.should(QueryBuilders.rangeQuery(LogRollup.HOUR)
+                    .gte(dayStart).lt(dayStart + LogPartitions.DAY_MILLIS).format("epoch_millis"));
+        }
+        return new DeleteByQueryRequest(LogRollup.INDEX).setQuery(query);
+    }
+
+    private void dropRollup(List<Long> days) {
+        long from = Collections.min(days);
+        long to = Collections.max(days) + LogPartitions.DAY_MILLIS - 1;
+        try {
+            BulkByScrollResponse response = client.deleteByQuery(dropRollupRequest(days), RequestOptions.DEFAULT);
+            events.publishEvent(new LogsIndexedEvent(LogRollup.INDEX, response.getDeleted(), from, to));
+        } catch (ElasticsearchStatusException e) {
+            if (e.status() != RestStatus.NOT_FOUND) {
+                throw e;
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.DateHistogramValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.TermsValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//counts of logs per hour, source, logger, loglevel and partnerid, kept in an index of their own. the
+//combinations are few next to the logs, so a group by on those fields or a histogram of whole hours reads
+//a few documents instead of every log. the counts are taken as the bulk indexer writes: a session adds the
+//logs es accepted and after every bulk adds their counts to the documents of the rollup with one upsert per combination
+@Component
+public class LogRollup {
+
+    private static final Logger logger = Logger.getLogger(LogRollup.class.getName());
+
+    public static final String INDEX = "rollup-loganalyzer";
+
+    public static final long HOUR_MILLIS = 3_600_000L;
+
+    //the fields of a combination and the fields of a rollup document
+    public static final List<String> FIELDS = List.of("source", "logger", "loglevel", "partnerid");
+    public static final String HOUR = "hour";
+    public static final String COUNT = "count";
+
+    //at most this many item failures are logged per bulk request, the rest are only counted
+    private static final int LOGGED_FAILURES_PER_BULK = 10;
+
+    private static final String INCREMENT = "ctx._source." + COUNT + " += params." + COUNT;
+
+    private final RestHighLevelClient client;
+
+    private final ApplicationEventPublisher events;
+
+    @Value("${rollup.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${bulk.actions:1000}")
+    private int bulkActions = 1000;
+
+    //the index is created with its mapping by the first write
+    private volatile boolean indexReady;
+
+    public LogRollup(RestHighLevelClient client) {
+        this(client, event -> {
+        });
+    }
+
+    //every write is announced with a LogsIndexedEvent of the rollup index
+    @Autowired
+    public LogRollup(RestHighLevelClient client, ApplicationEventPublisher events) {
+        this.client = client;
+        this.events = events;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Session open() {
+        return new Session();
+    }
+
+    //recounts the rollup from the logs index, for logs written before the rollup existed or when it is
+    //out of step after failed writes. the rollup is dropped first, nothing should be ingested meanwhile.
+    //returns the number of rollup documents written
+    public long rebuild() {
+        try {
+            client.indices().delete(new DeleteIndexRequest(INDEX), RequestOptions.DEFAULT);
+        } catch (ElasticsearchStatusException e) {
+            if (e.status() != RestStatus.NOT_FOUND) {
+                throw e;
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        }
+        indexReady = false;
+
+        long written = 0;
+        Map<String, Object> after = null;
+        do {
+            CompositeAggregation page = search(countsRequest(after));
+            Map<Row, Long> counts = new HashMap<>();
+            for (CompositeAggregation.Bucket bucket : page.getBuckets()) {
+                counts.put(Row.of(bucket.getKey()), bucket.getDocCount());
+            }
+            written += write(counts, false);
+            after = page.getBuckets().isEmpty() ? null : page.afterKey();
+        } while (after != null);
+        logger.info("rollup rebuilt with " + written + " documents");
+        return written;
+    }
+
+    //one page of the counts of every combination in the logs index, a log missing a field has its own combination
+    static SearchRequest countsRequest(Map<String, Object> after) {
+        List<CompositeValuesSourceBuilder<?>> sources = new ArrayList<>();
+        sources.add(new DateHistogramValuesSourceBuilder(HOUR).field("timestamp")
+                .fixedInterval(new DateHistogramInterval("1h")).missingBucket(true));
+        for (String field : FIELDS) {
+            sources.add(new TermsValuesSourceBuilder(field).field(field).missingBucket(true));
+        }
+        CompositeAggregationBuilder aggregation = new CompositeAggregationBuilder("rollup", sources).size(1000);
+        if (after != null) {
+            aggregation.aggregateAfter(after);
+        }
+        SearchRequest searchRequest = new SearchRequest(LogPartitions.PATTERN);
+        searchRequest.source(new SearchSourceBuilder().query(QueryBuilders.matchAllQuery()).size(0).aggregation(aggregation));
+        return searchRequest;
+    }
+
+    private CompositeAggregation search(SearchRequest searchRequest) {
+        try {
+            return client.search(searchRequest, RequestOptions.DEFAULT).getAggregations().get("rollup");
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    //adds the counts to the rollup documents, or replaces them when increment is false.
+    //returns the number of documents written
+    long write(Map<Row, Long> counts, boolean increment) {
+        if (counts.isEmpty()) {
+            return 0;
+        }
+        ensureIndex();
+        long written = 0;
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        BulkRequest bulk = new BulkRequest();
+        for (Map.Entry<Row, Long> count : counts.entrySet()) {
+            Row row = count.getKey();
+            bulk.add(increment ? upsert(row, count.getValue()) : new IndexRequest(INDEX).id(row.id()).source(row.source(count.getValue())));
+            from = row.hour == null ? Long.MIN_VALUE : Math.min(from, row.hour);
+            to = row.hour == null ? Long.MAX_VALUE : Math.max(to, row.hour + HOUR_MILLIS - 1);
+            if (bulk.numberOfActions() == bulkActions) {
+                written += send(bulk);
+                bulk = new BulkRequest();
+            }
+        }
+        if (bulk.numberOfActions() > 0) {
+            written += send(bulk);
+        }
+        if (written > 0) {
+            events.publishEvent(new LogsIndexedEvent(INDEX, written, from, to));
+        }
+        return written;
+    }
+
+    //two sessions may add to the same document at once, a conflicting update is retried
+    private static DocWriteRequest<?> upsert(Row row, long count) {
+        Script script = new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, INCREMENT, Map.of(COUNT, count));
+        return new UpdateRequest(INDEX, row.id()).script(script).upsert(row.source(count)).retryOnConflict(3);
+    }
+
+    //a failed item is logged and counted, the counts of its combination are short until the next rebuild
+    private long send(BulkRequest bulk) {
+        BulkResponse response;
+        try {
+            response = client.bulk(bulk, RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        }
+        long failures = 0;
+        if (response.hasFailures()) {
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed()) {
+                    if (failures < LOGGED_FAILURES_PER_BULK) {
+                        logger.warning("failed to write rollup document " + item.getId() + ": " + item.getFailureMessage());
+                    }
+                    failures++;
+                }
+            }
+        }
+        return bulk.numberOfActions() - failures;
+    }
+
+    //the fields are keywords and the hour a date, as the logs index maps them
+    private void ensureIndex() {
+        if (indexReady) {
+            return;
+        }
+        try {
+            if (!client.indices().exists(new GetIndexRequest(INDEX), RequestOptions.DEFAULT)) {
+                Map<String, Object> properties = new HashMap<>();
+                properties.put(HOUR, Map.of("type", "date"));
+                properties.put(COUNT, Map.of("type", "long"));
+                for (String field : FIELDS) {
+                    properties.put(field, Map.of("type", "keyword"));
+                }
+                client.indices().create(new CreateIndexRequest(INDEX).mapping(Map.of("properties", properties)), RequestOptions.DEFAULT);
+            }
+        } catch (ElasticsearchStatusException e) {
+            //another writer created it first
+            if (e.status() != RestStatus.BAD_REQUEST) {
+                throw e;
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        }
+        indexReady = true;
+    }
+
+    //the counts of one bulk indexer session, add and flush are called by its bulk listeners. the counts are
+    //flushed with every bulk, a session that dies halfway leaves no logs in es that the rollup has not counted
+    public class Session implements AutoCloseable {
+
+        private Map<Row, Long> counts = new HashMap<>();
+
+        private Session() {
+        }
+
+        public synchronized void add(LogEntity log) {
+            counts.merge(Row.of(log), 1L, Long::sum);
+        }
+
+        //adds the counts so far to the rollup and starts over, the counts are dropped when the write fails
+        public void flush() {
+            Map<Row, Long> sums;
+            synchronized (this) {
+                sums = counts;
+                counts = new HashMap<>();
+            }
+            write(sums, true);
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+
+    //one combination, a log without a timestamp has no hour and a missing field is null
+    static final class Row {
+
+        private final Long hour;
+        private final String[] values;
+
+        private Row(Long hour, String[] values) {
+            this.hour = hour;
+            this.values = values;
+        }
+
+        static Row of(LogEntity log) {
+            Long hour = log.getTimestamp() == null ? null : Math.floorDiv(log.getTimestamp().getTime(), HOUR_MILLIS) * HOUR_MILLIS;
+            return new Row(hour, new String[]{log.getSource(), log.getLogger(), log.getLoglevel(), log.getPartnerid()});
+        }
+
+        static Row of(Map<String, Object> key) {
+            String[] values = new String[FIELDS.size()];
+            for (int i = 0; i < values.length; i++) {
+                Object value = key.get(FIELDS.get(i));
+                values[i] = value == null ? null : value.toString();
+            }
+            Object hour = key.get(HOUR);
+            return new Row(hour == null ? null : ((Number) hour).longValue(), values);
+        }
+
+        //the same combination always has the same document. the values are joined by a character
+        //that does not occur in them, a missing value is empty
+        String id() {
+            StringBuilder id = new StringBuilder(hour == null ? "" : TimestampCodec.format(hour));
+            for (String value : values) {
+                id.append('\u001f').append(value == null ? "" : value);
+            }
+            return id.toString();
+        }
+
+        Map<String, Object> source(long count) {
+            Map<String, Object> source = new HashMap<>();
+            if (hour != null) {
+                source.put(HOUR, TimestampCodec.format(hour));
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    source.put(FIELDS.get(i), values[i]);
+                }
+            }
+            source.put(COUNT, count);
+            return source;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Row)) {
+                return false;
+            }
+            Row row = (Row) o;
+            return Objects.equals(hour, row.hour) && Arrays.equals(values, row.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(hour) + Arrays.hashCode(values);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LoggerEntity;
+import com.example.LogAnalyzer.Repository.LoggerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//loggers whose rows are accepted at ingestion, loaded from mongo into an immutable hash set.
+//lookups are constant time and lock free, the set is swapped as a whole when it is refreshed
+@Component
+public class LoggerAllowlist {
+
+    private static final Logger logger = Logger.getLogger(LoggerAllowlist.class.getName());
+
+    //always accepted, used by the sample data
+    static final String TEST_LOGGER = "testlogger";
+
+    private final LoggerRepository loggerRepository;
+
+    //a bloom filter in front of the set answers most misses without touching the set
+    @Value("${loggers.bloom.enabled:false}")
+    private boolean bloomEnabled;
+
+    @Value("${loggers.bloom.fpp:0.01}")
+    private double bloomFalsePositiveRate = 0.01;
+
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public LoggerAllowlist(LoggerRepository loggerRepository) {
+        this.loggerRepository = loggerRepository;
+    }
+
+    public boolean contains(String logger) {
+        if (logger == null) {
+            return false;
+        }
+        if (logger.equals(TEST_LOGGER)) {
+            return true;
+        }
+        Snapshot current = snapshot();
+        if (current.bloom != null && !current.bloom.mightContain(logger)) {
+            return false;
+        }
+        return current.loggers.contains(logger);
+    }
+
+    public Set<String> loggers() {
+        return snapshot().loggers;
+    }
+
+    //reloads the list from mongo in the background, a failed reload keeps serving the old set
+    @Scheduled(fixedDelayString = "${loggers.refresh.ms:300000}", initialDelayString = "${loggers.refresh.ms:300000}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "could not refresh valid loggers, keeping the previous list", e);
+        }
+    }
+
+    public void refresh() {
+        Set<String> loggers = new HashSet<>();
+        for (LoggerEntity entity : loggerRepository.findAll()) {
+            if (entity.getlogger() != null) {
+                loggers.add(entity.getlogger());
+            }
+        }
+        snapshot = new Snapshot(Set.copyOf(loggers), bloomEnabled ? new BloomFilter(loggers, bloomFalsePositiveRate) : null);
+        logger.info("loaded " + loggers.size() + " valid loggers");
+    }
+
+    //the first lookup loads the list, after that only the scheduled refresh does
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static class Snapshot {
+        final Set<String> loggers;
+        final BloomFilter bloom;
+
+        Snapshot(Set<String> loggers, BloomFilter bloom) {
+            this.loggers = loggers;
+            this.bloom = bloom;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.LogAnalyzer.Helper;
+
+//published after a write to es has committed new documents or dropped an index, anything derived from the index
+//is stale from then on. from and to bound the timestamps of the logs written or dropped, as epoch millis, when they are known
+public class LogsIndexedEvent {
+
+    private final String index;
+    private final long documents;
+    private final long from;
+    private final long to;
+
+    public LogsIndexedEvent(String index, long documents) {
+        this(index, documents, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public LogsIndexedEvent(String index, long documents, long from, long to) {
+        this.index = index;
+        this.documents = documents;
+        this.from = from;
+        this.to = to;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return documents + " documents indexed into " + index;
+    }
+}
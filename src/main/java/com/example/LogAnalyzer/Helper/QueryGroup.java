@@ -0,0 +1,32 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+//a bucket of a nested group by, the groups of the next level are null at the innermost one
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryGroup {
+
+    private final String key;
+    private final long count;
+    private final List<QueryGroup> groups;
+
+    public QueryGroup(String key, long count, List<QueryGroup> groups) {
+        this.key = key;
+        this.count = count;
+        this.groups = groups;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public List<QueryGroup> getGroups() {
+        return groups;
+    }
+}
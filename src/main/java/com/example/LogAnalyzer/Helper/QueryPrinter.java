@@ -1,32 +1,11 @@
 package com.example.LogAnalyzer.Helper;
 
-import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.SearchRequest;
-import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.client.RequestOptions;
-import org.elasticsearch.client.RestHighLevelClient;
 
+//renders the dsl of a search. it only formats the request, sending it is up to the caller
 public class QueryPrinter {
 
-
-    public static String printQuery(SearchRequest searchRequest, RestHighLevelClient client) {
-
-
-        ActionListener<SearchResponse> listener = new ActionListener<SearchResponse>() {
-
-            @Override
-            public void onResponse(SearchResponse response) {
-            }
-
-            @Override
-            public void onFailure(Exception e) {
-            }
-        };
-
-        client.searchAsync(searchRequest, RequestOptions.DEFAULT, listener);
-
-        String queryString = new String(searchRequest.source().toString().getBytes());
-        System.out.println(queryString);
-        return queryString;
+    public static String printQuery(SearchRequest searchRequest) {
+        return searchRequest.source() == null ? "{}" : searchRequest.source().toString();
     }
 }
@@ -0,0 +1,39 @@
+package com.example.LogAnalyzer.Helper;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+//the searches one request sent to es. async queries complete on the client's io threads, so samples can be
+//added from any thread while the profile is being read
+public class QueryProfile {
+
+    private final String id;
+    private final boolean esProfile;
+    private final long startedAt = System.currentTimeMillis();
+    private final List<QuerySample> searches = new CopyOnWriteArrayList<>();
+
+    public QueryProfile(String id, boolean esProfile) {
+        this.id = id;
+        this.esProfile = esProfile;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public boolean isEsProfile() {
+        return esProfile;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public List<QuerySample> getSearches() {
+        return searches;
+    }
+
+    void add(QuerySample sample) {
+        searches.add(sample);
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.HeapBufferedAsyncResponseConsumer;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.profile.ProfileShardResult;
+import org.elasticsearch.search.profile.SearchProfileShardResults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//sends searches, multi searches and scroll pages for the services and times them. every search slower than query.slow.ms goes to the slow query
+//log as one json line. a request that asks for a profile also gets the dsl, es's took, the round trip and the
+//time spent deserializing the response of each of its searches, and with X-Profile: es the es profile breakdown.
+//nothing is sent twice, the timings come from the search itself
+@Component
+public class QueryProfiler {
+
+    private static final Logger logger = Logger.getLogger(QueryProfiler.class.getName());
+
+    //its own logger so the slow queries can be routed to a file of their own
+    private static final Logger slowLog = Logger.getLogger(QueryProfiler.class.getName() + ".slow");
+
+    public static final String HEADER = "X-Profile";
+    public static final String ID_HEADER = "X-Profile-Id";
+
+    //same limit as the client's default response consumer
+    private static final int BUFFER_LIMIT = 100 * 1024 * 1024;
+
+    //the index of a scroll page in the samples and the slow query log
+    public static final String SCROLL = "_scroll";
+
+    private static final ThreadLocal<QueryProfile> CURRENT = new ThreadLocal<>();
+
+    private final long slowMillis;
+
+    private final Cache<String, QueryProfile> profiles;
+
+    public QueryProfiler(@Value("${query.slow.ms:500}") long slowMillis,
+                         @Value("${profile.keep:100}") long keep,
+                         @Value("${profile.ttl.minutes:10}") long ttlMinutes) {
+        this.slowMillis = slowMillis;
+        this.profiles = Caffeine.newBuilder()
+                .maximumSize(keep)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    //profiles the searches this thread sends until stop is called
+    public QueryProfile start(boolean esProfile) {
+        QueryProfile profile = new QueryProfile(UUID.randomUUID().toString(), esProfile);
+        profiles.put(profile.getId(), profile);
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    public void stop() {
+        CURRENT.remove();
+    }
+
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    //a profile stays readable for profile.ttl.minutes, null once it has expired
+    public QueryProfile get(String id) {
+        return profiles.getIfPresent(id);
+    }
+
+    public SearchResponse search(RestHighLevelClient client, SearchRequest searchRequest) throws IOException {
+        QueryProfile profile = CURRENT.get();
+        AtomicLong receivedAt = new AtomicLong();
+        RequestOptions options = options(profile, searchRequest, receivedAt);
+        long start = System.nanoTime();
+        SearchResponse response = client.search(searchRequest, options);
+        record(profile, searchRequest, response, start, receivedAt.get(), System.nanoTime());
+        return response;
+    }
+
+    //every search of the msearch gets a sample of its own, they share the round trip of the one request
+    public MultiSearchResponse msearch(RestHighLevelClient client, MultiSearchRequest multiSearchRequest) throws IOException {
+        QueryProfile profile = CURRENT.get();
+        AtomicLong receivedAt = new AtomicLong();
+        for (SearchRequest searchRequest : multiSearchRequest.requests()) {
+            esProfile(profile, searchRequest);
+        }
+        RequestOptions options = options(profile, receivedAt);
+        long start = System.nanoTime();
+        MultiSearchResponse response = client.msearch(multiSearchRequest, options);
+        long end = System.nanoTime();
+        MultiSearchResponse.Item[] items = response.getResponses();
+        for (int i = 0; i < items.length; i++) {
+            if (!items[i].isFailure()) {
+                record(profile, multiSearchRequest.requests().get(i), items[i].getResponse(), start, receivedAt.get(), end);
+            }
+        }
+        return response;
+    }
+
+    //a scroll page has no query of its own, it is recorded against SCROLL
+    public SearchResponse scroll(RestHighLevelClient client, SearchScrollRequest scrollRequest) throws IOException {
+        QueryProfile profile = CURRENT.get();
+        AtomicLong receivedAt = new AtomicLong();
+        RequestOptions options = options(profile, receivedAt);
+        long start = System.nanoTime();
+        SearchResponse response = client.scroll(scrollRequest, options);
+        record(profile, SCROLL, null, response, start, receivedAt.get(), System.nanoTime());
+        return response;
+    }
+
+    public void scrollAsync(RestHighLevelClient client, SearchScrollRequest scrollRequest, ActionListener<SearchResponse> listener) {
+        QueryProfile profile = CURRENT.get();
+        AtomicLong receivedAt = new AtomicLong();
+        RequestOptions options = options(profile, receivedAt);
+        long start = System.nanoTime();
+        client.scrollAsync(scrollRequest, options, new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                record(profile, SCROLL, null, response, start, receivedAt.get(), System.nanoTime());
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    //the profile is picked up on the calling thread, the listener runs on one of the client's io threads
+    public void searchAsync(RestHighLevelClient client, SearchRequest searchRequest, ActionListener<SearchResponse> listener) {
+        QueryProfile profile = CURRENT.get();
+        AtomicLong receivedAt = new AtomicLong();
+        RequestOptions options = options(profile, searchRequest, receivedAt);
+        long start = System.nanoTime();
+        client.searchAsync(searchRequest, options, new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                record(profile, searchRequest, response, start, receivedAt.get(), System.nanoTime());
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private static RequestOptions options(QueryProfile profile, SearchRequest searchRequest, AtomicLong receivedAt) {
+        esProfile(profile, searchRequest);
+        return options(profile, receivedAt);
+    }
+
+    private static void esProfile(QueryProfile profile, SearchRequest searchRequest) {
+        if (profile != null && profile.isEsProfile() && searchRequest.source() != null) {
+            searchRequest.source().profile(true);
+        }
+    }
+
+    //unprofiled searches go out with the default options, the timing consumer is only used when it is read
+    private static RequestOptions options(QueryProfile profile, AtomicLong receivedAt) {
+        if (profile == null) {
+            return RequestOptions.DEFAULT;
+        }
+        return RequestOptions.DEFAULT.toBuilder()
+                .setHttpAsyncResponseConsumerFactory(() -> new HeapBufferedAsyncResponseConsumer(BUFFER_LIMIT) {
+                    @Override
+                    protected HttpResponse buildResult(HttpContext context) throws Exception {
+                        receivedAt.set(System.nanoTime());
+                        return super.buildResult(context);
+                    }
+                })
+                .build();
+    }
+
+    private void record(QueryProfile profile, SearchRequest searchRequest, SearchResponse response, long start, long receivedAt, long end) {
+        record(profile, String.join(",", searchRequest.indices()), searchRequest, response, start, receivedAt, end);
+    }
+
+    //searchRequest is null for a scroll page
+    private void record(QueryProfile profile, String index, SearchRequest searchRequest, SearchResponse response,
+                        long start, long receivedAt, long end) {
+        long elapsedMillis = (end - start) / 1_000_000;
+        if (profile == null && elapsedMillis < slowMillis) {
+            return;
+        }
+        long took = response.getTook() == null ? -1 : response.getTook().millis();
+        long hits = response.getHits() == null || response.getHits().getTotalHits() == null ? 0 : response.getHits().getTotalHits().value;
+        if (profile != null) {
+            long received = receivedAt == 0 ? end : receivedAt;
+            profile.add(new QuerySample(index, searchRequest == null ? null : QueryPrinter.printQuery(searchRequest), took,
+                    millis(received - start), millis(end - received), hits,
+                    profile.isEsProfile() ? esProfile(response.getProfileResults()) : null));
+        }
+        if (elapsedMillis >= slowMillis) {
+            slowQuery(searchRequest, index, took, elapsedMillis, hits);
+        }
+    }
+
+    private static void slowQuery(SearchRequest searchRequest, String index, long took, long elapsedMillis, long hits) {
+        try {
+            XContentBuilder builder = XContentFactory.jsonBuilder().startObject()
+                    .field("index", index)
+                    .field("took_ms", took)
+                    .field("elapsed_ms", elapsedMillis)
+                    .field("hits", hits);
+            if (searchRequest != null && searchRequest.source() != null) {
+                builder.field("query", searchRequest.source());
+            }
+            slowLog.warning(Strings.toString(builder.endObject()));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "could not write slow query", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> esProfile(Map<String, ProfileShardResult> results) {
+        if (results == null || results.isEmpty()) {
+            return null;
+        }
+        try {
+            XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+            new SearchProfileShardResults(results).toXContent(builder, ToXContent.EMPTY_PARAMS);
+            Map<String, Object> map = XContentHelper.convertToMap(BytesReference.bytes(builder.endObject()), false, XContentType.JSON).v2();
+            return (Map<String, Object>) map.get(SearchProfileShardResults.PROFILE_FIELD);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "could not read the es profile", e);
+            return null;
+        }
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.util.Map;
+
+//one search of a profiled request. took is the time es spent on it, the round trip runs from sending the
+//request to the last byte of the response and deserialization is what the client spent parsing that body
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QuerySample {
+
+    private final String index;
+    private final String query;
+    private final long tookMillis;
+    private final double roundTripMillis;
+    private final double deserializationMillis;
+    private final long hits;
+    private final Map<String, Object> profile;
+
+    public QuerySample(String index, String query, long tookMillis, double roundTripMillis, double deserializationMillis,
+                       long hits, Map<String, Object> profile) {
+        this.index = index;
+        this.query = query;
+        this.tookMillis = tookMillis;
+        this.roundTripMillis = roundTripMillis;
+        this.deserializationMillis = deserializationMillis;
+        this.hits = hits;
+        this.profile = profile;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    //the dsl is already json, it is written as it is instead of as a string
+    @JsonRawValue
+    public String getQuery() {
+        return query;
+    }
+
+    public long getTookMillis() {
+        return tookMillis;
+    }
+
+    public double getRoundTripMillis() {
+        return roundTripMillis;
+    }
+
+    public double getDeserializationMillis() {
+        return deserializationMillis;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    //the shards section of es's profile api, only there when the request asked for it
+    public Map<String, Object> getProfile() {
+        return profile;
+    }
+}
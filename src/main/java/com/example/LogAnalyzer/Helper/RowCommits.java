@@ -0,0 +1,59 @@
+package com.example.LogAnalyzer.Helper;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+//the last row up to which every row read is done: written, a duplicate or dropped by validation. rows are
+//read in order but finish out of order, validators and bulks run concurrently, so a row is kept from read
+//until the rows before it are done too. that is at most the rows in the queues and bulks in flight.
+//a row es did not take stops the commits before it for the rest of the run, a resumed run reads it again
+final class RowCommits {
+
+    //read and not yet committed, in the order they were read
+    private final ArrayDeque<Integer> open = new ArrayDeque<>();
+    //done but behind a row that is not
+    private final Set<Integer> done = new HashSet<>();
+    private int committed;
+    //the first failed row, nothing from it on is committed
+    private int failedAt = Integer.MAX_VALUE;
+
+    RowCommits(int committed) {
+        this.committed = committed;
+    }
+
+    synchronized void read(int row) {
+        if (row < failedAt) {
+            open.addLast(row);
+        }
+    }
+
+    synchronized void done(int row) {
+        if (row >= failedAt) {
+            return;
+        }
+        done.add(row);
+        while (!open.isEmpty() && done.remove(open.peekFirst())) {
+            committed = open.pollFirst();
+        }
+    }
+
+    synchronized void failed(int row) {
+        if (row >= failedAt) {
+            return;
+        }
+        failedAt = row;
+        //only rows behind it are dropped, the head of open and so the commits so far stay as they are
+        open.removeIf(later -> later >= row);
+        done.removeIf(later -> later >= row);
+    }
+
+    synchronized int committed() {
+        return committed;
+    }
+
+    //every row read is done
+    synchronized boolean complete() {
+        return open.isEmpty() && failedAt == Integer.MAX_VALUE;
+    }
+}
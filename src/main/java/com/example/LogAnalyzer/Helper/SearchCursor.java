@@ -0,0 +1,133 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+
+//state of a cursor query between pages: the point in time, the query and the sort values of the last hit.
+//clients get it as an opaque base64url token and only pass it back. the token carries the query that is
+//sent to es, so it is signed with an hmac and a token the service did not hand out is refused
+public class SearchCursor {
+
+    private static final String HMAC = "HmacSHA256";
+
+    public static final String LOGS = "logs";
+    public static final String PROJECTION = "projection";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private String kind;
+    private String pit;
+    private String query;
+    private List<String> fields;
+    private int size;
+    private List<Object> after;
+
+    public SearchCursor() {
+    }
+
+    public SearchCursor(String kind, String pit, String query, List<String> fields, int size) {
+        this.kind = kind;
+        this.pit = pit;
+        this.query = query;
+        this.fields = fields;
+        this.size = size;
+    }
+
+    //the json of the cursor and its signature, both base64url and joined by a dot
+    public String encode(byte[] key) {
+        try {
+            byte[] json = JSON.writeValueAsBytes(this);
+            Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+            return base64.encodeToString(json) + "." + base64.encodeToString(sign(json, key));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static SearchCursor decode(String token, byte[] key) {
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        SearchCursor cursor;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(token.substring(0, dot));
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(json, key), signature)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            cursor = JSON.readValue(json, SearchCursor.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        if (cursor.pit == null || cursor.query == null || cursor.after == null || !(LOGS.equals(cursor.kind) || PROJECTION.equals(cursor.kind))) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return cursor;
+    }
+
+    private static byte[] sign(byte[] json, byte[] key) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(new SecretKeySpec(key, HMAC));
+            return mac.doFinal(json);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getPit() {
+        return pit;
+    }
+
+    public void setPit(String pit) {
+        this.pit = pit;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public void setFields(List<String> fields) {
+        this.fields = fields;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public List<Object> getAfter() {
+        return after;
+    }
+
+    public void setAfter(List<Object> after) {
+        this.after = after;
+    }
+}
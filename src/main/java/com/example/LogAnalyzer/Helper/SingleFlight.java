@@ -0,0 +1,89 @@
+package com.example.LogAnalyzer.Helper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+//coalesces concurrent identical calls: the first caller of a key runs the call, callers arriving while it is
+//in flight wait for it and get the same result or exception. nothing is kept once the call has finished,
+//so a caller arriving after that runs the call again
+public class SingleFlight<T> {
+
+    private final ConcurrentHashMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+
+    //runs the call on the caller's thread, or waits for the one already running
+    public T execute(String key, Supplier<T> call) {
+        CompletableFuture<T> flight = new CompletableFuture<>();
+        CompletableFuture<T> running = inFlight.putIfAbsent(key, flight);
+        calls.increment();
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+        executions.increment();
+        try {
+            T result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    //the async form, every caller gets its own future so one caller cancelling does not cancel the others
+    public CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> flight = new CompletableFuture<>();
+        CompletableFuture<T> running = inFlight.putIfAbsent(key, flight);
+        calls.increment();
+        if (running != null) {
+            return running.copy();
+        }
+        executions.increment();
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, e) -> {
+            inFlight.remove(key, flight);
+            if (e != null) {
+                flight.completeExceptionally(e);
+            } else {
+                flight.complete(value);
+            }
+        });
+        return flight.copy();
+    }
+
+    public long calls() {
+        return calls.sum();
+    }
+
+    //calls that ran, the rest shared the result of one of them
+    public long executions() {
+        return executions.sum();
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return e;
+    }
+}
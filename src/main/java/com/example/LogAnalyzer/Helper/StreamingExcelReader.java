@@ -0,0 +1,201 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.MissingRecordAwareHSSFListener;
+import org.apache.poi.hssf.eventusermodel.dummyrecord.LastCellOfRowDummyRecord;
+import org.apache.poi.hssf.record.*;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+//reads the first sheet of an excel file row by row using the poi event apis,
+//so only the current row is ever held in memory (unlike WorkbookFactory which builds the whole workbook)
+public class StreamingExcelReader {
+
+    //receives the cell values of one row, in the order the cells appear in the file
+    public interface RowHandler {
+        void handleRow(int rowNumber, List<String> cells);
+    }
+
+    private StreamingExcelReader() {
+    }
+
+    public static void read(String file, RowHandler handler) throws IOException {
+        read(file, 0, handler);
+    }
+
+    //hands over the rows from fromRow on. both formats are a stream that has to be parsed from its start,
+    //the rows before fromRow are only walked past, their cells are not collected or formatted
+    public static void read(String file, int fromRow, RowHandler handler) throws IOException {
+        String extension = FilenameUtils.getExtension(file);
+        if (extension.equalsIgnoreCase("xlsx")) {
+            readXlsx(file, fromRow, handler);
+        } else if (extension.equalsIgnoreCase("xls")) {
+            readXls(file, fromRow, handler);
+        } else {
+            throw new IllegalArgumentException("invalid file type");
+        }
+    }
+
+    //xlsx: SAX parse of the sheet xml, shared strings are read without building the DOM
+    private static void readXlsx(String file, int fromRow, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(new File(file), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            //it is assumed that all the data wil be on first sheet
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, new XlsxRowCollector(fromRow, handler), new DataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static class XlsxRowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final int fromRow;
+        private final RowHandler handler;
+        private final List<String> cells = new ArrayList<>();
+        private boolean skipping;
+
+        XlsxRowCollector(int fromRow, RowHandler handler) {
+            this.fromRow = fromRow;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+            skipping = rowNum < fromRow;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (!skipping) {
+                handler.handleRow(rowNum, cells);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (!skipping) {
+                cells.add(formattedValue == null ? "" : formattedValue);
+            }
+        }
+    }
+
+    //xls: record stream of the BIFF workbook, rows end on the dummy last-cell record
+    private static void readXls(String file, int fromRow, RowHandler handler) throws IOException {
+        try (POIFSFileSystem fs = new POIFSFileSystem(new File(file), true)) {
+            XlsRowCollector collector = new XlsRowCollector(fromRow, handler);
+            FormatTrackingHSSFListener formats = new FormatTrackingHSSFListener(new MissingRecordAwareHSSFListener(collector));
+            collector.formats = formats;
+
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(formats);
+            new HSSFEventFactory().processWorkbookEvents(request, fs);
+        }
+    }
+
+    private static class XlsRowCollector implements HSSFListener {
+        private final int fromRow;
+        private final RowHandler handler;
+        private final List<String> cells = new ArrayList<>();
+        private FormatTrackingHSSFListener formats;
+        private SSTRecord sst;
+        private int sheetIndex = -1;
+
+        XlsRowCollector(int fromRow, RowHandler handler) {
+            this.fromRow = fromRow;
+            this.handler = handler;
+        }
+
+        @Override
+        public void processRecord(org.apache.poi.hssf.record.Record record) {
+            switch (record.getSid()) {
+                case BOFRecord.sid:
+                    if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+                        sheetIndex++;
+                    }
+                    break;
+                case SSTRecord.sid:
+                    sst = (SSTRecord) record;
+                    break;
+                default:
+                    break;
+            }
+
+            //it is assumed that all the data wil be on first sheet
+            if (sheetIndex != 0) {
+                return;
+            }
+
+            if (record instanceof LastCellOfRowDummyRecord) {
+                int row = ((LastCellOfRowDummyRecord) record).getRow();
+                if (row >= fromRow) {
+                    handler.handleRow(row, cells);
+                }
+                cells.clear();
+                return;
+            }
+            //the cells of a skipped row are not formatted
+            if (record instanceof CellValueRecordInterface && ((CellValueRecordInterface) record).getRow() < fromRow) {
+                return;
+            }
+
+            switch (record.getSid()) {
+                case LabelSSTRecord.sid:
+                    cells.add(sst.getString(((LabelSSTRecord) record).getSSTIndex()).getString());
+                    break;
+                case LabelRecord.sid:
+                    cells.add(((LabelRecord) record).getValue());
+                    break;
+                case NumberRecord.sid:
+                    cells.add(formats.formatNumberDateCell((NumberRecord) record));
+                    break;
+                case FormulaRecord.sid:
+                    cells.add(formats.formatNumberDateCell((FormulaRecord) record));
+                    break;
+                case BoolErrRecord.sid:
+                    BoolErrRecord boolErr = (BoolErrRecord) record;
+                    cells.add(boolErr.isBoolean() ? String.valueOf(boolErr.getBooleanValue()) : "");
+                    break;
+                case BlankRecord.sid:
+                    cells.add("");
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
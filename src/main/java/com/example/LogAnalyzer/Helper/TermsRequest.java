@@ -0,0 +1,41 @@
+package com.example.LogAnalyzer.Helper;
+
+import java.util.List;
+
+//the body of the terms filters and projections, bound by jackson so a value of the wrong type is a bad request
+//  {"field": "source", "terms": ["source1", "source2"], "size": 1000}
+public class TermsRequest {
+
+    //the field filtered on, unused by a projection
+    private String field;
+
+    //the accepted values of field, or the projected fields
+    private List<String> terms;
+
+    //the page size of a cursor, 1000 when missing
+    private Integer size;
+
+    public String getField() {
+        return field;
+    }
+
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    public void setTerms(List<String> terms) {
+        this.terms = terms;
+    }
+
+    public Integer getSize() {
+        return size;
+    }
+
+    public void setSize(Integer size) {
+        this.size = size;
+    }
+}
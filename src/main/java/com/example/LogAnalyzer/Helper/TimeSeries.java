@@ -0,0 +1,56 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.List;
+
+//log counts over a time range. timestamps holds the start of every bucket, in epoch millis, and every
+//series has one count per timestamp, zero where nothing was logged. without a split there is one series
+//and its key is left out
+@JsonPropertyOrder({"interval", "timestamps", "series"})
+public class TimeSeries {
+
+    private final String interval;
+    private final long[] timestamps;
+    private final List<Series> series;
+
+    public TimeSeries(String interval, long[] timestamps, List<Series> series) {
+        this.interval = interval;
+        this.timestamps = timestamps;
+        this.series = series;
+    }
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public List<Series> getSeries() {
+        return series;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonPropertyOrder({"key", "counts"})
+    public static class Series {
+
+        private final String key;
+        private final long[] counts;
+
+        public Series(String key, long[] counts) {
+            this.key = key;
+            this.counts = counts;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long[] getCounts() {
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+
+//the outcome of validating one row: its log, skipped because it is not a log we keep, or invalid with the reason
+public final class ValidatedRow {
+
+    private static final ValidatedRow SKIPPED = new ValidatedRow(null, null);
+
+    private final LogEntity log;
+    private final String reason;
+
+    private ValidatedRow(LogEntity log, String reason) {
+        this.log = log;
+        this.reason = reason;
+    }
+
+    static ValidatedRow valid(LogEntity log) {
+        return new ValidatedRow(log, null);
+    }
+
+    //not an ERROR, or of a logger that is not on the allowlist
+    static ValidatedRow skipped() {
+        return SKIPPED;
+    }
+
+    static ValidatedRow invalid(String reason) {
+        return new ValidatedRow(null, reason);
+    }
+
+    public boolean isInvalid() {
+        return reason != null;
+    }
+
+    //null when the row is skipped or invalid
+    public LogEntity getLog() {
+        return log;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
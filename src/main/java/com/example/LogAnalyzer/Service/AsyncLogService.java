@@ -0,0 +1,37 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+//non blocking counterpart of the es backed LogService queries. the futures complete on the client's io threads,
+//so no thread waits while es works on the query. failures complete the future exceptionally
+public interface AsyncLogService {
+
+    CompletableFuture<List<LogEntity>> searchUsingScroll();
+
+    CompletableFuture<Map<String, Long>> groupBysource();
+
+    CompletableFuture<Map<String, Long>> groupByDynamic(String field);
+
+    CompletableFuture<List<LogEntity>> projectBySourceAndMessage();
+
+    CompletableFuture<List<LogEntity>> filterBytime(String start, String end);
+
+    CompletableFuture<List<LogEntity>> filterByterms();
+
+    CompletableFuture<Map<String, Long>> tabularAggregation();
+
+    CompletableFuture<Map<String, Long>> nestedAggregation();
+
+    CompletableFuture<Long> cardinalityAggs(String field);
+
+    CompletableFuture<List<LogEntity>> filterByTermsDynamic(String field, String... terms);
+
+    CompletableFuture<List<Map<String, Object>>> projectByDynamic(String... fields);
+
+    CompletableFuture<Map<String, List<Map<String, Long>>>> nestedGroupByDynamic(String field, String field2);
+
+}
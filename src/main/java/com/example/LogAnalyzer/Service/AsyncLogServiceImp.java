@@ -0,0 +1,193 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Helper.LogEntityMapper;
+import com.example.LogAnalyzer.Helper.LoggerAllowlist;
+import com.example.LogAnalyzer.Helper.QueryProfiler;
+import com.example.LogAnalyzer.Helper.SingleFlight;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.Scroll;
+import org.elasticsearch.search.SearchHit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//sends the same requests as LogServiceImp with searchAsync and scrollAsync. the responses are parsed
+//on the client's io thread, which is cheap next to the time the request thread used to spend waiting
+@Service
+public class AsyncLogServiceImp implements AsyncLogService {
+
+    private static final Logger logger = Logger.getLogger(AsyncLogServiceImp.class.getName());
+
+    private final RestHighLevelClient client;
+
+    private final LoggerAllowlist loggerAllowlist;
+
+    private final QueryProfiler profiler;
+
+    //identical searches in flight at the same time share one response
+    private final SingleFlight<SearchResponse> searches = new SingleFlight<>();
+
+    @Autowired
+    public AsyncLogServiceImp(RestHighLevelClient client, LoggerAllowlist loggerAllowlist, QueryProfiler profiler) {
+        this.client = client;
+        this.loggerAllowlist = loggerAllowlist;
+        this.profiler = profiler;
+    }
+
+    //every batch is requested when the previous one has arrived, the scroll is cleared at the end
+    @Override
+    public CompletableFuture<List<LogEntity>> searchUsingScroll() {
+        //data will remain in memory for 1 minute
+        Scroll scroll = new Scroll(TimeValue.timeValueMinutes(1L));
+        List<LogEntity> logs = new ArrayList<>();
+        return search(LogQueries.scrollRequest(scroll))
+                .thenCompose(response -> drainScroll(response, scroll, logs))
+                .thenApply(done -> logs);
+    }
+
+    private CompletableFuture<Void> drainScroll(SearchResponse response, Scroll scroll, List<LogEntity> logs) {
+        String scrollId = response.getScrollId();
+        SearchHit[] hits = response.getHits().getHits();
+        if (scrollId == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (hits.length == 0) {
+            clearScroll(scrollId);
+            return CompletableFuture.completedFuture(null);
+        }
+        logs.addAll(LogEntityMapper.ALL.mapAll(Arrays.asList(hits)));
+        return scroll(new SearchScrollRequest(scrollId).scroll(scroll))
+                .thenCompose(next -> drainScroll(next, scroll, logs));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> groupBysource() {
+        return search(LogQueries.groupBySourceRequest()).thenApply(LogQueries::groupBySourceResult);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> groupByDynamic(String field) {
+        return search(LogQueries.groupByDynamicRequest(field)).thenApply(response -> LogQueries.groupByDynamicResult(response, field));
+    }
+
+    @Override
+    public CompletableFuture<List<LogEntity>> projectBySourceAndMessage() {
+        return search(LogQueries.projectBySourceAndMessageRequest()).thenApply(LogQueries::projectBySourceAndMessageResult);
+    }
+
+    @Override
+    public CompletableFuture<List<LogEntity>> filterBytime(String start, String end) {
+        return search(LogQueries.filterBytimeRequest(start, end)).thenApply(LogQueries::logs);
+    }
+
+    @Override
+    public CompletableFuture<List<LogEntity>> filterByterms() {
+        return search(LogQueries.filterBytermsRequest()).thenApply(LogQueries::filterBytermsResult);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> tabularAggregation() {
+        return search(LogQueries.tabularAggregationRequest()).thenApply(LogQueries::tabularAggregationResult);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> nestedAggregation() {
+        return search(LogQueries.nestedAggregationRequest())
+                .thenApply(response -> LogQueries.nestedAggregationResult(LogQueries.nestedAggregationBuckets(response)));
+    }
+
+    @Override
+    public CompletableFuture<Long> cardinalityAggs(String field) {
+        return search(LogQueries.cardinalityRequest(field)).thenApply(response -> LogQueries.cardinalityResult(response, field));
+    }
+
+    //rows of other loggers are dropped at ingestion, so they cannot match and need no search
+    @Override
+    public CompletableFuture<List<LogEntity>> filterByTermsDynamic(String field, String... terms) {
+        if (field.equals("logger")) {
+            terms = Arrays.stream(terms).filter(loggerAllowlist::contains).toArray(String[]::new);
+        }
+        if (terms.length == 0) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        return search(LogQueries.filterByTermsDynamicRequest(field, terms)).thenApply(LogQueries::logs);
+    }
+
+    @Override
+    public CompletableFuture<List<Map<String, Object>>> projectByDynamic(String... fields) {
+        return search(LogQueries.projectByDynamicRequest(fields)).thenApply(response -> LogQueries.projectByDynamicResult(response, fields));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, List<Map<String, Long>>>> nestedGroupByDynamic(String field1, String field2) {
+        return search(LogQueries.nestedGroupByDynamicRequest(field1, field2)).thenApply(LogQueries::nestedGroupByDynamicResult);
+    }
+
+    //a scroll is owned by the caller that opened it, so scroll searches are never shared. neither are
+    //profiled ones, a search that joined another would have no timings of its own
+    private CompletableFuture<SearchResponse> search(SearchRequest searchRequest) {
+        if (searchRequest.scroll() != null || QueryProfiler.isActive()) {
+            return send(searchRequest);
+        }
+        return searches.executeAsync(LogQueries.key(searchRequest), () -> send(searchRequest));
+    }
+
+    private CompletableFuture<SearchResponse> send(SearchRequest searchRequest) {
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        profiler.searchAsync(client, searchRequest, listener(future));
+        return future;
+    }
+
+    private CompletableFuture<SearchResponse> scroll(SearchScrollRequest scrollRequest) {
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        profiler.scrollAsync(client, scrollRequest, listener(future));
+        return future;
+    }
+
+    //nobody waits for the clear, a failure only means es drops the context when the keep alive runs out
+    private void clearScroll(String scrollId) {
+        ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+        clearScrollRequest.addScrollId(scrollId);
+        client.clearScrollAsync(clearScrollRequest, RequestOptions.DEFAULT, new ActionListener<ClearScrollResponse>() {
+            @Override
+            public void onResponse(ClearScrollResponse response) {
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                logger.log(Level.WARNING, "failed to clear scroll", e);
+            }
+        });
+    }
+
+    private static ActionListener<SearchResponse> listener(CompletableFuture<SearchResponse> future) {
+        return new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                logger.log(Level.SEVERE, "An error occurred", e);
+                future.completeExceptionally(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Helper.LoggerAllowlist;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+//one query descriptor of a batch, in the format RequestHandler accepts, turned into the search it sends
+//and how its response is read. a query answered without a search has a result and no request
+final class BatchQuery {
+
+    final String type;
+    final SearchRequest request;
+    final Function<SearchResponse, Object> result;
+    //whole index aggregations, shared with the AggregationCache
+    final boolean cacheable;
+    final Object immediate;
+
+    private BatchQuery(String type, SearchRequest request, Function<SearchResponse, Object> result, boolean cacheable, Object immediate) {
+        this.type = type;
+        this.request = request;
+        this.result = result;
+        this.cacheable = cacheable;
+        this.immediate = immediate;
+    }
+
+    private static BatchQuery search(String type, SearchRequest request, Function<SearchResponse, Object> result) {
+        return new BatchQuery(type, request, result, false, null);
+    }
+
+    private static BatchQuery aggregation(String type, SearchRequest request, Function<SearchResponse, Object> result) {
+        return new BatchQuery(type, request, result, true, null);
+    }
+
+    //a descriptor that is not valid throws IllegalArgumentException, which fails only that query
+    static BatchQuery parse(Map<String, Object> descriptor, LoggerAllowlist loggerAllowlist) {
+        String type = text(descriptor, "query");
+        switch (type) {
+            case "groupBy": {
+                String field = text(descriptor, "field");
+                return aggregation(type, LogQueries.groupByDynamicRequest(field), response -> LogQueries.groupByDynamicResult(response, field));
+            }
+            case "nestedGroupBy": {
+                String field1 = text(descriptor, "field1");
+                String field2 = text(descriptor, "field2");
+                return aggregation(type, LogQueries.nestedGroupByDynamicRequest(field1, field2), LogQueries::nestedGroupByDynamicResult);
+            }
+            case "cardinality": {
+                String field = text(descriptor, "field");
+                return aggregation(type, LogQueries.cardinalityRequest(field), response -> LogQueries.cardinalityResult(response, field));
+            }
+            case "projectBy": {
+                String[] fields = texts(descriptor, "fields");
+                return search(type, LogQueries.projectByDynamicRequest(fields), response -> LogQueries.projectByDynamicResult(response, fields));
+            }
+            case "timeFilter":
+                return search(type, LogQueries.filterBytimeRequest(text(descriptor, "starttime"), text(descriptor, "endtime")), LogQueries::logs);
+            case "termsFilter": {
+                String field = text(descriptor, "field");
+                String[] terms = texts(descriptor, "terms");
+                //rows of other loggers are dropped at ingestion, so they cannot match and need no search
+                if (field.equals("logger")) {
+                    terms = Arrays.stream(terms).filter(loggerAllowlist::contains).toArray(String[]::new);
+                }
+                if (terms.length == 0) {
+                    return new BatchQuery(type, null, null, false, new ArrayList<>());
+                }
+                return search(type, LogQueries.filterByTermsDynamicRequest(field, terms), LogQueries::logs);
+            }
+            case "search":
+            case "search_paging":
+            case "search_scroll":
+                throw new IllegalArgumentException(type + " reads the whole index and cannot be batched, send it to /api");
+            default:
+                throw new IllegalArgumentException("Unknown query: " + type);
+        }
+    }
+
+    private static String text(Map<String, Object> descriptor, String name) {
+        Object value = descriptor == null ? null : descriptor.get(name);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(name + " is required");
+        }
+        return (String) value;
+    }
+
+    private static String[] texts(Map<String, Object> descriptor, String name) {
+        Object value = descriptor.get(name);
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException(name + " must be an array");
+        }
+        List<String> values = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            values.add(String.valueOf(item));
+        }
+        return values.toArray(new String[0]);
+    }
+}
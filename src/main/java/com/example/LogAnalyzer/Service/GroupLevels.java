@@ -0,0 +1,104 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Helper.ColumnarGroups;
+import com.example.LogAnalyzer.Helper.QueryGroup;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+//the levels of a nested group by, outermost first. a level is a keyword field, grouped with a terms
+//aggregation, or a date field and an interval such as timestamp:1h, grouped with a date histogram.
+//each level is a sub aggregation of the one before it
+final class GroupLevels {
+
+    static final int MAX_LEVELS = 4;
+
+    private static final String GROUP = "group_";
+
+    private static final Set<String> KEYWORDS = Set.of("source", "loglevel", "logger", "partnerid");
+    private static final Set<String> DATES = Set.of("timestamp", "date");
+
+    private GroupLevels() {
+    }
+
+    //size caps the buckets of every terms level, a date level has a bucket for every interval with logs
+    static AggregationBuilder aggregation(List<String> levels, int size) {
+        if (levels.isEmpty() || levels.size() > MAX_LEVELS) {
+            throw new IllegalArgumentException("a group by takes 1 to " + MAX_LEVELS + " levels");
+        }
+        AggregationBuilder inner = null;
+        for (int level = levels.size() - 1; level >= 0; level--) {
+            AggregationBuilder aggregation = level(GROUP + level, levels.get(level), size);
+            if (inner != null) {
+                aggregation.subAggregation(inner);
+            }
+            inner = aggregation;
+        }
+        return inner;
+    }
+
+    private static AggregationBuilder level(String name, String level, int size) {
+        int colon = level.indexOf(':');
+        if (colon < 0) {
+            if (!KEYWORDS.contains(level) && !DATES.contains(level)) {
+                throw new IllegalArgumentException("cannot group by " + level);
+            }
+            return AggregationBuilders.terms(name).field(level).size(size);
+        }
+        String field = level.substring(0, colon);
+        String interval = level.substring(colon + 1);
+        if (!DATES.contains(field)) {
+            throw new IllegalArgumentException("an interval needs a date field: " + level);
+        }
+        DateHistogramAggregationBuilder histogram = AggregationBuilders.dateHistogram(name).field(field).minDocCount(1);
+        //1d, 1M or week are calendar units, 30m or 6h a fixed length
+        try {
+            if (DateHistogramAggregationBuilder.DATE_FIELD_UNITS.containsKey(interval)) {
+                return histogram.calendarInterval(new DateHistogramInterval(interval));
+            }
+            return histogram.fixedInterval(new DateHistogramInterval(interval));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid interval: " + level, e);
+        }
+    }
+
+    static List<QueryGroup> tree(Aggregations aggregations, int levels) {
+        return tree(aggregations, 0, levels);
+    }
+
+    private static List<QueryGroup> tree(Aggregations aggregations, int level, int levels) {
+        MultiBucketsAggregation aggregation = aggregations.get(GROUP + level);
+        List<QueryGroup> groups = new ArrayList<>();
+        for (MultiBucketsAggregation.Bucket bucket : aggregation.getBuckets()) {
+            List<QueryGroup> inner = level + 1 < levels ? tree(bucket.getAggregations(), level + 1, levels) : null;
+            groups.add(new QueryGroup(bucket.getKeyAsString(), bucket.getDocCount(), inner));
+        }
+        return groups;
+    }
+
+    //one row per innermost bucket, a bucket whose inner level has no buckets has no row
+    static ColumnarGroups columns(Aggregations aggregations, List<String> levels) {
+        ColumnarGroups.Builder builder = ColumnarGroups.builder(levels);
+        columns(aggregations, 0, new String[levels.size()], builder);
+        return builder.build();
+    }
+
+    private static void columns(Aggregations aggregations, int level, String[] row, ColumnarGroups.Builder builder) {
+        MultiBucketsAggregation aggregation = aggregations.get(GROUP + level);
+        for (MultiBucketsAggregation.Bucket bucket : aggregation.getBuckets()) {
+            row[level] = bucket.getKeyAsString();
+            if (level + 1 < row.length) {
+                columns(bucket.getAggregations(), level + 1, row, builder);
+            } else {
+                builder.add(row, bucket.getDocCount());
+            }
+        }
+    }
+}
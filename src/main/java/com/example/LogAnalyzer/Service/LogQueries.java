@@ -0,0 +1,501 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Helper.ClosedBucketCache;
+import com.example.LogAnalyzer.Helper.ColumnarGroups;
+import com.example.LogAnalyzer.Helper.GroupBucket;
+import com.example.LogAnalyzer.Helper.LogEntityMapper;
+import com.example.LogAnalyzer.Helper.LogPartitions;
+import com.example.LogAnalyzer.Helper.TimestampCodec;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.common.time.DateFormatter;
+import org.elasticsearch.common.time.DateMathParser;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.index.query.TermsQueryBuilder;
+import org.elasticsearch.search.Scroll;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.TermsValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.Cardinality;
+import org.elasticsearch.search.aggregations.metrics.CardinalityAggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+//the search requests behind the LogService queries and how their responses are read.
+//shared by the blocking and the async service so both always send and return the same thing
+final class LogQueries {
+
+    //every partition, a search with a time range names only the partitions of its days, see within
+    static final String INDEX = LogPartitions.PATTERN;
+
+    //how the mapping reads the dates of a range query, date math such as now-15m included
+    private static final DateMathParser DATES = DateFormatter.forPattern("strict_date_optional_time||epoch_millis").toDateMathParser();
+
+    static final long HOUR_MILLIS = 3_600_000L;
+
+    //only the fields filterByterms has always returned
+    private static final LogEntityMapper TERMS_MAPPER = new LogEntityMapper(LogEntityMapper.TIMESTAMP, LogEntityMapper.SOURCE, LogEntityMapper.MESSAGE);
+
+    private LogQueries() {
+    }
+
+    //first request of searchUsingScroll, data will remain in memory for 1 minute between batches
+    static SearchRequest scrollRequest(Scroll scroll) {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(INDEX);
+        searchRequest.scroll(scroll);
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+        searchSourceBuilder.query(QueryBuilders.matchAllQuery());
+
+        searchSourceBuilder.size(100);
+        searchRequest.source(searchSourceBuilder);
+        return searchRequest;
+    }
+
+    //an example of tabular aggregation,count of timestamps under a source
+    static SearchRequest tabularAggregationRequest() {
+        QueryBuilder query = QueryBuilders.matchAllQuery();
+        AggregationBuilder aggregation = AggregationBuilders
+                .terms("timestamps_per_source").field("source").subAggregation(AggregationBuilders.cardinality("unique_timestamps").field("timestamp"));
+
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(INDEX);
+        searchRequest.source(new SearchSourceBuilder().query(query).aggregation(aggregation));
+        return searchRequest;
+    }
+
+    static Map<String, Long> tabularAggregationResult(SearchResponse searchResponse) {
+        Aggregations aggs = searchResponse.getAggregations();
+        Terms sourceaggs = aggs.get("timestamps_per_source");
+
+        List<? extends Terms.Bucket> sourceBuckets = sourceaggs.getBuckets();
+        Map<String, Long> mp = new HashMap<>();
+        for (Terms.Bucket sourcebucket : sourceBuckets) {
+            String source = sourcebucket.getKeyAsString();
+
+            Cardinality uniqueTimestamps = sourcebucket.getAggregations().get("unique_timestamps");
+            long value = uniqueTimestamps.getValue();
+            mp.put(source, value);
+        }
+        return mp;
+    }
+
+    //an example of nested aggregation,count of doc under a timestamp under a source
+    static SearchRequest nestedAggregationRequest() {
+        SearchRequest searchRequest = new SearchRequest(INDEX);
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+        searchSourceBuilder.query(QueryBuilders.matchAllQuery());
+        TermsAggregationBuilder sourcesAggregation = AggregationBuilders.terms("sources").field("source");
+        DateHistogramAggregationBuilder timestampsAggregation = AggregationBuilders.dateHistogram("timestamps").field("timestamp").calendarInterval(DateHistogramInterval.HOUR);
+        CardinalityAggregationBuilder uniqueIdsAggregation = AggregationBuilders.cardinality("unique_dates").field("date");
+        sourcesAggregation.subAggregation(timestampsAggregation.subAggregation(uniqueIdsAggregation));
+        searchSourceBuilder.aggregation(sourcesAggregation);
+        searchRequest.source(searchSourceBuilder);
+        return searchRequest;
+    }
+
+    //the unique dates of every source by the start of the hour
+    static SortedMap<Long, Map<String, Long>> nestedAggregationBuckets(SearchResponse searchResponse) {
+        Aggregations aggs = searchResponse.getAggregations();
+
+        Terms sourcesAgg = aggs.get("sources");
+        SortedMap<Long, Map<String, Long>> hours = new TreeMap<>();
+
+        for (Terms.Bucket sourcesBucket : sourcesAgg.getBuckets()) {
+            String source = sourcesBucket.getKeyAsString();
+
+            Histogram timestampsAgg = sourcesBucket.getAggregations().get("timestamps");
+
+            for (Histogram.Bucket timestampsBucket : timestampsAgg.getBuckets()) {
+                Cardinality uniqueIds = timestampsBucket.getAggregations().get("unique_dates");
+                hours.computeIfAbsent(bucketStart(timestampsBucket), hour -> new HashMap<>()).put(source, uniqueIds.getValue());
+            }
+        }
+        return hours;
+    }
+
+    //keyed source-hour. es fills the hours between the first and the last of a source with zeros, so does this,
+    //the hours may come from several searches
+    static Map<String, Long> nestedAggregationResult(SortedMap<Long, Map<String, Long>> hours) {
+        Map<String, Long> mp = new HashMap<>();
+        Map<String, Long> lastHour = new HashMap<>();
+        for (Map.Entry<Long, Map<String, Long>> hour : hours.entrySet()) {
+            for (Map.Entry<String, Long> source : hour.getValue().entrySet()) {
+                Long previous = lastHour.put(source.getKey(), hour.getKey());
+                if (previous != null) {
+                    for (long gap = previous + HOUR_MILLIS; gap < hour.getKey(); gap += HOUR_MILLIS) {
+                        mp.put(source.getKey() + "-" + TimestampCodec.format(gap), 0L);
+                    }
+                }
+                mp.put(source.getKey() + "-" + TimestampCodec.format(hour.getKey()), source.getValue());
+            }
+        }
+        return mp;
+    }
+
+    //the ranges are from their first millisecond up to but not including their second, either end may be open
+    static QueryBuilder timeRanges(String field, List<long[]> ranges) {
+        if (ranges.isEmpty() || ranges.size() == 1
+                && ranges.get(0)[0] == ClosedBucketCache.UNBOUNDED_FROM && ranges.get(0)[1] == ClosedBucketCache.UNBOUNDED_TO) {
+            return QueryBuilders.matchAllQuery();
+        }
+        BoolQueryBuilder query = QueryBuilders.boolQuery().minimumShouldMatch(1);
+        for (long[] range : ranges) {
+            RangeQueryBuilder rangeQuery = QueryBuilders.rangeQuery(field).format("epoch_millis");
+            if (range[0] != ClosedBucketCache.UNBOUNDED_FROM) {
+                rangeQuery.gte(range[0]);
+            }
+            if (range[1] != ClosedBucketCache.UNBOUNDED_TO) {
+                rangeQuery.lt(range[1]);
+            }
+            query.should(rangeQuery);
+        }
+        return query;
+    }
+
+    //the client parses the key of a date histogram bucket into a ZonedDateTime
+    static long bucketStart(Histogram.Bucket bucket) {
+        Object key = bucket.getKey();
+        if (key instanceof ZonedDateTime) {
+            return ((ZonedDateTime) key).toInstant().toEpochMilli();
+        }
+        return ((Number) key).longValue();
+    }
+
+    //fitler docs in given time range
+    static SearchRequest filterBytimeRequest(String start, String end) {
+        SearchSourceBuilder searchSource = new SearchSourceBuilder();
+        searchSource.query(timeQuery(start, end));
+        searchSource.from(0);
+        searchSource.size(4000);
+
+        SearchRequest searchRequest = within(new SearchRequest(), bounds(start, end));
+        searchRequest.source(searchSource);
+        return searchRequest;
+    }
+
+    //fiters docs whose soucre belong to some specific options
+    static SearchRequest filterBytermsRequest() {
+        SearchSourceBuilder searchSource = new SearchSourceBuilder();
+        searchSource.query(sourceQuery());
+        searchSource.from(0);
+        searchSource.size(4000);
+
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(INDEX);
+        searchRequest.source(searchSource);
+        return searchRequest;
+    }
+
+    //the other fields were never returned by this filter, so they are not decoded
+    static List<LogEntity> filterBytermsResult(SearchResponse response) {
+        return TERMS_MAPPER.mapAll(response.getHits());
+    }
+
+    //generic filter function wth any fied and any number of terms
+    static SearchRequest filterByTermsDynamicRequest(String field, String... terms) {
+        TermsQueryBuilder termsQuery = QueryBuilders.termsQuery(field, terms);
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                .query(termsQuery);
+
+        sourceBuilder.size(10000);
+
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(INDEX);
+        searchRequest.source(sourceBuilder);
+        return searchRequest;
+    }
+
+    static List<LogEntity> logs(SearchResponse response) {
+        return LogEntityMapper.ALL.mapAll(response.getHits());
+    }
+
+    //groupBys on given field
+    static SearchRequest groupByDynamicRequest(String field) {
+        QueryBuilder query = QueryBuilders.matchAllQuery();
+
+        AggregationBuilder aggregation = AggregationBuilders
+                .terms("groupBy_" + field).field(field).size(4000);
+
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(INDEX);
+        searchRequest.source(new SearchSourceBuilder().query(query).aggregation(aggregation));
+        return searchRequest;
+    }
+
+    static Map<String, Long> groupByDynamicResult(SearchResponse searchResponse, String field) {
+        Aggregations aggs = searchResponse.getAggregations();
+        Terms fieldaggs = aggs.get("groupBy_" + field);
+        List<? extends Terms.Bucket> sourceBuckets = fieldaggs.getBuckets();
+        Map<String, Long> mp = new HashMap<>();
+        for (Terms.Bucket sourceBucket : sourceBuckets) {
+            mp.put(sourceBucket.getKeyAsString(), sourceBucket.getDocCount());
+        }
+        return mp;
+    }
+
+    //projects only the fields specified
+    static SearchRequest projectByDynamicRequest(String... fields) {
+        QueryBuilder query = QueryBuilders.matchAllQuery();
+
+        SearchSourceBuilder searchSource = new SearchSourceBuilder();
+        searchSource.query(query);
+        searchSource.from(0);
+        searchSource.size(10000);
+
+        String[] includes = fields;
+        String[] excludes = null;
+        searchSource.fetchSource(includes, excludes);
+
+        SearchRequest searchRequest = new SearchRequest(INDEX);
+        searchRequest.source(searchSource);
+        return searchRequest;
+    }
+
+    static List<Map<String, Object>> projectByDynamicResult(SearchResponse response, String... fields) {
+        List<Map<String, Object>> logs = new ArrayList<>();
+        for (SearchHit hit : response.getHits()) {
+            logs.add(project(hit, Arrays.asList(fields)));
+        }
+        return logs;
+    }
+
+    static Map<String, Object> project(SearchHit hit, List<String> fields) {
+        Map<String, Object> sourceAsMap = hit.getSourceAsMap();
+        Map<String, Object> logEntry = new HashMap<>();
+        String id = hit.getId();
+        for (String field : fields) {
+            if (field.equals("id")) logEntry.put(field, id);
+            if (sourceAsMap.containsKey(field)) {
+                logEntry.put(field, sourceAsMap.get(field));
+            }
+        }
+        return logEntry;
+    }
+
+    static SearchRequest nestedGroupByDynamicRequest(String field1, String field2) {
+        QueryBuilder query = QueryBuilders.matchAllQuery();
+        AggregationBuilder aggregation = AggregationBuilders
+                .terms("field1").field(field1).subAggregation(AggregationBuilders.terms("field2").field(field2));
+
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(INDEX);
+        searchRequest.source(new SearchSourceBuilder().query(query).aggregation(aggregation));
+        return searchRequest;
+    }
+
+    static Map<String, List<Map<String, Long>>> nestedGroupByDynamicResult(SearchResponse searchResponse) {
+        Aggregations aggs = searchResponse.getAggregations();
+        Terms field1aggs = aggs.get("field1");
+
+        List<? extends Terms.Bucket> sourceBuckets = field1aggs.getBuckets();
+        Map<String, List<Map<String, Long>>> mp = new HashMap<>();
+        for (Terms.Bucket sourcebucket : sourceBuckets) {
+            String source = sourcebucket.getKeyAsString();
+            mp.put(source, new ArrayList<>());
+            Terms field2aggs = sourcebucket.getAggregations().get("field2");
+
+            for (Terms.Bucket field2bucket : field2aggs.getBuckets()) {
+                Map<String, Long> mp1 = new HashMap<>();
+                mp1.put(field2bucket.getKeyAsString(), field2bucket.getDocCount());
+                mp.get(source).add(mp1);
+            }
+        }
+        return mp;
+    }
+
+    //a group by on any number of levels, see GroupLevels, read as columns
+    static SearchRequest groupByColumnsRequest(List<String> levels, int size) {
+        SearchRequest searchRequest = new SearchRequest(INDEX);
+        searchRequest.source(new SearchSourceBuilder().query(QueryBuilders.matchAllQuery()).size(0)
+                .aggregation(GroupLevels.aggregation(levels, size)));
+        return searchRequest;
+    }
+
+    static ColumnarGroups groupByColumnsResult(SearchResponse searchResponse, List<String> levels) {
+        return GroupLevels.columns(searchResponse.getAggregations(), levels);
+    }
+
+    static final String COMPOSITE_GROUP_BY = "groupBy";
+
+    //one page of the buckets of a group by on any number of fields, the page after the after key.
+    //unlike the terms aggregations above, a composite aggregation has no bucket limit, it is paged instead
+    static SearchRequest compositeGroupByRequest(int size, Map<String, Object> after, String... fields) {
+        List<CompositeValuesSourceBuilder<?>> sources = new ArrayList<>();
+        for (String field : fields) {
+            sources.add(new TermsValuesSourceBuilder(field).field(field));
+        }
+        CompositeAggregationBuilder aggregation = new CompositeAggregationBuilder(COMPOSITE_GROUP_BY, sources).size(size);
+        if (after != null) {
+            aggregation.aggregateAfter(after);
+        }
+
+        SearchRequest searchRequest = new SearchRequest(INDEX);
+        searchRequest.source(new SearchSourceBuilder().query(QueryBuilders.matchAllQuery()).size(0).aggregation(aggregation));
+        return searchRequest;
+    }
+
+    static CompositeAggregation compositeGroupByResult(SearchResponse searchResponse) {
+        return searchResponse.getAggregations().get(COMPOSITE_GROUP_BY);
+    }
+
+    static List<GroupBucket> groupBuckets(CompositeAggregation aggregation) {
+        List<GroupBucket> buckets = new ArrayList<>(aggregation.getBuckets().size());
+        for (CompositeAggregation.Bucket bucket : aggregation.getBuckets()) {
+            buckets.add(new GroupBucket(bucket.getKey(), bucket.getDocCount()));
+        }
+        return buckets;
+    }
+
+    //can count cardinality of any field except messsage
+    static SearchRequest cardinalityRequest(String field) {
+        AggregationBuilder aggregationBuilder = AggregationBuilders
+                .cardinality("unique_" + field) //agg name
+                .field(field);
+
+        SearchRequest searchRequest = new SearchRequest(INDEX);
+        searchRequest.source(new SearchSourceBuilder()
+                .aggregation(aggregationBuilder));
+        return searchRequest;
+    }
+
+    static Long cardinalityResult(SearchResponse searchResponse, String field) {
+        Cardinality cardinalityAgg = searchResponse.getAggregations().get("unique_" + field);
+        return cardinalityAgg.getValue();
+    }
+
+    //ann example og grouby aggregation, tot docs under a source
+    static SearchRequest groupBySourceRequest() {
+        QueryBuilder query = QueryBuilders.matchAllQuery();
+
+        AggregationBuilder aggregation = AggregationBuilders
+                .terms("sources").field("source");
+
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(INDEX);
+        searchRequest.source(new SearchSourceBuilder().query(query).aggregation(aggregation));
+        return searchRequest;
+    }
+
+    static Map<String, Long> groupBySourceResult(SearchResponse searchResponse) {
+        Aggregations aggs = searchResponse.getAggregations();
+        Terms sourceaggs = aggs.get("sources");
+
+        List<? extends Terms.Bucket> sourceBuckets = sourceaggs.getBuckets();
+        Map<String, Long> mp = new HashMap<>();
+        for (Terms.Bucket sourceBucket : sourceBuckets) {
+            mp.put(sourceBucket.getKeyAsString(), sourceBucket.getDocCount());
+        }
+        return mp;
+    }
+
+    // an example of porjection query
+    static SearchRequest projectBySourceAndMessageRequest() {
+        QueryBuilder query = QueryBuilders.matchAllQuery();
+
+        SearchSourceBuilder searchSource = new SearchSourceBuilder();
+        searchSource.query(query);
+        searchSource.from(0);
+        searchSource.size(10000);
+
+        String[] includes = {"source", "message"};
+        String[] excludes = null;
+        searchSource.fetchSource(includes, excludes);
+
+        SearchRequest searchRequest = new SearchRequest(INDEX);
+        searchRequest.source(searchSource);
+        return searchRequest;
+    }
+
+    static List<LogEntity> projectBySourceAndMessageResult(SearchResponse response) {
+        List<LogEntity> logs = new ArrayList<>();
+        int tothits = 0;
+        for (SearchHit hit : response.getHits()) {
+            Map<String, Object> sourceAsMap = hit.getSourceAsMap();
+            tothits++;
+            String source = (String) sourceAsMap.get("source");
+            String message = (String) sourceAsMap.get("message");
+            LogEntity logg = new LogEntity();
+            logg.setID(String.valueOf(tothits));
+            logg.setSource(source);
+            logg.setMessage(message);
+            logs.add(logg);
+        }
+        return logs;
+    }
+
+    //searches only the partitions that can hold logs from from to to, both included. the partitions of
+    //days nothing was logged on do not exist, missing indices are ignored
+    static SearchRequest within(SearchRequest searchRequest, long[] bounds) {
+        searchRequest.indices(LogPartitions.indices(bounds[0], bounds[1]));
+        searchRequest.indicesOptions(IndicesOptions.lenientExpandOpen());
+        return searchRequest;
+    }
+
+    //the first and last millisecond a range query of the timestamp can match, as es reads the dates.
+    //the end of an lte is rounded up, a missing or unreadable date leaves that end open
+    static long[] bounds(String start, String end) {
+        return new long[]{millis(start, false, Long.MIN_VALUE), millis(end, true, Long.MAX_VALUE)};
+    }
+
+    //the bounds of time ranges, each from its first millisecond up to but not including its second
+    static long[] bounds(List<long[]> ranges) {
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        for (long[] range : ranges) {
+            from = Math.min(from, range[0]);
+            to = Math.max(to, range[1] == ClosedBucketCache.UNBOUNDED_TO ? Long.MAX_VALUE : range[1] - 1);
+        }
+        return new long[]{from, to};
+    }
+
+    private static long millis(String date, boolean roundUp, long open) {
+        if (date == null || date.isBlank()) {
+            return open;
+        }
+        try {
+            return DATES.parse(date, System::currentTimeMillis, roundUp, ZoneOffset.UTC).toEpochMilli();
+        } catch (RuntimeException e) {
+            //es refuses it too, the search fails there with its own message
+            return open;
+        }
+    }
+
+    static QueryBuilder timeQuery(String start, String end) {
+        return new RangeQueryBuilder("timestamp")
+                .gte(start)
+                .lte(end);
+    }
+
+    static QueryBuilder sourceQuery() {
+        TermsQueryBuilder termsfilter = QueryBuilders.termsQuery("source", "standalone-reporting-sch-slave-deployment-6d978d7d87-6fxv7", "standalone-reporting-sch-slave-deployment-6d978d7d87-b9fvc");
+        return QueryBuilders.boolQuery().must(QueryBuilders.matchAllQuery()).filter(termsfilter);
+    }
+
+    static String indices(SearchRequest request) {
+        return String.join(",", request.indices());
+    }
+
+    //two requests with the same key send the same search
+    static String key(SearchRequest request) {
+        return indices(request) + " " + request.source();
+    }
+}
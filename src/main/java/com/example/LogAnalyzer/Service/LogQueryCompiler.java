@@ -0,0 +1,146 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Helper.LogQuery;
+import com.example.LogAnalyzer.Helper.LogQueryResult;
+import com.example.LogAnalyzer.Helper.QueryGroup;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.Operator;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//turns a LogQuery into one search. the time range, terms and message match all go into the filter
+//context of a bool query: nothing is scored and es can cache each filter on its own, so the same partner
+//or level filter is reused by queries that combine it differently
+final class LogQueryCompiler {
+
+    static final int DEFAULT_SIZE = 100;
+    static final int MAX_SIZE = 10000;
+    static final int DEFAULT_GROUP_SIZE = 100;
+    static final int MAX_GROUP_SIZE = 10000;
+
+    //the keyword fields of the mapping, the message is analyzed text and the dates are ranges
+    private static final Set<String> KEYWORDS = Set.of("source", "loglevel", "logger", "partnerid");
+    private static final Set<String> SORTABLE = Set.of("timestamp", "date", "source", "loglevel", "logger", "partnerid");
+    private static final Set<String> FIELDS = Set.of("id", "timestamp", "date", "source", "message", "loglevel", "logger", "partnerid");
+
+    private LogQueryCompiler() {
+    }
+
+    //a query that is not valid throws IllegalArgumentException
+    static SearchRequest compile(LogQuery query) {
+        BoolQueryBuilder filters = QueryBuilders.boolQuery();
+        if (query.getFrom() != null || query.getTo() != null) {
+            RangeQueryBuilder range = QueryBuilders.rangeQuery("timestamp");
+            if (query.getFrom() != null) {
+                range.gte(query.getFrom());
+            }
+            if (query.getTo() != null) {
+                range.lte(query.getTo());
+            }
+            filters.filter(range);
+        }
+        if (query.getTerms() != null) {
+            for (Map.Entry<String, List<String>> terms : query.getTerms().entrySet()) {
+                require(KEYWORDS, terms.getKey(), "terms");
+                if (terms.getValue() == null || terms.getValue().isEmpty()) {
+                    throw new IllegalArgumentException("terms of " + terms.getKey() + " must not be empty");
+                }
+                filters.filter(QueryBuilders.termsQuery(terms.getKey(), terms.getValue()));
+            }
+        }
+        if (query.getMessage() != null && !query.getMessage().isBlank()) {
+            filters.filter(QueryBuilders.matchQuery("message", query.getMessage()).operator(Operator.AND));
+        }
+
+        SearchSourceBuilder source = new SearchSourceBuilder()
+                .query(filters)
+                .size(bounded(query.getSize(), DEFAULT_SIZE, 0, MAX_SIZE, "size"))
+                .trackTotalHits(true);
+
+        List<String> fields = fields(query);
+        if (!fields.isEmpty()) {
+            source.fetchSource(fields.stream().filter(field -> !field.equals("id")).toArray(String[]::new), null);
+        }
+        if (query.getSort() != null) {
+            for (String sort : query.getSort()) {
+                int colon = sort.indexOf(':');
+                String field = colon < 0 ? sort : sort.substring(0, colon);
+                require(SORTABLE, field, "sort");
+                source.sort(field, colon < 0 ? SortOrder.ASC : order(sort.substring(colon + 1)));
+            }
+        }
+        if (query.getGroupBy() != null && !query.getGroupBy().isEmpty()) {
+            source.aggregation(GroupLevels.aggregation(query.getGroupBy(), bounded(query.getGroupSize(), DEFAULT_GROUP_SIZE, 1, MAX_GROUP_SIZE, "groupSize")));
+        }
+
+        SearchRequest searchRequest = LogQueries.within(new SearchRequest(), LogQueries.bounds(query.getFrom(), query.getTo()));
+        searchRequest.source(source);
+        return searchRequest;
+    }
+
+    static LogQueryResult result(SearchResponse response, LogQuery query) {
+        List<String> fields = fields(query);
+        List<Map<String, Object>> hits = new ArrayList<>();
+        for (SearchHit hit : response.getHits()) {
+            if (fields.isEmpty()) {
+                Map<String, Object> log = new HashMap<>(hit.getSourceAsMap());
+                log.put("id", hit.getId());
+                hits.add(log);
+            } else {
+                hits.add(LogQueries.project(hit, fields));
+            }
+        }
+        List<QueryGroup> groups = null;
+        if (query.getGroupBy() != null && !query.getGroupBy().isEmpty()) {
+            groups = GroupLevels.tree(response.getAggregations(), query.getGroupBy().size());
+        }
+        long total = response.getHits().getTotalHits() == null ? hits.size() : response.getHits().getTotalHits().value;
+        return new LogQueryResult(total, hits, groups);
+    }
+
+    private static List<String> fields(LogQuery query) {
+        if (query.getFields() == null) {
+            return List.of();
+        }
+        for (String field : query.getFields()) {
+            require(FIELDS, field, "fields");
+        }
+        return query.getFields();
+    }
+
+    private static SortOrder order(String order) {
+        switch (order) {
+            case "asc":
+                return SortOrder.ASC;
+            case "desc":
+                return SortOrder.DESC;
+            default:
+                throw new IllegalArgumentException("sort order must be asc or desc: " + order);
+        }
+    }
+
+    private static int bounded(Integer value, int defaultValue, int min, int max, String name) {
+        int result = value == null ? defaultValue : value;
+        if (result < min || result > max) {
+            throw new IllegalArgumentException(name + " must be between " + min + " and " + max);
+        }
+        return result;
+    }
+
+    private static void require(Set<String> allowed, String field, String part) {
+        if (!allowed.contains(field)) {
+            throw new IllegalArgumentException("cannot use " + field + " in " + part);
+        }
+    }
+}
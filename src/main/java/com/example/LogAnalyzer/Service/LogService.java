@@ -1,14 +1,31 @@
 package com.example.LogAnalyzer.Service;
 
 import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Helper.BatchResult;
+import com.example.LogAnalyzer.Helper.ColumnarGroups;
+import com.example.LogAnalyzer.Helper.CursorPage;
+import com.example.LogAnalyzer.Helper.ExportStats;
+import com.example.LogAnalyzer.Helper.GroupBucket;
+import com.example.LogAnalyzer.Helper.IngestionJobStatus;
+import com.example.LogAnalyzer.Helper.IngestionStats;
+import com.example.LogAnalyzer.Helper.LogQuery;
+import com.example.LogAnalyzer.Helper.LogQueryResult;
+import com.example.LogAnalyzer.Helper.TimeSeries;
 
 import java.text.ParseException;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface LogService {
 
-    List<LogEntity> savelogdata();
+    IngestionStats savelogdata();
+
+    IngestionStats savelogdata(boolean bulkLoad);
+
+    IngestionStats ingestionStats();
+
+    IngestionJobStatus ingestionJob();
 
     List<LogEntity> search();
 
@@ -28,6 +45,19 @@ public interface LogService {
 
     List<LogEntity> searchUsingScroll();
 
+    //streaming variants: every batch goes to the sink as soon as it is read and is not kept,
+    //they return the number of logs streamed
+    long streamUsingScroll(Consumer<List<LogEntity>> sink);
+
+    long streamUsingPage(Consumer<List<LogEntity>> sink);
+
+    //drains the index with a scroll split into slices running in parallel. slices and batchSize
+    //of 0 fall back to the shard count and stream.batch.size, the sink is never called concurrently
+    ExportStats exportSliced(int slices, int batchSize, Consumer<List<LogEntity>> sink);
+
+    //throws IllegalArgumentException when exportSliced would refuse the slices or batchSize, at most export.max.slices
+    void checkExport(int slices, int batchSize);
+
 
     Map<String, Long> tabularAggregation();
 
@@ -41,4 +71,36 @@ public interface LogService {
 
     Map<String, List<Map<String, Long>>> nestedGroupByDynamic(String field, String field2);
 
+    //a group by on up to four levels, keyword fields or date fields with an interval such as timestamp:1h,
+    //returned as one column per level and a counts column. size caps the buckets of every keyword level
+    ColumnarGroups groupByColumns(List<String> levels, int size);
+
+    //log counts from from to to in at most buckets buckets, the interval is picked to fit the range. filters maps
+    //source, loglevel, logger or partnerid to accepted values, split is null or source, loglevel or logger and
+    //gives a series for each of its splitSize most frequent values
+    TimeSeries timeSeries(String from, String to, int buckets, Map<String, List<String>> filters, String split, int splitSize);
+
+    //every bucket of a group by on one or more fields, pages of pageSize buckets go to the sink in key order
+    //as they are read. nothing is truncated and only one page is held at a time, returns the number of buckets
+    long streamGroupBy(int pageSize, Consumer<List<GroupBucket>> sink, String... fields);
+
+    //cursor variants of the filters and the projection, they return the first page and a cursor for the next
+    CursorPage<LogEntity> filterBytimeCursor(String start, String end, int size);
+
+    CursorPage<LogEntity> filterBytermsCursor(int size);
+
+    CursorPage<LogEntity> filterByTermsDynamicCursor(String field, int size, String... terms);
+
+    CursorPage<Map<String, Object>> projectByDynamicCursor(int size, String... fields);
+
+    //the page after the cursor, of whatever query the cursor came from
+    CursorPage<?> nextPage(String cursor);
+
+    //the filters, projection, sort and group by of the query answered by one search
+    LogQueryResult query(LogQuery query);
+
+    //runs the query descriptors of RequestHandler in one msearch, results come back in the same order.
+    //a query that is invalid or fails in es only fails its own entry
+    List<BatchResult> batch(List<Map<String, Object>> queries);
+
 }
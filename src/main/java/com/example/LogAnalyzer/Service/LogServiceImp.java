@@ -1,43 +1,71 @@
 package com.example.LogAnalyzer.Service;
 
 import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Helper.AggregationCache;
+import com.example.LogAnalyzer.Helper.BatchResult;
+import com.example.LogAnalyzer.Helper.ClosedBucketCache;
+import com.example.LogAnalyzer.Helper.ColumnarGroups;
+import com.example.LogAnalyzer.Helper.CursorPage;
+import com.example.LogAnalyzer.Helper.ExportStats;
+import com.example.LogAnalyzer.Helper.GroupBucket;
 import com.example.LogAnalyzer.Helper.ExceltoEs;
-import com.example.LogAnalyzer.Helper.QueryPrinter;
+import com.example.LogAnalyzer.Helper.IngestionPipeline;
+import com.example.LogAnalyzer.Helper.IngestionJobStatus;
+import com.example.LogAnalyzer.Helper.IngestionStats;
+import com.example.LogAnalyzer.Helper.LogEntityMapper;
+import com.example.LogAnalyzer.Helper.LogPartitions;
+import com.example.LogAnalyzer.Helper.LogQuery;
+import com.example.LogAnalyzer.Helper.LogQueryResult;
+import com.example.LogAnalyzer.Helper.LogRollup;
+import com.example.LogAnalyzer.Helper.LoggerAllowlist;
+import com.example.LogAnalyzer.Helper.QueryProfiler;
+import com.example.LogAnalyzer.Helper.SearchCursor;
+import com.example.LogAnalyzer.Helper.SingleFlight;
+import com.example.LogAnalyzer.Helper.TimeSeries;
 import com.example.LogAnalyzer.Repository.LogRepository;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchScrollRequest;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.*;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.index.query.RangeQueryBuilder;
-import org.elasticsearch.index.query.TermsQueryBuilder;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
-import org.elasticsearch.search.aggregations.AggregationBuilder;
-import org.elasticsearch.search.aggregations.AggregationBuilders;
-import org.elasticsearch.search.aggregations.Aggregations;
-import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
-import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
-import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
-import org.elasticsearch.search.aggregations.bucket.terms.Terms;
-import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
-import org.elasticsearch.search.aggregations.metrics.Cardinality;
-import org.elasticsearch.search.aggregations.metrics.CardinalityAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,27 +74,83 @@ public class LogServiceImp implements LogService {
 
     private static final Logger logger = Logger.getLogger(LogServiceImp.class.getName());
 
+    //es does not return more hits than this in one search
+    private static final int MAX_PAGE_SIZE = 10000;
+
+    //es refuses a scroll with more slices than index.max_slices_per_scroll, 1024 unless changed
+    private static final int MAX_SLICES_PER_SCROLL = 1024;
+
+    //queries of one batch, a bigger one is refused as a whole
+    static final int MAX_BATCH_SIZE = 100;
+
     private RestHighLevelClient client;
     private LogRepository logRepository;
 
-    private ExceltoEs helper;
+    private IngestionPipeline pipeline;
+
+    private LoggerAllowlist loggerAllowlist;
+
+    private AggregationCache aggregationCache;
+
+    private QueryProfiler profiler;
+
+    private ClosedBucketCache bucketCache;
+
+    //identical searches sent at the same time, say by every dashboard refreshing at once, share one response
+    private final SingleFlight<SearchResponse> searches = new SingleFlight<>();
+
+    @Value("${stream.batch.size:1000}")
+    private int streamBatchSize = 1000;
+
+    //every slice of an export is a thread here and a scroll context in es
+    @Value("${export.max.slices:16}")
+    private int maxSlices = 16;
+
+    //how long a point in time stays open between two pages of a cursor
+    @Value("${cursor.keep.alive:1m}")
+    private String cursorKeepAlive = "1m";
+
+    //signs the cursor tokens. set it when several instances serve the same clients, by default every
+    //instance signs with a random key of its own and refuses the cursors of the others
+    @Value("${cursor.secret:}")
+    private String cursorSecret = "";
+
+    private final byte[] randomCursorKey = new SecureRandom().generateSeed(32);
+
+    //group bys and histograms of whole hours are answered from the rollup index. only turn it on once
+    //the rollup has been rebuilt over the logs written before it existed
+    @Value("${rollup.queries.enabled:false}")
+    private boolean rollupQueries = false;
+
+    //ingestion writes with the bulk load settings unless the request says otherwise
+    @Value("${ingest.bulk.load:false}")
+    private boolean bulkLoad = false;
 
     //dependency injection using construction
     @Autowired
-    public LogServiceImp(ExceltoEs helper, LogRepository logRepository, RestHighLevelClient client) {
-        this.helper = helper;
+    public LogServiceImp(IngestionPipeline pipeline, LogRepository logRepository, RestHighLevelClient client, LoggerAllowlist loggerAllowlist,
+                         AggregationCache aggregationCache, QueryProfiler profiler, ClosedBucketCache bucketCache) {
         this.logRepository = logRepository;
         this.client = client;
+        this.pipeline = pipeline;
+        this.loggerAllowlist = loggerAllowlist;
+        this.aggregationCache = aggregationCache;
+        this.profiler = profiler;
+        this.bucketCache = bucketCache;
     }
 
 
+    //reads, validates and bulk writes the excel file in concurrent stages
     @Override
-    public List<LogEntity> savelogdata() {
-        try {
-            List<LogEntity> logs;
-            logs = helper.ReadFromExcel();
+    public IngestionStats savelogdata() {
+        return savelogdata(bulkLoad);
+    }
 
-            return helper.WriteToEs(logRepository, logs);
+    //a bulk load turns refresh and replicas off for the partitions it writes and puts them back at the end
+    @Override
+    public IngestionStats savelogdata(boolean bulkLoad) {
+        try {
+            return pipeline.run(ExceltoEs.file, bulkLoad);
 
 
         } catch (Exception e) {
@@ -75,6 +159,16 @@ public class LogServiceImp implements LogService {
         }
     }
 
+    @Override
+    public IngestionStats ingestionStats() {
+        return pipeline.stats();
+    }
+
+    @Override
+    public IngestionJobStatus ingestionJob() {
+        return pipeline.job();
+    }
+
     //simple search using elasticsearchRepository
     @Override
     public List<LogEntity> search() {
@@ -108,68 +202,18 @@ public class LogServiceImp implements LogService {
         //data will remain in memory for 1 minute
         Scroll scroll = new Scroll(TimeValue.timeValueMinutes(1L));
 
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices("loganalyzer");
-        searchRequest.scroll(scroll);
-        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-        searchSourceBuilder.query(QueryBuilders.matchAllQuery());
-
-        searchSourceBuilder.size(100);
-        searchRequest.source(searchSourceBuilder);
-        String scrollId = null;
-        SearchResponse searchResponse = null;
-        try {
-            searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "An error occurred", e);
-            throw new RuntimeException(e);
-        }
-        scrollId = searchResponse.getScrollId();
+        SearchResponse searchResponse = search(LogQueries.scrollRequest(scroll));
+        String scrollId = searchResponse.getScrollId();
         List<LogEntity> logs = new ArrayList<>();
-        int tothits = 0;
 
         while (scrollId != null) {
 
             SearchHits hits = searchResponse.getHits();
             if (hits.getHits().length == 0) break;
-            for (SearchHit hit : hits) {
-                String id = hit.getId();
-                Map<String, Object> sourceAsMap = hit.getSourceAsMap();
-                tothits++;
-                LogEntity logg = new LogEntity();
-
-                String timestamp = sourceAsMap.get("timestamp").toString();
-                SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-                formatter.setLenient(false);
-                Date tsp;
-                try {
-                    tsp = formatter.parse(timestamp);
-                    logg.setTimestamp(tsp);
-                } catch (ParseException e) {
-                    logger.log(Level.SEVERE, "An error occurred", e);
-                    throw new RuntimeException(e);
-                }
-                logg.setTimestamp(tsp);
-                LocalDate dt = LocalDate.parse(sourceAsMap.get("date").toString());
-                logg.setDate(dt);
-                String source = (String) sourceAsMap.get("source");
-                String message = (String) sourceAsMap.get("message");
-                logg.setSource(source);
-                logg.setID(id);
-                logg.setMessage(message);
-
-                String loglevel = (String) sourceAsMap.get("loglevel");
-                String logger = (String) sourceAsMap.get("logger");
-                String partnerid = (String) sourceAsMap.get("partnerid");
-                logg.setPartnerid(partnerid);
-                logg.setLogger(logger);
-                logg.setLoglevel(loglevel);
-                logs.add(logg);
-
-            }
+            logs.addAll(LogEntityMapper.ALL.mapAll(hits));
 
             try {
-                searchResponse = client.scroll(new SearchScrollRequest(scrollId).scroll(scroll), RequestOptions.DEFAULT);
+                searchResponse = profiler.scroll(client, new SearchScrollRequest(scrollId).scroll(scroll));
             } catch (IOException e) {
                 logger.log(Level.SEVERE, "An error occurred", e);
                 throw new RuntimeException(e);
@@ -179,483 +223,616 @@ public class LogServiceImp implements LogService {
         return logs;
     }
 
-    //an example of tabular aggregation,count of timestamps under a source
+    //scrolls through the index handing each batch to the sink. the scroll is cleared however
+    //this ends, also when the sink throws because the client went away
     @Override
-    public Map<String, Long> tabularAggregation() {
-        QueryBuilder query = QueryBuilders.matchAllQuery();
-        AggregationBuilder aggregation = AggregationBuilders
-                .terms("timestamps_per_source").field("source").subAggregation(AggregationBuilders.cardinality("unique_timestamps").field("timestamp"));
-
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices("loganalyzer");
-        searchRequest.source(new SearchSourceBuilder().query(query).aggregation(aggregation));
-        System.out.println(QueryPrinter.printQuery(searchRequest, client));
-        SearchResponse searchResponse;
-        try {
-            searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
+    public long streamUsingScroll(Consumer<List<LogEntity>> sink) {
+        return drainScroll(exportSource(streamBatchSize), sink, new LongAdder());
+    }
 
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "An error occurred", e);
+    //splits the scroll into slices that es serves from separate shard threads and drains them concurrently.
+    //batches reach the sink one at a time, in whatever order the slices deliver them
+    @Override
+    public ExportStats exportSliced(int slices, int batchSize, Consumer<List<LogEntity>> sink) {
+        checkExport(slices, batchSize);
+        int size = batchSize > 0 ? batchSize : streamBatchSize;
+        //the shards of every daily partition can be many more than is worth a thread each
+        int sliceCount = slices > 0 ? slices : Math.min(shardCount(), sliceLimit());
+
+        long start = System.currentTimeMillis();
+        LongAdder requests = new LongAdder();
+        Long[] documents = new Long[sliceCount];
+        Consumer<List<LogEntity>> sharedSink = batch -> {
+            synchronized (sink) {
+                sink.accept(batch);
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(sliceCount);
+        ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(pool);
+        try {
+            for (int i = 0; i < sliceCount; i++) {
+                int slice = i;
+                SearchSourceBuilder source = exportSource(size);
+                //a single slice is a plain scroll, es rejects a slice max of 1
+                if (sliceCount > 1) {
+                    source.slice(new SliceBuilder(slice, sliceCount));
+                }
+                completion.submit(() -> documents[slice] = drainScroll(source, sharedSink, requests), null);
+            }
+            //the first failing slice stops the others, their scrolls are cleared as they unwind
+            for (int i = 0; i < sliceCount; i++) {
+                completion.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
         }
-        Aggregations aggs = searchResponse.getAggregations();
-        Terms sourceaggs = aggs.get("timestamps_per_source");
 
-        List<? extends Terms.Bucket> sourceBuckets = sourceaggs.getBuckets();
-        Map<String, Long> mp = new HashMap<>();
-        for (Terms.Bucket sourcebucket : sourceBuckets) {
-            String source = sourcebucket.getKeyAsString();
+        ExportStats stats = new ExportStats(sliceCount, size, requests.sum(), System.currentTimeMillis() - start, Arrays.asList(documents));
+        logger.info("sliced export finished: " + stats);
+        return stats;
+    }
 
-            Cardinality uniqueTimestamps = sourcebucket.getAggregations().get("unique_timestamps");
-            long value = uniqueTimestamps.getValue();
-            mp.put(source, value);
+    @Override
+    public void checkExport(int slices, int batchSize) {
+        if (batchSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be at most " + MAX_PAGE_SIZE);
+        }
+        if (slices < 0 || slices > sliceLimit()) {
+            throw new IllegalArgumentException("slices must be between 1 and " + sliceLimit() + ", or 0 for one per shard");
         }
-        return mp;
     }
 
-    //an example of nested aggregation,count of doc under a timestamp under a source
-    @Override
-    public Map<String, Long> nestedAggregation() {
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices("loganalyzer");
-        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-        searchSourceBuilder.query(QueryBuilders.matchAllQuery());
-        TermsAggregationBuilder sourcesAggregation = AggregationBuilders.terms("sources").field("source");
-        DateHistogramAggregationBuilder timestampsAggregation = AggregationBuilders.dateHistogram("timestamps").field("timestamp").calendarInterval(DateHistogramInterval.HOUR);
-        CardinalityAggregationBuilder uniqueIdsAggregation = AggregationBuilders.cardinality("unique_dates").field("date");
-        sourcesAggregation.subAggregation(timestampsAggregation.subAggregation(uniqueIdsAggregation));
-        searchSourceBuilder.aggregation(sourcesAggregation);
-        searchRequest.source(searchSourceBuilder);
-        System.out.println(QueryPrinter.printQuery(searchRequest, client));
-        SearchResponse searchResponse;
+    private int sliceLimit() {
+        return Math.max(1, Math.min(maxSlices, MAX_SLICES_PER_SCROLL));
+    }
+
+    //_doc order is the cheapest for es to scroll, the export has no use for any other
+    private static SearchSourceBuilder exportSource(int size) {
+        return new SearchSourceBuilder().query(QueryBuilders.matchAllQuery()).size(size).sort("_doc");
+    }
+
+    //one slice per shard keeps every shard busy without contexts competing for the same shard
+    private int shardCount() {
+        SearchRequest searchRequest = new SearchRequest(LogQueries.INDEX);
+        searchRequest.source(new SearchSourceBuilder().size(0).trackTotalHits(false));
         try {
-            searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
+            return Math.max(1, client.search(searchRequest, RequestOptions.DEFAULT).getTotalShards());
         } catch (IOException e) {
             logger.log(Level.SEVERE, "An error occurred", e);
             throw new RuntimeException(e);
         }
-        Aggregations aggs = searchResponse.getAggregations();
-
-        Terms sourcesAgg = aggs.get("sources");
-        Map<String, Long> mp = new HashMap<>();
-
-        for (Terms.Bucket sourcesBucket : sourcesAgg.getBuckets()) {
-            String source = sourcesBucket.getKeyAsString();
-
-            Histogram timestampsAgg = sourcesBucket.getAggregations().get("timestamps");
+    }
 
+    private long drainScroll(SearchSourceBuilder source, Consumer<List<LogEntity>> sink, LongAdder requests) {
+        Scroll scroll = new Scroll(TimeValue.timeValueMinutes(1L));
 
-            for (Histogram.Bucket timestampsBucket : timestampsAgg.getBuckets()) {
-                String timestamp = timestampsBucket.getKeyAsString();
+        SearchRequest searchRequest = new SearchRequest(LogQueries.INDEX);
+        searchRequest.scroll(scroll);
+        searchRequest.source(source);
 
-                Cardinality uniqueIds = timestampsBucket.getAggregations().get("unique_dates");
-                long value = uniqueIds.getValue();
-                mp.put(source + "-" + timestamp, value);
+        String scrollId = null;
+        long total = 0;
+        try {
+            SearchResponse searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
+            requests.increment();
+            scrollId = searchResponse.getScrollId();
+            while (searchResponse.getHits().getHits().length > 0) {
+                List<LogEntity> batch = LogEntityMapper.ALL.mapAll(searchResponse.getHits());
+                sink.accept(batch);
+                total += batch.size();
+                searchResponse = profiler.scroll(client, new SearchScrollRequest(scrollId).scroll(scroll));
+                requests.increment();
+                scrollId = searchResponse.getScrollId();
             }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
+        } finally {
+            clearScroll(scrollId);
         }
-        return mp;
-
+        return total;
     }
 
-
-    //fitler docs in given time range
+    //pages through the repository handing each page to the sink
     @Override
-    public List<LogEntity> filterBytime(String start, String end) {
-        RangeQueryBuilder query = new RangeQueryBuilder("timestamp")
-                .gte(start)
-                .lte(end);
-
-        SearchSourceBuilder searchSource = new SearchSourceBuilder();
-        searchSource.query(query);
-        searchSource.from(0);
-        searchSource.size(4000);
-
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices("loganalyzer");
-        searchRequest.source(searchSource);
-        System.out.println(QueryPrinter.printQuery(searchRequest, client));
-        SearchResponse response;
-        try {
-            response = client.search(searchRequest, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "An error occurred", e);
-            throw new RuntimeException(e);
+    public long streamUsingPage(Consumer<List<LogEntity>> sink) {
+        Page<LogEntity> page = logRepository.findAll(Pageable.ofSize(streamBatchSize));
+        long total = page.getContent().size();
+        sink.accept(page.getContent());
+        while (page.hasNext()) {
+            page = logRepository.findAll(page.nextPageable());
+            total += page.getContent().size();
+            sink.accept(page.getContent());
         }
+        return total;
+    }
 
-        SearchHits hits = response.getHits();
+    //frees the search context now instead of leaving it until the keep alive runs out
+    private void clearScroll(String scrollId) {
+        if (scrollId == null) {
+            return;
+        }
+        ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+        clearScrollRequest.addScrollId(scrollId);
+        try {
+            client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "could not clear scroll " + scrollId, e);
+        }
+    }
 
+    //an example of tabular aggregation,count of timestamps under a source
+    @Override
+    public Map<String, Long> tabularAggregation() {
+        SearchRequest searchRequest = LogQueries.tabularAggregationRequest();
+        return cached(searchRequest, () -> {
+            return LogQueries.tabularAggregationResult(search(searchRequest));
+        });
+    }
 
-        List<LogEntity> logs = new ArrayList<>();
+    //an example of nested aggregation,count of doc under a timestamp under a source.
+    //the sources are the top ones of the whole index, so it is searched as a whole and not by closed hours
+    @Override
+    public Map<String, Long> nestedAggregation() {
+        SearchRequest searchRequest = LogQueries.nestedAggregationRequest();
+        return cached(searchRequest, () -> {
+            return LogQueries.nestedAggregationResult(LogQueries.nestedAggregationBuckets(search(searchRequest)));
+        });
+    }
 
-        for (SearchHit hit : hits) {
-            Map<String, Object> sourceAsMap = hit.getSourceAsMap();
-            String id = hit.getId();
-            LogEntity logg = new LogEntity();
-            String timestamp = sourceAsMap.get("timestamp").toString();
-            SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-            formatter.setLenient(false);
-            Date tsp;
-            try {
-                tsp = formatter.parse(timestamp);
-                logg.setTimestamp(tsp);
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "An error occurred", e);
-            }
 
-            LocalDate dt = LocalDate.parse(sourceAsMap.get("date").toString());
-            String source = (String) sourceAsMap.get("source");
-            String message = (String) sourceAsMap.get("message");
-            logg.setID(id);
-
-            logg.setSource(source);
-            logg.setMessage(message);
-            logg.setDate(dt);
-            String loglevel = (String) sourceAsMap.get("loglevel");
-            String logger = (String) sourceAsMap.get("logger");
-            String partnerid = (String) sourceAsMap.get("partnerid");
-            logg.setPartnerid(partnerid);
-            logg.setLogger(logger);
-            logg.setLoglevel(loglevel);
-            logs.add(logg);
-        }
-        return logs;
+    //fitler docs in given time range
+    @Override
+    public List<LogEntity> filterBytime(String start, String end) {
+        SearchRequest searchRequest = LogQueries.filterBytimeRequest(start, end);
+        return LogQueries.logs(search(searchRequest));
     }
 
     //fiters docs whose soucre belong to some specific options
     @Override
     public List<LogEntity> filterByterms() {
-        TermsQueryBuilder termsfilter = QueryBuilders.termsQuery("source", "standalone-reporting-sch-slave-deployment-6d978d7d87-6fxv7", "standalone-reporting-sch-slave-deployment-6d978d7d87-b9fvc");
+        return LogQueries.filterBytermsResult(search(LogQueries.filterBytermsRequest()));
+    }
 
-        QueryBuilder query = QueryBuilders.boolQuery().must(QueryBuilders.matchAllQuery()).filter(termsfilter);
+    //generic filter function wth any fied and any number of terms
+    @Override
+    public List<LogEntity> filterByTermsDynamic(String field, String... terms) throws ParseException {
 
+        terms = searchableTerms(field, terms);
+        if (terms.length == 0) {
+            return new ArrayList<>();
+        }
 
-        SearchSourceBuilder searchSource = new SearchSourceBuilder();
-        searchSource.query(query);
-        searchSource.from(0);
-        searchSource.size(4000);
+        SearchRequest searchRequest = LogQueries.filterByTermsDynamicRequest(field, terms);
+        return LogQueries.logs(search(searchRequest));
+    }
 
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices("loganalyzer");
-        searchRequest.source(searchSource);
-        SearchResponse response;
-        try {
-            response = client.search(searchRequest, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "An error occurred", e);
-            throw new RuntimeException(e);
+    //groupBys on given field
+    @Override
+    public Map<String, Long> groupByDynamic(String field) {
+        if (rollupQueries && RollupQueries.covers(field)) {
+            SearchRequest rollupRequest = RollupQueries.groupByDynamicRequest(field);
+            return cached(rollupRequest, () -> RollupQueries.groupByDynamicResult(search(rollupRequest), field));
         }
-        SearchHits hits = response.getHits();
-        List<LogEntity> logs = new ArrayList<>();
-        for (SearchHit hit : hits) {
-            Map<String, Object> sourceAsMap = hit.getSourceAsMap();
-            String id = hit.getId();
-            LogEntity logg = new LogEntity();
-            String timestamp = sourceAsMap.get("timestamp").toString();
-            SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-            formatter.setLenient(false);
-            Date tsp;
-            try {
-                tsp = formatter.parse(timestamp);
-                logg.setTimestamp(tsp);
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "An error occurred", e);
-                throw new RuntimeException(e);
-            }
+        SearchRequest searchRequest = LogQueries.groupByDynamicRequest(field);
+        return cached(searchRequest, () -> {
+                return LogQueries.groupByDynamicResult(search(searchRequest), field);
+        });
+    }
 
-            LocalDate dt = LocalDate.parse(sourceAsMap.get("date").toString());
-            String source = (String) sourceAsMap.get("source");
-            String message = (String) sourceAsMap.get("message");
-            logg.setID(id);
+    //projects only the fields specified
+    @Override
+    public List<Map<String, Object>> projectByDynamic(String... fields) {
+        return LogQueries.projectByDynamicResult(search(LogQueries.projectByDynamicRequest(fields)), fields);
+    }
 
-            logg.setSource(source);
-            logg.setMessage(message);
-            logg.setDate(dt);
-            logs.add(logg);
+    //rows of other loggers are dropped at ingestion, so they cannot match and need no search
+    private String[] searchableTerms(String field, String... terms) {
+        if (field.equals("logger")) {
+            return Arrays.stream(terms).filter(loggerAllowlist::contains).toArray(String[]::new);
         }
+        return terms;
+    }
 
-        return logs;
+    //cursor queries: every page is a search_after against a point in time, sorted by timestamp with
+    //_shard_doc as the tiebreaker, so page n costs the same as page 1 and no hit is skipped or repeated
+    @Override
+    public CursorPage<LogEntity> filterBytimeCursor(String start, String end, int size) {
+        long[] bounds = LogQueries.bounds(start, end);
+        return logsPage(openCursor(LogPartitions.indices(bounds[0], bounds[1]), SearchCursor.LOGS, LogQueries.timeQuery(start, end), null, size));
     }
 
-    //generic filter function wth any fied and any number of terms
     @Override
-    public List<LogEntity> filterByTermsDynamic(String field, String... terms) throws ParseException {
+    public CursorPage<LogEntity> filterBytermsCursor(int size) {
+        return logsPage(openCursor(SearchCursor.LOGS, LogQueries.sourceQuery(), List.of(LogEntityMapper.TIMESTAMP, LogEntityMapper.SOURCE, LogEntityMapper.MESSAGE), size));
+    }
 
+    @Override
+    public CursorPage<LogEntity> filterByTermsDynamicCursor(String field, int size, String... terms) {
+        terms = searchableTerms(field, terms);
+        if (terms.length == 0) {
+            return new CursorPage<>(new ArrayList<>(), null);
+        }
+        return logsPage(openCursor(SearchCursor.LOGS, QueryBuilders.termsQuery(field, terms), null, size));
+    }
 
-        TermsQueryBuilder termsQuery = QueryBuilders.termsQuery(field, terms);
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
-                .query(termsQuery);
+    @Override
+    public CursorPage<Map<String, Object>> projectByDynamicCursor(int size, String... fields) {
+        return projectionPage(openCursor(SearchCursor.PROJECTION, QueryBuilders.matchAllQuery(), Arrays.asList(fields), size));
+    }
 
-        sourceBuilder.size(10000);
+    @Override
+    public CursorPage<?> nextPage(String cursor) {
+        SearchCursor decoded = SearchCursor.decode(cursor, cursorKey());
+        checkPageSize(decoded.getSize());
+        return decoded.getKind().equals(SearchCursor.PROJECTION) ? projectionPage(decoded) : logsPage(decoded);
+    }
 
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices("loganalyzer");
-        searchRequest.source(sourceBuilder);
-        QueryPrinter.printQuery(searchRequest, client);
+    private byte[] cursorKey() {
+        return cursorSecret.isEmpty() ? randomCursorKey : cursorSecret.getBytes(StandardCharsets.UTF_8);
+    }
 
-        SearchResponse response;
-        try {
-            response = client.search(searchRequest, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "An error occurred", e);
-            throw new RuntimeException(e);
+    private static void checkPageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_PAGE_SIZE);
         }
+    }
 
-        SearchHits hits = response.getHits();
+    private SearchCursor openCursor(String kind, QueryBuilder query, List<String> fields, int size) {
+        return openCursor(new String[]{LogQueries.INDEX}, kind, query, fields, size);
+    }
 
-        List<LogEntity> logs = new ArrayList<>();
-        for (SearchHit hit : hits) {
-            Map<String, Object> sourceAsMap = hit.getSourceAsMap();
-            String id = hit.getId();
-            LogEntity logg = new LogEntity();
-            String timestamp = sourceAsMap.get("timestamp").toString();
-            SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-            formatter.setLenient(false);
-            Date tsp;
-            try {
-                tsp = formatter.parse(timestamp);
-                logg.setTimestamp(tsp);
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "An error occurred", e);
-                throw e;
-            }
-            LocalDate dt = LocalDate.parse(sourceAsMap.get("date").toString());
-            String source = (String) sourceAsMap.get("source");
-            String message = (String) sourceAsMap.get("message");
-            logg.setID(id);
-            logg.setSource(source);
-            logg.setMessage(message);
-            logg.setDate(dt);
-            String loglevel = (String) sourceAsMap.get("loglevel");
-            String logger = (String) sourceAsMap.get("logger");
-            String partnerid = (String) sourceAsMap.get("partnerid");
-            logg.setPartnerid(partnerid);
-            logg.setLogger(logger);
-            logg.setLoglevel(loglevel);
-            logs.add(logg);
-        }
-        return logs;
+    //the point in time is opened on the indices, the later pages only search what it holds
+    private SearchCursor openCursor(String[] indices, String kind, QueryBuilder query, List<String> fields, int size) {
+        checkPageSize(size);
+        return new SearchCursor(kind, openPointInTime(indices), Strings.toString(query), fields, size);
     }
 
-    //groupBys on given field
-    @Override
-    public Map<String, Long> groupByDynamic(String field) {
+    private CursorPage<LogEntity> logsPage(SearchCursor cursor) {
+        LogEntityMapper mapper = cursor.getFields() == null ? LogEntityMapper.ALL : new LogEntityMapper(cursor.getFields().toArray(new String[0]));
+        return page(cursor, mapper::map);
+    }
 
-        QueryBuilder query = QueryBuilders.matchAllQuery();
+    private CursorPage<Map<String, Object>> projectionPage(SearchCursor cursor) {
+        return page(cursor, hit -> LogQueries.project(hit, cursor.getFields()));
+    }
 
-        AggregationBuilder aggregation = AggregationBuilders
-                .terms("groupBy_" + field).field(field).size(4000);
+    private <T> CursorPage<T> page(SearchCursor cursor, Function<SearchHit, T> item) {
+        SearchResponse response = searchPointInTime(cursor);
+        SearchHit[] hits = response.getHits().getHits();
 
+        List<T> items = new ArrayList<>(hits.length);
+        for (SearchHit hit : hits) {
+            items.add(item.apply(hit));
+        }
 
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices("loganalyzer");
-        searchRequest.source(new SearchSourceBuilder().query(query).aggregation(aggregation));
-        QueryPrinter.printQuery(searchRequest, client);
+        //a short page is the last one, the point in time is released right away instead of at keep alive
+        if (hits.length < cursor.getSize()) {
+            closePointInTime(cursor.getPit());
+            return new CursorPage<>(items, null);
+        }
+        cursor.setAfter(Arrays.asList(hits[hits.length - 1].getSortValues()));
+        return new CursorPage<>(items, cursor.encode(cursorKey()));
+    }
 
-        SearchResponse searchResponse;
+    private String openPointInTime(String[] indices) {
+        Request request = new Request("POST", "/" + String.join(",", indices) + "/_pit");
+        request.addParameter("keep_alive", cursorKeepAlive);
+        request.addParameter("ignore_unavailable", "true");
         try {
-            searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
-
+            Response response = client.getLowLevelClient().performRequest(request);
+            try (XContentParser parser = parser(response)) {
+                return (String) parser.map().get("id");
+            }
         } catch (IOException e) {
             logger.log(Level.SEVERE, "An error occurred", e);
             throw new RuntimeException(e);
         }
-
-        Aggregations aggs = searchResponse.getAggregations();
-        Terms fieldaggs = aggs.get("groupBy_" + field);
-        int tot = 0;
-        List<? extends Terms.Bucket> sourceBuckets = fieldaggs.getBuckets();
-        Map<String, Long> mp = new HashMap<>();
-        for (Terms.Bucket sourceBucket : sourceBuckets) {
-            tot += sourceBucket.getDocCount();
-            mp.put(sourceBucket.getKeyAsString(), sourceBucket.getDocCount());
-        }
-        return mp;
     }
 
-    //projects only the fields specified
-    @Override
-    public List<Map<String, Object>> projectByDynamic(String... fields) {
-        QueryBuilder query = QueryBuilders.matchAllQuery();
-
-        SearchSourceBuilder searchSource = new SearchSourceBuilder();
-        searchSource.query(query);
-        searchSource.from(0);
-        searchSource.size(10000);
-
-        String[] includes = fields;
-        String[] excludes = null;
-        searchSource.fetchSource(includes, excludes);
-
-        SearchRequest searchRequest = new SearchRequest("loganalyzer");
-        searchRequest.source(searchSource);
-
-        SearchResponse response;
+    //the high level client of this version has no point in time support, so the body is sent as json
+    //and the response is parsed back into a SearchResponse
+    private SearchResponse searchPointInTime(SearchCursor cursor) {
+        Request request = new Request("POST", "/_search");
         try {
-            response = client.search(searchRequest, RequestOptions.DEFAULT);
+            XContentBuilder body = XContentFactory.jsonBuilder().startObject();
+            body.field("size", cursor.getSize());
+            body.field("track_total_hits", false);
+            body.rawField("query", new ByteArrayInputStream(cursor.getQuery().getBytes(StandardCharsets.UTF_8)), XContentType.JSON);
+            if (cursor.getFields() != null) {
+                body.startObject("_source").field("includes", cursor.getFields()).endObject();
+            }
+            body.startArray("sort")
+                    .startObject().field("timestamp", "asc").endObject()
+                    .startObject().field("_shard_doc", "asc").endObject()
+                    .endArray();
+            body.startObject("pit").field("id", cursor.getPit()).field("keep_alive", cursorKeepAlive).endObject();
+            if (cursor.getAfter() != null) {
+                body.field("search_after", cursor.getAfter());
+            }
+            body.endObject();
+            request.setJsonEntity(Strings.toString(body));
+
+            Response response = client.getLowLevelClient().performRequest(request);
+            byte[] bytes = EntityUtils.toByteArray(response.getEntity());
+            //es may hand out a new id for the point in time, the latest one has to be used
+            String pit = pitId(bytes);
+            if (pit != null) {
+                cursor.setPit(pit);
+            }
+            try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, bytes)) {
+                return SearchResponse.fromXContent(parser);
+            }
+        } catch (ResponseException e) {
+            if (e.getResponse().getStatusLine().getStatusCode() == 404) {
+                throw new IllegalArgumentException("Cursor has expired", e);
+            }
+            logger.log(Level.SEVERE, "An error occurred", e);
+            throw new RuntimeException(e);
         } catch (IOException e) {
             logger.log(Level.SEVERE, "An error occurred", e);
             throw new RuntimeException(e);
         }
+    }
 
-
-        SearchHits hits = response.getHits();
-        List<Map<String, Object>> logs = new ArrayList<>();
-        for (SearchHit hit : hits) {
-            Map<String, Object> sourceAsMap = hit.getSourceAsMap();
-            Map<String, Object> logEntry = new HashMap<>();
-            String id = hit.getId();
-            for (String field : fields) {
-                if (field.equals("id")) logEntry.put(field, id);
-                if (sourceAsMap.containsKey(field)) {
-                    logEntry.put(field, sourceAsMap.get(field));
+    //pit_id is the first field of the response, so this stops right away
+    private static String pitId(byte[] response) throws IOException {
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, response)) {
+            parser.nextToken();
+            while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                if (name.equals("pit_id")) {
+                    return parser.text();
                 }
+                parser.skipChildren();
             }
-            logs.add(logEntry);
+            return null;
         }
-        return logs;
+    }
+
+    private void closePointInTime(String pit) {
+        Request request = new Request("DELETE", "/_pit");
+        try {
+            request.setJsonEntity(Strings.toString(XContentFactory.jsonBuilder().startObject().field("id", pit).endObject()));
+            client.getLowLevelClient().performRequest(request);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "could not close point in time, it expires after " + cursorKeepAlive, e);
+        }
+    }
+
+    private static XContentParser parser(Response response) throws IOException {
+        return XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, response.getEntity().getContent());
     }
 
     @Override
     public Map<String, List<Map<String, Long>>> nestedGroupByDynamic(String field1, String field2) {
+        if (rollupQueries && RollupQueries.covers(field1, field2)) {
+            SearchRequest rollupRequest = RollupQueries.nestedGroupByDynamicRequest(field1, field2);
+            return cached(rollupRequest, () -> RollupQueries.nestedGroupByDynamicResult(search(rollupRequest)));
+        }
+        SearchRequest searchRequest = LogQueries.nestedGroupByDynamicRequest(field1, field2);
+        return cached(searchRequest, () -> {
+            return LogQueries.nestedGroupByDynamicResult(search(searchRequest));
+        });
+    }
 
-        QueryBuilder query = QueryBuilders.matchAllQuery();
-        AggregationBuilder aggregation = AggregationBuilders
-                .terms("field1").field(field1).subAggregation(AggregationBuilders.terms("field2").field(field2));
-
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices("loganalyzer");
-        searchRequest.source(new SearchSourceBuilder().query(query).aggregation(aggregation));
-        System.out.println(QueryPrinter.printQuery(searchRequest, client));
-        SearchResponse searchResponse;
-        try {
-            searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
+    @Override
+    public ColumnarGroups groupByColumns(List<String> levels, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        SearchRequest searchRequest = LogQueries.groupByColumnsRequest(levels, size);
+        return cached(searchRequest, () -> LogQueries.groupByColumnsResult(search(searchRequest), levels));
+    }
 
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "An error occurred", e);
-            throw new RuntimeException(e);
+    //the closed buckets are kept by the bucket cache, usually only the open tail of the range is searched
+    @Override
+    public TimeSeries timeSeries(String from, String to, int buckets, Map<String, List<String>> filters, String split, int splitSize) {
+        if (filters != null && filters.get("logger") != null) {
+            String[] loggers = searchableTerms("logger", filters.get("logger").toArray(new String[0]));
+            if (loggers.length == 0) {
+                return new TimeSeriesQuery(from, to, buckets, filters, split, splitSize).empty();
+            }
+            filters.put("logger", Arrays.asList(loggers));
         }
-        Aggregations aggs = searchResponse.getAggregations();
-        Terms field1aggs = aggs.get("field1");
+        TimeSeriesQuery query = new TimeSeriesQuery(from, to, buckets, filters, split, splitSize);
+        //the values of a split are chosen over the whole range, the buckets only count them
+        if (query.isSplit()) {
+            List<String> values = TimeSeriesQuery.splitValues(search(query.splitValuesRequest()));
+            if (values.isEmpty()) {
+                return query.empty();
+            }
+            query.splitBy(values);
+        }
+        boolean rollup = rollupQueries && query.rollable();
+        //buckets counted from both indices are dropped by a write to either
+        String indices = rollup ? LogQueries.INDEX + "," + LogRollup.INDEX : LogQueries.INDEX;
+        ClosedBucketCache.Lookup lookup = bucketCache.lookup(indices, query.signature(), query.from(), query.to(),
+                query.intervalMillis(), System.currentTimeMillis());
+        SortedMap<Long, Map<String, Long>> searched = new TreeMap<>();
+        if (!lookup.getRanges().isEmpty()) {
+            searched = rollup ? rollupBuckets(query, lookup.getRanges()) : query.buckets(search(query.request(lookup.getRanges())));
+        }
+        return query.result(lookup.complete(searched));
+    }
 
-        List<? extends Terms.Bucket> sourceBuckets = field1aggs.getBuckets();
-        Map<String, List<Map<String, Long>>> mp = new HashMap<>();
-        for (Terms.Bucket sourcebucket : sourceBuckets) {
-            String source = sourcebucket.getKeyAsString();
-            mp.put(source, new ArrayList<>());
-            Terms field2aggs = sourcebucket.getAggregations().get("field2");
+    //the whole hours of the ranges come from the rollup, the cut hours at their ends, usually the open one, from the logs
+    private SortedMap<Long, Map<String, Long>> rollupBuckets(TimeSeriesQuery query, List<long[]> ranges) {
+        List<long[]> whole = new ArrayList<>();
+        List<long[]> cut = new ArrayList<>();
+        RollupQueries.splitHours(ranges, whole, cut);
+        SortedMap<Long, Map<String, Long>> buckets = new TreeMap<>();
+        if (!whole.isEmpty()) {
+            buckets = query.rollupBuckets(search(query.rollupRequest(whole)));
+        }
+        if (!cut.isEmpty()) {
+            buckets = TimeSeriesQuery.merge(buckets, query.buckets(search(query.request(cut))));
+        }
+        return buckets;
+    }
 
-            for (Terms.Bucket field2bucket : field2aggs.getBuckets()) {
-                Map<String, Long> mp1 = new HashMap<>();
-                mp1.put(field2bucket.getKeyAsString(), field2bucket.getDocCount());
-                mp.get(source).add(mp1);
+    //a logger filter with no valid logger left cannot match anything, it is answered without a search
+    @Override
+    public LogQueryResult query(LogQuery query) {
+        if (query.getTerms() != null && query.getTerms().get("logger") != null) {
+            String[] loggers = searchableTerms("logger", query.getTerms().get("logger").toArray(new String[0]));
+            if (loggers.length == 0) {
+                //still validated, a bad query is refused whatever loggers it asks for
+                LogQueryCompiler.compile(query);
+                return LogQueryResult.empty(query.getGroupBy() != null && !query.getGroupBy().isEmpty());
             }
+            query.getTerms().put("logger", Arrays.asList(loggers));
+        }
+        return LogQueryCompiler.result(search(LogQueryCompiler.compile(query)), query);
+    }
 
+    //pages through a composite aggregation with its after key, the last page is the first one that is not full
+    @Override
+    public long streamGroupBy(int pageSize, Consumer<List<GroupBucket>> sink, String... fields) {
+        if (fields == null || fields.length == 0) {
+            throw new IllegalArgumentException("at least one field is required");
+        }
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        long buckets = 0;
+        Map<String, Object> after = null;
+        while (true) {
+            CompositeAggregation page = LogQueries.compositeGroupByResult(search(LogQueries.compositeGroupByRequest(pageSize, after, fields)));
+            List<GroupBucket> batch = LogQueries.groupBuckets(page);
+            if (!batch.isEmpty()) {
+                sink.accept(batch);
+                buckets += batch.size();
+            }
+            after = page.afterKey();
+            if (batch.size() < pageSize || after == null) {
+                return buckets;
+            }
         }
-        return mp;
     }
 
     //can count cardinality of any field except messsage
     @Override
     public Long cardinalityAggs(String field) {
-        AggregationBuilder aggregationBuilder = AggregationBuilders
-                .cardinality("unique_" + field) //agg name
-                .field(field);
-
-        SearchRequest searchRequest = new SearchRequest("loganalyzer");
-        searchRequest.source(new SearchSourceBuilder()
-                .aggregation(aggregationBuilder));
-        QueryPrinter.printQuery(searchRequest, client);
-        SearchResponse searchResponse = null;
-        try {
-            searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "An error occurred", e);
-            throw new RuntimeException(e);
-        }
-
-        Cardinality cardinalityAgg = searchResponse.getAggregations().get("unique_" + field);
-        long cardinality = cardinalityAgg.getValue();
-
-        return cardinality;
+        SearchRequest searchRequest = LogQueries.cardinalityRequest(field);
+        return cached(searchRequest, () -> {
+                return LogQueries.cardinalityResult(search(searchRequest), field);
+        });
     }
 
     //ann example og grouby aggregation, tot docs under a source
     @Override
     public Map<String, Long> groupBysource() {
         System.out.println(logRepository.findAll());
-        QueryBuilder query = QueryBuilders.matchAllQuery();
-
-        AggregationBuilder aggregation = AggregationBuilders
-                .terms("sources").field("source");
+        return LogQueries.groupBySourceResult(search(LogQueries.groupBySourceRequest()));
+    }
 
+    // an example of porjection query
+    @Override
+    public List<LogEntity> projectBySourceAndMessage() {
+        return LogQueries.projectBySourceAndMessageResult(search(LogQueries.projectBySourceAndMessageRequest()));
+    }
 
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices("loganalyzer");
-        searchRequest.source(new SearchSourceBuilder().query(query).aggregation(aggregation));
+    //cached aggregations and queries that need no search are answered directly, the rest go to es in one msearch
+    @Override
+    public List<BatchResult> batch(List<Map<String, Object>> queries) {
+        if (queries.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("a batch holds at most " + MAX_BATCH_SIZE + " queries");
+        }
+        BatchResult[] results = new BatchResult[queries.size()];
+        BatchQuery[] searched = new BatchQuery[queries.size()];
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        List<Integer> positions = new ArrayList<>();
+
+        for (int i = 0; i < queries.size(); i++) {
+            Map<String, Object> descriptor = queries.get(i);
+            Object type = descriptor == null ? null : descriptor.get("query");
+            BatchQuery query;
+            try {
+                query = BatchQuery.parse(descriptor, loggerAllowlist);
+            } catch (IllegalArgumentException e) {
+                results[i] = BatchResult.failed(type == null ? null : type.toString(), e.getMessage());
+                continue;
+            }
+            if (query.request == null) {
+                results[i] = BatchResult.ok(query.type, query.immediate);
+                continue;
+            }
+            if (query.cacheable) {
+                Object cached = aggregationCache.peek(LogQueries.indices(query.request), query.request.source().toString());
+                if (cached != null) {
+                    results[i] = BatchResult.ok(query.type, cached);
+                    continue;
+                }
+            }
+            searched[i] = query;
+            positions.add(i);
+            multiSearchRequest.add(query.request);
+        }
+        if (positions.isEmpty()) {
+            return Arrays.asList(results);
+        }
 
-        SearchResponse searchResponse;
+        long searchedAt = System.currentTimeMillis();
+        MultiSearchResponse.Item[] items;
         try {
-            searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
-
+            items = profiler.msearch(client, multiSearchRequest).getResponses();
         } catch (IOException e) {
             logger.log(Level.SEVERE, "An error occurred", e);
             throw new RuntimeException(e);
         }
-
-        Aggregations aggs = searchResponse.getAggregations();
-        Terms sourceaggs = aggs.get("sources");
-
-        List<? extends Terms.Bucket> sourceBuckets = sourceaggs.getBuckets();
-        Map<String, Long> mp = new HashMap<>();
-        for (Terms.Bucket sourceBucket : sourceBuckets) {
-            mp.put(sourceBucket.getKeyAsString(), sourceBucket.getDocCount());
+        for (int j = 0; j < items.length; j++) {
+            int i = positions.get(j);
+            BatchQuery query = searched[i];
+            if (items[j].isFailure()) {
+                results[i] = BatchResult.failed(query.type, items[j].getFailureMessage());
+                continue;
+            }
+            try {
+                Object result = query.result.apply(items[j].getResponse());
+                if (query.cacheable) {
+                    aggregationCache.put(LogQueries.indices(query.request), query.request.source().toString(), result, searchedAt);
+                }
+                results[i] = BatchResult.ok(query.type, result);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "An error occurred", e);
+                results[i] = BatchResult.failed(query.type, e.toString());
+            }
         }
-        return mp;
+        return Arrays.asList(results);
     }
 
-    // an example of porjection query
-    @Override
-    public List<LogEntity> projectBySourceAndMessage() {
-        QueryBuilder query = QueryBuilders.matchAllQuery();
-
-        SearchSourceBuilder searchSource = new SearchSourceBuilder();
-        searchSource.query(query);
-        searchSource.from(0);
-        searchSource.size(10000);
-
-        String[] includes = {"source", "message"};
-        String[] excludes = null;
-        searchSource.fetchSource(includes, excludes);
+    //the whole index aggregations are answered from the cache, two calls sending the same search share an entry
+    private <T> T cached(SearchRequest searchRequest, Supplier<T> search) {
+        return aggregationCache.get(LogQueries.indices(searchRequest), searchRequest.source().toString(), search);
+    }
 
-        SearchRequest searchRequest = new SearchRequest("loganalyzer");
-        searchRequest.source(searchSource);
+    //a scroll is owned by the caller that opened it, so scroll searches are never shared. neither are
+    //profiled ones, a search that joined another would have no timings of its own
+    private SearchResponse search(SearchRequest searchRequest) {
+        if (searchRequest.scroll() != null || QueryProfiler.isActive()) {
+            return send(searchRequest);
+        }
+        return searches.execute(LogQueries.key(searchRequest), () -> send(searchRequest));
+    }
 
-        SearchResponse response;
+    private SearchResponse send(SearchRequest searchRequest) {
         try {
-            response = client.search(searchRequest, RequestOptions.DEFAULT);
+            return profiler.search(client, searchRequest);
         } catch (IOException e) {
             logger.log(Level.SEVERE, "An error occurred", e);
             throw new RuntimeException(e);
         }
-
-
-        SearchHits hits = response.getHits();
-
-        List<LogEntity> logs = new ArrayList<>();
-        int tothits = 0;
-        for (SearchHit hit : hits) {
-            Map<String, Object> sourceAsMap = hit.getSourceAsMap();
-            tothits++;
-            String source = (String) sourceAsMap.get("source");
-            String message = (String) sourceAsMap.get("message");
-            LogEntity logg = new LogEntity();
-            logg.setID(String.valueOf(tothits));
-            logg.setSource(source);
-            logg.setMessage(message);
-            logs.add(logg);
-        }
-
-        return logs;
     }
 
 
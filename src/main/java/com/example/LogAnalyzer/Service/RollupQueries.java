@@ -0,0 +1,108 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Helper.ClosedBucketCache;
+import com.example.LogAnalyzer.Helper.LogRollup;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.Sum;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//the searches of LogQueries that the rollup index can answer, with the same results. a rollup document
+//stands for count logs, so a bucket is worth the sum of its counts instead of its doc count, and the
+//terms are ordered by that sum as the logs index orders them by doc count
+final class RollupQueries {
+
+    private RollupQueries() {
+    }
+
+    //the rollup has every combination of its fields, a group by on any other needs the logs
+    static boolean covers(String... fields) {
+        for (String field : fields) {
+            if (!LogRollup.FIELDS.contains(field)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static SearchRequest groupByDynamicRequest(String field) {
+        SearchRequest searchRequest = new SearchRequest(LogRollup.INDEX);
+        searchRequest.source(new SearchSourceBuilder().query(QueryBuilders.matchAllQuery()).size(0)
+                .aggregation(terms("groupBy_" + field, field).size(4000)));
+        return searchRequest;
+    }
+
+    static Map<String, Long> groupByDynamicResult(SearchResponse searchResponse, String field) {
+        Terms terms = searchResponse.getAggregations().get("groupBy_" + field);
+        Map<String, Long> mp = new HashMap<>();
+        for (Terms.Bucket bucket : terms.getBuckets()) {
+            mp.put(bucket.getKeyAsString(), count(bucket));
+        }
+        return mp;
+    }
+
+    static SearchRequest nestedGroupByDynamicRequest(String field1, String field2) {
+        SearchRequest searchRequest = new SearchRequest(LogRollup.INDEX);
+        searchRequest.source(new SearchSourceBuilder().query(QueryBuilders.matchAllQuery()).size(0)
+                .aggregation(terms("field1", field1).subAggregation(terms("field2", field2))));
+        return searchRequest;
+    }
+
+    static Map<String, List<Map<String, Long>>> nestedGroupByDynamicResult(SearchResponse searchResponse) {
+        Terms field1 = searchResponse.getAggregations().get("field1");
+        Map<String, List<Map<String, Long>>> mp = new HashMap<>();
+        for (Terms.Bucket bucket1 : field1.getBuckets()) {
+            List<Map<String, Long>> counts = new ArrayList<>();
+            Terms field2 = bucket1.getAggregations().get("field2");
+            for (Terms.Bucket bucket2 : field2.getBuckets()) {
+                counts.add(Map.of(bucket2.getKeyAsString(), count(bucket2)));
+            }
+            mp.put(bucket1.getKeyAsString(), counts);
+        }
+        return mp;
+    }
+
+    //a terms aggregation ordered by the logs of each term, most first
+    static TermsAggregationBuilder terms(String name, String field) {
+        return AggregationBuilders.terms(name).field(field)
+                .order(BucketOrder.compound(BucketOrder.aggregation(LogRollup.COUNT, false), BucketOrder.key(true)))
+                .subAggregation(AggregationBuilders.sum(LogRollup.COUNT).field(LogRollup.COUNT));
+    }
+
+    //the logs a bucket stands for, the sum of the counts of its rollup documents
+    static long count(MultiBucketsAggregation.Bucket bucket) {
+        Sum sum = bucket.getAggregations().get(LogRollup.COUNT);
+        return (long) sum.getValue();
+    }
+
+    //splits time ranges into the whole hours they cover, which the rollup answers, and the cut hours at their
+    //ends, which only the logs can. the ranges are from their first millisecond up to but not including their second
+    static void splitHours(List<long[]> ranges, List<long[]> whole, List<long[]> cut) {
+        for (long[] range : ranges) {
+            long from = range[0] == ClosedBucketCache.UNBOUNDED_FROM ? range[0] : -Math.floorDiv(-range[0], LogRollup.HOUR_MILLIS) * LogRollup.HOUR_MILLIS;
+            long to = range[1] == ClosedBucketCache.UNBOUNDED_TO ? range[1] : Math.floorDiv(range[1], LogRollup.HOUR_MILLIS) * LogRollup.HOUR_MILLIS;
+            if (from >= to) {
+                cut.add(range);
+                continue;
+            }
+            if (range[0] < from) {
+                cut.add(new long[]{range[0], from});
+            }
+            whole.add(new long[]{from, to});
+            if (to < range[1]) {
+                cut.add(new long[]{to, range[1]});
+            }
+        }
+    }
+}
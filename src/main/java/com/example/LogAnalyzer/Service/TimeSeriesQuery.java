@@ -0,0 +1,305 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Helper.LogRollup;
+import com.example.LogAnalyzer.Helper.TimeSeries;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.IncludeExclude;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+//a date histogram over a time range with at most a given number of buckets. the interval is the smallest
+//step of the ladder that fits the range into them, so a five minute range gets seconds and a year gets weeks,
+//and the response and the work es does stay the same size however far the range is zoomed.
+//empty buckets are not sent by es, they are filled in with zeros here. the values of a split are the splitSize
+//with the most logs over the whole range, found by a terms search first. every bucket then counts just those
+//values, so it is exact and complete on its own and can be kept by ClosedBucketCache once it has ended.
+//an interval of whole hours can also be counted from the rollup index, see LogRollup
+final class TimeSeriesQuery {
+
+    static final int DEFAULT_BUCKETS = 100;
+    static final int MAX_BUCKETS = 1000;
+    static final int DEFAULT_SPLIT_SIZE = 10;
+    static final int MAX_SPLIT_SIZE = 100;
+
+    static final String HISTOGRAM = "histogram";
+    static final String SPLIT = "split";
+
+    //the key of the only series when there is no split
+    private static final String ALL = "";
+
+    //fixed lengths, so a bucket is found from its key with a division. es aligns them on the epoch
+    private static final String[] INTERVALS = {"1s", "5s", "10s", "30s", "1m", "5m", "10m", "30m",
+            "1h", "3h", "6h", "12h", "1d", "7d", "30d", "365d"};
+
+    private static final Set<String> FILTERS = Set.of("source", "loglevel", "logger", "partnerid");
+    private static final Set<String> SPLITS = Set.of("source", "loglevel", "logger");
+
+    private final long from;
+    private final long to;
+    private final String interval;
+    private final long intervalMillis;
+    private final Map<String, List<String>> filters;
+    private final String split;
+    private final int splitSize;
+    //the values a split counts, sorted. null until splitBy
+    private List<String> splitValues;
+
+    //the filters are field to accepted values, a log has to match one value of every field.
+    //a query that is not valid throws IllegalArgumentException
+    TimeSeriesQuery(String from, String to, int buckets, Map<String, List<String>> filters, String split, int splitSize) {
+        this.from = millis(from, "from");
+        this.to = millis(to, "to");
+        if (this.to < this.from) {
+            throw new IllegalArgumentException("to must not be before from");
+        }
+        if (buckets < 1 || buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("buckets must be between 1 and " + MAX_BUCKETS);
+        }
+        if (filters != null) {
+            for (String field : filters.keySet()) {
+                if (!FILTERS.contains(field)) {
+                    throw new IllegalArgumentException("cannot filter by " + field);
+                }
+            }
+        }
+        if (split != null && !SPLITS.contains(split)) {
+            throw new IllegalArgumentException("cannot split by " + split);
+        }
+        if (splitSize < 1 || splitSize > MAX_SPLIT_SIZE) {
+            throw new IllegalArgumentException("splitSize must be between 1 and " + MAX_SPLIT_SIZE);
+        }
+        this.filters = filters == null ? Map.of() : filters;
+        this.split = split;
+        this.splitSize = splitSize;
+        this.interval = interval(this.from, this.to, buckets);
+        this.intervalMillis = intervalMillis(interval);
+    }
+
+    private static String interval(long from, long to, int buckets) {
+        for (String interval : INTERVALS) {
+            if (count(from, to, intervalMillis(interval)) <= buckets) {
+                return interval;
+            }
+        }
+        throw new IllegalArgumentException("the range needs more than " + buckets + " buckets of " + INTERVALS[INTERVALS.length - 1]);
+    }
+
+    private static long intervalMillis(String interval) {
+        return TimeValue.parseTimeValue(interval, "interval").millis();
+    }
+
+    long from() {
+        return from;
+    }
+
+    long to() {
+        return to;
+    }
+
+    String interval() {
+        return interval;
+    }
+
+    long intervalMillis() {
+        return intervalMillis;
+    }
+
+    boolean isSplit() {
+        return split != null;
+    }
+
+    //the splitSize values with the most logs over the whole range
+    SearchRequest splitValuesRequest() {
+        List<long[]> range = List.of(new long[]{from, to + 1});
+        SearchRequest searchRequest = LogQueries.within(new SearchRequest(), LogQueries.bounds(range));
+        searchRequest.source(new SearchSourceBuilder().query(query("timestamp", range)).size(0)
+                .aggregation(AggregationBuilders.terms(SPLIT).field(split).size(splitSize)));
+        return searchRequest;
+    }
+
+    static List<String> splitValues(SearchResponse response) {
+        Terms terms = response.getAggregations().get(SPLIT);
+        List<String> values = new ArrayList<>();
+        for (Terms.Bucket term : terms.getBuckets()) {
+            values.add(term.getKeyAsString());
+        }
+        return values;
+    }
+
+    //fixes the values the buckets count, they are part of the signature
+    void splitBy(List<String> values) {
+        splitValues = values.stream().sorted().toList();
+    }
+
+    //counts the split values in a bucket, all of them fit
+    private TermsAggregationBuilder splitTerms(TermsAggregationBuilder terms) {
+        if (splitValues == null) {
+            throw new IllegalStateException("the split values are not known yet");
+        }
+        return terms.size(Math.max(1, splitValues.size()))
+                .includeExclude(new IncludeExclude(splitValues.toArray(new String[0]), null));
+    }
+
+    //the search without its time range, what the buckets of every range of this query have in common
+    String signature() {
+        return request(List.of()).source().toString();
+    }
+
+    //the histogram of the time ranges, each from its first millisecond up to but not including its second
+    SearchRequest request(List<long[]> ranges) {
+        AggregationBuilder aggregation = AggregationBuilders.dateHistogram(HISTOGRAM).field("timestamp")
+                .fixedInterval(new DateHistogramInterval(interval)).minDocCount(1);
+        if (split != null) {
+            aggregation.subAggregation(splitTerms(AggregationBuilders.terms(SPLIT).field(split)));
+        }
+        SearchRequest searchRequest = ranges.isEmpty() ? new SearchRequest(LogQueries.INDEX) : LogQueries.within(new SearchRequest(), LogQueries.bounds(ranges));
+        searchRequest.source(new SearchSourceBuilder().query(query("timestamp", ranges)).size(0).aggregation(aggregation));
+        return searchRequest;
+    }
+
+    //the rollup counts whole hours, it answers a histogram whose buckets are made of them
+    boolean rollable() {
+        return intervalMillis % LogRollup.HOUR_MILLIS == 0;
+    }
+
+    //the same histogram from the rollup index, for ranges of whole hours
+    SearchRequest rollupRequest(List<long[]> ranges) {
+        AggregationBuilder aggregation = AggregationBuilders.dateHistogram(HISTOGRAM).field(LogRollup.HOUR)
+                .fixedInterval(new DateHistogramInterval(interval)).minDocCount(1)
+                .subAggregation(AggregationBuilders.sum(LogRollup.COUNT).field(LogRollup.COUNT));
+        if (split != null) {
+            aggregation.subAggregation(splitTerms(RollupQueries.terms(SPLIT, split)));
+        }
+        SearchRequest searchRequest = new SearchRequest(LogRollup.INDEX);
+        searchRequest.source(new SearchSourceBuilder().query(query(LogRollup.HOUR, ranges)).size(0).aggregation(aggregation));
+        return searchRequest;
+    }
+
+    private BoolQueryBuilder query(String timeField, List<long[]> ranges) {
+        BoolQueryBuilder query = QueryBuilders.boolQuery();
+        if (!ranges.isEmpty()) {
+            query.filter(LogQueries.timeRanges(timeField, ranges));
+        }
+        for (Map.Entry<String, List<String>> filter : filters.entrySet()) {
+            query.filter(QueryBuilders.termsQuery(filter.getKey(), filter.getValue()));
+        }
+        return query;
+    }
+
+    //the counts of every series by the start of the bucket
+    SortedMap<Long, Map<String, Long>> buckets(SearchResponse response) {
+        return buckets(response, false);
+    }
+
+    SortedMap<Long, Map<String, Long>> rollupBuckets(SearchResponse response) {
+        return buckets(response, true);
+    }
+
+    private SortedMap<Long, Map<String, Long>> buckets(SearchResponse response, boolean rollup) {
+        SortedMap<Long, Map<String, Long>> buckets = new TreeMap<>();
+        Histogram histogram = response.getAggregations().get(HISTOGRAM);
+        for (Histogram.Bucket bucket : histogram.getBuckets()) {
+            Map<String, Long> counts = new HashMap<>();
+            if (split == null) {
+                counts.put(ALL, rollup ? RollupQueries.count(bucket) : bucket.getDocCount());
+            } else {
+                Terms terms = bucket.getAggregations().get(SPLIT);
+                for (Terms.Bucket term : terms.getBuckets()) {
+                    counts.put(term.getKeyAsString(), rollup ? RollupQueries.count(term) : term.getDocCount());
+                }
+            }
+            buckets.put(LogQueries.bucketStart(bucket), counts);
+        }
+        return buckets;
+    }
+
+    //a bucket can be counted in parts, say its whole hours by the rollup and the cut one by the logs
+    static SortedMap<Long, Map<String, Long>> merge(SortedMap<Long, Map<String, Long>> buckets, SortedMap<Long, Map<String, Long>> more) {
+        SortedMap<Long, Map<String, Long>> merged = new TreeMap<>(buckets);
+        for (Map.Entry<Long, Map<String, Long>> bucket : more.entrySet()) {
+            merged.merge(bucket.getKey(), bucket.getValue(), (counts, moreCounts) -> {
+                Map<String, Long> sum = new HashMap<>(counts);
+                moreCounts.forEach((key, count) -> sum.merge(key, count, Long::sum));
+                return sum;
+            });
+        }
+        return merged;
+    }
+
+    //a split has a series per split value that was counted, the most logs first
+    TimeSeries result(SortedMap<Long, Map<String, Long>> buckets) {
+        long[] timestamps = timestamps();
+        Map<String, long[]> series = new HashMap<>();
+        Map<String, Long> totals = new HashMap<>();
+        long first = Math.floorDiv(from, intervalMillis);
+        for (Map.Entry<Long, Map<String, Long>> bucket : buckets.entrySet()) {
+            long index = Math.floorDiv(bucket.getKey(), intervalMillis) - first;
+            if (index < 0 || index >= timestamps.length) {
+                continue;
+            }
+            for (Map.Entry<String, Long> count : bucket.getValue().entrySet()) {
+                series.computeIfAbsent(count.getKey(), key -> new long[timestamps.length])[(int) index] = count.getValue();
+                totals.merge(count.getKey(), count.getValue(), Long::sum);
+            }
+        }
+        if (split == null) {
+            long[] counts = series.getOrDefault(ALL, new long[timestamps.length]);
+            return new TimeSeries(interval, timestamps, List.of(new TimeSeries.Series(null, counts)));
+        }
+        List<TimeSeries.Series> result = new ArrayList<>();
+        totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(splitSize)
+                .forEach(total -> result.add(new TimeSeries.Series(total.getKey(), series.get(total.getKey()))));
+        return new TimeSeries(interval, timestamps, result);
+    }
+
+    //the answer when nothing can match, every bucket is zero
+    TimeSeries empty() {
+        return result(new TreeMap<>());
+    }
+
+    private long[] timestamps() {
+        long first = Math.floorDiv(from, intervalMillis) * intervalMillis;
+        long[] timestamps = new long[count(from, to, intervalMillis)];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = first + i * intervalMillis;
+        }
+        return timestamps;
+    }
+
+    //the buckets the range touches, a range shorter than the interval can still straddle two
+    private static int count(long from, long to, long intervalMillis) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.floorDiv(to, intervalMillis) - Math.floorDiv(from, intervalMillis) + 1);
+    }
+
+    private static long millis(String time, String name) {
+        if (time == null) {
+            throw new IllegalArgumentException(name + " is required");
+        }
+        try {
+            return Instant.parse(time).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be an ISO 8601 instant: " + time, e);
+        }
+    }
+}
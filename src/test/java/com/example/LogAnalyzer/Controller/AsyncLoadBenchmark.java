@@ -0,0 +1,171 @@
+package com.example.LogAnalyzer.Controller;
+
+import com.example.LogAnalyzer.Helper.AggregationCache;
+import com.example.LogAnalyzer.Helper.ClosedBucketCache;
+import com.example.LogAnalyzer.Helper.QueryProfiler;
+import com.example.LogAnalyzer.Service.AsyncLogServiceImp;
+import com.example.LogAnalyzer.Service.LogServiceImp;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.servlet.context.AnnotationConfigServletWebServerApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//load test of the blocking and the async cardinality endpoint with the same, fixed number of tomcat threads.
+//es is faked by a local http server that answers every search after a fixed delay, so the numbers show how many
+//requests the threads can keep in flight and not how fast es is. not a unit test, run it by hand:
+//  mvn test-compile && java -cp target/test-classes:target/classes:<test classpath> \
+//      -Dthreads=8 -Dclients=200 -Ddelay=50 -Dseconds=10 com.example.LogAnalyzer.Controller.AsyncLoadBenchmark
+public class AsyncLoadBenchmark {
+
+    private static final int THREADS = Integer.getInteger("threads", 8);
+    private static final int CLIENTS = Integer.getInteger("clients", 200);
+    private static final int DELAY_MILLIS = Integer.getInteger("delay", 50);
+    private static final int SECONDS = Integer.getInteger("seconds", 10);
+
+    private static final byte[] CARDINALITY_RESPONSE = ("{\"took\":1,\"timed_out\":false,"
+            + "\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+            + "\"hits\":{\"total\":{\"value\":0,\"relation\":\"eq\"},\"max_score\":null,\"hits\":[]},"
+            + "\"aggregations\":{\"cardinality#unique_source\":{\"value\":5}}}").getBytes(StandardCharsets.UTF_8);
+
+    private static int esPort;
+
+    public static void main(String[] args) throws Exception {
+        HttpServer es = fakeElasticsearch();
+        esPort = es.getAddress().getPort();
+        AnnotationConfigServletWebServerApplicationContext context = new AnnotationConfigServletWebServerApplicationContext(App.class);
+        try {
+            int port = context.getWebServer().getPort();
+            HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(Executors.newFixedThreadPool(4)).build();
+            System.out.printf("tomcat threads %d, concurrent clients %d, es delay %d ms%n", THREADS, CLIENTS, DELAY_MILLIS);
+            for (String path : new String[]{"/api/log/cardinality", "/api/async/log/cardinality"}) {
+                URI uri = URI.create("http://localhost:" + port + path + "?fieldValue=source");
+                //warm up the jit and the connection pools first
+                run(http, uri, 3);
+                Result result = run(http, uri, SECONDS);
+                long ok = result.ok.sum();
+                System.out.printf("%-28s %8.1f requests/s, mean latency %6.1f ms, %d errors%n",
+                        path, ok * 1.0 / SECONDS, result.latencyNanos.sum() / 1e6 / Math.max(1, ok), result.errors.sum());
+            }
+        } finally {
+            context.close();
+            es.stop(0);
+            System.exit(0);
+        }
+    }
+
+    //every client sends its next request as soon as the previous one is answered, until the time is up
+    private static Result run(HttpClient http, URI uri, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Result result = new Result();
+        CountDownLatch done = new CountDownLatch(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            send(http, HttpRequest.newBuilder(uri).GET().build(), deadline, result, done);
+        }
+        done.await();
+        return result;
+    }
+
+    private static void send(HttpClient http, HttpRequest request, long deadline, Result result, CountDownLatch done) {
+        long start = System.nanoTime();
+        if (start >= deadline) {
+            done.countDown();
+            return;
+        }
+        http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+            if (System.nanoTime() <= deadline) {
+                if (e == null && response.statusCode() == 200) {
+                    result.ok.increment();
+                    result.latencyNanos.add(System.nanoTime() - start);
+                } else {
+                    result.errors.increment();
+                }
+            }
+            send(http, request, deadline, result, done);
+        });
+    }
+
+    private static HttpServer fakeElasticsearch() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 1000);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            try {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(DELAY_MILLIS);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, CARDINALITY_RESPONSE.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(CARDINALITY_RESPONSE);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static class Result {
+        //updated from the http client's threads
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder latencyNanos = new LongAdder();
+    }
+
+    //registered by hand and not a @Configuration, so the component scan of the @WebMvcTest tests does not pick it up
+    @EnableWebMvc
+    static class App {
+
+        @Bean
+        public TomcatServletWebServerFactory webServerFactory() {
+            TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+            factory.addConnectorCustomizers(connector -> {
+                AbstractProtocol<?> protocol = (AbstractProtocol<?>) connector.getProtocolHandler();
+                protocol.setMaxThreads(THREADS);
+                protocol.setMinSpareThreads(THREADS);
+            });
+            return factory;
+        }
+
+        @Bean
+        public DispatcherServlet dispatcherServlet() {
+            return new DispatcherServlet();
+        }
+
+        @Bean(destroyMethod = "close")
+        public RestHighLevelClient client() {
+            return new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", esPort, "http"))
+                    .setHttpClientConfigCallback(httpClient -> httpClient.setMaxConnPerRoute(1000).setMaxConnTotal(1000)));
+        }
+
+        //only the client is used by the cardinality query, the cache keeps nothing so every request reaches es
+        @Bean
+        public LogController logController(RestHighLevelClient client) {
+            return new LogController(new LogServiceImp(null, null, client, null, new AggregationCache(0, 0, 0), new QueryProfiler(500, 0, 0), new ClosedBucketCache(0, 0, 0)));
+        }
+
+        @Bean
+        public AsyncLogController asyncLogController(RestHighLevelClient client) {
+            return new AsyncLogController(new AsyncLogServiceImp(client, null, new QueryProfiler(500, 0, 0)));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.LogAnalyzer.Controller;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Repository.LoggerRepository;
+import com.example.LogAnalyzer.Service.AsyncLogService;
+import com.example.LogAnalyzer.Service.LogService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest
+class AsyncLogControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private LogService logService;
+
+    @MockBean
+    private AsyncLogService asyncLogService;
+
+    @MockBean
+    private LoggerRepository loggerRepository;
+
+    @Test
+    public void cardinalityIsWrittenWhenTheFutureCompletes() throws Exception {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        when(asyncLogService.cardinalityAggs("source")).thenReturn(future);
+
+        MvcResult result = mockMvc.perform(get("/api/async/log/cardinality").param("fieldValue", "source"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        future.complete(5L);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("5"));
+    }
+
+    @Test
+    public void filterByTerms() throws Exception {
+        LogEntity log = new LogEntity();
+        log.setSource("source1");
+        List<LogEntity> logs = Collections.singletonList(log);
+        when(asyncLogService.filterByTermsDynamic("source", "source1")).thenReturn(CompletableFuture.completedFuture(logs));
+
+        MvcResult result = mockMvc.perform(post("/api/async/log/filterByTerms")
+                        .content(new ObjectMapper().writeValueAsString(Map.of("field", "source", "terms", List.of("source1"))))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].source").value("source1"));
+    }
+
+    @Test
+    public void nestedGroupBy() throws Exception {
+        Map<String, List<Map<String, Long>>> grouped = Map.of("source1", List.of(Map.of("INFO", 2L)));
+        when(asyncLogService.nestedGroupByDynamic("source", "loglevel")).thenReturn(CompletableFuture.completedFuture(grouped));
+
+        MvcResult result = mockMvc.perform(get("/api/async/log/nestedGroupBy")
+                        .param("field1Value", "source")
+                        .param("field2Value", "loglevel"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.source1[0].INFO").value(2));
+    }
+
+    @Test
+    public void projectBy() throws Exception {
+        List<Map<String, Object>> rows = List.of(Map.of("source", "source1"));
+        when(asyncLogService.projectByDynamic("source")).thenReturn(CompletableFuture.completedFuture(rows));
+
+        MvcResult result = mockMvc.perform(post("/api/async/log/projectBy")
+                        .content(new ObjectMapper().writeValueAsString(Map.of("terms", List.of("source"))))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].source").value("source1"));
+    }
+
+    @Test
+    public void badBody() throws Exception {
+        mockMvc.perform(post("/api/async/log/projectBy")
+                        .content("{\"terms\":[[\"source\"]]}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        MvcResult result = mockMvc.perform(post("/api/async/log/filterByTerms")
+                        .content("{\"field\":\"source\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(asyncLogService);
+    }
+}
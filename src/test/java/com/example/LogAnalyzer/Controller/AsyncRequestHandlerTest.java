@@ -0,0 +1,111 @@
+package com.example.LogAnalyzer.Controller;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Repository.LoggerRepository;
+import com.example.LogAnalyzer.Service.AsyncLogService;
+import com.example.LogAnalyzer.Service.LogService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest
+class AsyncRequestHandlerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private LogService logService;
+
+    @MockBean
+    private AsyncLogService asyncLogService;
+
+    @MockBean
+    private LoggerRepository loggerRepository;
+
+    @Test
+    public void testGroupBy() throws Exception {
+        when(asyncLogService.groupByDynamic("source")).thenReturn(CompletableFuture.completedFuture(Map.of("source1", 3L)));
+
+        mockMvc.perform(asyncDispatch(start(Map.of("query", "groupBy", "field", "source"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.source1").value(3));
+    }
+
+    @Test
+    public void testSearchScroll() throws Exception {
+        LogEntity log = new LogEntity();
+        log.setMessage("message1");
+        List<LogEntity> logs = Collections.singletonList(log);
+        when(asyncLogService.searchUsingScroll()).thenReturn(CompletableFuture.completedFuture(logs));
+
+        mockMvc.perform(asyncDispatch(start(Map.of("query", "search_scroll"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].message").value("message1"));
+    }
+
+    //the repository search has no async api and is answered by the blocking service
+    @Test
+    public void testSearch() throws Exception {
+        List<LogEntity> logs = Collections.singletonList(new LogEntity());
+        when(logService.search()).thenReturn(logs);
+
+        mockMvc.perform(asyncDispatch(start(Map.of("query", "search"))))
+                .andExpect(status().isOk())
+                .andExpect(content().json(new ObjectMapper().writeValueAsString(logs)));
+    }
+
+    @Test
+    public void testFailedQuery() throws Exception {
+        when(asyncLogService.cardinalityAggs("source")).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("es is down")));
+
+        MvcResult result = start(Map.of("query", "cardinality", "field", "source"));
+
+        assertTrue(result.getAsyncResult() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testUnknownQuery() throws Exception {
+        mockMvc.perform(asyncDispatch(start(Map.of("query", "unknown"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    //a list of the wrong type is rejected by the binding, a missing one by the handler
+    @Test
+    public void testBadBody() throws Exception {
+        mockMvc.perform(post("/api/async")
+                        .content("{\"query\":\"projectBy\",\"fields\":\"source\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(asyncDispatch(start(Map.of("query", "termsFilter", "field", "source"))))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(asyncDispatch(start(Map.of("field", "source"))))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(asyncLogService);
+    }
+
+    private MvcResult start(Map<String, Object> requestBody) throws Exception {
+        return mockMvc.perform(post("/api/async")
+                        .content(new ObjectMapper().writeValueAsString(requestBody))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.LogAnalyzer.Controller;
+
+import com.example.LogAnalyzer.Helper.AggregationCache;
+import com.example.LogAnalyzer.Helper.AggregationCacheStats;
+import com.example.LogAnalyzer.Helper.ClosedBucketCache;
+import com.example.LogAnalyzer.Helper.KnownLogIds;
+import com.example.LogAnalyzer.Repository.LoggerRepository;
+import com.example.LogAnalyzer.Service.AsyncLogService;
+import com.example.LogAnalyzer.Service.LogService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest
+class CacheControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private LogService logService;
+
+    @MockBean
+    private AsyncLogService asyncLogService;
+
+    @MockBean
+    private AggregationCache aggregationCache;
+
+    @MockBean
+    private ClosedBucketCache bucketCache;
+
+    @MockBean
+    private KnownLogIds knownIds;
+
+    @MockBean
+    private LoggerRepository loggerRepository;
+
+    @Test
+    public void statsTest() throws Exception {
+        when(aggregationCache.stats()).thenReturn(new AggregationCacheStats(9, 1, 0.9, 0, 3, 12, 2, 1));
+
+        mockMvc.perform(get("/api/cache/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits").value(9))
+                .andExpect(jsonPath("$.hitRate").value(0.9))
+                .andExpect(jsonPath("$.weight").value(12));
+    }
+
+    @Test
+    public void invalidateTest() throws Exception {
+        mockMvc.perform(delete("/api/cache"))
+                .andExpect(status().isNoContent());
+
+        verify(aggregationCache).invalidateAll();
+        verify(bucketCache).invalidateAll();
+        verify(knownIds).clear();
+    }
+}
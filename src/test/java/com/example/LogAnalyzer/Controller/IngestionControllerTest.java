@@ -0,0 +1,94 @@
+package com.example.LogAnalyzer.Controller;
+
+import com.example.LogAnalyzer.Helper.IngestionJobStatus;
+import com.example.LogAnalyzer.Helper.IngestionStats;
+import com.example.LogAnalyzer.Helper.LogRollup;
+import com.example.LogAnalyzer.Repository.LoggerRepository;
+import com.example.LogAnalyzer.Service.AsyncLogService;
+import com.example.LogAnalyzer.Service.LogService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest
+class IngestionControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private LogService logService;
+
+    @MockBean
+    private AsyncLogService asyncLogService;
+
+    @MockBean
+    private LoggerRepository loggerRepository;
+
+    @MockBean
+    private LogRollup rollup;
+
+    private final IngestionStats stats = new IngestionStats("logs.xlsx", IngestionStats.State.COMPLETED, 1000,
+            List.of(new IngestionStats.Stage("read", 1, 500, 500, 0, 0, 20)), null);
+
+    @Test
+    public void ingestTest() throws Exception {
+        when(logService.savelogdata()).thenReturn(stats);
+
+        mockMvc.perform(post("/api/ingest"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("COMPLETED"))
+                .andExpect(jsonPath("$.stages[0].processed").value(500));
+    }
+
+    @Test
+    public void bulkLoadIngestTest() throws Exception {
+        when(logService.savelogdata(true)).thenReturn(stats);
+
+        mockMvc.perform(post("/api/ingest").param("bulkLoad", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("COMPLETED"));
+    }
+
+    @Test
+    public void statsTest() throws Exception {
+        when(logService.ingestionStats()).thenReturn(stats);
+
+        mockMvc.perform(get("/api/ingest/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.file").value("logs.xlsx"))
+                .andExpect(jsonPath("$.stages[0].name").value("read"));
+    }
+
+    @Test
+    public void jobTest() throws Exception {
+        when(logService.ingestionJob()).thenReturn(new IngestionJobStatus("logs.xlsx", "ab12", 0, IngestionJobStatus.State.RESUMABLE,
+                0, 41, 50, 40, 0, 1, 0, 9, null, 1000));
+
+        mockMvc.perform(get("/api/ingest/job"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("RESUMABLE"))
+                .andExpect(jsonPath("$.committedRow").value(41))
+                .andExpect(jsonPath("$.rowsRejected").value(9))
+                .andExpect(jsonPath("$.rowsPerSecond").value(50.0));
+    }
+
+    @Test
+    public void rebuildRollupTest() throws Exception {
+        when(rollup.rebuild()).thenReturn(42L);
+
+        mockMvc.perform(post("/api/ingest/rollup"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.documents").value(42));
+    }
+}
@@ -1,7 +1,13 @@
 package com.example.LogAnalyzer.Controller;
 
 import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Helper.ColumnarGroups;
+import com.example.LogAnalyzer.Helper.CursorPage;
+import com.example.LogAnalyzer.Helper.ExportStats;
+import com.example.LogAnalyzer.Helper.GroupBucket;
+import com.example.LogAnalyzer.Helper.TimeSeries;
 import com.example.LogAnalyzer.Repository.LoggerRepository;
+import com.example.LogAnalyzer.Service.AsyncLogService;
 import com.example.LogAnalyzer.Service.LogService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -10,15 +16,27 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.text.ParseException;
 import java.util.*;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest
@@ -31,6 +49,9 @@ class LogControllerTest {
     @MockBean
     private LogService logService;
 
+    @MockBean
+    private AsyncLogService asyncLogService;
+
     @MockBean
     private LoggerRepository loggerRepository;
 
@@ -91,6 +112,223 @@ class LogControllerTest {
         }
     }
 
+    @Test
+    void streamNdjson() throws Exception {
+        LogEntity log = new LogEntity();
+        log.setID("1");
+        log.setSource("source1");
+        when(logService.streamUsingScroll(any())).thenAnswer(invocation -> {
+            Consumer<List<LogEntity>> sink = invocation.getArgument(0);
+            sink.accept(List.of(log));
+            sink.accept(List.of(log));
+            return 2L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/log/search/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"));
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":\"1\""));
+    }
+
+    @Test
+    void streamCsvUsingPage() throws Exception {
+        when(logService.streamUsingPage(any())).thenReturn(0L);
+
+        MvcResult result = mockMvc.perform(get("/api/log/search/stream").param("format", "csv").param("mode", "page"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("id,timestamp,date,source,message,loglevel,logger,partnerid\r\n"));
+    }
+
+    @Test
+    void groupByColumns() throws Exception {
+        ColumnarGroups groups = ColumnarGroups.builder(List.of("source", "timestamp:1h"))
+                .add(new String[]{"a", "2023-06-16T17:00:00.000Z"}, 3)
+                .build();
+        when(logService.groupByColumns(List.of("source", "timestamp:1h"), 100)).thenReturn(groups);
+
+        mockMvc.perform(get("/api/log/groupBy/columns").param("levels", "source,timestamp:1h"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.columns[1]").value("timestamp:1h"))
+                .andExpect(jsonPath("$.values[0][0]").value("a"))
+                .andExpect(jsonPath("$.keys[0][0]").value(0))
+                .andExpect(jsonPath("$.counts[0]").value(3));
+    }
+
+    @Test
+    void groupByColumnsInvalidLevel() throws Exception {
+        when(logService.groupByColumns(List.of("message"), 100)).thenThrow(new IllegalArgumentException("cannot group by message"));
+
+        mockMvc.perform(get("/api/log/groupBy/columns").param("levels", "message"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void histogram() throws Exception {
+        TimeSeries series = new TimeSeries("1h", new long[]{0, 3_600_000}, List.of(new TimeSeries.Series("ERROR", new long[]{2, 0})));
+        when(logService.timeSeries("2023-06-16T00:00:00Z", "2023-06-16T01:00:00Z", 50,
+                Map.of("source", List.of("web", "db")), "loglevel", 10)).thenReturn(series);
+
+        mockMvc.perform(get("/api/log/histogram").param("from", "2023-06-16T00:00:00Z").param("to", "2023-06-16T01:00:00Z")
+                        .param("buckets", "50").param("split", "loglevel").param("source", "web", "db"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.interval").value("1h"))
+                .andExpect(jsonPath("$.timestamps[1]").value(3_600_000))
+                .andExpect(jsonPath("$.series[0].key").value("ERROR"))
+                .andExpect(jsonPath("$.series[0].counts[0]").value(2));
+    }
+
+    @Test
+    void histogramInvalidRange() throws Exception {
+        when(logService.timeSeries(eq("later"), anyString(), eq(100), any(), eq(null), eq(10))).thenThrow(new IllegalArgumentException("from must be an ISO 8601 instant"));
+
+        mockMvc.perform(get("/api/log/histogram").param("from", "later").param("to", "2023-06-16T01:00:00Z"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void groupByStreamCsv() throws Exception {
+        when(logService.streamGroupBy(eq(500), any(), eq("source"), eq("partnerid"))).thenAnswer(invocation -> {
+            Consumer<List<GroupBucket>> sink = invocation.getArgument(1);
+            Map<String, Object> key = new LinkedHashMap<>();
+            key.put("source", "web,1");
+            key.put("partnerid", "p1");
+            sink.accept(List.of(new GroupBucket(key, 4)));
+            return 1L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/log/groupBy/stream").param("fields", "source,partnerid").param("size", "500").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("source,partnerid,count\r\n\"web,1\",p1,4\r\n"));
+    }
+
+    @Test
+    void groupByStreamBadSize() throws Exception {
+        mockMvc.perform(get("/api/log/groupBy/stream").param("fields", "source").param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamSliced() throws Exception {
+        when(logService.exportSliced(eq(4), eq(500), any())).thenAnswer(invocation -> {
+            Consumer<List<LogEntity>> sink = invocation.getArgument(2);
+            sink.accept(List.of(new LogEntity()));
+            return new ExportStats(4, 500, 5, 10, List.of(1L, 0L, 0L, 0L));
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/log/search/stream").param("mode", "sliced").param("slices", "4").param("size", "500"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        assertEquals(1, result.getResponse().getContentAsString().split("\n").length);
+    }
+
+    //a refused slice count is a 400 before the stream starts
+    @Test
+    void streamSlicedTooMany() throws Exception {
+        doThrow(new IllegalArgumentException("slices must be between 1 and 16")).when(logService).checkExport(100000, 0);
+
+        mockMvc.perform(get("/api/log/search/stream").param("mode", "sliced").param("slices", "100000"))
+                .andExpect(status().isBadRequest());
+        verify(logService, never()).exportSliced(anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void exportThroughput() throws Exception {
+        when(logService.exportSliced(eq(2), eq(0), any())).thenReturn(new ExportStats(2, 1000, 4, 500, List.of(600L, 400L)));
+
+        mockMvc.perform(get("/api/log/search/stream/throughput").param("slices", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.documents").value(1000))
+                .andExpect(jsonPath("$.documentsPerSecond").value(2000.0));
+    }
+
+    @Test
+    void streamUnsupported() throws Exception {
+        mockMvc.perform(get("/api/log/search/stream").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/log/search/stream").param("mode", "all"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void cursorPages() throws Exception {
+        LogEntity log = new LogEntity();
+        log.setID("1");
+        when(logService.filterBytimeCursor("start", "end", 2)).thenReturn(new CursorPage<>(List.of(log), "token"));
+        doReturn(new CursorPage<>(List.of(log), null)).when(logService).nextPage("token");
+
+        mockMvc.perform(get("/api/log/cursor/filterByTime").param("start", "start").param("end", "end").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value("1"))
+                .andExpect(jsonPath("$.cursor").value("token"));
+        mockMvc.perform(get("/api/log/cursor/next").param("cursor", "token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").doesNotExist());
+    }
+
+    @Test
+    void cursorProjection() throws Exception {
+        when(logService.projectByDynamicCursor(eq(1000), eq("source"))).thenReturn(new CursorPage<>(List.of(Map.of("source", "source1")), null));
+
+        mockMvc.perform(post("/api/log/cursor/projectBy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"terms\":[\"source\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].source").value("source1"));
+    }
+
+    @Test
+    void cursorTerms() throws Exception {
+        when(logService.filterByTermsDynamicCursor(eq("source"), eq(50), eq("source1"))).thenReturn(new CursorPage<>(List.of(), null));
+
+        mockMvc.perform(post("/api/log/cursor/filterByTerms")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"field\":\"source\",\"terms\":[\"source1\"],\"size\":50}"))
+                .andExpect(status().isOk());
+    }
+
+    //a size that is not a number or a missing list is rejected before the service is called
+    @Test
+    void cursorBadBody() throws Exception {
+        mockMvc.perform(post("/api/log/cursor/filterByTerms")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"field\":\"source\",\"terms\":[\"source1\"],\"size\":\"many\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/log/cursor/filterByTerms")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"field\":\"source\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/log/cursor/projectBy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"terms\":\"source\",\"size\":10}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(logService);
+    }
+
+    @Test
+    void cursorInvalid() throws Exception {
+        when(logService.nextPage("expired")).thenThrow(new IllegalArgumentException("Cursor has expired"));
+
+        mockMvc.perform(get("/api/log/cursor/next").param("cursor", "expired"))
+                .andExpect(status().isBadRequest());
+    }
+
     //
     @Test
     void getCardinality() {
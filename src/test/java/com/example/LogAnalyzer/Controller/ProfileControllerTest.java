@@ -0,0 +1,74 @@
+package com.example.LogAnalyzer.Controller;
+
+import com.example.LogAnalyzer.Helper.QueryProfiler;
+import com.example.LogAnalyzer.Repository.LoggerRepository;
+import com.example.LogAnalyzer.Service.AsyncLogService;
+import com.example.LogAnalyzer.Service.LogService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest
+class ProfileControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private LogService logService;
+
+    @MockBean
+    private AsyncLogService asyncLogService;
+
+    @MockBean
+    private LoggerRepository loggerRepository;
+
+    //the service runs while the profile is active, the profile is then readable by the returned id
+    @Test
+    public void profiledRequestTest() throws Exception {
+        when(logService.cardinalityAggs("source")).thenAnswer(invocation -> QueryProfiler.isActive() ? 1L : 0L);
+
+        MvcResult result = mockMvc.perform(get("/api/log/cardinality")
+                        .param("fieldValue", "source")
+                        .header(QueryProfiler.HEADER, "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(QueryProfiler.ID_HEADER))
+                .andReturn();
+        assertEquals("1", result.getResponse().getContentAsString());
+        assertFalse(QueryProfiler.isActive());
+
+        String id = result.getResponse().getHeader(QueryProfiler.ID_HEADER);
+        mockMvc.perform(get("/api/profile/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(id))
+                .andExpect(jsonPath("$.esProfile").value(false))
+                .andExpect(jsonPath("$.searches").isArray());
+    }
+
+    @Test
+    public void unprofiledRequestTest() throws Exception {
+        when(logService.cardinalityAggs("source")).thenAnswer(invocation -> QueryProfiler.isActive() ? 1L : 0L);
+
+        MvcResult result = mockMvc.perform(get("/api/log/cardinality").param("fieldValue", "source"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(QueryProfiler.ID_HEADER))
+                .andReturn();
+        assertEquals("0", result.getResponse().getContentAsString());
+    }
+
+    @Test
+    public void unknownProfileTest() throws Exception {
+        mockMvc.perform(get("/api/profile/missing"))
+                .andExpect(status().isNotFound());
+    }
+}
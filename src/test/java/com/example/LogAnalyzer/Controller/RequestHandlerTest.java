@@ -1,7 +1,12 @@
 package com.example.LogAnalyzer.Controller;
 
 import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Helper.BatchResult;
+import com.example.LogAnalyzer.Helper.LogQuery;
+import com.example.LogAnalyzer.Helper.LogQueryResult;
+import com.example.LogAnalyzer.Helper.QueryGroup;
 import com.example.LogAnalyzer.Repository.LoggerRepository;
+import com.example.LogAnalyzer.Service.AsyncLogService;
 import com.example.LogAnalyzer.Service.LogService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +27,9 @@ import static org.mockito.Mockito.when;
 import java.text.ParseException;
 import java.util.*;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.mockito.ArgumentMatchers.eq;
@@ -36,6 +44,9 @@ class RequestHandlerTest {
     @MockBean
     private LogService logService;
 
+    @MockBean
+    private AsyncLogService asyncLogService;
+
 
     @MockBean
     private LoggerRepository loggerRepository;
@@ -297,4 +308,64 @@ class RequestHandlerTest {
 
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void testBatch() throws Exception {
+        List<Map<String, Object>> requestBody = List.of(
+                Map.of("query", "cardinality", "field", "source"),
+                Map.of("query", "search"));
+        when(logService.batch(requestBody)).thenReturn(List.of(
+                BatchResult.ok("cardinality", 5L),
+                BatchResult.failed("search", "search reads the whole index and cannot be batched, send it to /api")));
+
+        mockMvc.perform(post("/api/batch")
+                        .content(new ObjectMapper().writeValueAsString(requestBody))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].result").value(5))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].query").value("search"))
+                .andExpect(jsonPath("$[1].error").exists());
+    }
+
+    @Test
+    public void testBatchTooLarge() throws Exception {
+        when(logService.batch(anyList())).thenThrow(new IllegalArgumentException("a batch holds at most 100 queries"));
+
+        mockMvc.perform(post("/api/batch")
+                        .content("[{\"query\":\"cardinality\",\"field\":\"source\"}]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        LogQueryResult result = new LogQueryResult(12, List.of(Map.of("source", "web")),
+                List.of(new QueryGroup("logger1", 12, null)));
+        when(logService.query(any(LogQuery.class))).thenAnswer(invocation -> {
+            LogQuery query = invocation.getArgument(0);
+            assertEquals(List.of("ERROR"), query.getTerms().get("loglevel"));
+            assertEquals(List.of("logger"), query.getGroupBy());
+            return result;
+        });
+
+        mockMvc.perform(post("/api/query")
+                        .content("{\"terms\":{\"loglevel\":[\"ERROR\"]},\"fields\":[\"source\"],\"groupBy\":[\"logger\"]}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(12))
+                .andExpect(jsonPath("$.hits[0].source").value("web"))
+                .andExpect(jsonPath("$.groups[0].key").value("logger1"))
+                .andExpect(jsonPath("$.groups[0].groups").doesNotExist());
+    }
+
+    @Test
+    public void testInvalidQuery() throws Exception {
+        when(logService.query(any(LogQuery.class))).thenThrow(new IllegalArgumentException("cannot use message in terms"));
+
+        mockMvc.perform(post("/api/query")
+                        .content("{\"terms\":{\"message\":[\"x\"]}}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AggregationCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Map<String, Long> load() {
+        loads.incrementAndGet();
+        return Map.of("source1", 2L, "source2", 3L);
+    }
+
+    @Test
+    public void sameSearchIsLoadedOnce() {
+        AggregationCache cache = new AggregationCache(60, 1000, 0);
+
+        assertEquals(load(), cache.get("loganalyzer", "{groupBy source}", this::load));
+        assertEquals(load(), cache.get("loganalyzer", "{groupBy source}", this::load));
+        cache.get("loganalyzer", "{groupBy logger}", this::load);
+
+        //two loads for the expected values plus one per distinct search
+        assertEquals(4, loads.get());
+        AggregationCacheStats stats = cache.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(2, stats.getEntries());
+        assertEquals(4, stats.getWeight());
+    }
+
+    @Test
+    public void writeDropsTheEntriesOfTheIndex() {
+        AggregationCache cache = new AggregationCache(60, 1000, 0);
+        cache.get("loganalyzer", "{cardinality}", () -> 5L);
+        cache.get("loganalyzer*", "{cardinality}", () -> 5L);
+        cache.get("other", "{cardinality}", () -> 5L);
+
+        cache.onLogsIndexed(new LogsIndexedEvent("loganalyzer", 10));
+
+        assertEquals(7L, (Long) cache.get("loganalyzer", "{cardinality}", () -> 7L));
+        assertEquals(7L, (Long) cache.get("loganalyzer*", "{cardinality}", () -> 7L));
+        assertEquals(5L, (Long) cache.get("other", "{cardinality}", () -> 7L));
+        assertEquals(1, cache.stats().getInvalidations());
+    }
+
+    //a search of the partitions of a time range is dropped by a write to one of them
+    @Test
+    public void writeDropsTheEntriesOfAPartitionList() {
+        AggregationCache cache = new AggregationCache(60, 1000, 0);
+        cache.get("loganalyzer,loganalyzer-2023.06.16", "{cardinality}", () -> 5L);
+        cache.get("loganalyzer,loganalyzer-2023.06.17", "{cardinality}", () -> 5L);
+
+        cache.onLogsIndexed(new LogsIndexedEvent("loganalyzer-2023.06.16", 10));
+
+        assertEquals(7L, (Long) cache.get("loganalyzer,loganalyzer-2023.06.16", "{cardinality}", () -> 7L));
+        assertEquals(5L, (Long) cache.get("loganalyzer,loganalyzer-2023.06.17", "{cardinality}", () -> 7L));
+    }
+
+    //a load that started before a write may have missed its logs, its result is returned but not kept
+    @Test
+    public void loadDuringAWriteIsNotCached() {
+        AggregationCache cache = new AggregationCache(60, 1000, 0);
+
+        Long first = cache.get("loganalyzer", "{cardinality}", () -> {
+            cache.onLogsIndexed(new LogsIndexedEvent("loganalyzer-2023.06.16", 1));
+            return 5L;
+        });
+
+        assertEquals(5L, first);
+        assertEquals(0, cache.stats().getEntries());
+        assertEquals(7L, (Long) cache.get("loganalyzer", "{cardinality}", () -> 7L));
+        assertEquals(7L, (Long) cache.get("loganalyzer", "{cardinality}", () -> 9L));
+    }
+
+    //right after a write es may not have refreshed yet, so nothing is cached
+    @Test
+    public void resultsAreNotCachedWithinTheRefreshGrace() {
+        AggregationCache cache = new AggregationCache(60, 1000, 60000);
+        cache.onLogsIndexed(new LogsIndexedEvent("loganalyzer", 1));
+
+        cache.get("loganalyzer", "{cardinality}", () -> 5L);
+        assertEquals(7L, (Long) cache.get("loganalyzer", "{cardinality}", () -> 7L));
+        assertEquals(2, cache.stats().getBypassed());
+        assertEquals(0, cache.stats().getEntries());
+    }
+
+    @Test
+    public void weightCountsBucketsAndValues() {
+        assertEquals(1, AggregationCache.weigh(5L));
+        assertEquals(2, AggregationCache.weigh(Map.of("a", 1L, "b", 2L)));
+        assertEquals(3, AggregationCache.weigh(Map.of("a", List.of(Map.of("x", 1L), Map.of("y", 2L)), "b", List.of(Map.of("z", 3L)))));
+        assertEquals(1, AggregationCache.weigh(Map.of()));
+        //two rows of two keys and a count
+        assertEquals(6, AggregationCache.weigh(ColumnarGroups.builder(List.of("source", "logger"))
+                .add(new String[]{"a", "x"}, 1).add(new String[]{"b", "y"}, 2).build()));
+        assertEquals(9, AggregationCache.weigh(new TimeSeries("1h", new long[3],
+                List.of(new TimeSeries.Series("a", new long[3]), new TimeSeries.Series("b", new long[3])))));
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    @Test
+    public void noFalseNegativesTest() {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            values.add("com.spr.logger.Logger" + i);
+        }
+        BloomFilter filter = new BloomFilter(values, 0.01);
+
+        for (String value : values) {
+            assertTrue(filter.mightContain(value));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("com.spr.other.Logger" + i)) {
+                falsePositives++;
+            }
+        }
+        //sized for 1%, allow some slack
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    public void emptyFilterTest() {
+        assertFalse(new BloomFilter(List.of(), 0.01).mightContain("logger"));
+    }
+}
@@ -0,0 +1,425 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.IndicesClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.client.indices.GetIndexResponse;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BulkIndexerTest {
+
+    @Mock
+    private RestHighLevelClient client;
+
+    private List<LogEntity> logs(int count) {
+        List<LogEntity> logs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LogEntity log = new LogEntity();
+            log.setSource("source" + i);
+            log.setMessage("message" + i);
+            logs.add(log);
+        }
+        return logs;
+    }
+
+    //answers every bulk with success, except the first item of each bulk which fails
+    private void stubBulk(List<BulkRequest> requests) {
+        doAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            ActionListener<BulkResponse> listener = invocation.getArgument(2);
+            requests.add(request);
+            BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+            items[0] = new BulkItemResponse(0, DocWriteRequest.OpType.INDEX,
+                    new BulkItemResponse.Failure("loganalyzer", "_doc", null, new IllegalArgumentException("mapping")));
+            for (int i = 1; i < items.length; i++) {
+                items[i] = new BulkItemResponse(i, DocWriteRequest.OpType.INDEX,
+                        new IndexResponse(new ShardId("loganalyzer", "_na_", 0), "_doc", "id" + i, 1, 1, 1, true));
+            }
+            listener.onResponse(new BulkResponse(items, 3));
+            return null;
+        }).when(client).bulkAsync(any(BulkRequest.class), any(RequestOptions.class), any());
+    }
+
+    @Test
+    public void batchesByDocumentCountTest() {
+        BulkIndexer indexer = new BulkIndexer(client);
+        ReflectionTestUtils.setField(indexer, "bulkActions", 2);
+        List<BulkRequest> requests = new ArrayList<>();
+        stubBulk(requests);
+
+        BulkStats stats = indexer.index(logs(5));
+
+        //2 + 2 + the remaining 1 flushed on close
+        assertEquals(3, requests.size());
+        assertEquals(3, stats.getBulkRequests());
+        assertEquals(3, stats.getFailed());
+        assertEquals(2, stats.getDocuments());
+        assertEquals(2, indexer.totals().getDocuments());
+    }
+
+    @Test
+    public void failedBulkIsCountedTest() {
+        BulkIndexer indexer = new BulkIndexer(client);
+        doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(2);
+            listener.onFailure(new java.io.IOException("connection refused"));
+            return null;
+        }).when(client).bulkAsync(any(BulkRequest.class), any(RequestOptions.class), any());
+
+        BulkStats stats = indexer.index(logs(3));
+
+        assertEquals(0, stats.getDocuments());
+        assertEquals(3, stats.getFailed());
+    }
+
+    //every bulk that wrote something is announced, the failed one is not
+    @Test
+    public void indexedDocumentsArePublishedTest() {
+        List<Object> events = new ArrayList<>();
+        BulkIndexer indexer = new BulkIndexer(client, events::add);
+        ReflectionTestUtils.setField(indexer, "bulkActions", 2);
+        stubBulk(new ArrayList<>());
+
+        indexer.index(logs(5));
+
+        //the last bulk holds one document, which fails
+        assertEquals(2, events.size());
+        assertEquals("loganalyzer-undated", ((LogsIndexedEvent) events.get(0)).getIndex());
+        assertEquals(1, ((LogsIndexedEvent) events.get(0)).getDocuments());
+    }
+
+    //the event bounds the timestamps written, a log without one makes the range unknown
+    @Test
+    public void indexedTimestampsArePublishedTest() {
+        List<Object> events = new ArrayList<>();
+        BulkIndexer indexer = new BulkIndexer(client, events::add);
+        stubBulk(new ArrayList<>());
+        List<LogEntity> logs = logs(3);
+        logs.get(0).setTimestamp(new Date(2000));
+        logs.get(1).setTimestamp(new Date(1000));
+        logs.get(2).setTimestamp(new Date(3000));
+
+        indexer.index(logs);
+        indexer.index(logs(2));
+
+        LogsIndexedEvent dated = (LogsIndexedEvent) events.get(0);
+        assertEquals(1000, dated.getFrom());
+        assertEquals(3000, dated.getTo());
+        assertEquals(Long.MIN_VALUE, ((LogsIndexedEvent) events.get(1)).getFrom());
+    }
+
+    @Test
+    public void toSourceTest() {
+        LogEntity log = new LogEntity();
+        log.setTimestamp(new Date(1686937934691L));
+        log.setDate(LocalDate.of(2023, 6, 16));
+        log.setSource("source");
+        log.setMessage("message");
+        log.setLoglevel("ERROR");
+        log.setLogger("logger");
+        log.setPartnerid("1001.0");
+
+        Map<String, Object> source = BulkIndexer.toSource(log);
+
+        assertEquals("2023-06-16T17:52:14.691Z", source.get("timestamp"));
+        assertEquals("2023-06-16", source.get("date"));
+        assertEquals("1001.0", source.get("partnerid"));
+        assertEquals(7, source.size());
+    }
+
+    @Test
+    public void idIsKeptTest() {
+        BulkIndexer indexer = new BulkIndexer(client);
+        List<BulkRequest> requests = new ArrayList<>();
+        stubBulk(requests);
+        LogEntity log = logs(1).get(0);
+        log.setID("abc");
+
+        indexer.index(List.of(log));
+
+        assertEquals("abc", ((IndexRequest) requests.get(0).requests().get(0)).id());
+        assertEquals(DocWriteRequest.OpType.CREATE, requests.get(0).requests().get(0).opType());
+    }
+
+    //every log added with a callback is told its result once its bulk has answered
+    @Test
+    public void resultsAreCalledBackTest() {
+        BulkIndexer indexer = new BulkIndexer(client);
+        stubBulk(new ArrayList<>());
+        List<BulkIndexer.Result> results = new ArrayList<>();
+
+        BulkIndexer.Session session = indexer.open();
+        logs(3).forEach(log -> session.add(log, results::add));
+        session.close();
+
+        assertEquals(List.of(BulkIndexer.Result.FAILED, BulkIndexer.Result.WRITTEN, BulkIndexer.Result.WRITTEN), results);
+    }
+
+    //the first item is rejected with a 429 and retried alone, its result is still the first log's and not the
+    //one of the item that failed for good
+    @Test
+    public void retriedItemsKeepTheirLogTest() {
+        KnownLogIds knownIds = new KnownLogIds(100);
+        stubPartitions("loganalyzer-undated");
+        BulkIndexer indexer = new BulkIndexer(client, event -> {
+        }, null, null, null, knownIds);
+        List<BulkRequest> requests = new ArrayList<>();
+        doAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            ActionListener<BulkResponse> listener = invocation.getArgument(2);
+            requests.add(request);
+            List<BulkItemResponse> items = new ArrayList<>();
+            for (int i = 0; i < request.numberOfActions(); i++) {
+                String id = request.requests().get(i).id();
+                if (id.equals("a") && requests.size() == 1) {
+                    items.add(new BulkItemResponse(i, DocWriteRequest.OpType.CREATE, new BulkItemResponse.Failure("loganalyzer-undated", "_doc", id,
+                            new EsRejectedExecutionException("rejected execution of bulk"))));
+                } else if (id.equals("b")) {
+                    items.add(new BulkItemResponse(i, DocWriteRequest.OpType.CREATE, new BulkItemResponse.Failure("loganalyzer-undated", "_doc", id,
+                            new IllegalArgumentException("mapping"))));
+                } else {
+                    items.add(new BulkItemResponse(i, DocWriteRequest.OpType.CREATE,
+                            new IndexResponse(new ShardId("loganalyzer-undated", "_na_", 0), "_doc", id, 1, 1, 1, true)));
+                }
+            }
+            listener.onResponse(new BulkResponse(items.toArray(new BulkItemResponse[0]), 3));
+            return null;
+        }).when(client).bulkAsync(any(BulkRequest.class), any(RequestOptions.class), any());
+        List<LogEntity> logs = logs(3);
+        logs.get(0).setID("a");
+        logs.get(1).setID("b");
+        logs.get(2).setID("c");
+        Map<String, BulkIndexer.Result> results = new ConcurrentHashMap<>();
+
+        BulkIndexer.Session session = indexer.open();
+        logs.forEach(log -> session.add(log, result -> results.put(log.getID(), result)));
+        session.close();
+
+        assertEquals(2, requests.size());
+        assertEquals(1, requests.get(1).numberOfActions());
+        assertEquals("a", requests.get(1).requests().get(0).id());
+        assertEquals(Map.of("a", BulkIndexer.Result.WRITTEN, "b", BulkIndexer.Result.FAILED, "c", BulkIndexer.Result.WRITTEN), results);
+        assertEquals(2, session.stats().getDocuments());
+        assertEquals(1, session.stats().getFailed());
+        assertTrue(knownIds.contains("a"));
+        assertFalse(knownIds.contains("b"));
+    }
+
+    private void stubPartitions(String... names) {
+        try {
+            IndicesClient indices = mock(IndicesClient.class);
+            GetIndexResponse response = mock(GetIndexResponse.class);
+            when(response.getIndices()).thenReturn(names);
+            when(client.indices()).thenReturn(indices);
+            when(indices.get(any(GetIndexRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(response);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //a known id whose partition is gone, deleted outside the application, is sent again
+    @Test
+    public void knownIdOfAMissingPartitionIsSentTest() {
+        KnownLogIds knownIds = new KnownLogIds(100);
+        knownIds.add("a");
+        stubPartitions("loganalyzer-2023.06.16");
+        BulkIndexer indexer = new BulkIndexer(client, event -> {
+        }, null, null, null, knownIds);
+        List<BulkRequest> requests = new ArrayList<>();
+        stubBulk(requests);
+        List<LogEntity> logs = logs(2);
+        logs.get(0).setID("a");
+        logs.get(1).setID("b");
+
+        indexer.index(logs);
+
+        assertEquals(1, requests.size());
+        assertEquals(2, requests.get(0).numberOfActions());
+    }
+
+    //an id es already holds is a duplicate, it is remembered and the next time not sent at all
+    @Test
+    public void duplicateIdsAreSkippedTest() {
+        KnownLogIds knownIds = new KnownLogIds(100);
+        stubPartitions("loganalyzer-undated");
+        BulkIndexer indexer = new BulkIndexer(client, event -> {
+        }, null, null, null, knownIds);
+        List<BulkRequest> requests = new ArrayList<>();
+        doAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            ActionListener<BulkResponse> listener = invocation.getArgument(2);
+            requests.add(request);
+            BulkItemResponse[] items = new BulkItemResponse[]{
+                    new BulkItemResponse(0, DocWriteRequest.OpType.CREATE, new BulkItemResponse.Failure("loganalyzer-undated", "_doc", "a",
+                            new VersionConflictEngineException(new ShardId("loganalyzer-undated", "_na_", 0), "a", "document already exists"))),
+                    new BulkItemResponse(1, DocWriteRequest.OpType.CREATE,
+                            new IndexResponse(new ShardId("loganalyzer-undated", "_na_", 0), "_doc", "b", 1, 1, 1, true))};
+            listener.onResponse(new BulkResponse(items, 3));
+            return null;
+        }).when(client).bulkAsync(any(BulkRequest.class), any(RequestOptions.class), any());
+        List<LogEntity> logs = logs(2);
+        logs.get(0).setID("a");
+        logs.get(1).setID("b");
+
+        BulkStats first = indexer.index(logs);
+        BulkStats second = indexer.index(logs);
+
+        assertEquals(1, first.getDocuments());
+        assertEquals(1, first.getDuplicates());
+        assertEquals(0, first.getFailed());
+        assertEquals(0, second.getDocuments());
+        assertEquals(2, second.getDuplicates());
+        assertEquals(1, requests.size());
+        assertEquals(3, indexer.totals().getDuplicates());
+    }
+
+    //the rollup counts the logs es accepted and is written after every bulk, before its logs are reported,
+    //so a session that dies halfway has no written log the rollup is missing
+    @Test
+    public void acceptedLogsAreRolledUpTest() {
+        LogRollup rollup = mock(LogRollup.class);
+        LogRollup.Session rollupSession = mock(LogRollup.Session.class);
+        when(rollup.isEnabled()).thenReturn(true);
+        when(rollup.open()).thenReturn(rollupSession);
+        BulkIndexer indexer = new BulkIndexer(client, event -> {
+        }, rollup, null, null, null);
+        ReflectionTestUtils.setField(indexer, "bulkActions", 2);
+        stubBulk(new ArrayList<>());
+        List<LogEntity> logs = logs(5);
+        Consumer<BulkIndexer.Result> callback = mock(Consumer.class);
+
+        BulkIndexer.Session session = indexer.open();
+        logs.forEach(log -> session.add(log, callback));
+        session.close();
+
+        verify(rollupSession).add(logs.get(1));
+        verify(rollupSession).add(logs.get(3));
+        verify(rollupSession, times(2)).add(any());
+        verify(rollupSession, times(3)).flush();
+        verify(rollupSession, never()).close();
+        InOrder order = inOrder(rollupSession, callback);
+        order.verify(rollupSession).add(logs.get(1));
+        order.verify(rollupSession).flush();
+        order.verify(callback, times(2)).accept(any());
+    }
+
+    //a bulk load prepares each partition before its first log and restores them once every bulk has answered
+    @Test
+    public void bulkLoadPreparesEveryPartitionOnceTest() {
+        BulkLoad bulkLoad = mock(BulkLoad.class);
+        BulkLoad.Load load = mock(BulkLoad.Load.class);
+        when(bulkLoad.start()).thenReturn(load);
+        BulkIndexer indexer = new BulkIndexer(client, event -> {
+        }, null, null, bulkLoad, null);
+        stubBulk(new ArrayList<>());
+        List<LogEntity> logs = logs(3);
+        logs.get(0).setTimestamp(new Date(1686900000000L));
+
+        BulkIndexer.Session session = indexer.open(true);
+        logs.forEach(session::add);
+        session.close();
+
+        verify(load).prepare("loganalyzer-2023.06.16");
+        verify(load, times(2)).prepare("loganalyzer-undated");
+        verify(load).finish();
+    }
+
+    //the loaded partitions are announced again after the final refresh, bounded by their day
+    @Test
+    public void loadedPartitionsAreAnnouncedAfterTheRefreshTest() {
+        BulkLoad bulkLoad = mock(BulkLoad.class);
+        BulkLoad.Load load = mock(BulkLoad.Load.class);
+        when(bulkLoad.start()).thenReturn(load);
+        List<Object> events = new ArrayList<>();
+        doAnswer(invocation -> events.add("refreshed")).when(load).finish();
+        BulkIndexer indexer = new BulkIndexer(client, events::add, null, null, bulkLoad, null);
+        stubBulk(new ArrayList<>());
+        List<LogEntity> logs = logs(3);
+        logs.get(1).setTimestamp(new Date(1686900000000L));
+
+        BulkIndexer.Session session = indexer.open(true);
+        logs.forEach(session::add);
+        session.close();
+
+        //one event per partition of the bulk, then one per partition after the refresh
+        assertEquals(5, events.size());
+        assertEquals("refreshed", events.get(2));
+        LogsIndexedEvent dated = events.subList(3, 5).stream().map(LogsIndexedEvent.class::cast)
+                .filter(event -> event.getIndex().equals("loganalyzer-2023.06.16")).findFirst().orElseThrow();
+        assertEquals(1, dated.getDocuments());
+        assertEquals(LogPartitions.dayStart("loganalyzer-2023.06.16"), dated.getFrom());
+        assertEquals(LogPartitions.dayStart("loganalyzer-2023.06.16") + LogPartitions.DAY_MILLIS - 1, dated.getTo());
+    }
+
+    //a bulk that has not answered when the wait ends fails its logs, the load keeps its settings and the late
+    //answer is dropped
+    @Test
+    public void unansweredBulkIsFailedOnCloseTest() {
+        BulkLoad bulkLoad = mock(BulkLoad.class);
+        BulkLoad.Load load = mock(BulkLoad.Load.class);
+        when(bulkLoad.start()).thenReturn(load);
+        BulkIndexer indexer = new BulkIndexer(client, event -> {
+        }, null, null, bulkLoad, null);
+        ReflectionTestUtils.setField(indexer, "awaitMinutes", 0);
+        List<ActionListener<BulkResponse>> listeners = new ArrayList<>();
+        doAnswer(invocation -> {
+            listeners.add(invocation.getArgument(2));
+            return null;
+        }).when(client).bulkAsync(any(BulkRequest.class), any(RequestOptions.class), any());
+        List<BulkIndexer.Result> results = new ArrayList<>();
+
+        BulkIndexer.Session session = indexer.open(true);
+        logs(2).forEach(log -> session.add(log, results::add));
+        session.close();
+
+        assertEquals(List.of(BulkIndexer.Result.FAILED, BulkIndexer.Result.FAILED), results);
+        assertEquals(2, session.stats().getFailed());
+        verify(load, never()).finish();
+        listeners.get(0).onFailure(new java.io.IOException("connection reset"));
+        assertEquals(2, results.size());
+    }
+
+    @Test
+    public void liveSessionLeavesTheSettingsTest() {
+        BulkLoad bulkLoad = mock(BulkLoad.class);
+        BulkIndexer indexer = new BulkIndexer(client, event -> {
+        }, null, null, bulkLoad, null);
+        stubBulk(new ArrayList<>());
+
+        indexer.index(logs(2));
+
+        verifyNoInteractions(bulkLoad);
+    }
+}
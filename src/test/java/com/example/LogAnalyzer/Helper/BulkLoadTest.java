@@ -0,0 +1,100 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.client.IndicesClient;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BulkLoadTest {
+
+    @Mock
+    private RestHighLevelClient client;
+
+    @Mock
+    private IndicesClient indices;
+
+    private BulkLoad bulkLoad;
+
+    @BeforeEach
+    public void setUp() {
+        when(client.indices()).thenReturn(indices);
+        bulkLoad = new BulkLoad(client, new LogIndexTemplate(client));
+    }
+
+    //a new partition is created with the load settings, once however many logs it gets
+    @Test
+    public void prepareCreatesThePartitionTest() throws IOException {
+        BulkLoad.Load load = bulkLoad.start();
+
+        load.prepare("loganalyzer-2023.06.16");
+        load.prepare("loganalyzer-2023.06.16");
+
+        ArgumentCaptor<CreateIndexRequest> create = ArgumentCaptor.forClass(CreateIndexRequest.class);
+        verify(indices).create(create.capture(), eq(RequestOptions.DEFAULT));
+        assertEquals("loganalyzer-2023.06.16", create.getValue().index());
+        assertEquals("-1", create.getValue().settings().get("index.refresh_interval"));
+        assertEquals("0", create.getValue().settings().get("index.number_of_replicas"));
+        assertEquals(List.of("loganalyzer-2023.06.16"), load.getIndices());
+    }
+
+    @Test
+    public void prepareSwitchesAnExistingPartitionTest() throws IOException {
+        when(indices.create(any(CreateIndexRequest.class), eq(RequestOptions.DEFAULT)))
+                .thenThrow(new ElasticsearchStatusException("resource_already_exists_exception", RestStatus.BAD_REQUEST));
+
+        bulkLoad.start().prepare("loganalyzer-2023.06.16");
+
+        ArgumentCaptor<UpdateSettingsRequest> update = ArgumentCaptor.forClass(UpdateSettingsRequest.class);
+        verify(indices).putSettings(update.capture(), eq(RequestOptions.DEFAULT));
+        assertArrayEquals(new String[]{"loganalyzer-2023.06.16"}, update.getValue().indices());
+        assertEquals("-1", update.getValue().settings().get("index.refresh_interval"));
+    }
+
+    //the live settings go back before the merge and the refresh makes the logs searchable
+    @Test
+    public void finishRestoresMergesAndRefreshesTest() throws IOException {
+        BulkLoad.Load load = bulkLoad.start();
+        load.prepare("loganalyzer-2023.06.16");
+
+        load.finish();
+
+        ArgumentCaptor<UpdateSettingsRequest> update = ArgumentCaptor.forClass(UpdateSettingsRequest.class);
+        ArgumentCaptor<ForceMergeRequest> merge = ArgumentCaptor.forClass(ForceMergeRequest.class);
+        var order = inOrder(indices);
+        order.verify(indices).putSettings(update.capture(), eq(RequestOptions.DEFAULT));
+        order.verify(indices).forcemerge(merge.capture(), eq(RequestOptions.DEFAULT));
+        order.verify(indices).refresh(any(RefreshRequest.class), eq(RequestOptions.DEFAULT));
+        assertEquals("1s", update.getValue().settings().get("index.refresh_interval"));
+        assertEquals("1", update.getValue().settings().get("index.number_of_replicas"));
+        assertEquals(1, merge.getValue().maxNumSegments());
+    }
+
+    @Test
+    public void emptyLoadFinishesWithoutRequestsTest() {
+        reset(client);
+
+        bulkLoad.start().finish();
+
+        verifyNoInteractions(client);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClosedBucketCacheTest {
+
+    private static final long HOUR = 3_600_000;
+
+    private ClosedBucketCache cache;
+    private long now;
+    //three closed hours before the open one now is in
+    private long start;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new ClosedBucketCache(10, 60, 0);
+        now = System.currentTimeMillis();
+        start = Math.floorDiv(now, HOUR) * HOUR - 3 * HOUR;
+    }
+
+    private static SortedMap<Long, Map<String, Long>> buckets(long... startsAndCounts) {
+        SortedMap<Long, Map<String, Long>> buckets = new TreeMap<>();
+        for (int i = 0; i < startsAndCounts.length; i += 2) {
+            buckets.put(startsAndCounts[i], Map.of("", startsAndCounts[i + 1]));
+        }
+        return buckets;
+    }
+
+    private ClosedBucketCache.Lookup lookup(long from) {
+        return cache.lookup("loganalyzer", "{histogram}", from, now, HOUR, now);
+    }
+
+    private void fill() {
+        lookup(start).complete(buckets(start, 1, start + HOUR, 2, start + 3 * HOUR, 5));
+    }
+
+    //the closed hours are kept, only the open one is searched the second time
+    @Test
+    public void closedBucketsAreSearchedOnce() {
+        ClosedBucketCache.Lookup first = lookup(start);
+        assertEquals(1, first.getRanges().size());
+        assertArrayEquals(new long[]{start, now + 1}, first.getRanges().get(0));
+        first.complete(buckets(start, 1, start + HOUR, 2, start + 3 * HOUR, 5));
+
+        ClosedBucketCache.Lookup second = lookup(start);
+        assertEquals(1, second.getRanges().size());
+        assertArrayEquals(new long[]{start + 3 * HOUR, now + 1}, second.getRanges().get(0));
+
+        //the empty hour stays empty, the open one comes from the new search
+        assertEquals(buckets(start, 1, start + HOUR, 2, start + 3 * HOUR, 6), second.complete(buckets(start + 3 * HOUR, 6)));
+    }
+
+    //a range that starts inside an hour searches that hour, it is not complete in the cache's terms
+    @Test
+    public void cutBucketIsSearched() {
+        fill();
+
+        List<long[]> ranges = lookup(start + 1000).getRanges();
+
+        assertEquals(2, ranges.size());
+        assertArrayEquals(new long[]{start + 1000, start + HOUR}, ranges.get(0));
+        assertArrayEquals(new long[]{start + 3 * HOUR, now + 1}, ranges.get(1));
+    }
+
+    @Test
+    public void unboundedRangeIsHeldFromTheStart() {
+        cache.lookup("loganalyzer", "{all}", ClosedBucketCache.UNBOUNDED_FROM, ClosedBucketCache.UNBOUNDED_TO, HOUR, now)
+                .complete(buckets(start, 1));
+
+        ClosedBucketCache.Lookup lookup = cache.lookup("loganalyzer", "{all}", ClosedBucketCache.UNBOUNDED_FROM, ClosedBucketCache.UNBOUNDED_TO, HOUR, now);
+
+        assertEquals(1, lookup.getRanges().size());
+        assertArrayEquals(new long[]{start + 3 * HOUR, ClosedBucketCache.UNBOUNDED_TO}, lookup.getRanges().get(0));
+    }
+
+    //logs dated in the second hour drop it and everything after it, the first hour is still held
+    @Test
+    public void backDatedWriteDropsItsBuckets() {
+        fill();
+
+        cache.onLogsIndexed(new LogsIndexedEvent("loganalyzer", 1, start + HOUR + 5, start + HOUR + 5));
+
+        ClosedBucketCache.Lookup lookup = lookup(start);
+        assertArrayEquals(new long[]{start + HOUR, now + 1}, lookup.getRanges().get(0));
+        assertEquals(buckets(start, 1), lookup.complete(new TreeMap<>()));
+    }
+
+    @Test
+    public void writeToTheOpenBucketDropsNothing() {
+        fill();
+
+        cache.onLogsIndexed(new LogsIndexedEvent("loganalyzer", 1, now, now));
+        cache.onLogsIndexed(new LogsIndexedEvent("other", 1, start, start));
+
+        assertArrayEquals(new long[]{start + 3 * HOUR, now + 1}, lookup(start).getRanges().get(0));
+    }
+
+    //what was searched before a write may miss its logs, it is returned but not kept
+    @Test
+    public void bucketsSearchedDuringAWriteAreNotKept() {
+        ClosedBucketCache.Lookup lookup = cache.lookup("loganalyzer", "{histogram}", start, now, HOUR, now - 10);
+        cache.onLogsIndexed(new LogsIndexedEvent("loganalyzer", 1, now, now));
+
+        assertEquals(buckets(start, 1), lookup.complete(buckets(start, 1)));
+        assertEquals(1, lookup(start).getRanges().size());
+        assertArrayEquals(new long[]{start, now + 1}, lookup(start).getRanges().get(0));
+    }
+
+    //a series read from two indices is dropped by a write to either
+    @Test
+    public void writeToAnyIndexOfTheSeriesDropsIt() {
+        cache.lookup("loganalyzer,rollup-loganalyzer", "{histogram}", start, now, HOUR, now).complete(buckets(start, 1));
+
+        cache.onLogsIndexed(new LogsIndexedEvent("rollup-loganalyzer", 1, start, start));
+
+        ClosedBucketCache.Lookup lookup = cache.lookup("loganalyzer,rollup-loganalyzer", "{histogram}", start, now, HOUR, now);
+        assertArrayEquals(new long[]{start, now + 1}, lookup.getRanges().get(0));
+    }
+
+    @Test
+    public void invalidateAllDropsEverything() {
+        fill();
+
+        cache.invalidateAll();
+
+        assertArrayEquals(new long[]{start, now + 1}, lookup(start).getRanges().get(0));
+    }
+}
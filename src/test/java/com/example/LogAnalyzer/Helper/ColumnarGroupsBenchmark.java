@@ -0,0 +1,113 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//compares the shape nestedGroupByDynamic returns, a map per bucket, with ColumnarGroups for a 100k bucket
+//group by of 1000 sources and 100 loggers. build allocates the result, its gc.alloc.rate.norm is about
+//the heap the result holds. serialize writes the result as json to a stream that drops it.
+//not a unit test, run it by hand:
+//  mvn test-compile && java -cp target/test-classes:target/classes:<test classpath> \
+//      com.example.LogAnalyzer.Helper.ColumnarGroupsBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnarGroupsBenchmark {
+
+    private static final int SOURCES = 1000;
+    private static final int LOGGERS = 100;
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    //the keys as the client hands them out, one string per bucket key
+    private final String[] sources = new String[SOURCES];
+    private final String[] loggers = new String[LOGGERS];
+
+    private Map<String, List<Map<String, Long>>> nested;
+    private ColumnarGroups columnar;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < SOURCES; i++) {
+            sources[i] = "standalone-reporting-sch-slave-deployment-" + i;
+        }
+        for (int i = 0; i < LOGGERS; i++) {
+            loggers[i] = "com.example.service.Logger" + i;
+        }
+        nested = buildNested();
+        columnar = buildColumnar();
+    }
+
+    //the loop of nestedGroupByDynamicResult
+    @Benchmark
+    public Map<String, List<Map<String, Long>>> buildNested() {
+        Map<String, List<Map<String, Long>>> mp = new HashMap<>();
+        for (int s = 0; s < SOURCES; s++) {
+            mp.put(sources[s], new ArrayList<>());
+            for (int l = 0; l < LOGGERS; l++) {
+                Map<String, Long> mp1 = new HashMap<>();
+                mp1.put(loggers[l], (long) (s + l));
+                mp.get(sources[s]).add(mp1);
+            }
+        }
+        return mp;
+    }
+
+    //the walk of GroupLevels.columns
+    @Benchmark
+    public ColumnarGroups buildColumnar() {
+        ColumnarGroups.Builder builder = ColumnarGroups.builder(List.of("source", "logger"));
+        String[] row = new String[2];
+        for (int s = 0; s < SOURCES; s++) {
+            row[0] = sources[s];
+            for (int l = 0; l < LOGGERS; l++) {
+                row[1] = loggers[l];
+                builder.add(row, s + l);
+            }
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public void serializeNested() throws IOException {
+        JSON.writeValue(DISCARD, nested);
+    }
+
+    @Benchmark
+    public void serializeColumnar() throws IOException {
+        JSON.writeValue(DISCARD, columnar);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ColumnarGroupsBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
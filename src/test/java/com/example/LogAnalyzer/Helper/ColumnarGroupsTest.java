@@ -0,0 +1,67 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarGroupsTest {
+
+    //more rows than the initial capacity, each key is copied so the caller can reuse its array
+    @Test
+    public void builderTest() {
+        ColumnarGroups.Builder builder = ColumnarGroups.builder(List.of("source", "logger"));
+        String[] row = new String[2];
+        for (int i = 0; i < 100; i++) {
+            row[0] = "source" + i / 10;
+            row[1] = "logger" + i % 10;
+            builder.add(row, i);
+        }
+        ColumnarGroups groups = builder.build();
+
+        assertEquals(100, groups.size());
+        assertEquals(100, groups.getKeys()[0].length);
+        assertEquals("source4", groups.key(0, 42));
+        assertEquals("logger2", groups.key(1, 42));
+        assertEquals(42, groups.getCounts()[42]);
+    }
+
+    //every distinct key is stored once per column, in the order it first appeared
+    @Test
+    public void dictionaryTest() {
+        ColumnarGroups groups = ColumnarGroups.builder(List.of("source", "logger"))
+                .add(new String[]{"a", "x"}, 1)
+                .add(new String[]{"a", "y"}, 2)
+                .add(new String[]{"b", new String("x")}, 3)
+                .build();
+
+        assertArrayEquals(new String[]{"a", "b"}, groups.getValues()[0]);
+        assertArrayEquals(new String[]{"x", "y"}, groups.getValues()[1]);
+        assertArrayEquals(new int[]{0, 0, 1}, groups.getKeys()[0]);
+        assertArrayEquals(new int[]{0, 1, 0}, groups.getKeys()[1]);
+    }
+
+    @Test
+    public void emptyTest() {
+        ColumnarGroups groups = ColumnarGroups.builder(List.of("source")).build();
+        assertEquals(0, groups.size());
+        assertEquals(0, groups.getKeys()[0].length);
+        assertEquals(0, groups.getValues()[0].length);
+    }
+
+    @Test
+    public void jsonTest() throws Exception {
+        ColumnarGroups groups = ColumnarGroups.builder(List.of("source", "timestamp:1h"))
+                .add(new String[]{"a", "2023-06-16T17:00:00.000Z"}, 3)
+                .add(new String[]{"b", "2023-06-16T17:00:00.000Z"}, 1)
+                .build();
+
+        assertEquals("{\"columns\":[\"source\",\"timestamp:1h\"],"
+                        + "\"values\":[[\"a\",\"b\"],[\"2023-06-16T17:00:00.000Z\"]],"
+                        + "\"keys\":[[0,1],[0,0]],"
+                        + "\"counts\":[3,1]}",
+                new ObjectMapper().writeValueAsString(groups));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadLetterFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void oneRowPerLineTest() throws IOException {
+        Path path = dir.resolve("dead/logs.xlsx.1.dead.ndjson");
+
+        try (DeadLetterFile deadLetters = DeadLetterFile.create(path)) {
+            deadLetters.write(7, "source cannot be null", List.of("2023-06-16T17:52:14.691Z", ""));
+            deadLetters.write(9, "Unparseable timestamp: \"x\"", List.of("x"));
+            deadLetters.flush();
+        }
+
+        assertEquals(List.of(
+                "{\"row\":7,\"reason\":\"source cannot be null\",\"cells\":[\"2023-06-16T17:52:14.691Z\",\"\"]}",
+                "{\"row\":9,\"reason\":\"Unparseable timestamp: \\\"x\\\"\",\"cells\":[\"x\"]}"), Files.readAllLines(path));
+    }
+
+    //a resumed run appends behind the rows already there, a line cut short is ended first
+    @Test
+    public void appendTest() throws IOException {
+        Path path = dir.resolve("logs.xlsx.1.dead.ndjson");
+        Files.writeString(path, "{\"row\":7,\"reason\":\"source cannot be null\",\"cells\":[]}\n{\"row\":9,\"rea");
+
+        assertEquals(Set.of(7), DeadLetterFile.rows(path));
+        try (DeadLetterFile deadLetters = DeadLetterFile.append(path)) {
+            deadLetters.write(9, "source cannot be null", List.of());
+        }
+
+        List<String> lines = Files.readAllLines(path);
+        assertEquals(3, lines.size());
+        assertEquals("{\"row\":9,\"reason\":\"source cannot be null\",\"cells\":[]}", lines.get(2));
+        assertEquals(Set.of(7, 9), DeadLetterFile.rows(path));
+    }
+}
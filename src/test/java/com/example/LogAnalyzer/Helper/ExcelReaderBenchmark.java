@@ -0,0 +1,94 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Repository.LoggerRepository;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+//compares the workbook (DOM) reader with the streaming reader on a generated file.
+//not a unit test, run it by hand:
+//  mvn test-compile && java -cp target/test-classes:target/classes:<test classpath> \
+//      com.example.LogAnalyzer.Helper.ExcelReaderBenchmark [rows] [dom|streaming]
+//peak heap is only comparable between runs of a single mode, so run each mode in its own jvm
+public class ExcelReaderBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        String mode = args.length > 1 ? args[1] : "streaming";
+
+        File file = File.createTempFile("loganalyzer-bench", ".xlsx");
+        file.deleteOnExit();
+        generate(file, rows);
+        System.out.printf("generated %d rows, %d KB%n", rows, file.length() / 1024);
+
+        ExceltoEs helper = new ExceltoEs();
+        ReflectionTestUtils.setField(helper, "loggerAllowlist", new LoggerAllowlist(Mockito.mock(LoggerRepository.class)));
+        ExceltoEs.file = file.getPath();
+
+        System.gc();
+        resetPeakHeap();
+        long start = System.nanoTime();
+        int valid;
+        if (mode.equals("dom")) {
+            valid = helper.ReadFromExcel().size();
+        } else {
+            int[] count = {0};
+            helper.StreamFromExcel(log -> count[0]++);
+            valid = count[0];
+        }
+        long nanos = System.nanoTime() - start;
+
+        System.out.printf("mode=%s rows=%d valid=%d time=%d ms rows/sec=%.0f peakHeap=%d MB%n",
+                mode, rows, valid, nanos / 1_000_000, rows / (nanos / 1e9), peakHeap() / (1024 * 1024));
+    }
+
+    private static void generate(File file, int rows) throws IOException {
+        //SXSSF keeps only a window of rows in memory so large files can be generated
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100); FileOutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("logs");
+            Row header = sheet.createRow(0);
+            String[] columns = {"timestamp", "source", "message", "loglevel", "logger", "partnerid"};
+            for (int i = 0; i < columns.length; i++) {
+                header.createCell(i).setCellValue(columns[i]);
+            }
+            for (int i = 1; i <= rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(String.format("2023-06-16T%02d:%02d:%02d.%03dZ", i / 3600 % 24, i / 60 % 60, i % 60, i % 1000));
+                row.createCell(1).setCellValue("standalone-reporting-sch-slave-deployment-" + (i % 50));
+                row.createCell(2).setCellValue("java.lang.IllegalStateException: failed to process request " + i);
+                row.createCell(3).setCellValue(i % 4 == 0 ? "INFO" : "ERROR");
+                row.createCell(4).setCellValue("testlogger");
+                row.createCell(5).setCellValue(1000 + i % 200);
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
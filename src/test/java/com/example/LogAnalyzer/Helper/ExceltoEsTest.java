@@ -1,22 +1,27 @@
 package com.example.LogAnalyzer.Helper;
 
 import com.example.LogAnalyzer.Entity.LogEntity;
-import com.example.LogAnalyzer.Entity.LoggerEntity;
-import com.example.LogAnalyzer.Repository.LogRepository;
-import com.example.LogAnalyzer.Repository.LoggerRepository;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,22 +33,15 @@ public class ExceltoEsTest {
     private ExceltoEs helper;
 
     @Mock
-    private LogRepository logRepository;
+    private LoggerAllowlist loggerAllowlist;
 
     @Mock
-    private LoggerRepository loggerRepository;
+    private BulkIndexer bulkIndexer;
 
 
     @Test
     public void ReadTest() {
-        List<LoggerEntity> loggers = new ArrayList<>();
-        LoggerEntity logger = new LoggerEntity();
-        logger.setId("id");
-        logger.setlogger("com.spr.core.monitoring.impl.logger.AbstractMonitoringLogger");
-        loggers.add(logger);
-        doAnswer(invocation -> {
-            return loggers;
-        }).when(loggerRepository).findAll();
+        lenient().when(loggerAllowlist.contains(anyString())).thenReturn(true);
 
         assertDoesNotThrow(() -> {
             helper.ReadFromExcel();
@@ -52,17 +50,49 @@ public class ExceltoEsTest {
 
 
     @Test
-    public void testFetchValidLoggers() {
-        List<String> loggers = new ArrayList<>();
-        loggers.add("logger1");
-        doAnswer(invocation -> {
-            return loggers;
-        }).when(loggerRepository).findAll();
-        helper.fetchValidLoggers();
-        assertEquals(helper.validloggers, loggers);
+    public void StreamTest(@TempDir Path dir) throws IOException {
+        when(loggerAllowlist.contains("testlogger")).thenReturn(true);
+        String original = ExceltoEs.file;
+        ExceltoEs.file = StreamingExcelReaderTest.writeWorkbook(new XSSFWorkbook(), dir.resolve("logs.xlsx"));
+        try {
+            List<LogEntity> logs = new ArrayList<>();
+
+            assertEquals(2, helper.StreamFromExcel(logs::add));
+            assertEquals(2, logs.size());
+            assertEquals("source1", logs.get(0).getSource());
+            assertEquals("1001.0", logs.get(0).getPartnerid());
+            assertEquals(LogIds.of(logs.get(0)), logs.get(0).getID());
+            assertNotEquals(logs.get(0).getID(), logs.get(1).getID());
+        } finally {
+            ExceltoEs.file = original;
+        }
     }
 
 
+    //the helpers have no dead letter file, an invalid row stops them instead of being lost
+    @Test
+    public void StreamStopsAtAnInvalidRowTest(@TempDir Path dir) throws IOException {
+        String original = ExceltoEs.file;
+        XSSFWorkbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet("logs");
+        sheet.createRow(0).createCell(0).setCellValue("timestamp");
+        Row row = sheet.createRow(1);
+        row.createCell(0).setCellValue("16/06/2023");
+        row.createCell(1).setCellValue("source1");
+        try (FileOutputStream out = new FileOutputStream(dir.resolve("logs.xlsx").toFile())) {
+            workbook.write(out);
+        }
+        workbook.close();
+        ExceltoEs.file = dir.resolve("logs.xlsx").toString();
+        try {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> helper.StreamFromExcel(log -> {
+            }));
+            assertTrue(e.getMessage().contains("Unparseable timestamp"));
+        } finally {
+            ExceltoEs.file = original;
+        }
+    }
+
     @Test
     public void WriteTest() {
 
@@ -80,14 +110,43 @@ public class ExceltoEsTest {
 
         logs.add(log1);
         logs.add(log2);
-        when(logRepository.save(eq(log1))).thenReturn(log1);
-        when(logRepository.save(eq(log2))).thenReturn(log2);
+        BulkStats stats = new BulkStats(2, 0, 0, 1, 5, 10);
+        when(bulkIndexer.index(eq(logs))).thenReturn(stats);
 
-        assertEquals(logs, helper.WriteToEs(logRepository, logs));
+        assertEquals(stats, helper.WriteToEs(logs));
 
 
     }
 
+    //an invalid row is reported with its reason instead of thrown
+    @Test
+    public void validateRowTest() {
+        lenient().when(loggerAllowlist.contains("testlogger")).thenReturn(true);
+
+        LogEntity log = helper.validateRow(List.of("2023-06-16T17:52:14.691Z", "source", "message", "ERROR", "testlogger", " 1001")).getLog();
+        assertEquals("1001.0", log.getPartnerid());
+        assertEquals(LogIds.of(log), log.getID());
+
+        assertEquals("Unparseable timestamp: \"2023-06-16\"",
+                helper.validateRow(List.of("2023-06-16", "source", "message", "ERROR", "testlogger", "1001")).getReason());
+        assertEquals("source cannot be null",
+                helper.validateRow(List.of("2023-06-16T17:52:14.691Z", "", "message", "ERROR", "testlogger", "1001")).getReason());
+        assertEquals("partnerid is not a number: \"p1\"",
+                helper.validateRow(List.of("2023-06-16T17:52:14.691Z", "source", "message", "ERROR", "testlogger", "p1")).getReason());
+        assertTrue(helper.validateRow(List.of("2023-06-16T17:52:14.691Z", "source", "message")).isInvalid());
+
+        ValidatedRow info = helper.validateRow(List.of("2023-06-16T17:52:14.691Z", "source", "message", "INFO", "testlogger", "1001"));
+        assertFalse(info.isInvalid());
+        assertNull(info.getLog());
+    }
+
+    @Test
+    public void isvalidThrowsOnInvalidRowTest() {
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> helper.isvalid(List.of("2023-06-16T17:52:14.691Z", "source", "", "ERROR", "testlogger", "1001")));
+        assertEquals("message cannot be null", e.getMessage());
+    }
+
     @Test
     public void validateFileTest() {
 
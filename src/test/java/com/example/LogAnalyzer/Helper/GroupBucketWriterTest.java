@@ -0,0 +1,56 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GroupBucketWriterTest {
+
+    private static GroupBucket bucket(Object source, Object partnerid, long count) {
+        Map<String, Object> key = new LinkedHashMap<>();
+        key.put("source", source);
+        key.put("partnerid", partnerid);
+        return new GroupBucket(key, count);
+    }
+
+    @Test
+    public void ndjsonTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GroupBucketWriter writer = GroupBucketWriter.open(LogEntityWriter.NDJSON, out, List.of("source", "partnerid"));
+
+        writer.write(List.of(bucket("web", "p1", 3)));
+        writer.write(List.of(bucket("db", 42L, 1)));
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"source\":\"web\",\"partnerid\":\"p1\",\"count\":3}", lines[0]);
+        JsonNode second = new ObjectMapper().readTree(lines[1]);
+        assertEquals(42L, second.get("partnerid").asLong());
+        assertTrue(second.get("partnerid").isNumber());
+    }
+
+    @Test
+    public void csvTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GroupBucketWriter writer = GroupBucketWriter.open(LogEntityWriter.CSV, out, List.of("source", "partnerid"));
+        assertEquals("source,partnerid,count\r\n", out.toString(StandardCharsets.UTF_8));
+
+        writer.write(List.of(bucket("a \"b\"", null, 2)));
+
+        assertEquals("source,partnerid,count\r\n\"a \"\"b\"\"\",,2\r\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void unsupportedFormatTest() {
+        assertThrows(IllegalArgumentException.class, () -> GroupBucketWriter.open("xml", new ByteArrayOutputStream(), List.of("source")));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IngestionCheckpointsTest {
+
+    @Mock
+    private RestHighLevelClient client;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void fingerprintTest() throws IOException {
+        Path a = Files.writeString(dir.resolve("a.xlsx"), "rows");
+        Path b = Files.writeString(dir.resolve("b.xlsx"), "rows");
+        Path c = Files.writeString(dir.resolve("c.xlsx"), "other rows");
+
+        String fingerprint = IngestionCheckpoints.fingerprint(a.toString());
+
+        assertEquals(64, fingerprint.length());
+        assertEquals(fingerprint, IngestionCheckpoints.fingerprint(b.toString()));
+        assertNotEquals(fingerprint, IngestionCheckpoints.fingerprint(c.toString()));
+    }
+
+    @Test
+    public void saveTest() throws IOException {
+        new IngestionCheckpoints(client).save(new IngestionCheckpoint("ab12", "logs.xlsx", 0, 41, 1000));
+
+        ArgumentCaptor<IndexRequest> request = ArgumentCaptor.forClass(IndexRequest.class);
+        verify(client).index(request.capture(), eq(RequestOptions.DEFAULT));
+        assertEquals("ingest-checkpoints", request.getValue().index());
+        assertEquals("ab12", request.getValue().id());
+        assertEquals(41, request.getValue().sourceAsMap().get("row"));
+    }
+
+    @Test
+    public void loadTest() throws IOException {
+        GetResponse response = mock(GetResponse.class);
+        when(response.isExists()).thenReturn(true);
+        when(response.getSourceAsMap()).thenReturn(new IngestionCheckpoint("ab12", "logs.xlsx", 0, 41, 1000, 3, "dead/logs.xlsx.1.dead.ndjson").source());
+        when(client.get(any(GetRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(response);
+
+        IngestionCheckpoint checkpoint = new IngestionCheckpoints(client).load("ab12");
+
+        assertEquals(41, checkpoint.getRow());
+        assertEquals("logs.xlsx", checkpoint.getFile());
+        assertEquals(3, checkpoint.getInvalid());
+        assertEquals("dead/logs.xlsx.1.dead.ndjson", checkpoint.getDeadLetterFile());
+    }
+
+    //before the first checkpoint the index does not exist
+    @Test
+    public void missingIndexHasNoCheckpointTest() throws IOException {
+        when(client.get(any(GetRequest.class), eq(RequestOptions.DEFAULT)))
+                .thenThrow(new ElasticsearchStatusException("index_not_found_exception", RestStatus.NOT_FOUND));
+
+        assertNull(new IngestionCheckpoints(client).load("ab12"));
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IngestionPipelineTest {
+
+    @InjectMocks
+    private ExceltoEs helper;
+
+    @Mock
+    private LoggerAllowlist loggerAllowlist;
+
+    @Mock
+    private BulkIndexer bulkIndexer;
+
+    @Mock
+    private BulkIndexer.Session session;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void runTest() throws IOException {
+        String file = StreamingExcelReaderTest.writeWorkbook(new XSSFWorkbook(), dir.resolve("logs.xlsx"));
+        when(loggerAllowlist.contains("testlogger")).thenReturn(true);
+        when(bulkIndexer.open(false)).thenReturn(session);
+        List<LogEntity> written = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> written.add(invocation.getArgument(0))).when(session).add(any(), any());
+
+        IngestionPipeline pipeline = new IngestionPipeline(helper, bulkIndexer);
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 1);
+        IngestionStats stats = pipeline.run(file);
+
+        assertEquals(IngestionStats.State.COMPLETED, stats.getState());
+        assertEquals(2, written.size());
+        assertEquals(List.of("read", "validate", "write"), stats.getStages().stream().map(IngestionStats.Stage::getName).toList());
+        assertEquals(2, stats.getStages().get(0).getProcessed());
+        assertEquals(2, stats.getStages().get(2).getProcessed());
+        verify(session).close();
+        assertSame(IngestionStats.State.COMPLETED, pipeline.stats().getState());
+    }
+
+    @Test
+    public void failingStageStopsRunTest() throws IOException {
+        String file = StreamingExcelReaderTest.writeWorkbook(new XSSFWorkbook(), dir.resolve("logs.xlsx"));
+        when(loggerAllowlist.contains("testlogger")).thenReturn(true);
+        when(bulkIndexer.open(false)).thenReturn(session);
+        doThrow(new IllegalStateException("es is down")).when(session).add(any(), any());
+
+        IngestionPipeline pipeline = new IngestionPipeline(helper, bulkIndexer);
+
+        assertThrows(RuntimeException.class, () -> pipeline.run(file));
+        assertEquals(IngestionStats.State.FAILED, pipeline.stats().getState());
+        verify(session).close();
+    }
+
+    //a session that cannot be opened fails the call before the run starts, no job is left running
+    @Test
+    public void failedOpenLeavesNoRunTest() throws IOException {
+        String file = StreamingExcelReaderTest.writeWorkbook(new XSSFWorkbook(), dir.resolve("logs.xlsx"));
+        when(bulkIndexer.open(true)).thenThrow(new IllegalStateException("could not put the template"));
+
+        IngestionPipeline pipeline = new IngestionPipeline(helper, bulkIndexer);
+
+        assertThrows(IllegalStateException.class, () -> pipeline.run(file, true));
+        assertEquals(IngestionStats.State.IDLE, pipeline.stats().getState());
+        assertEquals(IngestionJobStatus.State.IDLE, pipeline.job().getState());
+    }
+
+    @Test
+    public void invalidFileTest() {
+        IngestionPipeline pipeline = new IngestionPipeline(helper, bulkIndexer);
+
+        assertThrows(RuntimeException.class, () -> pipeline.run("logs.csv"));
+        verifyNoInteractions(bulkIndexer);
+    }
+
+    @Test
+    public void idleStatsTest() {
+        assertEquals(IngestionStats.State.IDLE, new IngestionPipeline(helper, bulkIndexer).stats().getState());
+        assertEquals(IngestionJobStatus.State.IDLE, new IngestionPipeline(helper, bulkIndexer).job().getState());
+    }
+
+    //a header, two valid rows and between them a row with a bad timestamp and one without a source
+    private String writeWithInvalidRows(Path file) throws IOException {
+        XSSFWorkbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet("logs");
+        sheet.createRow(0).createCell(0).setCellValue("timestamp");
+        String[][] rows = {
+                {"2023-06-16T17:52:14.691Z", "source1"},
+                {"16/06/2023", "source2"},
+                {"2023-06-16T17:52:14.693Z", ""},
+                {"2023-06-16T17:52:14.694Z", "source4"}};
+        for (int i = 0; i < rows.length; i++) {
+            Row row = sheet.createRow(i + 1);
+            row.createCell(0).setCellValue(rows[i][0]);
+            row.createCell(1).setCellValue(rows[i][1]);
+            row.createCell(2).setCellValue("message");
+            row.createCell(3).setCellValue("ERROR");
+            row.createCell(4).setCellValue("testlogger");
+            row.createCell(5).setCellValue(1001);
+        }
+        try (FileOutputStream out = new FileOutputStream(file.toFile())) {
+            workbook.write(out);
+        }
+        workbook.close();
+        return file.toString();
+    }
+
+    //the invalid rows go to the dead letter file, the valid ones around them are still written
+    @Test
+    public void invalidRowsAreDeadLetteredTest() throws IOException {
+        String file = writeWithInvalidRows(dir.resolve("logs.xlsx"));
+        when(loggerAllowlist.contains("testlogger")).thenReturn(true);
+        when(bulkIndexer.open(false)).thenReturn(session);
+        List<LogEntity> written = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            written.add(invocation.getArgument(0));
+            ((Consumer<BulkIndexer.Result>) invocation.getArgument(1)).accept(BulkIndexer.Result.WRITTEN);
+            return null;
+        }).when(session).add(any(), any());
+
+        IngestionPipeline pipeline = new IngestionPipeline(helper, bulkIndexer);
+        ReflectionTestUtils.setField(pipeline, "deadLetterDir", dir.resolve("dead").toString());
+        IngestionStats stats = pipeline.run(file);
+
+        assertEquals(IngestionStats.State.COMPLETED, stats.getState());
+        assertEquals(2, written.size());
+        IngestionJobStatus job = pipeline.job();
+        assertEquals(IngestionJobStatus.State.COMPLETED, job.getState());
+        assertEquals(2, job.getRowsInvalid());
+        assertEquals(4, job.getCommittedRow());
+        List<String> deadLetters = Files.readAllLines(Path.of(job.getDeadLetterFile()));
+        assertEquals(2, deadLetters.size());
+        assertTrue(deadLetters.stream().anyMatch(line -> line.startsWith("{\"row\":2,\"reason\":\"Unparseable timestamp")));
+        assertTrue(deadLetters.stream().anyMatch(line -> line.startsWith("{\"row\":3,\"reason\":\"source cannot be null\"")));
+    }
+
+    //the row past the budget stops the run, what was committed before is kept for a resume
+    @Test
+    public void spentErrorBudgetStopsTheRunTest() throws IOException {
+        String file = writeWithInvalidRows(dir.resolve("logs.xlsx"));
+        when(loggerAllowlist.contains("testlogger")).thenReturn(true);
+        when(bulkIndexer.open(false)).thenReturn(session);
+        lenient().doAnswer(invocation -> {
+            ((Consumer<BulkIndexer.Result>) invocation.getArgument(1)).accept(BulkIndexer.Result.WRITTEN);
+            return null;
+        }).when(session).add(any(), any());
+
+        IngestionPipeline pipeline = new IngestionPipeline(helper, bulkIndexer);
+        ReflectionTestUtils.setField(pipeline, "deadLetterDir", dir.resolve("dead").toString());
+        ReflectionTestUtils.setField(pipeline, "errorBudget", 1L);
+        ReflectionTestUtils.setField(pipeline, "validateWorkers", 1);
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> pipeline.run(file));
+        assertTrue(e.getMessage().contains("error budget of 1 invalid rows spent at row 3"));
+        assertEquals(IngestionStats.State.FAILED, pipeline.stats().getState());
+        assertEquals(IngestionJobStatus.State.RESUMABLE, pipeline.job().getState());
+        assertEquals(2, pipeline.job().getRowsInvalid());
+        verify(session).close();
+    }
+
+    //the budget is for the file: the invalid row before the checkpoint counts, the next one spends it and goes
+    //to the same dead letter file
+    @Test
+    public void errorBudgetIsSpentAcrossAResumeTest() throws IOException {
+        String file = writeWithInvalidRows(dir.resolve("logs.xlsx"));
+        lenient().when(loggerAllowlist.contains("testlogger")).thenReturn(true);
+        when(bulkIndexer.open(false)).thenReturn(session);
+        Path deadLetterFile = dir.resolve("dead/logs.xlsx.1.dead.ndjson");
+        try (DeadLetterFile deadLetters = DeadLetterFile.create(deadLetterFile)) {
+            deadLetters.write(2, "Unparseable timestamp: \"16/06/2023\"", List.of("16/06/2023", "source2"));
+        }
+        IngestionCheckpoints checkpoints = mock(IngestionCheckpoints.class);
+        String fingerprint = IngestionCheckpoints.fingerprint(file);
+        when(checkpoints.load(fingerprint)).thenReturn(new IngestionCheckpoint(fingerprint, file, 0, 2, 0, 1, deadLetterFile.toString()));
+
+        IngestionPipeline pipeline = new IngestionPipeline(helper, bulkIndexer, checkpoints);
+        ReflectionTestUtils.setField(pipeline, "deadLetterDir", dir.resolve("dead").toString());
+        ReflectionTestUtils.setField(pipeline, "errorBudget", 1L);
+        ReflectionTestUtils.setField(pipeline, "validateWorkers", 1);
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> pipeline.run(file));
+        assertTrue(e.getMessage().contains("error budget of 1 invalid rows spent at row 3"));
+        IngestionJobStatus job = pipeline.job();
+        assertEquals(2, job.getRowsInvalid());
+        assertEquals(deadLetterFile.toString(), job.getDeadLetterFile());
+        List<String> deadLetters = Files.readAllLines(deadLetterFile);
+        assertEquals(2, deadLetters.size());
+        assertTrue(deadLetters.get(1).startsWith("{\"row\":3,\"reason\":\"source cannot be null\""));
+        try (var files = Files.list(dir.resolve("dead"))) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    //the checkpoint counts the invalid rows up to its row only, the ones after it are read again on a resume
+    @Test
+    public void checkpointKeepsTheInvalidRowsTest() throws IOException {
+        String file = writeWithInvalidRows(dir.resolve("logs.xlsx"));
+        when(loggerAllowlist.contains("testlogger")).thenReturn(true);
+        when(bulkIndexer.open(false)).thenReturn(session);
+        doAnswer(invocation -> {
+            LogEntity log = invocation.getArgument(0);
+            ((Consumer<BulkIndexer.Result>) invocation.getArgument(1))
+                    .accept(log.getSource().equals("source1") ? BulkIndexer.Result.WRITTEN : BulkIndexer.Result.FAILED);
+            return null;
+        }).when(session).add(any(), any());
+        IngestionCheckpoints checkpoints = mock(IngestionCheckpoints.class);
+
+        IngestionPipeline pipeline = new IngestionPipeline(helper, bulkIndexer, checkpoints);
+        ReflectionTestUtils.setField(pipeline, "deadLetterDir", dir.resolve("dead").toString());
+        pipeline.run(file);
+
+        ArgumentCaptor<IngestionCheckpoint> saved = ArgumentCaptor.forClass(IngestionCheckpoint.class);
+        verify(checkpoints).save(saved.capture());
+        assertEquals(3, saved.getValue().getRow());
+        assertEquals(2, saved.getValue().getInvalid());
+        assertEquals(pipeline.job().getDeadLetterFile(), saved.getValue().getDeadLetterFile());
+    }
+
+    //answers every log added to the session with the result of its row
+    private void stubResults(BulkIndexer.Result... results) {
+        doAnswer(invocation -> {
+            LogEntity log = invocation.getArgument(0);
+            Consumer<BulkIndexer.Result> callback = invocation.getArgument(1);
+            callback.accept(results[log.getSource().equals("source1") ? 0 : 1]);
+            return null;
+        }).when(session).add(any(), any());
+    }
+
+    //a file written completely needs no checkpoint
+    @Test
+    public void completedJobDropsItsCheckpointTest() throws IOException {
+        String file = StreamingExcelReaderTest.writeWorkbook(new XSSFWorkbook(), dir.resolve("logs.xlsx"));
+        when(loggerAllowlist.contains("testlogger")).thenReturn(true);
+        when(bulkIndexer.open(false)).thenReturn(session);
+        stubResults(BulkIndexer.Result.WRITTEN, BulkIndexer.Result.DUPLICATE);
+        IngestionCheckpoints checkpoints = mock(IngestionCheckpoints.class);
+
+        IngestionPipeline pipeline = new IngestionPipeline(helper, bulkIndexer, checkpoints);
+        pipeline.run(file);
+
+        IngestionJobStatus job = pipeline.job();
+        assertEquals(IngestionJobStatus.State.COMPLETED, job.getState());
+        assertEquals(2, job.getCommittedRow());
+        assertEquals(2, job.getRowsRead());
+        assertEquals(1, job.getRowsWritten());
+        assertEquals(1, job.getRowsDuplicate());
+        assertEquals(IngestionCheckpoints.fingerprint(file), job.getFingerprint());
+        verify(checkpoints).delete(job.getFingerprint());
+        verify(checkpoints, never()).save(any());
+    }
+
+    //the row es did not take stops the commits, the checkpoint is kept before it
+    @Test
+    public void failedRowKeepsTheCheckpointTest() throws IOException {
+        String file = StreamingExcelReaderTest.writeWorkbook(new XSSFWorkbook(), dir.resolve("logs.xlsx"));
+        when(loggerAllowlist.contains("testlogger")).thenReturn(true);
+        when(bulkIndexer.open(false)).thenReturn(session);
+        stubResults(BulkIndexer.Result.WRITTEN, BulkIndexer.Result.FAILED);
+        IngestionCheckpoints checkpoints = mock(IngestionCheckpoints.class);
+
+        IngestionPipeline pipeline = new IngestionPipeline(helper, bulkIndexer, checkpoints);
+        pipeline.run(file);
+
+        ArgumentCaptor<IngestionCheckpoint> saved = ArgumentCaptor.forClass(IngestionCheckpoint.class);
+        verify(checkpoints).save(saved.capture());
+        assertEquals(1, saved.getValue().getRow());
+        assertEquals(0, saved.getValue().getSheet());
+        assertEquals(IngestionJobStatus.State.RESUMABLE, pipeline.job().getState());
+        assertEquals(1, pipeline.job().getRowsRejected());
+        verify(checkpoints, never()).delete(any());
+    }
+
+    //a resumed job reads the rows behind the checkpoint only, there is no header to skip
+    @Test
+    public void resumedJobStartsBehindTheCheckpointTest() throws IOException {
+        String file = StreamingExcelReaderTest.writeWorkbook(new XSSFWorkbook(), dir.resolve("logs.xlsx"));
+        when(loggerAllowlist.contains("testlogger")).thenReturn(true);
+        when(bulkIndexer.open(false)).thenReturn(session);
+        List<LogEntity> written = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            written.add(invocation.getArgument(0));
+            ((Consumer<BulkIndexer.Result>) invocation.getArgument(1)).accept(BulkIndexer.Result.WRITTEN);
+            return null;
+        }).when(session).add(any(), any());
+        IngestionCheckpoints checkpoints = mock(IngestionCheckpoints.class);
+        String fingerprint = IngestionCheckpoints.fingerprint(file);
+        when(checkpoints.load(fingerprint)).thenReturn(new IngestionCheckpoint(fingerprint, file, 0, 1, 0));
+
+        IngestionPipeline pipeline = new IngestionPipeline(helper, bulkIndexer, checkpoints);
+        pipeline.run(file);
+
+        assertEquals(1, written.size());
+        assertEquals("source2", written.get(0).getSource());
+        assertEquals(2, pipeline.job().getStartRow());
+        assertEquals(2, pipeline.job().getCommittedRow());
+        verify(checkpoints).delete(fingerprint);
+    }
+}
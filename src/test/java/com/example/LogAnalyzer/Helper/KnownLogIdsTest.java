@@ -0,0 +1,32 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KnownLogIdsTest {
+
+    @Test
+    public void addedIdsAreKnownTest() {
+        KnownLogIds ids = new KnownLogIds(10);
+
+        ids.add("a");
+
+        assertTrue(ids.contains("a"));
+        assertFalse(ids.contains("b"));
+    }
+
+    //a write leaves the ids, a dropped partition forgets them all
+    @Test
+    public void droppedPartitionClearsTest() {
+        KnownLogIds ids = new KnownLogIds(10);
+        ids.add("a");
+
+        ids.onLogsIndexed(new LogsIndexedEvent("loganalyzer-2023.06.16", 5));
+        ids.onLogsIndexed(new LogsIndexedEvent("rollup-loganalyzer", 0));
+        assertTrue(ids.contains("a"));
+
+        ids.onLogsIndexed(new LogsIndexedEvent("loganalyzer-2023.06.16", 0));
+        assertFalse(ids.contains("a"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.search.SearchHit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//maps a 10k hit response with getSourceAsMap, like the service did, and with the streaming mapper.
+//hits cache the map they built, so every invocation maps fresh hits over the same source bytes.
+//not a unit test, run it by hand:
+//  mvn test-compile && java -cp target/test-classes:target/classes:<test classpath> \
+//      com.example.LogAnalyzer.Helper.LogEntityMapperBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogEntityMapperBenchmark {
+
+    private static final int HITS = 10_000;
+
+    private final List<BytesReference> sources = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < HITS; i++) {
+            sources.add(new BytesArray("{\"timestamp\":\"2023-06-16T17:52:14." + String.format("%03d", i % 1000) + "Z\","
+                    + "\"date\":\"2023-06-16\",\"source\":\"standalone-reporting-sch-slave-deployment-" + (i % 50) + "\","
+                    + "\"message\":\"java.lang.IllegalStateException: failed to process request " + i + "\","
+                    + "\"loglevel\":\"ERROR\",\"logger\":\"testlogger\",\"partnerid\":\"" + (1000 + i % 200) + "\"}"));
+        }
+    }
+
+    private List<SearchHit> hits() {
+        List<SearchHit> hits = new ArrayList<>(HITS);
+        for (int i = 0; i < HITS; i++) {
+            SearchHit hit = new SearchHit(i, String.valueOf(i), null, Collections.emptyMap());
+            hit.sourceRef(sources.get(i));
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public List<LogEntity> sourceAsMap() {
+        List<LogEntity> logs = new ArrayList<>();
+        for (SearchHit hit : hits()) {
+            Map<String, Object> sourceAsMap = hit.getSourceAsMap();
+            LogEntity log = new LogEntity();
+            long millis = TimestampCodec.parseMillis(sourceAsMap.get("timestamp").toString());
+            log.setID(hit.getId());
+            log.setTimestamp(new Date(millis));
+            log.setDate(TimestampCodec.date(millis));
+            log.setSource((String) sourceAsMap.get("source"));
+            log.setMessage((String) sourceAsMap.get("message"));
+            log.setLoglevel((String) sourceAsMap.get("loglevel"));
+            log.setLogger((String) sourceAsMap.get("logger"));
+            log.setPartnerid((String) sourceAsMap.get("partnerid"));
+            logs.add(log);
+        }
+        return logs;
+    }
+
+    @Benchmark
+    public List<LogEntity> streamingMapper() {
+        return LogEntityMapper.ALL.mapAll(hits());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LogEntityMapperBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.search.SearchHit;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogEntityMapperTest {
+
+    private static final String SOURCE = "{\"timestamp\":\"2023-06-16T17:52:14.691Z\",\"date\":\"2023-06-16\","
+            + "\"source\":\"source1\",\"message\":\"line one\\nline \\\"two\\\"\",\"loglevel\":\"ERROR\","
+            + "\"logger\":\"testlogger\",\"partnerid\":\"1001.0\",\"extra\":{\"nested\":[1,2,{\"a\":\"b\"}]}}";
+
+    static SearchHit hit(String id, String source) {
+        SearchHit hit = new SearchHit(0, id, null, Collections.emptyMap());
+        hit.sourceRef(new BytesArray(source));
+        return hit;
+    }
+
+    @Test
+    public void mapAllFieldsTest() {
+        LogEntity log = LogEntityMapper.ALL.map(hit("1", SOURCE));
+
+        assertEquals("1", log.getID());
+        assertEquals(Date.from(Instant.parse("2023-06-16T17:52:14.691Z")), log.getTimestamp());
+        assertEquals(LocalDate.of(2023, 6, 16), log.getDate());
+        assertEquals("source1", log.getSource());
+        assertEquals("line one\nline \"two\"", log.getMessage());
+        assertEquals("ERROR", log.getLoglevel());
+        assertEquals("testlogger", log.getLogger());
+        assertEquals("1001.0", log.getPartnerid());
+    }
+
+    @Test
+    public void mapSubsetTest() {
+        LogEntityMapper mapper = new LogEntityMapper(LogEntityMapper.SOURCE, LogEntityMapper.MESSAGE);
+        LogEntity log = mapper.map(hit("1", SOURCE));
+
+        assertEquals("1", log.getID());
+        assertEquals("source1", log.getSource());
+        assertNotNull(log.getMessage());
+        assertNull(log.getTimestamp());
+        assertNull(log.getDate());
+        assertNull(log.getLoglevel());
+        assertNull(log.getLogger());
+        assertNull(log.getPartnerid());
+    }
+
+    @Test
+    public void mapAllTest() {
+        List<LogEntity> logs = LogEntityMapper.ALL.mapAll(List.of(hit("1", SOURCE), hit("2", "{\"source\":\"source2\"}")));
+
+        assertEquals(2, logs.size());
+        assertEquals("source1", logs.get(0).getSource());
+        assertEquals("2", logs.get(1).getID());
+        assertEquals("source2", logs.get(1).getSource());
+        assertNull(logs.get(1).getTimestamp());
+    }
+
+    @Test
+    public void mapLooseValuesTest() {
+        LogEntity log = LogEntityMapper.ALL.map(hit("1", "{\"timestamp\":1686937934691,\"source\":null,\"partnerid\":1001,\"logger\":[\"a\"]}"));
+
+        assertEquals(new Date(1686937934691L), log.getTimestamp());
+        assertEquals(LocalDate.of(2023, 6, 16), log.getDate());
+        assertNull(log.getSource());
+        assertEquals("1001", log.getPartnerid());
+        assertNull(log.getLogger());
+    }
+
+    @Test
+    public void mapFailTest() {
+        assertThrows(IllegalArgumentException.class, () -> LogEntityMapper.ALL.map(hit("1", "{\"timestamp\":\"16/06/2023\"}")));
+        assertThrows(RuntimeException.class, () -> LogEntityMapper.ALL.map(hit("1", "[1,2]")));
+        assertThrows(IllegalArgumentException.class, () -> new LogEntityMapper("date"));
+    }
+}
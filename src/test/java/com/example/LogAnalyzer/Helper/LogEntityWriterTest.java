@@ -0,0 +1,74 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogEntityWriterTest {
+
+    private static LogEntity log(String id, String message) {
+        LogEntity log = new LogEntity();
+        log.setID(id);
+        log.setTimestamp(new Date(1686937934691L));
+        log.setDate(LocalDate.of(2023, 6, 16));
+        log.setSource("source1");
+        log.setMessage(message);
+        log.setLoglevel("ERROR");
+        log.setLogger("testlogger");
+        return log;
+    }
+
+    @Test
+    public void ndjsonTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogEntityWriter writer = LogEntityWriter.open(LogEntityWriter.NDJSON, out);
+        assertEquals(0, out.size());
+
+        writer.write(List.of(log("1", "first \"line\"\nsecond")));
+        String firstBatch = out.toString(StandardCharsets.UTF_8);
+        assertTrue(firstBatch.endsWith("\n"));
+        writer.write(List.of(log("2", "plain")));
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        JsonNode first = new ObjectMapper().readTree(lines[0]);
+        assertEquals("1", first.get("id").asText());
+        assertEquals("2023-06-16T17:52:14.691Z", first.get("timestamp").asText());
+        assertEquals("2023-06-16", first.get("date").asText());
+        assertEquals("first \"line\"\nsecond", first.get("message").asText());
+        assertTrue(first.get("partnerid").isNull());
+        assertEquals("2", new ObjectMapper().readTree(lines[1]).get("id").asText());
+    }
+
+    @Test
+    public void csvTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogEntityWriter writer = LogEntityWriter.open(LogEntityWriter.CSV, out);
+        //the header goes out before any data
+        assertEquals("id,timestamp,date,source,message,loglevel,logger,partnerid\r\n", out.toString(StandardCharsets.UTF_8));
+
+        writer.write(List.of(log("1", "a, \"quoted\"\nmessage"), log("2", "plain")));
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.contains("1,2023-06-16T17:52:14.691Z,2023-06-16,source1,\"a, \"\"quoted\"\"\nmessage\",ERROR,testlogger,\r\n"));
+        assertTrue(csv.endsWith("2,2023-06-16T17:52:14.691Z,2023-06-16,source1,plain,ERROR,testlogger,\r\n"));
+    }
+
+    @Test
+    public void formatTest() {
+        assertTrue(LogEntityWriter.isSupported("csv"));
+        assertFalse(LogEntityWriter.isSupported("xml"));
+        assertEquals("application/x-ndjson", LogEntityWriter.contentType(LogEntityWriter.NDJSON));
+        assertThrows(IllegalArgumentException.class, () -> LogEntityWriter.open("xml", new ByteArrayOutputStream()));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogIdsTest {
+
+    private static LogEntity log(String message) {
+        LogEntity log = new LogEntity();
+        log.setTimestamp(new Date(1686937934691L));
+        log.setSource("source");
+        log.setMessage(message);
+        log.setLoglevel("ERROR");
+        log.setLogger("logger");
+        log.setPartnerid("1001.0");
+        return log;
+    }
+
+    @Test
+    public void sameLogSameIdTest() {
+        String id = LogIds.of(log("message"));
+
+        assertEquals(id, LogIds.of(log("message")));
+        assertEquals(22, id.length());
+        assertTrue(id.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    public void anyFieldChangesTheIdTest() {
+        String id = LogIds.of(log("message"));
+        LogEntity later = log("message");
+        later.setTimestamp(new Date(1686937934692L));
+        LogEntity otherPartner = log("message");
+        otherPartner.setPartnerid("1002.0");
+
+        assertNotEquals(id, LogIds.of(log("message2")));
+        assertNotEquals(id, LogIds.of(later));
+        assertNotEquals(id, LogIds.of(otherPartner));
+    }
+
+    //the fields are separated, moving text from one to the next is a different log
+    @Test
+    public void fieldBoundariesCountTest() {
+        LogEntity a = log("message");
+        a.setSource("ab");
+        a.setLogger("c");
+        LogEntity b = log("message");
+        b.setSource("a");
+        b.setLogger("bc");
+
+        assertNotEquals(LogIds.of(a), LogIds.of(b));
+    }
+
+    //the loglevel is not part of the id
+    @Test
+    public void loglevelIsIgnoredTest() {
+        LogEntity warn = log("message");
+        warn.setLoglevel("WARN");
+
+        assertEquals(LogIds.of(log("message")), LogIds.of(warn));
+    }
+}
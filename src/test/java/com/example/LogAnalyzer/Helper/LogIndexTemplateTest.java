@@ -0,0 +1,63 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.elasticsearch.client.IndicesClient;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.PutIndexTemplateRequest;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LogIndexTemplateTest {
+
+    @Mock
+    private RestHighLevelClient client;
+
+    @Mock
+    private IndicesClient indices;
+
+    @Test
+    public void installedOnceTest() throws IOException {
+        when(client.indices()).thenReturn(indices);
+        LogIndexTemplate template = new LogIndexTemplate(client);
+
+        template.install();
+        template.install();
+
+        verify(indices, times(1)).putTemplate(any(PutIndexTemplateRequest.class), eq(RequestOptions.DEFAULT));
+    }
+
+    //the partitions are mapped like LogEntity, the fields that are grouped by are keywords
+    @Test
+    public void requestTest() {
+        PutIndexTemplateRequest request = new LogIndexTemplate(client).request();
+
+        assertEquals(List.of("loganalyzer-*"), request.patterns());
+        assertEquals(Map.of("type", "keyword"), LogIndexTemplate.properties().get("source"));
+        assertEquals(Map.of("type", "date"), LogIndexTemplate.properties().get("timestamp"));
+        assertEquals(Map.of("type", "text", "fields", Map.of("keyword", Map.of("type", "keyword", "ignore_above", 256))),
+                LogIndexTemplate.properties().get("message"));
+    }
+
+    @Test
+    public void settingsTest() {
+        Settings settings = new LogIndexTemplate(client).request().settings();
+
+        assertEquals("1", settings.get("index.number_of_shards"));
+        assertEquals("1", settings.get("index.number_of_replicas"));
+        assertEquals("best_compression", settings.get("index.codec"));
+        assertEquals("1s", settings.get("index.refresh_interval"));
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogPartitionsTest {
+
+    private static long millis(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+
+    @Test
+    public void indexTest() {
+        LogEntity log = new LogEntity();
+        assertEquals("loganalyzer-undated", LogPartitions.index(log));
+
+        log.setTimestamp(new Date(millis("2023-06-16T23:59:59.999Z")));
+        assertEquals("loganalyzer-2023.06.16", LogPartitions.index(log));
+        assertEquals("loganalyzer-2023.06.17", LogPartitions.index(millis("2023-06-17T00:00:00Z")));
+    }
+
+    //a short range names its days, a longer one months and then years, an open one every partition
+    @Test
+    public void indicesTest() {
+        assertArrayEquals(new String[]{"loganalyzer", "loganalyzer-2023.06.16"},
+                LogPartitions.indices(millis("2023-06-16T10:00:00Z"), millis("2023-06-16T10:15:00Z")));
+        assertArrayEquals(new String[]{"loganalyzer", "loganalyzer-2023.06.30", "loganalyzer-2023.07.01"},
+                LogPartitions.indices(millis("2023-06-30T23:00:00Z"), millis("2023-07-01T01:00:00Z")));
+        assertArrayEquals(new String[]{"loganalyzer", "loganalyzer-2023.06.*", "loganalyzer-2023.07.*", "loganalyzer-2023.08.*"},
+                LogPartitions.indices(millis("2023-06-16T00:00:00Z"), millis("2023-08-01T00:00:00Z")));
+        assertArrayEquals(new String[]{"loganalyzer", "loganalyzer-2020.*", "loganalyzer-2021.*", "loganalyzer-2022.*", "loganalyzer-2023.*"},
+                LogPartitions.indices(millis("2020-06-16T00:00:00Z"), millis("2023-08-01T00:00:00Z")));
+        assertArrayEquals(new String[]{"loganalyzer*"}, LogPartitions.indices(Long.MIN_VALUE, millis("2023-08-01T00:00:00Z")));
+        assertArrayEquals(new String[]{"loganalyzer*"}, LogPartitions.indices(0, millis("2023-08-01T00:00:00Z")));
+    }
+
+    @Test
+    public void dayStartTest() {
+        assertEquals(millis("2023-06-16T00:00:00Z"), LogPartitions.dayStart("loganalyzer-2023.06.16"));
+        assertEquals(Long.MIN_VALUE, LogPartitions.dayStart("loganalyzer-undated"));
+        assertEquals(Long.MIN_VALUE, LogPartitions.dayStart("loganalyzer"));
+        assertEquals(Long.MIN_VALUE, LogPartitions.dayStart("loganalyzer-2023.13.16"));
+    }
+}
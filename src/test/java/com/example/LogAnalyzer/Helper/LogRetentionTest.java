@@ -0,0 +1,100 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.client.IndicesClient;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.client.indices.GetIndexResponse;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.DeleteByQueryRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LogRetentionTest {
+
+    @Mock
+    private RestHighLevelClient client;
+
+    @Mock
+    private IndicesClient indices;
+
+    private void stubIndices(String... names) throws IOException {
+        GetIndexResponse response = mock(GetIndexResponse.class);
+        when(response.getIndices()).thenReturn(names);
+        when(client.indices()).thenReturn(indices);
+        when(indices.get(any(GetIndexRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(response);
+    }
+
+    //whole days before the cutoff are dropped, the day it falls in, the undated partition and the legacy index are kept
+    @Test
+    public void dropBeforeTest() throws IOException {
+        stubIndices("loganalyzer-2023.06.12", "loganalyzer-2023.06.14", "loganalyzer-2023.06.16", "loganalyzer-undated");
+        BulkByScrollResponse deleted = mock(BulkByScrollResponse.class);
+        when(client.deleteByQuery(any(DeleteByQueryRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(deleted);
+        List<Object> events = new ArrayList<>();
+        LogRetention retention = new LogRetention(client, events::add);
+
+        List<String> dropped = retention.dropBefore(Instant.parse("2023-06-16T12:00:00Z").toEpochMilli());
+
+        assertEquals(List.of("loganalyzer-2023.06.12", "loganalyzer-2023.06.14"), dropped);
+        ArgumentCaptor<DeleteIndexRequest> delete = ArgumentCaptor.forClass(DeleteIndexRequest.class);
+        verify(indices).delete(delete.capture(), eq(RequestOptions.DEFAULT));
+        assertArrayEquals(new String[]{"loganalyzer-2023.06.12", "loganalyzer-2023.06.14"}, delete.getValue().indices());
+        assertEquals(3, events.size());
+        assertEquals(Instant.parse("2023-06-12T00:00:00Z").toEpochMilli(), ((LogsIndexedEvent) events.get(0)).getFrom());
+        LogsIndexedEvent rollup = (LogsIndexedEvent) events.get(2);
+        assertEquals("rollup-loganalyzer", rollup.getIndex());
+        assertEquals(Instant.parse("2023-06-12T00:00:00Z").toEpochMilli(), rollup.getFrom());
+        assertEquals(Instant.parse("2023-06-15T00:00:00Z").toEpochMilli() - 1, rollup.getTo());
+    }
+
+    //the rollup loses the hours of the dropped days only, the 13th in between is kept for the legacy index
+    @Test
+    public void dropRollupRequestTest() throws Exception {
+        long june12 = Instant.parse("2023-06-12T00:00:00Z").toEpochMilli();
+        long june14 = Instant.parse("2023-06-14T00:00:00Z").toEpochMilli();
+        JsonNode bool = new ObjectMapper().readTree(LogRetention.dropRollupRequest(List.of(june12, june14))
+                .getSearchRequest().source().toString()).get("query").get("bool");
+
+        assertEquals(2, bool.get("should").size());
+        JsonNode second = bool.get("should").get(1).get("range").get("hour");
+        assertEquals(june14, second.get("from").asLong());
+        assertEquals(june14 + LogPartitions.DAY_MILLIS, second.get("to").asLong());
+        assertTrue(second.get("include_lower").asBoolean());
+        assertFalse(second.get("include_upper").asBoolean());
+    }
+
+    @Test
+    public void nothingExpiredTest() throws IOException {
+        stubIndices("loganalyzer-2023.06.16");
+        LogRetention retention = new LogRetention(client);
+
+        assertTrue(retention.dropBefore(Instant.parse("2023-06-16T12:00:00Z").toEpochMilli()).isEmpty());
+        verify(indices, never()).delete(any(DeleteIndexRequest.class), any());
+        verify(client, never()).deleteByQuery(any(), any());
+    }
+
+    @Test
+    public void disabledRetentionDropsNothingTest() {
+        new LogRetention(client).scheduledDrop();
+
+        verifyNoInteractions(client);
+    }
+}
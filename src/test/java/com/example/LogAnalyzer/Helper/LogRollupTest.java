@@ -0,0 +1,203 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.IndicesClient;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LogRollupTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final long HOUR = 3_600_000;
+
+    @Mock
+    private RestHighLevelClient client;
+
+    @Mock
+    private IndicesClient indices;
+
+    private final List<Object> events = new ArrayList<>();
+
+    private LogRollup rollup;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        rollup = new LogRollup(client, events::add);
+        lenient().when(client.indices()).thenReturn(indices);
+        lenient().when(indices.exists(any(GetIndexRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(true);
+    }
+
+    private static LogEntity log(long timestamp, String source, String loglevel) {
+        LogEntity log = new LogEntity();
+        log.setTimestamp(new Date(timestamp));
+        log.setSource(source);
+        log.setLoglevel(loglevel);
+        log.setLogger("app");
+        log.setMessage("message");
+        return log;
+    }
+
+    private List<BulkRequest> stubBulk() throws IOException {
+        List<BulkRequest> requests = new ArrayList<>();
+        BulkResponse response = mock(BulkResponse.class);
+        when(client.bulk(any(BulkRequest.class), eq(RequestOptions.DEFAULT))).thenAnswer(invocation -> {
+            requests.add(invocation.getArgument(0));
+            return response;
+        });
+        return requests;
+    }
+
+    //logs of one combination in one hour become one upsert that adds their count
+    @Test
+    public void sessionUpsertsCountsTest() throws IOException {
+        List<BulkRequest> requests = stubBulk();
+        LogRollup.Session session = rollup.open();
+        session.add(log(10 * HOUR + 5, "web", "ERROR"));
+        session.add(log(10 * HOUR + 60_000, "web", "ERROR"));
+        session.add(log(11 * HOUR, "web", "INFO"));
+
+        session.close();
+
+        assertEquals(1, requests.size());
+        assertEquals(2, requests.get(0).numberOfActions());
+        UpdateRequest twice = requests.get(0).requests().stream()
+                .map(request -> (UpdateRequest) request)
+                .filter(request -> request.upsertRequest().sourceAsMap().get("loglevel").equals("ERROR"))
+                .findFirst().orElseThrow();
+        assertEquals(2, ((Number) twice.upsertRequest().sourceAsMap().get("count")).longValue());
+        assertEquals(2L, twice.script().getParams().get("count"));
+        assertEquals("rollup-loganalyzer", twice.index());
+
+        LogsIndexedEvent event = (LogsIndexedEvent) events.get(0);
+        assertEquals("rollup-loganalyzer", event.getIndex());
+        assertEquals(10 * HOUR, event.getFrom());
+        assertEquals(12 * HOUR - 1, event.getTo());
+    }
+
+    //a flush writes what was added since the last one, nothing is written twice
+    @Test
+    public void flushWritesTheCountsSinceTheLastOneTest() throws IOException {
+        List<BulkRequest> requests = stubBulk();
+        LogRollup.Session session = rollup.open();
+        session.add(log(10 * HOUR, "web", "ERROR"));
+        session.flush();
+        session.add(log(10 * HOUR, "web", "ERROR"));
+        session.add(log(10 * HOUR, "web", "ERROR"));
+        session.flush();
+        session.close();
+
+        assertEquals(2, requests.size());
+        assertEquals(1L, ((UpdateRequest) requests.get(0).requests().get(0)).script().getParams().get("count"));
+        assertEquals(2L, ((UpdateRequest) requests.get(1).requests().get(0)).script().getParams().get("count"));
+    }
+
+    @Test
+    public void emptySessionWritesNothingTest() throws IOException {
+        rollup.open().close();
+
+        verify(client, never()).bulk(any(BulkRequest.class), any());
+        assertTrue(events.isEmpty());
+    }
+
+    //the same combination always has the same document, a missing field is left out of it
+    @Test
+    public void rowTest() {
+        LogRollup.Row row = LogRollup.Row.of(log(10 * HOUR + 5, "web", null));
+        LogRollup.Row same = LogRollup.Row.of(log(10 * HOUR + 99, "web", null));
+        LogEntity undated = log(0, "web", null);
+        undated.setTimestamp(null);
+
+        assertEquals(row, same);
+        assertEquals(row.id(), same.id());
+        assertNotEquals(row.id(), LogRollup.Row.of(undated).id());
+        Map<String, Object> source = row.source(3);
+        assertEquals("1970-01-01T10:00:00.000Z", source.get("hour"));
+        assertFalse(source.containsKey("loglevel"));
+        assertEquals(3L, source.get("count"));
+        assertFalse(LogRollup.Row.of(undated).source(1).containsKey("hour"));
+    }
+
+    @Test
+    public void countsRequestTest() throws Exception {
+        SearchRequest request = LogRollup.countsRequest(Map.of("hour", 0L));
+        JsonNode composite = JSON.readTree(request.source().toString()).get("aggregations").get("rollup").get("composite");
+
+        assertArrayEquals(new String[]{"loganalyzer*"}, request.indices());
+        assertEquals(5, composite.get("sources").size());
+        assertEquals("1h", composite.get("sources").get(0).get("hour").get("date_histogram").get("fixed_interval").asText());
+        assertTrue(composite.get("sources").get(4).get("partnerid").get("terms").get("missing_bucket").asBoolean());
+        assertEquals(0, composite.get("after").get("hour").asLong());
+    }
+
+    //a rebuild drops the rollup and writes one document per combination counted in the logs
+    @Test
+    public void rebuildTest() throws IOException {
+        when(indices.delete(any(DeleteIndexRequest.class), eq(RequestOptions.DEFAULT)))
+                .thenThrow(new ElasticsearchStatusException("no such index", RestStatus.NOT_FOUND));
+        List<BulkRequest> requests = stubBulk();
+        Map<String, Object> key = new HashMap<>();
+        key.put("hour", 10 * HOUR);
+        key.put("source", "web");
+        key.put("logger", null);
+        CompositeAggregation.Bucket bucket = mock(CompositeAggregation.Bucket.class);
+        when(bucket.getKey()).thenReturn(key);
+        when(bucket.getDocCount()).thenReturn(7L);
+        CompositeAggregation first = mock(CompositeAggregation.class);
+        doReturn(List.of(bucket)).when(first).getBuckets();
+        when(first.afterKey()).thenReturn(key);
+        CompositeAggregation last = mock(CompositeAggregation.class);
+        doReturn(List.of()).when(last).getBuckets();
+        SearchResponse firstPage = compositeResponse(first);
+        SearchResponse lastPage = compositeResponse(last);
+        when(client.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(firstPage, lastPage);
+
+        assertEquals(1, rollup.rebuild());
+
+        IndexRequest written = (IndexRequest) requests.get(0).requests().get(0);
+        assertEquals(7L, ((Number) written.sourceAsMap().get("count")).longValue());
+        assertFalse(written.sourceAsMap().containsKey("logger"));
+        verify(client, times(2)).search(any(SearchRequest.class), eq(RequestOptions.DEFAULT));
+    }
+
+    private static SearchResponse compositeResponse(CompositeAggregation composite) {
+        Aggregations aggs = mock(Aggregations.class);
+        when(aggs.get("rollup")).thenReturn(composite);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getAggregations()).thenReturn(aggs);
+        return response;
+    }
+}
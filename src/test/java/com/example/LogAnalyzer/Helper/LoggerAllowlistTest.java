@@ -0,0 +1,76 @@
+package com.example.LogAnalyzer.Helper;
+
+import com.example.LogAnalyzer.Entity.LoggerEntity;
+import com.example.LogAnalyzer.Repository.LoggerRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LoggerAllowlistTest {
+
+    @InjectMocks
+    private LoggerAllowlist allowlist;
+
+    @Mock
+    private LoggerRepository loggerRepository;
+
+    private static LoggerEntity logger(String name) {
+        LoggerEntity logger = new LoggerEntity();
+        logger.setId(name);
+        logger.setlogger(name);
+        return logger;
+    }
+
+    @Test
+    public void containsTest() {
+        when(loggerRepository.findAll()).thenReturn(List.of(logger("logger1"), logger("logger2")));
+
+        assertTrue(allowlist.contains("logger1"));
+        assertTrue(allowlist.contains("logger2"));
+        assertTrue(allowlist.contains("testlogger"));
+        assertFalse(allowlist.contains("logger3"));
+        assertFalse(allowlist.contains(null));
+        assertEquals(Set.of("logger1", "logger2"), allowlist.loggers());
+
+        //loaded once, not on every lookup
+        verify(loggerRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void bloomFilterTest() {
+        ReflectionTestUtils.setField(allowlist, "bloomEnabled", true);
+        when(loggerRepository.findAll()).thenReturn(List.of(logger("logger1")));
+
+        assertTrue(allowlist.contains("logger1"));
+        assertFalse(allowlist.contains("logger3"));
+    }
+
+    @Test
+    public void refreshTest() {
+        when(loggerRepository.findAll()).thenReturn(List.of(logger("logger1")), List.of(logger("logger2")));
+
+        assertTrue(allowlist.contains("logger1"));
+        allowlist.scheduledRefresh();
+        assertFalse(allowlist.contains("logger1"));
+        assertTrue(allowlist.contains("logger2"));
+    }
+
+    @Test
+    public void failedRefreshKeepsListTest() {
+        when(loggerRepository.findAll()).thenReturn(List.of(logger("logger1"))).thenThrow(new IllegalStateException("mongo down"));
+
+        assertTrue(allowlist.contains("logger1"));
+        allowlist.scheduledRefresh();
+        assertTrue(allowlist.contains("logger1"));
+    }
+}
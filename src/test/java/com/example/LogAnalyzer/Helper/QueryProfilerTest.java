@@ -0,0 +1,262 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class QueryProfilerTest {
+
+    private final RestHighLevelClient client = mock(RestHighLevelClient.class);
+
+    private final QueryProfiler profiler = new QueryProfiler(500, 100, 10);
+
+    @AfterEach
+    public void stop() {
+        profiler.stop();
+    }
+
+    private static SearchRequest request() {
+        return new SearchRequest("loganalyzer").source(new SearchSourceBuilder().query(QueryBuilders.termQuery("source", "web")));
+    }
+
+    private static SearchResponse response() {
+        SearchResponse response = mock(SearchResponse.class);
+        lenient().when(response.getTook()).thenReturn(TimeValue.timeValueMillis(12));
+        lenient().when(response.getHits()).thenReturn(new SearchHits(new SearchHit[0], new TotalHits(3, TotalHits.Relation.EQUAL_TO), 1f));
+        return response;
+    }
+
+    //a search is sent once, with the client's default options, when nobody profiles it
+    @Test
+    public void unprofiledSearchTest() throws Exception {
+        SearchRequest searchRequest = request();
+        SearchResponse response = response();
+        when(client.search(searchRequest, RequestOptions.DEFAULT)).thenReturn(response);
+
+        assertSame(response, profiler.search(client, searchRequest));
+        verify(client, times(1)).search(any(SearchRequest.class), any(RequestOptions.class));
+        verify(client, never()).searchAsync(any(SearchRequest.class), any(RequestOptions.class), any());
+    }
+
+    @Test
+    public void profiledSearchTest() throws Exception {
+        SearchRequest searchRequest = request();
+        SearchResponse response = response();
+        when(client.search(eq(searchRequest), any(RequestOptions.class))).thenReturn(response);
+
+        QueryProfile profile = profiler.start(false);
+        profiler.search(client, searchRequest);
+
+        verify(client, times(1)).search(any(SearchRequest.class), any(RequestOptions.class));
+        assertSame(profile, profiler.get(profile.getId()));
+        assertEquals(1, profile.getSearches().size());
+        QuerySample sample = profile.getSearches().get(0);
+        assertEquals("loganalyzer", sample.getIndex());
+        assertEquals(searchRequest.source().toString(), sample.getQuery());
+        assertEquals(12, sample.getTookMillis());
+        assertEquals(3, sample.getHits());
+        assertTrue(sample.getRoundTripMillis() >= 0);
+        assertTrue(sample.getDeserializationMillis() >= 0);
+        assertNull(sample.getProfile());
+        assertFalse(searchRequest.source().profile());
+    }
+
+    //es only adds its profile breakdown when the search asks for it
+    @Test
+    public void esProfileTest() throws Exception {
+        SearchRequest searchRequest = request();
+        SearchResponse response = response();
+        when(response.getProfileResults()).thenReturn(Collections.emptyMap());
+        when(client.search(eq(searchRequest), any(RequestOptions.class))).thenReturn(response);
+
+        QueryProfile profile = profiler.start(true);
+        profiler.search(client, searchRequest);
+
+        assertTrue(searchRequest.source().profile());
+        assertEquals(1, profile.getSearches().size());
+    }
+
+    //the listener runs on another thread after the request thread has stopped profiling
+    @Test
+    public void profiledAsyncSearchTest() {
+        SearchRequest searchRequest = request();
+        QueryProfile profile = profiler.start(false);
+        CompletableFuture<SearchResponse> result = new CompletableFuture<>();
+        profiler.searchAsync(client, searchRequest, ActionListener.wrap(result::complete, result::completeExceptionally));
+        profiler.stop();
+
+        ArgumentCaptor<ActionListener<SearchResponse>> listener = ArgumentCaptor.forClass(ActionListener.class);
+        verify(client).searchAsync(eq(searchRequest), any(RequestOptions.class), listener.capture());
+        SearchResponse response = response();
+        CompletableFuture.runAsync(() -> listener.getValue().onResponse(response)).join();
+
+        assertTrue(result.isDone());
+        assertEquals(1, profile.getSearches().size());
+    }
+
+    //every search of the msearch is sampled and es profiles each of them
+    @Test
+    public void profiledMultiSearchTest() throws Exception {
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest().add(request())
+                .add(new SearchRequest("loganalyzer-2024.01.02").source(new SearchSourceBuilder()));
+        MultiSearchResponse response = new MultiSearchResponse(new MultiSearchResponse.Item[]{
+                new MultiSearchResponse.Item(response(), null),
+                new MultiSearchResponse.Item(null, new RuntimeException("failed"))}, 20);
+        when(client.msearch(eq(multiSearchRequest), any(RequestOptions.class))).thenReturn(response);
+
+        QueryProfile profile = profiler.start(true);
+        assertSame(response, profiler.msearch(client, multiSearchRequest));
+
+        assertTrue(multiSearchRequest.requests().get(0).source().profile());
+        assertTrue(multiSearchRequest.requests().get(1).source().profile());
+        assertEquals(1, profile.getSearches().size());
+        assertEquals("loganalyzer", profile.getSearches().get(0).getIndex());
+        assertEquals(3, profile.getSearches().get(0).getHits());
+    }
+
+    @Test
+    public void unprofiledMultiSearchTest() throws Exception {
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest().add(request());
+        MultiSearchResponse response = new MultiSearchResponse(new MultiSearchResponse.Item[]{
+                new MultiSearchResponse.Item(response(), null)}, 20);
+        when(client.msearch(multiSearchRequest, RequestOptions.DEFAULT)).thenReturn(response);
+
+        assertSame(response, profiler.msearch(client, multiSearchRequest));
+        assertFalse(multiSearchRequest.requests().get(0).source().profile());
+    }
+
+    @Test
+    public void profiledScrollTest() throws Exception {
+        SearchScrollRequest scrollRequest = new SearchScrollRequest("scroll-1");
+        SearchResponse response = response();
+        when(client.scroll(eq(scrollRequest), any(RequestOptions.class))).thenReturn(response);
+
+        QueryProfile profile = profiler.start(false);
+        assertSame(response, profiler.scroll(client, scrollRequest));
+
+        assertEquals(1, profile.getSearches().size());
+        QuerySample sample = profile.getSearches().get(0);
+        assertEquals(QueryProfiler.SCROLL, sample.getIndex());
+        assertNull(sample.getQuery());
+        assertEquals(12, sample.getTookMillis());
+    }
+
+    @Test
+    public void profiledAsyncScrollTest() {
+        SearchScrollRequest scrollRequest = new SearchScrollRequest("scroll-1");
+        QueryProfile profile = profiler.start(false);
+        CompletableFuture<SearchResponse> result = new CompletableFuture<>();
+        profiler.scrollAsync(client, scrollRequest, ActionListener.wrap(result::complete, result::completeExceptionally));
+        profiler.stop();
+
+        ArgumentCaptor<ActionListener<SearchResponse>> listener = ArgumentCaptor.forClass(ActionListener.class);
+        verify(client).scrollAsync(eq(scrollRequest), any(RequestOptions.class), listener.capture());
+        SearchResponse response = response();
+        CompletableFuture.runAsync(() -> listener.getValue().onResponse(response)).join();
+
+        assertSame(response, result.join());
+        assertEquals(1, profile.getSearches().size());
+        assertEquals(QueryProfiler.SCROLL, profile.getSearches().get(0).getIndex());
+    }
+
+    //a slow scroll page is logged without a query
+    @Test
+    public void slowScrollLogTest() throws Exception {
+        QueryProfiler slowProfiler = new QueryProfiler(0, 100, 10);
+        SearchScrollRequest scrollRequest = new SearchScrollRequest("scroll-1");
+        SearchResponse response = response();
+        when(client.scroll(scrollRequest, RequestOptions.DEFAULT)).thenReturn(response);
+
+        List<LogRecord> records = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger slowLog = Logger.getLogger(QueryProfiler.class.getName() + ".slow");
+        slowLog.addHandler(handler);
+        try {
+            slowProfiler.scroll(client, scrollRequest);
+        } finally {
+            slowLog.removeHandler(handler);
+        }
+
+        assertEquals(1, records.size());
+        String line = records.get(0).getMessage();
+        assertTrue(line.startsWith("{\"index\":\"_scroll\",\"took_ms\":12,"), line);
+        assertFalse(line.contains("\"query\""), line);
+    }
+
+    @Test
+    public void slowQueryLogTest() throws Exception {
+        QueryProfiler slowProfiler = new QueryProfiler(0, 100, 10);
+        SearchRequest searchRequest = request();
+        SearchResponse response = response();
+        when(client.search(searchRequest, RequestOptions.DEFAULT)).thenReturn(response);
+
+        List<LogRecord> records = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger slowLog = Logger.getLogger(QueryProfiler.class.getName() + ".slow");
+        slowLog.addHandler(handler);
+        try {
+            slowProfiler.search(client, searchRequest);
+        } finally {
+            slowLog.removeHandler(handler);
+        }
+
+        assertEquals(1, records.size());
+        String line = records.get(0).getMessage();
+        assertTrue(line.startsWith("{\"index\":\"loganalyzer\",\"took_ms\":12,"), line);
+        assertTrue(line.contains("\"hits\":3"), line);
+        assertTrue(line.contains("\"query\":{\"query\":{\"term\""), line);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowCommitsTest {
+
+    //a row done early waits for the rows read before it
+    @Test
+    public void outOfOrderRowsTest() {
+        RowCommits commits = new RowCommits(0);
+        commits.read(1);
+        commits.read(2);
+        commits.read(4);
+
+        commits.done(2);
+        assertEquals(0, commits.committed());
+        commits.done(1);
+        assertEquals(2, commits.committed());
+        assertFalse(commits.complete());
+        commits.done(4);
+        assertEquals(4, commits.committed());
+        assertTrue(commits.complete());
+    }
+
+    //nothing from a failed row on is committed, the rows before it still are
+    @Test
+    public void failedRowStopsTheCommitsTest() {
+        RowCommits commits = new RowCommits(-1);
+        for (int row = 1; row <= 4; row++) {
+            commits.read(row);
+        }
+
+        commits.done(3);
+        commits.failed(2);
+        commits.done(4);
+        commits.read(5);
+        commits.done(5);
+        assertEquals(-1, commits.committed());
+        commits.done(1);
+
+        assertEquals(1, commits.committed());
+        assertFalse(commits.complete());
+    }
+}
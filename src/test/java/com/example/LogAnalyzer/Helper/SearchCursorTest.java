@@ -0,0 +1,55 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchCursorTest {
+
+    private static final byte[] KEY = "key".getBytes();
+
+    @Test
+    public void roundTripTest() {
+        SearchCursor cursor = new SearchCursor(SearchCursor.PROJECTION, "pit-id==", "{\"match_all\":{}}", List.of("source", "id"), 500);
+        cursor.setAfter(List.of(1686937934691L, 42));
+
+        String token = cursor.encode(KEY);
+        assertTrue(token.matches("[A-Za-z0-9_-]+\\.[A-Za-z0-9_-]+"));
+
+        SearchCursor decoded = SearchCursor.decode(token, KEY);
+        assertEquals(SearchCursor.PROJECTION, decoded.getKind());
+        assertEquals("pit-id==", decoded.getPit());
+        assertEquals("{\"match_all\":{}}", decoded.getQuery());
+        assertEquals(List.of("source", "id"), decoded.getFields());
+        assertEquals(500, decoded.getSize());
+        assertEquals(List.of(1686937934691L, 42), decoded.getAfter());
+    }
+
+    @Test
+    public void invalidTest() {
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("not a cursor", KEY));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(Base64.getUrlEncoder().encodeToString("[1]".getBytes()), KEY));
+        //a first page cursor has no sort values yet and is never handed out
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(new SearchCursor(SearchCursor.LOGS, "pit", "{}", null, 10).encode(KEY), KEY));
+    }
+
+    //a changed query or size, or a token signed with another key, is refused
+    @Test
+    public void forgedTest() {
+        SearchCursor cursor = new SearchCursor(SearchCursor.LOGS, "pit", "{\"match_all\":{}}", null, 10);
+        cursor.setAfter(List.of(1));
+        String token = cursor.encode(KEY);
+        String signature = token.substring(token.indexOf('.'));
+
+        cursor.setSize(1_000_000);
+        String json = cursor.encode(KEY);
+        String tampered = json.substring(0, json.indexOf('.')) + signature;
+
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(tampered, KEY));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(token, "other".getBytes()));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(token.substring(0, token.indexOf('.')), KEY));
+    }
+}
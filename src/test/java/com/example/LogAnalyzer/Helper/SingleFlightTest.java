@@ -0,0 +1,111 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 50;
+
+    //the call only returns once every caller has arrived, so all of them overlap with it
+    @Test
+    public void thunderingHerdRunsOnceTest() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        AtomicInteger executions = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(pool.submit(() -> flight.execute("groupBy source", () -> {
+                    executions.incrementAndGet();
+                    awaitCalls(flight, CALLERS);
+                    return "result";
+                })));
+            }
+            for (Future<String> result : results) {
+                assertEquals("result", result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, executions.get());
+        assertEquals(CALLERS, flight.calls());
+        assertEquals(1, flight.executions());
+    }
+
+    @Test
+    public void sequentialCallsAreNotSharedTest() {
+        SingleFlight<Integer> flight = new SingleFlight<>();
+        AtomicInteger executions = new AtomicInteger();
+
+        flight.execute("key", executions::incrementAndGet);
+        flight.execute("key", executions::incrementAndGet);
+
+        assertEquals(2, executions.get());
+        assertEquals(2, flight.executions());
+    }
+
+    @Test
+    public void failureIsSharedAndForgottenTest() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = pool.submit(() -> flight.execute("key", () -> {
+                awaitCalls(flight, 2);
+                throw new IllegalStateException("es is down");
+            }));
+            //the follower is only started once the leader holds the key
+            awaitCalls(flight, 1);
+            Future<String> follower = pool.submit(() -> flight.execute("key", () -> "not run"));
+
+            assertTrue(assertThrows(Exception.class, leader::get).getCause() instanceof IllegalStateException);
+            assertTrue(assertThrows(Exception.class, follower::get).getCause() instanceof IllegalStateException);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("ok", flight.execute("key", () -> "ok"));
+    }
+
+    @Test
+    public void asyncCallersShareOneCallTest() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        CompletableFuture<String> search = new CompletableFuture<>();
+        AtomicInteger executions = new AtomicInteger();
+
+        CompletableFuture<String> first = flight.executeAsync("key", () -> {
+            executions.incrementAndGet();
+            return search;
+        });
+        CompletableFuture<String> second = flight.executeAsync("key", () -> {
+            executions.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        //one caller giving up does not cancel the call for the others
+        second.cancel(true);
+        search.complete("result");
+
+        assertEquals("result", first.get());
+        assertTrue(second.isCancelled());
+        assertEquals(1, executions.get());
+        assertEquals(2, flight.calls());
+    }
+
+    private static void awaitCalls(SingleFlight<?> flight, int calls) {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (flight.calls() < calls) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("only " + flight.calls() + " callers arrived");
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
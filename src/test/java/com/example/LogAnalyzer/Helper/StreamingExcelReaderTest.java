@@ -0,0 +1,96 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingExcelReaderTest {
+
+    @TempDir
+    Path dir;
+
+    //writes a small sheet with a header and two data rows, plus a second sheet that must be ignored
+    static String writeWorkbook(Workbook workbook, Path file) throws IOException {
+        Sheet sheet = workbook.createSheet("logs");
+        Row header = sheet.createRow(0);
+        header.createCell(0).setCellValue("timestamp");
+        header.createCell(1).setCellValue("source");
+        for (int i = 1; i <= 2; i++) {
+            Row row = sheet.createRow(i);
+            row.createCell(0).setCellValue("2023-06-16T17:52:14.69" + i + "Z");
+            row.createCell(1).setCellValue("source" + i);
+            row.createCell(2).setCellValue("message" + i);
+            row.createCell(3).setCellValue("ERROR");
+            row.createCell(4).setCellValue("testlogger");
+            row.createCell(5).setCellValue(1000 + i);
+        }
+        workbook.createSheet("other").createRow(0).createCell(0).setCellValue("ignored");
+
+        try (FileOutputStream out = new FileOutputStream(file.toFile())) {
+            workbook.write(out);
+        }
+        workbook.close();
+        return file.toString();
+    }
+
+    private List<List<String>> readAll(String file) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        StreamingExcelReader.read(file, (rowNumber, cells) -> rows.add(new ArrayList<>(cells)));
+        return rows;
+    }
+
+    @Test
+    public void readXlsxTest() throws IOException {
+        String file = writeWorkbook(new XSSFWorkbook(), dir.resolve("logs.xlsx"));
+
+        List<List<String>> rows = readAll(file);
+
+        assertEquals(3, rows.size());
+        assertEquals(List.of("timestamp", "source"), rows.get(0));
+        assertEquals(List.of("2023-06-16T17:52:14.691Z", "source1", "message1", "ERROR", "testlogger", "1001"), rows.get(1));
+    }
+
+    @Test
+    public void readXlsTest() throws IOException {
+        String file = writeWorkbook(new HSSFWorkbook(), dir.resolve("logs.xls"));
+
+        List<List<String>> rows = readAll(file);
+
+        assertEquals(3, rows.size());
+        assertEquals(List.of("2023-06-16T17:52:14.692Z", "source2", "message2", "ERROR", "testlogger", "1002"), rows.get(2));
+    }
+
+    //the rows before fromRow are walked past, both formats start at the same row
+    @Test
+    public void readFromRowTest() throws IOException {
+        for (String file : List.of(writeWorkbook(new XSSFWorkbook(), dir.resolve("from.xlsx")), writeWorkbook(new HSSFWorkbook(), dir.resolve("from.xls")))) {
+            List<Integer> rowNumbers = new ArrayList<>();
+            List<List<String>> rows = new ArrayList<>();
+            StreamingExcelReader.read(file, 2, (rowNumber, cells) -> {
+                rowNumbers.add(rowNumber);
+                rows.add(new ArrayList<>(cells));
+            });
+
+            assertEquals(List.of(2), rowNumbers);
+            assertEquals("source2", rows.get(0).get(1));
+        }
+    }
+
+    @Test
+    public void invalidFileTypeTest() {
+        assertThrows(IllegalArgumentException.class, () -> StreamingExcelReader.read("logs.csv", (rowNumber, cells) -> {
+        }));
+    }
+}
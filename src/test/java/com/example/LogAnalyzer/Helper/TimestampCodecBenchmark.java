@@ -0,0 +1,73 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+//compares the codec with the formatters it replaced, each benchmark produces the timestamp and the date.
+//not a unit test, run it by hand:
+//  mvn test-compile && java -cp target/test-classes:target/classes:<test classpath> \
+//      com.example.LogAnalyzer.Helper.TimestampCodecBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimestampCodecBenchmark {
+
+    private static final String PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(PATTERN).withZone(ZoneOffset.UTC);
+
+    private final String timestamp = "2023-06-16T17:52:14.691Z";
+    private final String date = "2023-06-16";
+
+    //what the ingestion and query code did before: a new formatter per row plus a separate date parse
+    @Benchmark
+    public void simpleDateFormat(Blackhole blackhole) throws ParseException {
+        SimpleDateFormat formatter = new SimpleDateFormat(PATTERN);
+        formatter.setLenient(false);
+        blackhole.consume(formatter.parse(timestamp));
+        blackhole.consume(LocalDate.parse(date));
+    }
+
+    @Benchmark
+    public void dateTimeFormatter(Blackhole blackhole) {
+        Instant instant = FORMATTER.parse(timestamp, Instant::from);
+        blackhole.consume(Date.from(instant));
+        blackhole.consume(LocalDate.ofInstant(instant, ZoneOffset.UTC));
+    }
+
+    @Benchmark
+    public void codec(Blackhole blackhole) {
+        long millis = TimestampCodec.parseMillis(timestamp);
+        blackhole.consume(new Date(millis));
+        blackhole.consume(TimestampCodec.date(millis));
+    }
+
+    @Benchmark
+    public long codecParseOnly() {
+        return TimestampCodec.parseMillis(timestamp);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TimestampCodecBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
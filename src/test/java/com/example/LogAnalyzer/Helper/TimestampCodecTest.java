@@ -0,0 +1,48 @@
+package com.example.LogAnalyzer.Helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimestampCodecTest {
+
+    @Test
+    public void parseTest() {
+        String[] timestamps = {"2023-06-16T17:52:14.691Z", "1970-01-01T00:00:00.000Z", "1969-12-31T23:59:59.999Z",
+                "2024-02-29T23:59:59.999Z", "2000-03-01T00:00:00.001Z", "0001-01-01T00:00:00.000Z"};
+        for (String timestamp : timestamps) {
+            assertEquals(Instant.parse(timestamp).toEpochMilli(), TimestampCodec.parseMillis(timestamp), timestamp);
+        }
+    }
+
+    @Test
+    public void formatTest() {
+        long[] values = {0, -1, 1686937934691L, 1709251199999L, 951868800001L, 253402300799999L};
+        for (long value : values) {
+            String formatted = TimestampCodec.format(value);
+            assertEquals(value, Instant.parse(formatted).toEpochMilli(), formatted);
+            assertEquals(value, TimestampCodec.parseMillis(formatted));
+        }
+        assertEquals("2023-06-16T17:52:14.691Z", TimestampCodec.format(1686937934691L));
+    }
+
+    @Test
+    public void dateTest() {
+        assertEquals(LocalDate.of(2023, 6, 16), TimestampCodec.date(TimestampCodec.parseMillis("2023-06-16T23:59:59.999Z")));
+        assertEquals(LocalDate.of(1969, 12, 31), TimestampCodec.date(-1));
+    }
+
+    @Test
+    public void strictTest() {
+        String[] invalid = {"2023-06-16T17:52:14Z", "2023-06-16 17:52:14.691Z", "2023-13-16T17:52:14.691Z",
+                "2023-02-29T17:52:14.691Z", "2023-06-16T24:00:00.000Z", "2023-06-16T17:60:14.691Z",
+                "2023-06-16T17:52:1a.691Z", "2023-06-00T17:52:14.691Z", "", null};
+        for (String timestamp : invalid) {
+            assertThrows(IllegalArgumentException.class, () -> TimestampCodec.parseMillis(timestamp), timestamp);
+            assertEquals(TimestampCodec.INVALID, TimestampCodec.tryParseMillis(timestamp), timestamp);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Helper.LoggerAllowlist;
+import com.example.LogAnalyzer.Helper.QueryProfiler;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.metrics.Cardinality;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncLogServiceImpTest {
+
+    @InjectMocks
+    private AsyncLogServiceImp logService;
+
+    @Mock
+    private LoggerAllowlist loggerAllowlist;
+
+    @Mock
+    private RestHighLevelClient client;
+
+    @Spy
+    private QueryProfiler profiler = new QueryProfiler(500, 100, 10);
+
+    @Test
+    public void cardinalityCompletesWhenTheResponseArrives() throws Exception {
+        SearchResponse searchResponse = mock(SearchResponse.class);
+        Aggregations aggs = mock(Aggregations.class);
+        Cardinality cardinality = mock(Cardinality.class);
+        when(searchResponse.getAggregations()).thenReturn(aggs);
+        when(aggs.get("unique_source")).thenReturn(cardinality);
+        when(cardinality.getValue()).thenReturn(7L);
+
+        ActionListener<SearchResponse>[] listener = new ActionListener[1];
+        doAnswer(invocation -> {
+            listener[0] = invocation.getArgument(2);
+            return null;
+        }).when(client).searchAsync(any(SearchRequest.class), eq(RequestOptions.DEFAULT), any());
+
+        CompletableFuture<Long> result = logService.cardinalityAggs("source");
+
+        //nothing blocks on the search, the future is still open until es answers
+        assertFalse(result.isDone());
+        listener[0].onResponse(searchResponse);
+        assertEquals(7L, result.get());
+    }
+
+    //the second call arrives while the first search is in flight and shares it
+    @Test
+    public void identicalSearchesInFlightAreSentOnce() throws Exception {
+        SearchResponse searchResponse = mock(SearchResponse.class);
+        Aggregations aggs = mock(Aggregations.class);
+        Cardinality cardinality = mock(Cardinality.class);
+        when(searchResponse.getAggregations()).thenReturn(aggs);
+        when(aggs.get("unique_source")).thenReturn(cardinality);
+        when(cardinality.getValue()).thenReturn(7L);
+        ActionListener<SearchResponse>[] listener = new ActionListener[1];
+        doAnswer(invocation -> {
+            listener[0] = invocation.getArgument(2);
+            return null;
+        }).when(client).searchAsync(any(SearchRequest.class), eq(RequestOptions.DEFAULT), any());
+
+        CompletableFuture<Long> first = logService.cardinalityAggs("source");
+        CompletableFuture<Long> second = logService.cardinalityAggs("source");
+        listener[0].onResponse(searchResponse);
+
+        assertEquals(7L, first.get());
+        assertEquals(7L, second.get());
+        verify(client, times(1)).searchAsync(any(SearchRequest.class), eq(RequestOptions.DEFAULT), any());
+
+        //once answered, the next call searches again
+        logService.cardinalityAggs("source");
+        verify(client, times(2)).searchAsync(any(SearchRequest.class), eq(RequestOptions.DEFAULT), any());
+    }
+
+    @Test
+    public void failureCompletesExceptionally() {
+        doAnswer(invocation -> {
+            ActionListener<SearchResponse> listener = invocation.getArgument(2);
+            listener.onFailure(new IOException("connection refused"));
+            return null;
+        }).when(client).searchAsync(any(SearchRequest.class), eq(RequestOptions.DEFAULT), any());
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> logService.groupByDynamic("source").get());
+        assertTrue(e.getCause() instanceof IOException);
+    }
+
+    @Test
+    public void searchUsingScrollChainsTheBatchesAndClearsTheScroll() throws Exception {
+        SearchResponse first = response("scroll1", hit("1", "{\"source\":\"source1\",\"timestamp\":\"2023-06-16T17:52:14.692Z\"}"));
+        SearchResponse second = response("scroll1", hit("2", "{\"source\":\"source2\",\"timestamp\":\"2023-06-16T17:52:14.692Z\"}"));
+        SearchResponse last = response("scroll1");
+
+        doAnswer(invocation -> {
+            ActionListener<SearchResponse> listener = invocation.getArgument(2);
+            listener.onResponse(first);
+            return null;
+        }).when(client).searchAsync(any(SearchRequest.class), eq(RequestOptions.DEFAULT), any());
+        SearchResponse[] batches = {second, last};
+        int[] next = {0};
+        doAnswer(invocation -> {
+            ActionListener<SearchResponse> listener = invocation.getArgument(2);
+            listener.onResponse(batches[next[0]++]);
+            return null;
+        }).when(client).scrollAsync(any(SearchScrollRequest.class), eq(RequestOptions.DEFAULT), any());
+
+        List<LogEntity> logs = logService.searchUsingScroll().get();
+
+        assertEquals(2, logs.size());
+        assertEquals("source1", logs.get(0).getSource());
+        assertEquals("source2", logs.get(1).getSource());
+        verify(client, times(2)).scrollAsync(any(SearchScrollRequest.class), eq(RequestOptions.DEFAULT), any());
+        verify(client).clearScrollAsync(any(ClearScrollRequest.class), eq(RequestOptions.DEFAULT), any());
+    }
+
+    //rows of loggers outside the allowlist were never indexed, so no search is sent for them
+    @Test
+    public void filterByUnknownLoggersSkipsTheSearch() throws Exception {
+        when(loggerAllowlist.contains("unknown")).thenReturn(false);
+
+        assertEquals(Collections.emptyList(), logService.filterByTermsDynamic("logger", "unknown").get());
+        verify(client, never()).searchAsync(any(SearchRequest.class), any(RequestOptions.class), any());
+    }
+
+    private static SearchResponse response(String scrollId, SearchHit... hits) {
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getScrollId()).thenReturn(scrollId);
+        when(response.getHits()).thenReturn(new SearchHits(hits, new TotalHits(hits.length, TotalHits.Relation.EQUAL_TO), 1f));
+        return response;
+    }
+
+    private static SearchHit hit(String id, String json) {
+        return new SearchHit(0, id, null, Collections.emptyMap()).sourceRef(new BytesArray(json));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Helper.ColumnarGroups;
+import com.example.LogAnalyzer.Helper.QueryGroup;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class GroupLevelsTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static JsonNode aggregation(List<String> levels) throws Exception {
+        String source = new SearchSourceBuilder().aggregation(GroupLevels.aggregation(levels, 50)).toString();
+        return JSON.readTree(source).get("aggregations").get("group_0");
+    }
+
+    @Test
+    public void aggregationTest() throws Exception {
+        JsonNode outer = aggregation(List.of("source", "logger", "timestamp:1h", "date:1d"));
+        assertEquals("source", outer.get("terms").get("field").asText());
+        assertEquals(50, outer.get("terms").get("size").asInt());
+        JsonNode second = outer.get("aggregations").get("group_1");
+        assertEquals("logger", second.get("terms").get("field").asText());
+        JsonNode hourly = second.get("aggregations").get("group_2").get("date_histogram");
+        assertEquals("timestamp", hourly.get("field").asText());
+        assertEquals("1h", hourly.get("calendar_interval").asText());
+        assertEquals(1, hourly.get("min_doc_count").asInt());
+        JsonNode daily = second.get("aggregations").get("group_2").get("aggregations").get("group_3").get("date_histogram");
+        assertEquals("1d", daily.get("calendar_interval").asText());
+    }
+
+    //a length that is not a calendar unit is a fixed interval
+    @Test
+    public void fixedIntervalTest() throws Exception {
+        JsonNode histogram = aggregation(List.of("timestamp:30m")).get("date_histogram");
+        assertEquals("30m", histogram.get("fixed_interval").asText());
+        assertNull(histogram.get("calendar_interval"));
+    }
+
+    @Test
+    public void invalidLevelsTest() {
+        assertThrows(IllegalArgumentException.class, () -> GroupLevels.aggregation(List.of(), 10));
+        assertThrows(IllegalArgumentException.class, () -> GroupLevels.aggregation(List.of("source", "logger", "loglevel", "partnerid", "date"), 10));
+        assertThrows(IllegalArgumentException.class, () -> GroupLevels.aggregation(List.of("message"), 10));
+        assertThrows(IllegalArgumentException.class, () -> GroupLevels.aggregation(List.of("source:1h"), 10));
+        assertThrows(IllegalArgumentException.class, () -> GroupLevels.aggregation(List.of("timestamp:often"), 10));
+    }
+
+    //source a has two hours, source b one, the rows come out in bucket order
+    @Test
+    public void columnsAndTreeTest() {
+        Aggregations aggs = levels(
+                bucket("a", 5, hours(bucket("2023-06-16T17:00:00.000Z", 3, null), bucket("2023-06-16T18:00:00.000Z", 2, null))),
+                bucket("b", 1, hours(bucket("2023-06-16T17:00:00.000Z", 1, null))));
+
+        ColumnarGroups columns = GroupLevels.columns(aggs, List.of("source", "timestamp:1h"));
+        assertArrayEquals(new String[]{"source", "timestamp:1h"}, columns.getColumns());
+        assertArrayEquals(new String[]{"a", "b"}, columns.getValues()[0]);
+        assertArrayEquals(new int[]{0, 0, 1}, columns.getKeys()[0]);
+        assertArrayEquals(new String[]{"2023-06-16T17:00:00.000Z", "2023-06-16T18:00:00.000Z"}, columns.getValues()[1]);
+        assertArrayEquals(new int[]{0, 1, 0}, columns.getKeys()[1]);
+        assertArrayEquals(new long[]{3, 2, 1}, columns.getCounts());
+
+        List<QueryGroup> tree = GroupLevels.tree(aggs, 2);
+        assertEquals(2, tree.size());
+        assertEquals(5, tree.get(0).getCount());
+        assertEquals(2, tree.get(0).getGroups().size());
+    }
+
+    private static Aggregations levels(MultiBucketsAggregation.Bucket... buckets) {
+        Terms terms = mock(Terms.class);
+        doReturn(List.of(buckets)).when(terms).getBuckets();
+        Aggregations aggs = mock(Aggregations.class);
+        when(aggs.get("group_0")).thenReturn(terms);
+        return aggs;
+    }
+
+    private static Aggregations hours(MultiBucketsAggregation.Bucket... buckets) {
+        Histogram histogram = mock(Histogram.class);
+        doReturn(List.of(buckets)).when(histogram).getBuckets();
+        Aggregations aggs = mock(Aggregations.class);
+        when(aggs.get("group_1")).thenReturn(histogram);
+        return aggs;
+    }
+
+    private static MultiBucketsAggregation.Bucket bucket(String key, long count, Aggregations inner) {
+        MultiBucketsAggregation.Bucket bucket = mock(MultiBucketsAggregation.Bucket.class);
+        when(bucket.getKeyAsString()).thenReturn(key);
+        lenient().when(bucket.getDocCount()).thenReturn(count);
+        lenient().when(bucket.getAggregations()).thenReturn(inner);
+        return bucket;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Helper.LogQuery;
+import com.example.LogAnalyzer.Helper.LogQueryResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class LogQueryCompilerTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    //error count per logger for two partners in the last hour, projecting the source and message
+    private static LogQuery query() {
+        LogQuery query = new LogQuery();
+        query.setFrom("2023-06-16T17:00:00.000Z");
+        query.setTo("2023-06-16T18:00:00.000Z");
+        Map<String, List<String>> terms = new LinkedHashMap<>();
+        terms.put("loglevel", List.of("ERROR"));
+        terms.put("partnerid", List.of("p1", "p2"));
+        query.setTerms(terms);
+        query.setMessage("connection refused");
+        query.setFields(List.of("id", "source", "message"));
+        query.setSort(List.of("timestamp:desc", "source"));
+        query.setSize(20);
+        query.setGroupBy(List.of("logger", "source"));
+        query.setGroupSize(50);
+        return query;
+    }
+
+    //every condition is a filter, nothing is scored
+    @Test
+    public void compileTest() throws Exception {
+        SearchRequest request = LogQueryCompiler.compile(query());
+        //the range is within one day, only its partition and the legacy index are searched
+        assertArrayEquals(new String[]{"loganalyzer", "loganalyzer-2023.06.16"}, request.indices());
+
+        JsonNode source = JSON.readTree(request.source().toString());
+        JsonNode bool = source.get("query").get("bool");
+        assertNull(bool.get("must"));
+        assertNull(bool.get("should"));
+        JsonNode filters = bool.get("filter");
+        assertEquals(4, filters.size());
+        assertEquals("2023-06-16T17:00:00.000Z", filters.get(0).get("range").get("timestamp").get("from").asText());
+        assertEquals("ERROR", filters.get(1).get("terms").get("loglevel").get(0).asText());
+        assertEquals(2, filters.get(2).get("terms").get("partnerid").size());
+        assertEquals("AND", filters.get(3).get("match").get("message").get("operator").asText());
+
+        assertEquals(20, source.get("size").asInt());
+        assertTrue(source.get("track_total_hits").asBoolean());
+        assertEquals(List.of("source", "message"), JSON.convertValue(source.get("_source").get("includes"), List.class));
+        assertEquals("desc", source.get("sort").get(0).get("timestamp").get("order").asText());
+        assertEquals("asc", source.get("sort").get(1).get("source").get("order").asText());
+
+        JsonNode outer = source.get("aggregations").get("group_0");
+        assertEquals("logger", outer.get("terms").get("field").asText());
+        assertEquals(50, outer.get("terms").get("size").asInt());
+        assertEquals("source", outer.get("aggregations").get("group_1").get("terms").get("field").asText());
+    }
+
+    @Test
+    public void emptyQueryTest() throws Exception {
+        JsonNode source = JSON.readTree(LogQueryCompiler.compile(new LogQuery()).source().toString());
+        assertEquals(LogQueryCompiler.DEFAULT_SIZE, source.get("size").asInt());
+        assertNull(source.get("query").get("bool").get("filter"));
+        assertNull(source.get("aggregations"));
+        assertNull(source.get("_source"));
+    }
+
+    @Test
+    public void invalidQueryTest() {
+        LogQuery textTerms = new LogQuery();
+        textTerms.setTerms(Map.of("message", List.of("x")));
+        assertThrows(IllegalArgumentException.class, () -> LogQueryCompiler.compile(textTerms));
+
+        LogQuery emptyTerms = new LogQuery();
+        emptyTerms.setTerms(Map.of("source", List.of()));
+        assertThrows(IllegalArgumentException.class, () -> LogQueryCompiler.compile(emptyTerms));
+
+        LogQuery badOrder = new LogQuery();
+        badOrder.setSort(List.of("timestamp:newest"));
+        assertThrows(IllegalArgumentException.class, () -> LogQueryCompiler.compile(badOrder));
+
+        LogQuery tooLarge = new LogQuery();
+        tooLarge.setSize(LogQueryCompiler.MAX_SIZE + 1);
+        assertThrows(IllegalArgumentException.class, () -> LogQueryCompiler.compile(tooLarge));
+
+        LogQuery groupByMessage = new LogQuery();
+        groupByMessage.setGroupBy(List.of("message"));
+        assertThrows(IllegalArgumentException.class, () -> LogQueryCompiler.compile(groupByMessage));
+
+        LogQuery unknownField = new LogQuery();
+        unknownField.setFields(List.of("password"));
+        assertThrows(IllegalArgumentException.class, () -> LogQueryCompiler.compile(unknownField));
+    }
+
+    @Test
+    public void resultTest() {
+        SearchHit hit = new SearchHit(1, "log1", null, null);
+        hit.sourceRef(new BytesArray("{\"source\":\"web\",\"message\":\"connection refused\",\"logger\":\"l1\"}"));
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getHits()).thenReturn(new SearchHits(new SearchHit[]{hit}, new TotalHits(42, TotalHits.Relation.EQUAL_TO), 0f));
+
+        Terms inner = mock(Terms.class);
+        Terms.Bucket innerBucket = bucket("web", 3, null);
+        doReturn(List.of(innerBucket)).when(inner).getBuckets();
+        Aggregations innerAggs = mock(Aggregations.class);
+        when(innerAggs.get("group_1")).thenReturn(inner);
+        Terms outer = mock(Terms.class);
+        Terms.Bucket outerBucket = bucket("l1", 3, innerAggs);
+        doReturn(List.of(outerBucket)).when(outer).getBuckets();
+        Aggregations aggs = mock(Aggregations.class);
+        when(aggs.get("group_0")).thenReturn(outer);
+        when(response.getAggregations()).thenReturn(aggs);
+
+        LogQueryResult result = LogQueryCompiler.result(response, query());
+
+        assertEquals(42, result.getTotal());
+        assertEquals(Map.of("id", "log1", "source", "web", "message", "connection refused"), result.getHits().get(0));
+        assertEquals("l1", result.getGroups().get(0).getKey());
+        assertEquals(3, result.getGroups().get(0).getCount());
+        assertEquals("web", result.getGroups().get(0).getGroups().get(0).getKey());
+        assertNull(result.getGroups().get(0).getGroups().get(0).getGroups());
+    }
+
+    private static Terms.Bucket bucket(String key, long count, Aggregations aggregations) {
+        Terms.Bucket bucket = mock(Terms.Bucket.class);
+        when(bucket.getKeyAsString()).thenReturn(key);
+        when(bucket.getDocCount()).thenReturn(count);
+        if (aggregations != null) {
+            when(bucket.getAggregations()).thenReturn(aggregations);
+        }
+        return bucket;
+    }
+}
@@ -1,40 +1,80 @@
 package com.example.LogAnalyzer.Service;
 
 import com.example.LogAnalyzer.Entity.LogEntity;
+import com.example.LogAnalyzer.Helper.AggregationCache;
+import com.example.LogAnalyzer.Helper.QueryProfiler;
+import com.example.LogAnalyzer.Helper.BatchResult;
+import com.example.LogAnalyzer.Helper.ClosedBucketCache;
+import com.example.LogAnalyzer.Helper.ColumnarGroups;
+import com.example.LogAnalyzer.Helper.CursorPage;
+import com.example.LogAnalyzer.Helper.SearchCursor;
+import com.example.LogAnalyzer.Helper.ExportStats;
+import com.example.LogAnalyzer.Helper.GroupBucket;
 import com.example.LogAnalyzer.Helper.ExceltoEs;
+import com.example.LogAnalyzer.Helper.IngestionPipeline;
+import com.example.LogAnalyzer.Helper.IngestionStats;
+import com.example.LogAnalyzer.Helper.LoggerAllowlist;
+import com.example.LogAnalyzer.Helper.LogQuery;
+import com.example.LogAnalyzer.Helper.LogQueryResult;
+import com.example.LogAnalyzer.Helper.LogsIndexedEvent;
+import com.example.LogAnalyzer.Helper.SingleFlight;
+import com.example.LogAnalyzer.Helper.TimeSeries;
 import com.example.LogAnalyzer.Repository.LogRepository;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchScrollRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
 import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.aggregations.metrics.Cardinality;
+import org.elasticsearch.search.aggregations.metrics.Sum;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.IOException;
-import java.text.SimpleDateFormat;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -51,11 +91,23 @@ class LogServiceImpTest {
     private LogRepository logRepository;
 
     @Mock
-    private ExceltoEs helper;
+    private IngestionPipeline pipeline;
+
+    @Mock
+    private LoggerAllowlist loggerAllowlist;
 
 
     @Mock
     private RestHighLevelClient client;
+
+    @Spy
+    private AggregationCache aggregationCache = new AggregationCache(60, 1000, 0);
+
+    @Spy
+    private QueryProfiler profiler = new QueryProfiler(500, 100, 10);
+
+    @Spy
+    private ClosedBucketCache bucketCache = new ClosedBucketCache(100, 60, 0);
     private static List<LogEntity> logs = new ArrayList<>();
 
 
@@ -83,14 +135,23 @@ class LogServiceImpTest {
 
     @Test
     public void saveTest() {
-        //stubbing the helper object as it is tested separately
-        when(helper.ReadFromExcel()).thenReturn(logs);
-        when(helper.WriteToEs(any(LogRepository.class), anyList())).thenReturn(logs);
-        assertEquals(logs, logService.savelogdata());
+        //stubbing the pipeline as it is tested separately
+        IngestionStats stats = new IngestionStats(ExceltoEs.file, IngestionStats.State.COMPLETED, 10, List.of(), null);
+        when(pipeline.run(ExceltoEs.file, false)).thenReturn(stats);
+        assertEquals(stats, logService.savelogdata());
 
 
     }
 
+    @Test
+    public void saveWithBulkLoadTest() {
+        IngestionStats stats = new IngestionStats(ExceltoEs.file, IngestionStats.State.COMPLETED, 10, List.of(), null);
+        when(pipeline.run(ExceltoEs.file, true)).thenReturn(stats);
+        ReflectionTestUtils.setField(logService, "bulkLoad", true);
+
+        assertEquals(stats, logService.savelogdata());
+    }
+
     @Test
     public void searchTest() {
         //stubbing the log repository
@@ -233,7 +294,7 @@ class LogServiceImpTest {
         //stubbing the mocks
         when(searchResponse.getHits()).thenReturn(searchHits);
         when(searchHits.iterator()).thenReturn(List.of(searchHit).iterator());
-        when(searchHit.getSourceAsMap()).thenReturn(sourceAsMap);
+        when(searchHit.getSourceRef()).thenReturn(source(sourceAsMap));
         try {
             when(client.search(any(), any())).thenReturn(searchResponse);
         } catch (IOException e) {
@@ -259,6 +320,43 @@ class LogServiceImpTest {
 //        assertEquals("1", logs.get(0).getID());
     }
 
+    //a dashboard refresh: every caller sends the same filter while the first search is still running.
+    //the search only answers once all callers have arrived, they share its response
+    @Test
+    public void filterByTimeThunderingHerdTest() throws Exception {
+        int callers = 32;
+        SearchResponse searchResponse = mock(SearchResponse.class);
+        SearchHit hit = new SearchHit(0, "1", null, Collections.emptyMap())
+                .sourceRef(new BytesArray("{\"source\":\"source1\",\"timestamp\":\"2023-06-16T17:52:14.189Z\"}"));
+        when(searchResponse.getHits()).thenReturn(new SearchHits(new SearchHit[]{hit}, new TotalHits(1, TotalHits.Relation.EQUAL_TO), 1f));
+        SingleFlight<?> searches = (SingleFlight<?>) ReflectionTestUtils.getField(logService, "searches");
+        when(client.search(any(), any())).thenAnswer(invocation -> {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (searches.calls() < callers && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            return searchResponse;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<List<LogEntity>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> logService.filterBytime("2023-06-16T11:22:14", "2024-06-16T11:22:14")));
+            }
+            for (Future<List<LogEntity>> result : results) {
+                assertEquals("source1", result.get().get(0).getSource());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        //32 requests, 1 search instead of 32
+        verify(client, times(1)).search(any(), any());
+        assertEquals(callers, searches.calls());
+        assertEquals(1, searches.executions());
+    }
+
     @Test
     public void filterByTimeTestFail() {
 
@@ -281,7 +379,7 @@ class LogServiceImpTest {
         //stubbing the mcoks
         when(searchResponse.getHits()).thenReturn(searchHits);
         when(searchHits.iterator()).thenReturn(List.of(searchHit).iterator());
-        when(searchHit.getSourceAsMap()).thenReturn(sourceAsMap);
+        when(searchHit.getSourceRef()).thenReturn(source(sourceAsMap));
         try {
             when(client.search(any(), any())).thenReturn(searchResponse);
         } catch (IOException e) {
@@ -334,7 +432,7 @@ class LogServiceImpTest {
         //stubbing the mocks
         when(searchResponse.getHits()).thenReturn(searchHits);
         when(searchHits.iterator()).thenReturn(List.of(searchHit).iterator());
-        when(searchHit.getSourceAsMap()).thenReturn(sourceAsMap);
+        when(searchHit.getSourceRef()).thenReturn(source(sourceAsMap));
         try {
             when(client.search(any(), any())).thenReturn(searchResponse);
         } catch (IOException e) {
@@ -376,7 +474,7 @@ class LogServiceImpTest {
         //stub the mcoks
         when(searchResponse.getHits()).thenReturn(searchHits);
         when(searchHits.iterator()).thenReturn(List.of(searchHit).iterator());
-        when(searchHit.getSourceAsMap()).thenReturn(sourceAsMap);
+        when(searchHit.getSourceRef()).thenReturn(source(sourceAsMap));
         try {
             when(client.search(any(), any())).thenReturn(searchResponse);
         } catch (IOException e) {
@@ -423,6 +521,21 @@ class LogServiceImpTest {
         assertEquals(expectedLogs, actualLogs);
     }
 
+    @Test
+    public void testStreamUsingPage() {
+        Page<LogEntity> page1 = createLogEntityPage(1, 1000, true);
+        Page<LogEntity> page2 = mock(Page.class);
+        when(page2.getContent()).thenReturn(List.of(new LogEntity()));
+        when(page2.hasNext()).thenReturn(false);
+        when(logRepository.findAll(any(Pageable.class))).thenReturn(page1, page2);
+
+        List<Integer> batches = new ArrayList<>();
+        long total = logService.streamUsingPage(batch -> batches.add(batch.size()));
+
+        assertEquals(1001, total);
+        assertEquals(List.of(1000, 1), batches);
+    }
+
     private Page<LogEntity> createLogEntityPage(int startIndex, int endIndex, boolean hasNext) {
         List<LogEntity> logs = new ArrayList<>();
         for (int i = startIndex; i <= endIndex; i++) {
@@ -466,7 +579,7 @@ class LogServiceImpTest {
         Scroll scroll = new Scroll(TimeValue.timeValueMinutes(1L));
 
         SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices("loganalyzer");
+        searchRequest.indices("loganalyzer*");
         searchRequest.scroll(scroll);
         SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
         searchSourceBuilder.query(QueryBuilders.matchAllQuery());
@@ -491,8 +604,8 @@ class LogServiceImpTest {
         when(searchHits1.getHits()).thenReturn(new SearchHit[]{searchHit1, searchHit2});
         when(searchHits2.getHits()).thenReturn(new SearchHit[]{});
         when(searchHits1.iterator()).thenReturn(List.of(searchHit1, searchHit2).iterator());
-        when(searchHit1.getSourceAsMap()).thenReturn(sourceAsMap1);
-        when(searchHit2.getSourceAsMap()).thenReturn(sourceAsMap2);
+        when(searchHit1.getSourceRef()).thenReturn(source(sourceAsMap1));
+        when(searchHit2.getSourceRef()).thenReturn(source(sourceAsMap2));
 
 
         // call the method under test
@@ -618,10 +731,10 @@ class LogServiceImpTest {
         List<Histogram.Bucket> timestampBuckets = new ArrayList<>();
 
         Histogram.Bucket timestampsBucket1 = mock(Histogram.Bucket.class);
-        when(timestampsBucket1.getKeyAsString()).thenReturn("2019-01-01");
+        doReturn(ZonedDateTime.parse("2019-01-01T00:00:00Z")).when(timestampsBucket1).getKey();
 
         Histogram.Bucket timestampsBucket2 = mock(Histogram.Bucket.class);
-        when(timestampsBucket2.getKeyAsString()).thenReturn("2019-01-02");
+        doReturn(ZonedDateTime.parse("2019-01-02T00:00:00Z")).when(timestampsBucket2).getKey();
 
         timestampBuckets.add(timestampsBucket1);
         timestampBuckets.add(timestampsBucket2);
@@ -668,8 +781,11 @@ class LogServiceImpTest {
 
 
         //Assertions
-        assertEquals(mp.get("source1-2019-01-01"), 100L);
-        assertEquals(mp.get("source2-2019-01-02"), 100L);
+        assertEquals(mp.get("source1-2019-01-01T00:00:00.000Z"), 100L);
+        assertEquals(mp.get("source2-2019-01-02T00:00:00.000Z"), 100L);
+        //the hours between the first and the last of a source are zero
+        assertEquals(mp.get("source1-2019-01-01T12:00:00.000Z"), 0L);
+        assertEquals(25 * 2, mp.size());
 
     }
 
@@ -709,6 +825,646 @@ class LogServiceImpTest {
     }
 
 
+    //the same aggregation is searched once until the index is written
+    @Test
+    public void cardinalityIsCachedUntilIndexedTest() throws IOException {
+        SearchResponse searchResponse = mock(SearchResponse.class);
+        Cardinality cardinalityAgg = mock(Cardinality.class);
+        Aggregations aggs = mock(Aggregations.class);
+        when(cardinalityAgg.getValue()).thenReturn(100L);
+        when(searchResponse.getAggregations()).thenReturn(aggs);
+        when(aggs.get("unique_source")).thenReturn(cardinalityAgg);
+        when(client.search(any(), any())).thenReturn(searchResponse);
+
+        assertEquals(100L, logService.cardinalityAggs("source"));
+        assertEquals(100L, logService.cardinalityAggs("source"));
+        verify(client, times(1)).search(any(), any());
+
+        aggregationCache.onLogsIndexed(new LogsIndexedEvent("loganalyzer", 10));
+        logService.cardinalityAggs("source");
+        verify(client, times(2)).search(any(), any());
+    }
+
+    //one msearch for the queries that need es, in order, each failure reported on its own entry
+    @Test
+    public void batchTest() throws IOException {
+        SearchRequest cardinality = LogQueries.cardinalityRequest("source");
+        aggregationCache.put(LogQueries.indices(cardinality), cardinality.source().toString(), 4L, System.currentTimeMillis());
+
+        SearchResponse groupByResponse = mock(SearchResponse.class);
+        Aggregations aggs = mock(Aggregations.class);
+        Terms terms = mock(Terms.class);
+        Terms.Bucket bucket = mock(Terms.Bucket.class);
+        when(groupByResponse.getAggregations()).thenReturn(aggs);
+        when(aggs.get("groupBy_logger")).thenReturn(terms);
+        doReturn(List.of(bucket)).when(terms).getBuckets();
+        when(bucket.getKeyAsString()).thenReturn("testlogger");
+        when(bucket.getDocCount()).thenReturn(3L);
+        when(loggerAllowlist.contains("unknown")).thenReturn(false);
+        ArgumentCaptor<MultiSearchRequest> captor = ArgumentCaptor.forClass(MultiSearchRequest.class);
+        when(client.msearch(captor.capture(), any())).thenReturn(new MultiSearchResponse(new MultiSearchResponse.Item[]{
+                new MultiSearchResponse.Item(groupByResponse, null),
+                new MultiSearchResponse.Item(null, new IllegalStateException("failed to parse date field"))}, 1));
+
+        List<BatchResult> results = logService.batch(List.of(
+                Map.of("query", "cardinality", "field", "source"),
+                Map.of("query", "groupBy", "field", "logger"),
+                Map.of("query", "timeFilter", "starttime", "bad", "endtime", "bad"),
+                Map.of("query", "search"),
+                Map.of("query", "termsFilter", "field", "logger", "terms", List.of("unknown")),
+                Map.of("query", "groupBy")));
+
+        verify(client, times(1)).msearch(any(), any());
+        verify(client, never()).search(any(), any());
+        assertEquals(2, captor.getValue().requests().size());
+
+        assertEquals(6, results.size());
+        assertEquals(4L, results.get(0).getResult());
+        assertEquals(Map.of("testlogger", 3L), results.get(1).getResult());
+        assertEquals("groupBy", results.get(1).getQuery());
+        assertTrue(results.get(2).getError().contains("failed to parse date field"));
+        assertNotNull(results.get(3).getError());
+        assertEquals(List.of(), results.get(4).getResult());
+        assertEquals("field is required", results.get(5).getError());
+
+        //the searched aggregation is cached for the next batch
+        assertEquals(Map.of("testlogger", 3L), logService.groupByDynamic("logger"));
+    }
+
+    @Test
+    public void batchTooLargeTest() {
+        List<Map<String, Object>> queries = Collections.nCopies(LogServiceImp.MAX_BATCH_SIZE + 1, Map.of("query", "cardinality", "field", "source"));
+        assertThrows(IllegalArgumentException.class, () -> logService.batch(queries));
+    }
+
+    //the columns come from one search and the second call is answered from the cache
+    @Test
+    public void groupByColumnsTest() throws IOException {
+        Terms.Bucket web = mock(Terms.Bucket.class);
+        when(web.getKeyAsString()).thenReturn("web");
+        when(web.getDocCount()).thenReturn(4L);
+        Terms terms = mock(Terms.class);
+        doReturn(List.of(web)).when(terms).getBuckets();
+        Aggregations aggs = mock(Aggregations.class);
+        when(aggs.get("group_0")).thenReturn(terms);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getAggregations()).thenReturn(aggs);
+        when(client.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(response);
+
+        ColumnarGroups groups = logService.groupByColumns(List.of("source"), 100);
+        logService.groupByColumns(List.of("source"), 100);
+
+        assertEquals("web", groups.key(0, 0));
+        assertArrayEquals(new long[]{4}, groups.getCounts());
+        verify(client, times(1)).search(any(SearchRequest.class), eq(RequestOptions.DEFAULT));
+        assertThrows(IllegalArgumentException.class, () -> logService.groupByColumns(List.of("source"), 0));
+    }
+
+    //the closed buckets of the first call are kept, the second only searches the bucket cut by the end of the range
+    @Test
+    public void timeSeriesTest() throws IOException {
+        SearchResponse first = histogramResponse(histogramBucket("2023-06-16T00:10:00Z", 4));
+        SearchResponse second = histogramResponse();
+        ArgumentCaptor<SearchRequest> requests = ArgumentCaptor.forClass(SearchRequest.class);
+        when(client.search(requests.capture(), eq(RequestOptions.DEFAULT))).thenReturn(first, second);
+
+        TimeSeries series = logService.timeSeries("2023-06-16T00:00:00Z", "2023-06-16T01:00:00Z", 60, null, null, 10);
+        TimeSeries again = logService.timeSeries("2023-06-16T00:00:00Z", "2023-06-16T01:00:00Z", 60, null, null, 10);
+
+        assertEquals("5m", series.getInterval());
+        assertEquals(13, series.getSeries().get(0).getCounts().length);
+        assertEquals(4, again.getSeries().get(0).getCounts()[2]);
+        verify(client, times(2)).search(any(SearchRequest.class), eq(RequestOptions.DEFAULT));
+        String tail = requests.getAllValues().get(1).source().toString();
+        assertTrue(tail.contains("\"from\":" + Instant.parse("2023-06-16T01:00:00Z").toEpochMilli()), tail);
+    }
+
+    //the split values are the top ones of the whole range, every bucket counts exactly those values
+    @Test
+    public void timeSeriesSplitTest() throws IOException {
+        SearchResponse values = termsResponse(TimeSeriesQuery.SPLIT, "web", "db");
+        Histogram.Bucket bucket = mock(Histogram.Bucket.class);
+        doReturn(ZonedDateTime.parse("2023-06-16T00:10:00Z")).when(bucket).getKey();
+        Terms.Bucket db = mock(Terms.Bucket.class);
+        when(db.getKeyAsString()).thenReturn("db");
+        when(db.getDocCount()).thenReturn(3L);
+        Terms counts = mock(Terms.class);
+        doReturn(List.of(db)).when(counts).getBuckets();
+        Aggregations inner = mock(Aggregations.class);
+        when(inner.get(TimeSeriesQuery.SPLIT)).thenReturn(counts);
+        when(bucket.getAggregations()).thenReturn(inner);
+        SearchResponse histogram = histogramResponse(bucket);
+        ArgumentCaptor<SearchRequest> requests = ArgumentCaptor.forClass(SearchRequest.class);
+        when(client.search(requests.capture(), eq(RequestOptions.DEFAULT))).thenReturn(values, histogram);
+
+        TimeSeries series = logService.timeSeries("2023-06-16T00:00:00Z", "2023-06-16T01:00:00Z", 60, null, "source", 2);
+
+        assertEquals(1, series.getSeries().size());
+        assertEquals("db", series.getSeries().get(0).getKey());
+        assertEquals(3, series.getSeries().get(0).getCounts()[2]);
+        assertFalse(requests.getAllValues().get(0).source().toString().contains(TimeSeriesQuery.HISTOGRAM));
+        String buckets = requests.getAllValues().get(1).source().toString();
+        assertTrue(buckets.contains("\"include\":[\"db\",\"web\"]"), buckets);
+    }
+
+    //no value of the split has a log in the range, there is nothing to count
+    @Test
+    public void timeSeriesSplitWithoutValuesTest() throws IOException {
+        SearchResponse values = termsResponse(TimeSeriesQuery.SPLIT);
+        when(client.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(values);
+
+        TimeSeries series = logService.timeSeries("2023-06-16T00:00:00Z", "2023-06-16T01:00:00Z", 60, null, "source", 2);
+
+        assertTrue(series.getSeries().isEmpty());
+        verify(client, times(1)).search(any(SearchRequest.class), eq(RequestOptions.DEFAULT));
+    }
+
+    private static SearchResponse termsResponse(String name, String... keys) {
+        List<Terms.Bucket> buckets = new ArrayList<>();
+        for (String key : keys) {
+            Terms.Bucket bucket = mock(Terms.Bucket.class);
+            when(bucket.getKeyAsString()).thenReturn(key);
+            buckets.add(bucket);
+        }
+        Terms terms = mock(Terms.class);
+        doReturn(buckets).when(terms).getBuckets();
+        Aggregations aggs = mock(Aggregations.class);
+        when(aggs.get(name)).thenReturn(terms);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getAggregations()).thenReturn(aggs);
+        return response;
+    }
+
+    //with the rollup queries on, a group by on a rolled up field reads the sums of the rollup, any other the logs
+    @Test
+    public void groupByDynamicRollupTest() throws IOException {
+        ReflectionTestUtils.setField(logService, "rollupQueries", true);
+        Terms.Bucket web = mock(Terms.Bucket.class);
+        when(web.getKeyAsString()).thenReturn("web");
+        Aggregations sums = sumAggregations(12);
+        when(web.getAggregations()).thenReturn(sums);
+        Terms terms = mock(Terms.class);
+        doReturn(List.of(web)).when(terms).getBuckets();
+        Aggregations aggs = mock(Aggregations.class);
+        when(aggs.get("groupBy_source")).thenReturn(terms);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getAggregations()).thenReturn(aggs);
+        ArgumentCaptor<SearchRequest> requests = ArgumentCaptor.forClass(SearchRequest.class);
+        when(client.search(requests.capture(), eq(RequestOptions.DEFAULT))).thenReturn(response);
+
+        assertEquals(Map.of("web", 12L), logService.groupByDynamic("source"));
+        assertArrayEquals(new String[]{"rollup-loganalyzer"}, requests.getValue().indices());
+
+        when(aggs.get("groupBy_message")).thenReturn(terms);
+        when(web.getDocCount()).thenReturn(3L);
+        assertEquals(Map.of("web", 3L), logService.groupByDynamic("message"));
+        assertArrayEquals(new String[]{"loganalyzer*"}, requests.getValue().indices());
+    }
+
+    //the whole hours of the range are read from the rollup, the half hour cut by its start from the logs
+    @Test
+    public void timeSeriesRollupTest() throws IOException {
+        ReflectionTestUtils.setField(logService, "rollupQueries", true);
+        Histogram.Bucket rolledUp = mock(Histogram.Bucket.class);
+        doReturn(ZonedDateTime.parse("2023-06-16T00:00:00Z")).when(rolledUp).getKey();
+        Aggregations sums = sumAggregations(10);
+        when(rolledUp.getAggregations()).thenReturn(sums);
+        SearchResponse rollup = histogramResponse(rolledUp);
+        SearchResponse logs = histogramResponse(histogramBucket("2023-06-16T00:00:00Z", 3));
+        ArgumentCaptor<SearchRequest> requests = ArgumentCaptor.forClass(SearchRequest.class);
+        when(client.search(requests.capture(), eq(RequestOptions.DEFAULT))).thenAnswer(invocation ->
+                ((SearchRequest) invocation.getArgument(0)).indices()[0].equals("rollup-loganalyzer") ? rollup : logs);
+
+        TimeSeries series = logService.timeSeries("2023-06-16T00:30:00Z", "2023-06-17T00:00:00Z", 24, null, null, 10);
+
+        assertEquals("3h", series.getInterval());
+        assertEquals(13, series.getSeries().get(0).getCounts()[0]);
+        assertArrayEquals(new String[]{"rollup-loganalyzer"}, requests.getAllValues().get(0).indices());
+        assertTrue(requests.getAllValues().get(0).source().toString().contains("\"hour\""));
+        assertEquals("loganalyzer-2023.06.16", requests.getAllValues().get(1).indices()[1]);
+
+        //the buckets kept are dropped by a write to the rollup, the whole range is read from it again
+        String end = "\"to\":" + Instant.parse("2023-06-17T00:00:00Z").toEpochMilli();
+        logService.timeSeries("2023-06-16T00:30:00Z", "2023-06-17T00:00:00Z", 24, null, null, 10);
+        assertFalse(requests.getAllValues().get(2).source().toString().contains(end));
+        bucketCache.onLogsIndexed(new LogsIndexedEvent("rollup-loganalyzer", 1, 0, 0));
+        logService.timeSeries("2023-06-16T00:30:00Z", "2023-06-17T00:00:00Z", 24, null, null, 10);
+        assertTrue(requests.getAllValues().get(4).source().toString().contains(end));
+    }
+
+    //the top sources are those of the whole index, every search covers all of it and the result is
+    //kept whole by the aggregation cache until a write
+    @Test
+    public void nestedAggregationSearchesTheWholeIndexTest() throws IOException {
+        long hour = Instant.parse("2019-01-01T00:00:00Z").toEpochMilli();
+        SearchResponse first = nestedResponse(hour, 5);
+        SearchResponse rewritten = nestedResponse(hour, 6);
+        ArgumentCaptor<SearchRequest> requests = ArgumentCaptor.forClass(SearchRequest.class);
+        when(client.search(requests.capture(), eq(RequestOptions.DEFAULT))).thenReturn(first, rewritten);
+
+        assertEquals(5L, logService.nestedAggregation().get("web-2019-01-01T00:00:00.000Z"));
+        assertEquals(5L, logService.nestedAggregation().get("web-2019-01-01T00:00:00.000Z"));
+        aggregationCache.onLogsIndexed(new LogsIndexedEvent("loganalyzer-2019.01.01", 1, hour + 1000, hour + 1000));
+        assertEquals(6L, logService.nestedAggregation().get("web-2019-01-01T00:00:00.000Z"));
+
+        assertEquals(2, requests.getAllValues().size());
+        for (SearchRequest request : requests.getAllValues()) {
+            assertFalse(request.source().toString().contains("range"));
+            assertArrayEquals(new String[]{"loganalyzer*"}, request.indices());
+        }
+    }
+
+    @Test
+    public void timeSeriesWithoutValidLoggerTest() throws IOException {
+        when(loggerAllowlist.contains("unknown")).thenReturn(false);
+
+        TimeSeries series = logService.timeSeries("2023-06-16T00:00:00Z", "2023-06-16T01:00:00Z", 60,
+                new HashMap<>(Map.of("logger", List.of("unknown"))), "source", 10);
+
+        assertTrue(series.getSeries().isEmpty());
+        verify(client, never()).search(any(SearchRequest.class), any(RequestOptions.class));
+    }
+
+    //none of the requested loggers is valid, so nothing can match and no search is sent
+    @Test
+    public void queryWithoutValidLoggerTest() throws IOException {
+        when(loggerAllowlist.contains("unknown")).thenReturn(false);
+        LogQuery query = new LogQuery();
+        query.setTerms(new HashMap<>(Map.of("logger", List.of("unknown"))));
+        query.setGroupBy(List.of("source"));
+
+        LogQueryResult result = logService.query(query);
+
+        assertEquals(0, result.getTotal());
+        assertTrue(result.getGroups().isEmpty());
+        verify(client, never()).search(any(SearchRequest.class), any(RequestOptions.class));
+    }
+
+    @Test
+    public void queryTest() throws IOException {
+        when(loggerAllowlist.contains("l1")).thenReturn(true);
+        when(loggerAllowlist.contains("unknown")).thenReturn(false);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getHits()).thenReturn(new SearchHits(new SearchHit[0], new TotalHits(0, TotalHits.Relation.EQUAL_TO), 0f));
+        ArgumentCaptor<SearchRequest> request = ArgumentCaptor.forClass(SearchRequest.class);
+        when(client.search(request.capture(), eq(RequestOptions.DEFAULT))).thenReturn(response);
+        LogQuery query = new LogQuery();
+        query.setTerms(new HashMap<>(Map.of("logger", List.of("l1", "unknown"))));
+
+        logService.query(query);
+
+        String source = request.getValue().source().toString();
+        assertTrue(source.contains("\"l1\""), source);
+        assertFalse(source.contains("unknown"), source);
+    }
+
+    //two full pages and a short one, every request after the first continues from the previous after key
+    @Test
+    public void streamGroupByTest() throws IOException {
+        SearchResponse first = compositeResponse(Map.of("source", "a", "logger", "x"), bucket("a", "x", 3), bucket("a", "y", 1));
+        SearchResponse second = compositeResponse(Map.of("source", "b", "logger", "x"), bucket("b", "w", 2), bucket("b", "x", 5));
+        SearchResponse last = compositeResponse(Map.of("source", "c", "logger", "z"), bucket("c", "z", 7));
+        ArgumentCaptor<SearchRequest> requests = ArgumentCaptor.forClass(SearchRequest.class);
+        when(client.search(requests.capture(), eq(RequestOptions.DEFAULT))).thenReturn(first, second, last);
+
+        List<List<GroupBucket>> pages = new ArrayList<>();
+        long buckets = logService.streamGroupBy(2, pages::add, "source", "logger");
+
+        assertEquals(5, buckets);
+        assertEquals(3, pages.size());
+        assertEquals(Map.of("source", "b", "logger", "w"), pages.get(1).get(0).getKey());
+        assertEquals(7, pages.get(2).get(0).getCount());
+        verify(client, times(3)).search(any(SearchRequest.class), eq(RequestOptions.DEFAULT));
+        assertFalse(requests.getAllValues().get(0).source().toString().contains("\"after\""));
+        String secondRequest = requests.getAllValues().get(1).source().toString();
+        //Map.of has no fixed iteration order, so the keys of after may come in either order
+        assertTrue(secondRequest.contains("\"after\":{"), secondRequest);
+        assertTrue(secondRequest.contains("\"source\":\"a\"") && secondRequest.contains("\"logger\":\"x\""), secondRequest);
+        assertTrue(secondRequest.contains("\"size\":2"), secondRequest);
+    }
+
+    @Test
+    public void streamGroupByBadRequestTest() {
+        assertThrows(IllegalArgumentException.class, () -> logService.streamGroupBy(100, page -> {
+        }));
+        assertThrows(IllegalArgumentException.class, () -> logService.streamGroupBy(0, page -> {
+        }, "source"));
+    }
+
+    private static CompositeAggregation.Bucket bucket(String source, String logger, long count) {
+        CompositeAggregation.Bucket bucket = mock(CompositeAggregation.Bucket.class);
+        Map<String, Object> key = new LinkedHashMap<>();
+        key.put("source", source);
+        key.put("logger", logger);
+        when(bucket.getKey()).thenReturn(key);
+        when(bucket.getDocCount()).thenReturn(count);
+        return bucket;
+    }
+
+    private static Histogram.Bucket histogramBucket(String start, long count) {
+        Histogram.Bucket bucket = mock(Histogram.Bucket.class);
+        doReturn(ZonedDateTime.parse(start)).when(bucket).getKey();
+        when(bucket.getDocCount()).thenReturn(count);
+        return bucket;
+    }
+
+    private static Aggregations sumAggregations(double count) {
+        Sum sum = mock(Sum.class);
+        when(sum.getValue()).thenReturn(count);
+        Aggregations aggs = mock(Aggregations.class);
+        when(aggs.get("count")).thenReturn(sum);
+        return aggs;
+    }
+
+    private static SearchResponse histogramResponse(Histogram.Bucket... buckets) {
+        Histogram histogram = mock(Histogram.class);
+        doReturn(List.of(buckets)).when(histogram).getBuckets();
+        Aggregations aggs = mock(Aggregations.class);
+        when(aggs.get(TimeSeriesQuery.HISTOGRAM)).thenReturn(histogram);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getAggregations()).thenReturn(aggs);
+        return response;
+    }
+
+    //the unique dates of source web in one hour, no source at all when hour is null
+    private static SearchResponse nestedResponse(Long hour, long uniqueDates) {
+        Terms sources = mock(Terms.class);
+        if (hour == null) {
+            doReturn(List.of()).when(sources).getBuckets();
+        } else {
+            Cardinality cardinality = mock(Cardinality.class);
+            when(cardinality.getValue()).thenReturn(uniqueDates);
+            Aggregations hourAggs = mock(Aggregations.class);
+            when(hourAggs.get("unique_dates")).thenReturn(cardinality);
+            Histogram.Bucket hourBucket = mock(Histogram.Bucket.class);
+            doReturn(Instant.ofEpochMilli(hour).atZone(ZoneOffset.UTC)).when(hourBucket).getKey();
+            when(hourBucket.getAggregations()).thenReturn(hourAggs);
+            Histogram timestamps = mock(Histogram.class);
+            doReturn(List.of(hourBucket)).when(timestamps).getBuckets();
+            Aggregations sourceAggs = mock(Aggregations.class);
+            when(sourceAggs.get("timestamps")).thenReturn(timestamps);
+            Terms.Bucket web = mock(Terms.Bucket.class);
+            when(web.getKeyAsString()).thenReturn("web");
+            when(web.getAggregations()).thenReturn(sourceAggs);
+            doReturn(List.of(web)).when(sources).getBuckets();
+        }
+        Aggregations aggs = mock(Aggregations.class);
+        when(aggs.get("sources")).thenReturn(sources);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getAggregations()).thenReturn(aggs);
+        return response;
+    }
+
+    private static SearchResponse compositeResponse(Map<String, Object> afterKey, CompositeAggregation.Bucket... buckets) {
+        SearchResponse response = mock(SearchResponse.class);
+        Aggregations aggs = mock(Aggregations.class);
+        CompositeAggregation composite = mock(CompositeAggregation.class);
+        when(response.getAggregations()).thenReturn(aggs);
+        when(aggs.get("groupBy")).thenReturn(composite);
+        doReturn(List.of(buckets)).when(composite).getBuckets();
+        lenient().when(composite.afterKey()).thenReturn(afterKey);
+        return response;
+    }
+
+    private SearchResponse scrollResponse(String scrollId, SearchHit... hits) {
+        SearchResponse response = mock(SearchResponse.class);
+        SearchHits searchHits = mock(SearchHits.class);
+        when(response.getScrollId()).thenReturn(scrollId);
+        when(response.getHits()).thenReturn(searchHits);
+        when(searchHits.getHits()).thenReturn(hits);
+        if (hits.length > 0) {
+            when(searchHits.iterator()).thenReturn(List.of(hits).iterator());
+        }
+        return response;
+    }
+
+    private SearchHit scrollHit(String message) {
+        SearchHit hit = mock(SearchHit.class);
+        when(hit.getSourceRef()).thenReturn(source(Map.of("timestamp", "2023-06-16T17:52:14.692Z", "message", message)));
+        return hit;
+    }
+
+    @Test
+    public void testStreamUsingScroll() throws IOException {
+        SearchResponse first = scrollResponse("scrollId1", scrollHit("message1"), scrollHit("message2"));
+        SearchResponse second = scrollResponse("scrollId2", scrollHit("message3"));
+        SearchResponse last = scrollResponse("scrollId3");
+        when(client.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(first);
+        when(client.scroll(any(SearchScrollRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(second, last);
+
+        List<List<String>> batches = new ArrayList<>();
+        long total = logService.streamUsingScroll(batch -> batches.add(batch.stream().map(LogEntity::getMessage).toList()));
+
+        assertEquals(3, total);
+        assertEquals(List.of(List.of("message1", "message2"), List.of("message3")), batches);
+        ArgumentCaptor<ClearScrollRequest> cleared = ArgumentCaptor.forClass(ClearScrollRequest.class);
+        verify(client).clearScroll(cleared.capture(), eq(RequestOptions.DEFAULT));
+        assertEquals(List.of("scrollId3"), cleared.getValue().getScrollIds());
+    }
+
+    @Test
+    public void testStreamUsingScrollClearsOnDisconnect() throws IOException {
+        SearchResponse first = scrollResponse("scrollId1", scrollHit("message1"));
+        when(client.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(first);
+
+        //the sink fails the way a write to a closed connection does
+        assertThrows(UncheckedIOException.class, () -> logService.streamUsingScroll(batch -> {
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        }));
+
+        verify(client, never()).scroll(any(SearchScrollRequest.class), any());
+        ArgumentCaptor<ClearScrollRequest> cleared = ArgumentCaptor.forClass(ClearScrollRequest.class);
+        verify(client).clearScroll(cleared.capture(), eq(RequestOptions.DEFAULT));
+        assertEquals(List.of("scrollId1"), cleared.getValue().getScrollIds());
+    }
+
+    @Test
+    public void testExportSliced() throws IOException {
+        SearchResponse slice0 = scrollResponse("scroll0", scrollHit("message1"), scrollHit("message2"));
+        SearchResponse slice1 = scrollResponse("scroll1", scrollHit("message3"));
+        SearchResponse end0 = scrollResponse("scroll0");
+        SearchResponse end1 = scrollResponse("scroll1");
+        when(client.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenAnswer(invocation -> {
+            SearchRequest request = invocation.getArgument(0);
+            assertEquals(2, request.source().slice().getMax());
+            assertEquals(2, request.source().size());
+            return request.source().slice().getId() == 0 ? slice0 : slice1;
+        });
+        when(client.scroll(any(SearchScrollRequest.class), eq(RequestOptions.DEFAULT))).thenAnswer(invocation -> {
+            SearchScrollRequest request = invocation.getArgument(0);
+            return request.scrollId().equals("scroll0") ? end0 : end1;
+        });
+
+        List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        ExportStats stats = logService.exportSliced(2, 2, batch -> batch.forEach(log -> messages.add(log.getMessage())));
+
+        assertEquals(3, stats.getDocuments());
+        assertEquals(List.of(2L, 1L), stats.getDocumentsPerSlice());
+        assertEquals(4, stats.getScrollRequests());
+        assertEquals(2, stats.getSlices());
+        assertEquals(Set.of("message1", "message2", "message3"), new HashSet<>(messages));
+        verify(client, times(2)).clearScroll(any(ClearScrollRequest.class), eq(RequestOptions.DEFAULT));
+    }
+
+    @Test
+    public void testExportSlicedDefaultsToShardCount() throws IOException {
+        SearchResponse shards = mock(SearchResponse.class);
+        when(shards.getTotalShards()).thenReturn(1);
+        SearchResponse only = scrollResponse("scroll0");
+        when(client.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenAnswer(invocation -> {
+            SearchRequest request = invocation.getArgument(0);
+            //one shard is a plain scroll, slicing needs at least two
+            assertNull(request.source().slice());
+            return request.scroll() == null ? shards : only;
+        });
+
+        ExportStats stats = logService.exportSliced(0, 0, batch -> fail("no hits expected"));
+
+        assertEquals(1, stats.getSlices());
+        assertEquals(1000, stats.getBatchSize());
+        assertEquals(0, stats.getDocuments());
+    }
+
+    @Test
+    public void testExportSlicedFail() throws IOException {
+        SearchResponse slice0 = scrollResponse("scroll0", scrollHit("message1"));
+        when(client.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(slice0);
+
+        assertThrows(UncheckedIOException.class, () -> logService.exportSliced(1, 10, batch -> {
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        }));
+        verify(client).clearScroll(any(ClearScrollRequest.class), eq(RequestOptions.DEFAULT));
+        assertThrows(IllegalArgumentException.class, () -> logService.exportSliced(1, 20000, batch -> {
+        }));
+    }
+
+    //every slice is a thread and a scroll context, a count above the limit is refused before any search
+    @Test
+    public void testExportSlicedLimit() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> logService.exportSliced(100000, 0, batch -> {
+        }));
+        assertThrows(IllegalArgumentException.class, () -> logService.exportSliced(17, 0, batch -> {
+        }));
+        assertThrows(IllegalArgumentException.class, () -> logService.exportSliced(-1, 0, batch -> {
+        }));
+        logService.checkExport(16, 0);
+        verifyNoInteractions(client);
+
+        //one slice per shard, but no more than the limit
+        ReflectionTestUtils.setField(logService, "maxSlices", 2);
+        SearchResponse shards = mock(SearchResponse.class);
+        when(shards.getTotalShards()).thenReturn(40);
+        SearchResponse empty = scrollResponse("scroll");
+        when(client.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT)))
+                .thenAnswer(invocation -> ((SearchRequest) invocation.getArgument(0)).scroll() == null ? shards : empty);
+
+        assertEquals(2, logService.exportSliced(0, 0, batch -> {
+        }).getSlices());
+    }
+
+    //a search response of a point in time search, with the sort values the cursor continues from
+    private static String pitSearchResponse(String pit, String... messages) {
+        StringBuilder hits = new StringBuilder();
+        for (int i = 0; i < messages.length; i++) {
+            hits.append(i == 0 ? "" : ",").append("{\"_index\":\"loganalyzer\",\"_id\":\"").append(messages[i])
+                    .append("\",\"_score\":null,\"_source\":{\"timestamp\":\"2023-06-16T17:52:14.692Z\",\"message\":\"")
+                    .append(messages[i]).append("\"},\"sort\":[1686937934692,").append(i).append("]}");
+        }
+        return "{\"pit_id\":\"" + pit + "\",\"took\":1,\"timed_out\":false,"
+                + "\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+                + "\"hits\":{\"max_score\":null,\"hits\":[" + hits + "]}}";
+    }
+
+    private static Response jsonResponse(String json) {
+        Response response = mock(Response.class);
+        lenient().when(response.getEntity()).thenReturn(new StringEntity(json, ContentType.APPLICATION_JSON));
+        return response;
+    }
+
+    @Test
+    public void testFilterBytimeCursor() throws IOException {
+        RestClient restClient = mock(RestClient.class);
+        when(client.getLowLevelClient()).thenReturn(restClient);
+        List<String> requests = new ArrayList<>();
+        when(restClient.performRequest(any(Request.class))).thenAnswer(invocation -> {
+            Request request = invocation.getArgument(0);
+            String body = request.getEntity() == null ? "" : EntityUtils.toString(request.getEntity());
+            requests.add(request.getMethod() + " " + request.getEndpoint() + " " + body);
+            if (request.getEndpoint().endsWith("/_pit") && request.getMethod().equals("POST")) {
+                return jsonResponse("{\"id\":\"pit1\"}");
+            }
+            if (request.getMethod().equals("DELETE")) {
+                return jsonResponse("{\"succeeded\":true,\"num_freed\":1}");
+            }
+            //the first page is full, the second is short and so the last one
+            return requests.size() == 2
+                    ? jsonResponse(pitSearchResponse("pit2", "message1", "message2"))
+                    : jsonResponse(pitSearchResponse("pit3", "message3"));
+        });
+
+        CursorPage<LogEntity> first = logService.filterBytimeCursor("2023-06-16T00:00:00.000Z", "2023-06-17T00:00:00.000Z", 2);
+
+        assertEquals(List.of("message1", "message2"), first.getItems().stream().map(LogEntity::getMessage).toList());
+        assertEquals("message1", first.getItems().get(0).getID());
+        assertNotNull(first.getCursor());
+        //the point in time only holds the partitions of the two days
+        assertTrue(requests.get(0).startsWith("POST /loganalyzer,loganalyzer-2023.06.16,loganalyzer-2023.06.17/_pit "), requests.get(0));
+        assertTrue(requests.get(1).startsWith("POST /_search "));
+        assertTrue(requests.get(1).contains("\"pit\":{\"id\":\"pit1\""));
+        assertTrue(requests.get(1).contains("\"sort\":[{\"timestamp\":\"asc\"},{\"_shard_doc\":\"asc\"}]"));
+        assertFalse(requests.get(1).contains("search_after"));
+
+        CursorPage<?> second = logService.nextPage(first.getCursor());
+
+        assertEquals(1, second.getItems().size());
+        assertNull(second.getCursor());
+        //the latest point in time id is used, page two starts after the last hit of page one
+        assertTrue(requests.get(2).contains("\"pit\":{\"id\":\"pit2\""));
+        assertTrue(requests.get(2).contains("\"search_after\":[1686937934692,1]"));
+        assertEquals("DELETE /_pit {\"id\":\"pit3\"}", requests.get(3));
+        assertEquals(4, requests.size());
+    }
+
+    @Test
+    public void testProjectByDynamicCursor() throws IOException {
+        RestClient restClient = mock(RestClient.class);
+        when(client.getLowLevelClient()).thenReturn(restClient);
+        when(restClient.performRequest(any(Request.class))).thenAnswer(invocation -> {
+            Request request = invocation.getArgument(0);
+            if (request.getEndpoint().endsWith("/_pit") && request.getMethod().equals("POST")) {
+                return jsonResponse("{\"id\":\"pit1\"}");
+            }
+            if (request.getMethod().equals("DELETE")) {
+                return jsonResponse("{\"succeeded\":true,\"num_freed\":1}");
+            }
+            assertTrue(EntityUtils.toString(request.getEntity()).contains("\"_source\":{\"includes\":[\"id\",\"message\"]}"));
+            return jsonResponse(pitSearchResponse("pit1", "message1"));
+        });
+
+        CursorPage<Map<String, Object>> page = logService.projectByDynamicCursor(10, "id", "message");
+
+        assertEquals(List.of(Map.of("id", "message1", "message", "message1")), page.getItems());
+        assertNull(page.getCursor());
+    }
+
+    @Test
+    public void testCursorFail() {
+        assertThrows(IllegalArgumentException.class, () -> logService.filterBytimeCursor("a", "b", 0));
+        assertThrows(IllegalArgumentException.class, () -> logService.nextPage("garbage"));
+        //a cursor the service did not sign, or signed with another key, is refused before anything reaches es
+        SearchCursor forged = new SearchCursor(SearchCursor.LOGS, "pit", "{\"script\":{}}", null, 10);
+        forged.setAfter(List.of(1));
+        assertThrows(IllegalArgumentException.class, () -> logService.nextPage(forged.encode("other".getBytes())));
+        //a signed cursor is still held to the page size limit
+        ReflectionTestUtils.setField(logService, "cursorSecret", "secret");
+        SearchCursor huge = new SearchCursor(SearchCursor.LOGS, "pit", "{\"match_all\":{}}", null, 1_000_000);
+        huge.setAfter(List.of(1));
+        assertThrows(IllegalArgumentException.class, () -> logService.nextPage(huge.encode("secret".getBytes())));
+        verifyNoInteractions(client);
+        when(loggerAllowlist.contains("unknown")).thenReturn(false);
+        assertTrue(logService.filterByTermsDynamicCursor("logger", 10, "unknown").getItems().isEmpty());
+    }
+
     @Test
     public void testFilterByTermsDynamic() throws Exception {
 
@@ -722,7 +1478,7 @@ class LogServiceImpTest {
 
         // create mock objects and stub them
         SearchHit hit = mock(SearchHit.class);
-        when(hit.getSourceAsMap()).thenReturn(sourceAsMap);
+        when(hit.getSourceRef()).thenReturn(source(sourceAsMap));
         SearchHits hits = mock(SearchHits.class);
         when(hits.iterator()).thenReturn(List.of(hit).iterator());
         SearchResponse response = mock(SearchResponse.class);
@@ -738,9 +1494,8 @@ class LogServiceImpTest {
         assertEquals(LocalDate.of(2023, 6, 30), log.getDate());
         assertEquals(source, log.getSource());
         assertEquals(message, log.getMessage());
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-        formatter.setLenient(false);
-        Date expectedTimestamp = formatter.parse(timestamp);
+        //the trailing Z means utc
+        Date expectedTimestamp = Date.from(Instant.parse(timestamp));
         assertEquals(expectedTimestamp, log.getTimestamp());
 
         //verify
@@ -751,6 +1506,17 @@ class LogServiceImpTest {
         }
     }
 
+    @Test
+    public void testFilterByUnknownLoggers() throws Exception {
+        when(loggerAllowlist.contains("unknown")).thenReturn(false);
+
+        List<LogEntity> logs = logService.filterByTermsDynamic("logger", "unknown");
+
+        //no valid logger left, es is not asked
+        assertTrue(logs.isEmpty());
+        verifyNoInteractions(client);
+    }
+
     @Test
     public void testGroupByDynamic() throws IOException {
 
@@ -909,4 +1675,12 @@ class LogServiceImpTest {
     }
 
 
-}
\ No newline at end of file
+    //the raw _source bytes es would return for the map
+    private static BytesReference source(Map<String, Object> sourceAsMap) {
+        try {
+            return BytesReference.bytes(XContentFactory.jsonBuilder().map(sourceAsMap));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
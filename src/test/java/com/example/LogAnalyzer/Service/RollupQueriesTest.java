@@ -0,0 +1,63 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Helper.ClosedBucketCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RollupQueriesTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final long HOUR = 3_600_000;
+
+    @Test
+    public void coversTest() {
+        assertTrue(RollupQueries.covers("source", "partnerid"));
+        assertFalse(RollupQueries.covers("source", "message"));
+    }
+
+    //the terms are ordered by the sum of the counts, as the logs are by doc count
+    @Test
+    public void nestedGroupByDynamicRequestTest() throws Exception {
+        JsonNode source = JSON.readTree(RollupQueries.nestedGroupByDynamicRequest("source", "loglevel").source().toString());
+
+        JsonNode field1 = source.get("aggregations").get("field1");
+        assertEquals("source", field1.get("terms").get("field").asText());
+        assertEquals("desc", field1.get("terms").get("order").get(0).get("count").asText());
+        assertEquals("count", field1.get("aggregations").get("count").get("sum").get("field").asText());
+        assertEquals("loglevel", field1.get("aggregations").get("field2").get("terms").get("field").asText());
+    }
+
+    @Test
+    public void splitHoursTest() {
+        List<long[]> whole = new ArrayList<>();
+        List<long[]> cut = new ArrayList<>();
+
+        RollupQueries.splitHours(List.of(new long[]{HOUR / 2, 3 * HOUR + 10}, new long[]{4 * HOUR + 1, 4 * HOUR + 2}), whole, cut);
+
+        assertEquals(1, whole.size());
+        assertArrayEquals(new long[]{HOUR, 3 * HOUR}, whole.get(0));
+        assertEquals(3, cut.size());
+        assertArrayEquals(new long[]{HOUR / 2, HOUR}, cut.get(0));
+        assertArrayEquals(new long[]{3 * HOUR, 3 * HOUR + 10}, cut.get(1));
+        assertArrayEquals(new long[]{4 * HOUR + 1, 4 * HOUR + 2}, cut.get(2));
+    }
+
+    //an open end stays open, the rollup has every hour before it
+    @Test
+    public void splitUnboundedTest() {
+        List<long[]> whole = new ArrayList<>();
+        List<long[]> cut = new ArrayList<>();
+
+        RollupQueries.splitHours(List.<long[]>of(new long[]{ClosedBucketCache.UNBOUNDED_FROM, 2 * HOUR + 5}), whole, cut);
+
+        assertArrayEquals(new long[]{ClosedBucketCache.UNBOUNDED_FROM, 2 * HOUR}, whole.get(0));
+        assertArrayEquals(new long[]{2 * HOUR, 2 * HOUR + 5}, cut.get(0));
+    }
+}
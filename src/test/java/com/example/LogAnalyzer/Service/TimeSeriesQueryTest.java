@@ -0,0 +1,219 @@
+package com.example.LogAnalyzer.Service;
+
+import com.example.LogAnalyzer.Helper.TimeSeries;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TimeSeriesQueryTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final String FROM = "2023-06-16T00:00:00Z";
+    private static final long FROM_MILLIS = Instant.parse(FROM).toEpochMilli();
+    private static final long HOUR = 3_600_000;
+
+    private static TimeSeriesQuery query(String to, int buckets) {
+        return new TimeSeriesQuery(FROM, to, buckets, null, null, 10);
+    }
+
+    //the interval grows with the range so the bucket count stays under the target
+    @Test
+    public void intervalTest() {
+        assertEquals("5s", query("2023-06-16T00:05:00Z", 100).interval());
+        assertEquals("30m", query("2023-06-17T00:00:00Z", 100).interval());
+        assertEquals("1h", query("2023-06-17T00:00:00Z", 30).interval());
+        assertEquals("7d", query("2024-06-16T00:00:00Z", 100).interval());
+        assertEquals("1s", query(FROM, 1).interval());
+    }
+
+    @Test
+    public void bucketCountTest() {
+        for (String to : List.of("2023-06-16T00:00:07Z", "2023-06-16T03:17:00Z", "2023-07-02T11:00:00Z", "2025-01-01T00:00:00Z")) {
+            TimeSeries series = new TimeSeriesQuery("2023-06-16T00:00:03.250Z", to, 50, null, null, 10).empty();
+            assertTrue(series.getTimestamps().length <= 50, to);
+        }
+    }
+
+    @Test
+    public void invalidTest() {
+        assertThrows(IllegalArgumentException.class, () -> new TimeSeriesQuery(null, FROM, 100, null, null, 10));
+        assertThrows(IllegalArgumentException.class, () -> new TimeSeriesQuery("yesterday", FROM, 100, null, null, 10));
+        assertThrows(IllegalArgumentException.class, () -> query("2023-06-15T00:00:00Z", 100));
+        assertThrows(IllegalArgumentException.class, () -> query(FROM, 0));
+        assertThrows(IllegalArgumentException.class, () -> query("2123-06-16T00:00:00Z", 10));
+        assertThrows(IllegalArgumentException.class, () -> new TimeSeriesQuery(FROM, FROM, 100, null, "message", 10));
+        assertThrows(IllegalArgumentException.class, () -> new TimeSeriesQuery(FROM, FROM, 100, Map.of("message", List.of("x")), null, 10));
+        assertThrows(IllegalArgumentException.class, () -> new TimeSeriesQuery(FROM, FROM, 100, null, "source", 0));
+    }
+
+    @Test
+    public void requestTest() throws Exception {
+        TimeSeriesQuery query = new TimeSeriesQuery(FROM, "2023-06-17T00:00:00Z", 100, Map.of("source", List.of("web")), "loglevel", 5);
+        query.splitBy(List.of("INFO", "ERROR"));
+        JsonNode source = JSON.readTree(query.request(List.of(new long[]{FROM_MILLIS, FROM_MILLIS + HOUR})).source().toString());
+
+        assertEquals(0, source.get("size").asInt());
+        JsonNode filters = source.get("query").get("bool").get("filter");
+        JsonNode range = filters.get(0).get("bool").get("should").get(0).get("range").get("timestamp");
+        assertEquals(FROM_MILLIS, range.get("from").asLong());
+        assertEquals(FROM_MILLIS + HOUR, range.get("to").asLong());
+        assertFalse(range.get("include_upper").asBoolean());
+        assertEquals("web", filters.get(1).get("terms").get("source").get(0).asText());
+        JsonNode histogram = source.get("aggregations").get(TimeSeriesQuery.HISTOGRAM);
+        assertEquals("30m", histogram.get("date_histogram").get("fixed_interval").asText());
+        assertEquals(1, histogram.get("date_histogram").get("min_doc_count").asInt());
+        JsonNode split = histogram.get("aggregations").get(TimeSeriesQuery.SPLIT).get("terms");
+        assertEquals("loglevel", split.get("field").asText());
+        //every bucket counts exactly the values chosen over the whole range
+        assertEquals(2, split.get("size").asInt());
+        assertEquals("ERROR", split.get("include").get(0).asText());
+        assertEquals("INFO", split.get("include").get(1).asText());
+    }
+
+    //the split values are the top ones of the whole range, from its first millisecond to its last
+    @Test
+    public void splitValuesRequestTest() throws Exception {
+        TimeSeriesQuery query = new TimeSeriesQuery(FROM, "2023-06-17T00:00:00Z", 100, Map.of("source", List.of("web")), "loglevel", 5);
+        SearchRequest request = query.splitValuesRequest();
+        JsonNode source = JSON.readTree(request.source().toString());
+
+        assertTrue(query.isSplit());
+        assertArrayEquals(new String[]{"loganalyzer", "loganalyzer-2023.06.16", "loganalyzer-2023.06.17"}, request.indices());
+        JsonNode filters = source.get("query").get("bool").get("filter");
+        JsonNode range = filters.get(0).get("bool").get("should").get(0).get("range").get("timestamp");
+        assertEquals(FROM_MILLIS, range.get("from").asLong());
+        assertEquals(Instant.parse("2023-06-17T00:00:00Z").toEpochMilli() + 1, range.get("to").asLong());
+        assertEquals("web", filters.get(1).get("terms").get("source").get(0).asText());
+        JsonNode split = source.get("aggregations").get(TimeSeriesQuery.SPLIT).get("terms");
+        assertEquals("loglevel", split.get("field").asText());
+        assertEquals(5, split.get("size").asInt());
+        assertFalse(source.get("aggregations").has(TimeSeriesQuery.HISTOGRAM));
+        //the buckets cannot be searched before the values are known
+        assertThrows(IllegalStateException.class, () -> query.request(List.of()));
+    }
+
+    //the buckets of different split values are kept apart
+    @Test
+    public void splitSignatureTest() {
+        TimeSeriesQuery query = new TimeSeriesQuery(FROM, "2023-06-17T00:00:00Z", 100, null, "source", 2);
+        TimeSeriesQuery other = new TimeSeriesQuery(FROM, "2023-06-17T00:00:00Z", 100, null, "source", 2);
+        TimeSeriesQuery reordered = new TimeSeriesQuery(FROM, "2023-06-17T00:00:00Z", 100, null, "source", 2);
+        query.splitBy(List.of("web", "db"));
+        other.splitBy(List.of("web", "mail"));
+        reordered.splitBy(List.of("db", "web"));
+
+        assertNotEquals(query.signature(), other.signature());
+        assertEquals(query.signature(), reordered.signature());
+    }
+
+    //the rollup histogram ranges over the hours and sums the counts of the documents in each bucket
+    @Test
+    public void rollupRequestTest() throws Exception {
+        TimeSeriesQuery query = new TimeSeriesQuery(FROM, "2023-06-17T00:00:00Z", 30, Map.of("source", List.of("web")), "loglevel", 5);
+        query.splitBy(List.of("ERROR"));
+        SearchRequest request = query.rollupRequest(List.of(new long[]{FROM_MILLIS, FROM_MILLIS + HOUR}));
+        JsonNode source = JSON.readTree(request.source().toString());
+
+        assertTrue(query.rollable());
+        assertFalse(query("2023-06-17T00:00:00Z", 100).rollable());
+        assertArrayEquals(new String[]{"rollup-loganalyzer"}, request.indices());
+        JsonNode filters = source.get("query").get("bool").get("filter");
+        assertEquals(FROM_MILLIS, filters.get(0).get("bool").get("should").get(0).get("range").get("hour").get("from").asLong());
+        JsonNode histogram = source.get("aggregations").get(TimeSeriesQuery.HISTOGRAM);
+        assertEquals("hour", histogram.get("date_histogram").get("field").asText());
+        assertEquals("count", histogram.get("aggregations").get("count").get("sum").get("field").asText());
+        JsonNode split = histogram.get("aggregations").get(TimeSeriesQuery.SPLIT);
+        assertEquals(1, split.get("terms").get("size").asInt());
+        assertEquals("ERROR", split.get("terms").get("include").get(0).asText());
+        assertTrue(split.get("aggregations").has("count"));
+    }
+
+    //the parts of a bucket counted from both indices add up
+    @Test
+    public void mergeTest() {
+        SortedMap<Long, Map<String, Long>> rollup = new TreeMap<>(Map.of(FROM_MILLIS, Map.of("web", 5L), FROM_MILLIS + HOUR, Map.of("db", 1L)));
+        SortedMap<Long, Map<String, Long>> logs = new TreeMap<>(Map.of(FROM_MILLIS, Map.of("web", 2L, "db", 1L)));
+
+        SortedMap<Long, Map<String, Long>> merged = TimeSeriesQuery.merge(rollup, logs);
+
+        assertEquals(Map.of("web", 7L, "db", 1L), merged.get(FROM_MILLIS));
+        assertEquals(Map.of("db", 1L), merged.get(FROM_MILLIS + HOUR));
+    }
+
+    //the signature leaves the time range out, every range of the query shares it
+    @Test
+    public void signatureTest() {
+        TimeSeriesQuery query = new TimeSeriesQuery(FROM, "2023-06-17T00:00:00Z", 100, Map.of("source", List.of("web")), null, 10);
+        TimeSeriesQuery other = new TimeSeriesQuery("2023-06-15T00:00:00Z", "2023-06-16T00:00:00Z", 100, Map.of("source", List.of("web")), null, 10);
+
+        assertFalse(query.signature().contains("range"));
+        assertEquals(query.signature(), other.signature());
+    }
+
+    @Test
+    public void bucketsTest() {
+        TimeSeriesQuery query = new TimeSeriesQuery(FROM, "2023-06-16T02:00:00Z", 4, null, "source", 10);
+        Terms.Bucket web = mock(Terms.Bucket.class);
+        when(web.getKeyAsString()).thenReturn("web");
+        when(web.getDocCount()).thenReturn(7L);
+        Terms terms = mock(Terms.class);
+        doReturn(List.of(web)).when(terms).getBuckets();
+        Aggregations inner = mock(Aggregations.class);
+        when(inner.get(TimeSeriesQuery.SPLIT)).thenReturn(terms);
+        Histogram.Bucket bucket = mock(Histogram.Bucket.class);
+        doReturn(Instant.ofEpochMilli(FROM_MILLIS + HOUR).atZone(ZoneOffset.UTC)).when(bucket).getKey();
+        when(bucket.getAggregations()).thenReturn(inner);
+        Histogram histogram = mock(Histogram.class);
+        doReturn(List.of(bucket)).when(histogram).getBuckets();
+        Aggregations aggs = mock(Aggregations.class);
+        when(aggs.get(TimeSeriesQuery.HISTOGRAM)).thenReturn(histogram);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getAggregations()).thenReturn(aggs);
+
+        assertEquals(Map.of(FROM_MILLIS + HOUR, Map.of("web", 7L)), query.buckets(response));
+    }
+
+    //missing buckets are zero and a split keeps the values with the most logs
+    @Test
+    public void resultTest() {
+        TimeSeriesQuery query = new TimeSeriesQuery(FROM, "2023-06-16T02:00:00Z", 4, null, "source", 2);
+        SortedMap<Long, Map<String, Long>> buckets = new TreeMap<>();
+        buckets.put(FROM_MILLIS, Map.of("web", 1L, "db", 2L));
+        buckets.put(FROM_MILLIS + HOUR, Map.of("web", 7L, "mail", 1L));
+
+        TimeSeries series = query.result(buckets);
+
+        assertEquals("1h", series.getInterval());
+        assertArrayEquals(new long[]{FROM_MILLIS, FROM_MILLIS + HOUR, FROM_MILLIS + 2 * HOUR}, series.getTimestamps());
+        assertEquals(2, series.getSeries().size());
+        assertEquals("web", series.getSeries().get(0).getKey());
+        assertArrayEquals(new long[]{1, 7, 0}, series.getSeries().get(0).getCounts());
+        assertEquals("db", series.getSeries().get(1).getKey());
+    }
+
+    @Test
+    public void emptyTest() {
+        TimeSeries series = query("2023-06-16T00:00:20Z", 10).empty();
+
+        assertEquals(1, series.getSeries().size());
+        assertNull(series.getSeries().get(0).getKey());
+        assertArrayEquals(new long[5], series.getSeries().get(0).getCounts());
+        assertTrue(new TimeSeriesQuery(FROM, FROM, 10, null, "source", 10).empty().getSeries().isEmpty());
+    }
+}